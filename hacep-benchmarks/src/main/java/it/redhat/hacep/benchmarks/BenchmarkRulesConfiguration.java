@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.benchmarks;
+
+import it.redhat.hacep.configuration.RulesConfiguration;
+import org.kie.api.runtime.Channel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Example hacep-rules kjar with every channel discarding its output, so that the benchmarks only
+ * measure the engine and the replication code.
+ */
+public class BenchmarkRulesConfiguration implements RulesConfiguration {
+
+    private static final String[] CHANNEL_IDS = {"audit", "outcomes", "playerPointsLevel"};
+
+    private final Map<String, Channel> channels = new HashMap<>();
+    private final Map<String, Channel> replayChannels = new HashMap<>();
+
+    public BenchmarkRulesConfiguration() {
+        for (String channelId : CHANNEL_IDS) {
+            channels.put(channelId, new DiscardChannel());
+            replayChannels.put(channelId, new DiscardChannel());
+        }
+    }
+
+    /**
+     * Replaces the discarding channel with the given one, replay channels keep discarding.
+     */
+    public BenchmarkRulesConfiguration withChannel(String channelId, Channel channel) {
+        channels.put(channelId, channel);
+        return this;
+    }
+
+    @Override
+    public String getKieSessionName() {
+        return "hacep-sessions";
+    }
+
+    @Override
+    public String getKieBaseName() {
+        return "hacep-rules";
+    }
+
+    @Override
+    public Map<String, Channel> getChannels() {
+        return channels;
+    }
+
+    @Override
+    public Map<String, Channel> getReplayChannels() {
+        return replayChannels;
+    }
+
+    @Override
+    public String getGroupId() {
+        return "it.redhat.jdg.examples";
+    }
+
+    @Override
+    public String getArtifactId() {
+        return "hacep-rules";
+    }
+
+    @Override
+    public String getVersion() {
+        return "1.0-SNAPSHOT";
+    }
+
+    private static class DiscardChannel implements Channel {
+
+        private volatile Object last;
+
+        @Override
+        public void send(Object object) {
+            last = object;
+        }
+    }
+}
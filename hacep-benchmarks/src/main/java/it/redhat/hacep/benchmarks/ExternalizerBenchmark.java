@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.benchmarks;
+
+import it.redhat.hacep.cache.session.HAKieSerializedSession;
+import it.redhat.hacep.cache.session.HAKieSession;
+import it.redhat.hacep.cache.session.HAKieSessionBuilder;
+import it.redhat.hacep.cache.session.HAKieSessionDeltaFact;
+import it.redhat.hacep.configuration.RulesManager;
+import org.infinispan.commons.marshall.AdvancedExternalizer;
+import org.kie.api.runtime.KieSession;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the externalizers used for replication, state transfer and passivation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ExternalizerBenchmark {
+
+    @Param({"0", "1000", "10000"})
+    private int sessionAge;
+
+    @Param({"0", "100", "1000"})
+    private int bufferedFacts;
+
+    private RulesManager rulesManager;
+    private ExecutorService executorService;
+
+    private HAKieSession session;
+    private HAKieSerializedSession serializedSession;
+    private HAKieSessionDeltaFact deltaFact;
+
+    private HAKieSession.HASessionExternalizer sessionExternalizer;
+    private HAKieSerializedSession.HASerializedSessionExternalizer serializedSessionExternalizer;
+    private HAKieSessionDeltaFact.HASessionDeltaFactExternalizer deltaFactExternalizer;
+
+    private byte[] sessionBytes;
+    private byte[] serializedSessionBytes;
+    private byte[] deltaFactBytes;
+
+    @Setup
+    public void setup() throws IOException {
+        System.setProperty("grid.buffer", String.valueOf(Integer.MAX_VALUE));
+        rulesManager = Fixtures.startRulesManager();
+        executorService = Executors.newSingleThreadExecutor();
+        HAKieSessionBuilder builder = new HAKieSessionBuilder(rulesManager, executorService);
+
+        KieSession kieSession = Fixtures.agedSession(rulesManager, 1L, sessionAge);
+        session = builder.build(kieSession);
+        serializedSession = builder.buildSerialized(builder.getVersion(), rulesManager.serialize(kieSession));
+        Fixtures.FactStream facts = new Fixtures.FactStream(1L, sessionAge);
+        for (int i = 0; i < bufferedFacts; i++) {
+            serializedSession.add(facts.next());
+        }
+        deltaFact = new HAKieSessionDeltaFact(facts.next());
+
+        sessionExternalizer = new HAKieSession.HASessionExternalizer(builder);
+        serializedSessionExternalizer = new HAKieSerializedSession.HASerializedSessionExternalizer(builder);
+        deltaFactExternalizer = new HAKieSessionDeltaFact.HASessionDeltaFactExternalizer(builder);
+
+        sessionBytes = write(sessionExternalizer, session);
+        serializedSessionBytes = write(serializedSessionExternalizer, serializedSession);
+        deltaFactBytes = write(deltaFactExternalizer, deltaFact);
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.dispose();
+        executorService.shutdown();
+        rulesManager.stop();
+    }
+
+    @Benchmark
+    public byte[] writeSession() throws IOException {
+        return write(sessionExternalizer, session);
+    }
+
+    @Benchmark
+    public HAKieSession readSession() throws IOException, ClassNotFoundException {
+        return read(sessionExternalizer, sessionBytes);
+    }
+
+    @Benchmark
+    public byte[] writeSerializedSession() throws IOException {
+        return write(serializedSessionExternalizer, serializedSession);
+    }
+
+    @Benchmark
+    public HAKieSerializedSession readSerializedSession() throws IOException, ClassNotFoundException {
+        return read(serializedSessionExternalizer, serializedSessionBytes);
+    }
+
+    @Benchmark
+    public byte[] writeDeltaFact() throws IOException {
+        return write(deltaFactExternalizer, deltaFact);
+    }
+
+    @Benchmark
+    public HAKieSessionDeltaFact readDeltaFact() throws IOException, ClassNotFoundException {
+        return read(deltaFactExternalizer, deltaFactBytes);
+    }
+
+    private static <T> byte[] write(AdvancedExternalizer<T> externalizer, T object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            externalizer.writeObject(output, object);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static <T> T read(AdvancedExternalizer<T> externalizer, byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return externalizer.readObject(input);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.benchmarks;
+
+import it.redhat.hacep.configuration.RulesManager;
+import it.redhat.hacep.model.Fact;
+import it.redhat.hacep.playground.rules.model.Gameplay;
+import it.redhat.hacep.playground.rules.model.util.GameplayBuilder;
+import it.redhat.hacep.playground.rules.model.util.GameplayGenerator;
+import it.redhat.hacep.support.KieSessionUtils;
+import org.kie.api.runtime.KieSession;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixtures shared by the benchmarks: rules, gameplay facts and sessions of a given age,
+ * the age being the number of facts the session has already seen.
+ */
+public final class Fixtures {
+
+    public static final long START = TimeUnit.DAYS.toMillis(17000);
+    public static final long FACT_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+
+    private Fixtures() {
+    }
+
+    public static RulesManager startRulesManager() {
+        RulesManager rulesManager = new RulesManager(new BenchmarkRulesConfiguration());
+        rulesManager.start(null, null, null);
+        return rulesManager;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static List<Gameplay> history(long playerId, int count) {
+        return new GameplayGenerator()
+                .playerId(playerId)
+                .timestamp(START, count * FACT_INTERVAL, TimeUnit.MILLISECONDS)
+                .count(Math.max(count, 1))
+                .generate()
+                .subList(0, count);
+    }
+
+    public static KieSession agedSession(RulesManager rulesManager, long playerId, int age) {
+        KieSession session = rulesManager.newKieSession();
+        rulesManager.registerChannels(session);
+        for (Gameplay gameplay : history(playerId, age)) {
+            KieSessionUtils.advanceClock(session, gameplay);
+            session.insert(gameplay);
+            session.fireAllRules();
+        }
+        return session;
+    }
+
+    /**
+     * Endless stream of gameplays for a player, following the history of a session of the given age.
+     */
+    public static class FactStream {
+
+        private final long playerId;
+        private long id;
+        private long timestamp;
+
+        public FactStream(long playerId, int age) {
+            this.playerId = playerId;
+            this.timestamp = START + (age + 1) * FACT_INTERVAL;
+        }
+
+        public Fact next() {
+            timestamp += FACT_INTERVAL;
+            return new GameplayBuilder().playerId(playerId).id(id++).timestamp(timestamp).build();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.benchmarks;
+
+import it.redhat.hacep.cache.session.HAKieSession;
+import it.redhat.hacep.cache.session.HAKieSessionBuilder;
+import it.redhat.hacep.cache.session.KieSessionSaver;
+import it.redhat.hacep.configuration.RulesManager;
+import it.redhat.hacep.model.Fact;
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.manager.DefaultCacheManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a fact on the primary: {@link KieSessionSaver#insert} against a local-mode cache, so
+ * that the rules, the session lookup and the put are measured without any network hop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class KieSessionSaverBenchmark {
+
+    @Param({"1", "100", "1000"})
+    private int players;
+
+    @Param({"0", "1000"})
+    private int sessionAge;
+
+    private RulesManager rulesManager;
+    private ExecutorService executorService;
+    private DefaultCacheManager cacheManager;
+    private KieSessionSaver kieSessionSaver;
+
+    private Fixtures.FactStream[] facts;
+    private int next;
+
+    @Setup
+    public void setup() {
+        rulesManager = Fixtures.startRulesManager();
+        executorService = Executors.newFixedThreadPool(4);
+        HAKieSessionBuilder builder = new HAKieSessionBuilder(rulesManager, executorService);
+
+        cacheManager = new DefaultCacheManager(new GlobalConfigurationBuilder().nonClusteredDefault().build(),
+                new ConfigurationBuilder().build());
+        Cache<String, Object> sessionCache = cacheManager.getCache("___sessions");
+
+        facts = new Fixtures.FactStream[players];
+        for (int i = 0; i < players; i++) {
+            String group = String.valueOf(i);
+            sessionCache.put(group, builder.build(Fixtures.agedSession(rulesManager, i, sessionAge)));
+            facts[i] = new Fixtures.FactStream(i, sessionAge);
+        }
+        kieSessionSaver = new KieSessionSaver(builder, sessionCache);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (InternalCacheEntry<String, Object> entry : cacheManager.<String, Object>getCache("___sessions").getAdvancedCache().getDataContainer()) {
+            ((HAKieSession) entry.getValue()).dispose();
+        }
+        cacheManager.stop();
+        executorService.shutdown();
+        rulesManager.stop();
+    }
+
+    @Benchmark
+    public void insert() {
+        Fact fact = facts[next].next();
+        next = (next + 1) % players;
+        kieSessionSaver.insert(fact.extractKey(), fact);
+    }
+}
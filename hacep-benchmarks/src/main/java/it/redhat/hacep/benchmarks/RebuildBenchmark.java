@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.benchmarks;
+
+import it.redhat.hacep.cache.session.HAKieSerializedSession;
+import it.redhat.hacep.cache.session.HAKieSession;
+import it.redhat.hacep.cache.session.HAKieSessionBuilder;
+import it.redhat.hacep.configuration.RulesManager;
+import it.redhat.hacep.support.KieSessionUtils;
+import org.kie.api.runtime.KieSession;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Failover cost: promotion of a backup holding a snapshot plus a buffer of facts to replay.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RebuildBenchmark {
+
+    @Param({"0", "1000", "10000"})
+    private int sessionAge;
+
+    @Param({"0", "100", "1000", "10000"})
+    private int bufferedFacts;
+
+    private RulesManager rulesManager;
+    private ExecutorService executorService;
+    private HAKieSessionBuilder builder;
+    private byte[] snapshot;
+
+    private HAKieSerializedSession backup;
+    private HAKieSession rebuilt;
+
+    @Setup
+    public void setup() {
+        System.setProperty("grid.buffer", String.valueOf(Integer.MAX_VALUE));
+        rulesManager = Fixtures.startRulesManager();
+        executorService = Executors.newSingleThreadExecutor();
+        builder = new HAKieSessionBuilder(rulesManager, executorService);
+        KieSession session = Fixtures.agedSession(rulesManager, 1L, sessionAge);
+        snapshot = rulesManager.serialize(session);
+        KieSessionUtils.dispose(session);
+    }
+
+    @Setup(Level.Invocation)
+    public void newBackup() {
+        backup = builder.buildSerialized(builder.getVersion(), snapshot);
+        Fixtures.FactStream facts = new Fixtures.FactStream(1L, sessionAge);
+        for (int i = 0; i < bufferedFacts; i++) {
+            backup.add(facts.next());
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void disposeRebuilt() {
+        if (rebuilt != null) {
+            rebuilt.dispose();
+            rebuilt = null;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executorService.shutdown();
+        rulesManager.stop();
+    }
+
+    @Benchmark
+    public HAKieSession rebuild() {
+        rebuilt = backup.rebuild();
+        return rebuilt;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.benchmarks;
+
+import it.redhat.hacep.cache.session.HAKieSerializedSession;
+import it.redhat.hacep.cache.session.HAKieSession;
+import it.redhat.hacep.cache.session.HAKieSessionBuilder;
+import it.redhat.hacep.cache.session.HAKieSessionDeltaFact;
+import it.redhat.hacep.cache.session.ReplicationMode;
+import it.redhat.hacep.cache.session.ReplicationPolicy;
+import it.redhat.hacep.configuration.RulesManager;
+import it.redhat.hacep.support.KieSessionUtils;
+import org.infinispan.atomic.DeltaAware;
+import org.kie.api.runtime.KieSession;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost paid by a backup for every replicated fact: {@link HAKieSessionDeltaFact#merge(DeltaAware)}
+ * down to {@link HAKieSerializedSession#add}, including the snapshots triggered by grid.buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ReplicationBenchmark {
+
+    @Param({"0", "1000"})
+    private int sessionAge;
+
+    @Param({"100", "1000", "10000"})
+    private int bufferSize;
+
+    @Param({"BUFFERED", "HOT_STANDBY", "LOG_ONLY"})
+    private ReplicationMode mode;
+
+    private RulesManager rulesManager;
+    private ExecutorService executorService;
+    private HAKieSessionBuilder builder;
+    private byte[] snapshot;
+
+    private DeltaAware backup;
+    private Fixtures.FactStream facts;
+
+    @Setup
+    public void setup() {
+        System.setProperty("grid.buffer", String.valueOf(bufferSize));
+        rulesManager = Fixtures.startRulesManager();
+        executorService = Executors.newFixedThreadPool(4);
+        builder = new HAKieSessionBuilder(rulesManager, executorService, new ReplicationPolicy(mode));
+        KieSession session = Fixtures.agedSession(rulesManager, 1L, sessionAge);
+        snapshot = rulesManager.serialize(session);
+        KieSessionUtils.dispose(session);
+    }
+
+    @Setup(Level.Iteration)
+    public void newBackup() {
+        backup = builder.buildSerialized(builder.getVersion(), snapshot);
+        facts = new Fixtures.FactStream(1L, sessionAge);
+    }
+
+    @TearDown(Level.Iteration)
+    public void disposeBackup() {
+        if (backup instanceof HAKieSerializedSession) {
+            ((HAKieSerializedSession) backup).waitForSnapshotToComplete();
+        }
+        ((HAKieSession) backup).dispose();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executorService.shutdown();
+        rulesManager.stop();
+    }
+
+    @Benchmark
+    public DeltaAware merge() {
+        backup = new HAKieSessionDeltaFact(builder, facts.next()).merge(backup);
+        return backup;
+    }
+}
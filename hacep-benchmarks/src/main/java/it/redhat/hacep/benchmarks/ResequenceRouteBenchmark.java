@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.benchmarks;
+
+import it.redhat.hacep.camel.ResequenceFactProcessor;
+import it.redhat.hacep.support.GroupResequencer;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput of the resequencing stage as the ingestion route wires it: four consumer threads, each feeding its
+ * own share of the groups as JMS message groups would and waiting for every fact to be put in the grid before
+ * taking the next one, by number of groups and percentage of facts swapped with the next one of their group.
+ * <p>
+ * The grid is a counter behind {@link ResequenceFactProcessor#PUT_IN_GRID}. A swapped fact waits for one that
+ * only its own consumer can send, so its consumer is held for the whole timeout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Threads(ResequenceRouteBenchmark.CONSUMERS)
+@Fork(1)
+public class ResequenceRouteBenchmark {
+
+    static final int CONSUMERS = 4;
+
+    private static final String CONSUME = "direct:consume";
+
+    private static final Object FACT = new Object();
+
+    @Param({"1000", "1000000"})
+    private int groups;
+
+    @Param({"0", "1", "10"})
+    private int disorder;
+
+    @Param({"50"})
+    private long timeout;
+
+    private String[] names;
+    private CamelContext camelContext;
+    private ProducerTemplate consumer;
+    private GroupResequencer<Exchange> resequencer;
+    private final LongAdder put = new LongAdder();
+    private final AtomicInteger threads = new AtomicInteger();
+
+    @Setup
+    public void setup() throws Exception {
+        names = new String[groups];
+        for (int i = 0; i < groups; i++) {
+            names[i] = String.format("P%05d", i);
+        }
+        camelContext = new DefaultCamelContext();
+        ProducerTemplate putInGrid = camelContext.createProducerTemplate();
+        resequencer = new GroupResequencer<>(exchange -> putInGrid.send(ResequenceFactProcessor.PUT_IN_GRID, exchange),
+                timeout, CONSUMERS, CONSUMERS, 60000, 100000, 4);
+        ResequenceFactProcessor processor = new ResequenceFactProcessor(resequencer, putInGrid);
+        camelContext.addRoutes(new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from(CONSUME).process(processor);
+                from(ResequenceFactProcessor.PUT_IN_GRID).process(exchange -> put.increment());
+            }
+        });
+        camelContext.start();
+        consumer = camelContext.createProducerTemplate();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        camelContext.stop();
+        resequencer.stop();
+    }
+
+    @Benchmark
+    public void consume(Feed feed) {
+        if (feed.swapped > 0) {
+            send(names[feed.swappedGroup], feed.swapped);
+            feed.swapped = 0;
+            return;
+        }
+        int group = feed.first + feed.random.nextInt(feed.count);
+        int sequence = ++feed.sequences[group - feed.first];
+        if (disorder > 0 && feed.random.nextInt(100) < disorder) {
+            feed.sequences[group - feed.first]++;
+            send(names[group], sequence + 1);
+            feed.swapped = sequence;
+            feed.swappedGroup = group;
+        } else {
+            send(names[group], sequence);
+        }
+    }
+
+    private void send(String group, int sequence) {
+        consumer.send(CONSUME, exchange -> {
+            exchange.getIn().setBody(FACT);
+            exchange.getIn().setHeader("JMSXGroupID", group);
+            exchange.getIn().setHeader("JMSXGroupSeq", sequence);
+        });
+    }
+
+    /**
+     * The groups of a consumer thread and their next sequence numbers.
+     */
+    @State(Scope.Thread)
+    public static class Feed {
+
+        private SplittableRandom random;
+        private int first;
+        private int count;
+        private int[] sequences;
+        private int swapped;
+        private int swappedGroup;
+
+        @Setup
+        public void setup(ResequenceRouteBenchmark benchmark) {
+            int index = benchmark.threads.getAndIncrement() % CONSUMERS;
+            count = Math.max(1, benchmark.groups / CONSUMERS);
+            first = Math.min(index * count, benchmark.groups - count);
+            sequences = new int[count];
+            random = new SplittableRandom(index);
+        }
+    }
+}
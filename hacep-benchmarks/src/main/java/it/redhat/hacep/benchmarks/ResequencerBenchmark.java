@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.benchmarks;
+
+import it.redhat.hacep.support.GroupResequencer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput of {@link GroupResequencer#offer} with four consumer threads, each feeding its own share of the
+ * groups as JMS message groups would, by number of groups and percentage of messages swapped with the next
+ * one of their group.
+ * <p>
+ * This measures the resequencer alone, fed by threads that never wait for their messages: the ingestion route
+ * waits for every fact to be in the grid before taking the next one, see {@link ResequenceRouteBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Threads(ResequencerBenchmark.THREADS)
+@Fork(1)
+public class ResequencerBenchmark {
+
+    static final int THREADS = 4;
+
+    private static final Object MESSAGE = new Object();
+
+    @Param({"1000", "1000000"})
+    private int groups;
+
+    @Param({"0", "1", "10"})
+    private int disorder;
+
+    private String[] names;
+    private GroupResequencer<Object> resequencer;
+    private final LongAdder delivered = new LongAdder();
+    private final AtomicInteger threads = new AtomicInteger();
+
+    @Setup
+    public void setup() {
+        names = new String[groups];
+        for (int i = 0; i < groups; i++) {
+            names[i] = String.format("P%05d", i);
+        }
+        resequencer = new GroupResequencer<>(message -> delivered.increment(), 50, 100, 100000, 60000, 100000, 4);
+    }
+
+    @TearDown
+    public void tearDown() {
+        resequencer.stop();
+    }
+
+    @Benchmark
+    public void offer(Feed feed) {
+        if (feed.swapped > 0) {
+            resequencer.offer(names[feed.swappedGroup], feed.swapped, MESSAGE);
+            feed.swapped = 0;
+            return;
+        }
+        int group = feed.first + feed.random.nextInt(feed.count);
+        long sequence = ++feed.sequences[group - feed.first];
+        if (disorder > 0 && feed.random.nextInt(100) < disorder) {
+            feed.sequences[group - feed.first]++;
+            resequencer.offer(names[group], sequence + 1, MESSAGE);
+            feed.swapped = sequence;
+            feed.swappedGroup = group;
+        } else {
+            resequencer.offer(names[group], sequence, MESSAGE);
+        }
+    }
+
+    /**
+     * The groups of a consumer thread and their next sequence numbers.
+     */
+    @State(Scope.Thread)
+    public static class Feed {
+
+        private SplittableRandom random;
+        private int first;
+        private int count;
+        private long[] sequences;
+        private long swapped;
+        private int swappedGroup;
+
+        @Setup
+        public void setup(ResequencerBenchmark benchmark) {
+            int index = benchmark.threads.getAndIncrement() % THREADS;
+            count = Math.max(1, benchmark.groups / THREADS);
+            first = Math.min(index * count, benchmark.groups - count);
+            sequences = new long[count];
+            random = new SplittableRandom(index);
+        }
+    }
+}
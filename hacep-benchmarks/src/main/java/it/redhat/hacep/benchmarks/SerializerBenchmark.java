@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.benchmarks;
+
+import it.redhat.hacep.configuration.RulesManager;
+import it.redhat.hacep.drools.KieSessionByteArraySerializer;
+import it.redhat.hacep.support.KieSessionUtils;
+import org.kie.api.KieServices;
+import org.kie.api.marshalling.KieMarshallers;
+import org.kie.api.marshalling.Marshaller;
+import org.kie.api.marshalling.ObjectMarshallingStrategy;
+import org.kie.api.runtime.KieSession;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a session into the byte array shipped to the backups and back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SerializerBenchmark {
+
+    @Param({"0", "100", "1000", "10000"})
+    private int sessionAge;
+
+    private RulesManager rulesManager;
+    private KieSession session;
+    private Marshaller marshaller;
+    private byte[] serialized;
+
+    @Setup
+    public void setup() {
+        rulesManager = Fixtures.startRulesManager();
+        session = Fixtures.agedSession(rulesManager, 1L, sessionAge);
+        KieMarshallers marshallers = KieServices.Factory.get().getMarshallers();
+        marshaller = marshallers.newMarshaller(session.getKieBase(),
+                new ObjectMarshallingStrategy[]{marshallers.newSerializeMarshallingStrategy()});
+        serialized = KieSessionByteArraySerializer.writeObject(marshaller, session);
+    }
+
+    @TearDown
+    public void tearDown() {
+        KieSessionUtils.dispose(session);
+        rulesManager.stop();
+    }
+
+    @Benchmark
+    public byte[] writeObject() {
+        return KieSessionByteArraySerializer.writeObject(marshaller, session);
+    }
+
+    @Benchmark
+    public long readSession() {
+        KieSession read = KieSessionByteArraySerializer.readSession(marshaller, serialized);
+        try {
+            return read.getFactCount();
+        } finally {
+            read.dispose();
+        }
+    }
+
+    /**
+     * Same as {@link #writeObject()} with the marshaller built on every call, as RulesManager does.
+     */
+    @Benchmark
+    public byte[] serialize() {
+        return rulesManager.serialize(session);
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.benchmarks.cluster;
+
+import it.redhat.hacep.HACEPImpl;
+import it.redhat.hacep.benchmarks.BenchmarkRulesConfiguration;
+import it.redhat.hacep.benchmarks.Fixtures;
+import it.redhat.hacep.model.Fact;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load harness: starts 1..N HACEPImpl nodes in this JVM over JGroups SHARED_LOOPBACK,
+ * drives a fixed gameplay rate through in-process routers and reports throughput, latency
+ * percentiles and GC for every cache mode variant and node count.
+ * <p>
+ * Configured with system properties:
+ * <ul>
+ * <li>harness.nodes: max number of nodes, default 4</li>
+ * <li>harness.variants: comma separated cacheMode:owners, default DIST_SYNC:2,REPL_SYNC:1</li>
+ * <li>harness.rate: facts per second, default 2000</li>
+ * <li>harness.players: number of players, default 1000</li>
+ * <li>harness.producers: sender threads, default 8</li>
+ * <li>harness.warmup / harness.duration: seconds, default 10 / 30</li>
+ * </ul>
+ */
+public class ClusterHarness {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterHarness.class);
+
+    private static final String PLAYER_POINTS_LEVEL_CHANNEL = "playerPointsLevel";
+
+    private final LatencyProbe probe = new LatencyProbe();
+    private final List<Result> results = new ArrayList<>();
+    private final Map<Long, Fixtures.FactStream> streams = new ConcurrentHashMap<>();
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("jgroups.configuration", System.getProperty("jgroups.configuration", "jgroups-shared-loopback.xml"));
+        ClusterHarness harness = new ClusterHarness();
+        for (String variant : getVariants()) {
+            String[] modeAndOwners = variant.trim().split(":");
+            for (int nodes = 1; nodes <= getNodes(); nodes++) {
+                harness.run(modeAndOwners[0], Integer.valueOf(modeAndOwners[1]), nodes);
+            }
+        }
+        harness.report();
+        System.exit(0);
+    }
+
+    public void run(String cacheMode, int owners, int nodeCount) throws Exception {
+        int effectiveOwners = Math.min(owners, nodeCount);
+        System.setProperty("grid.mode", cacheMode);
+        System.setProperty("grid.owners", String.valueOf(effectiveOwners));
+        LOGGER.info("Starting {} nodes, {} with {} owners", nodeCount, cacheMode, effectiveOwners);
+
+        List<HACEPImpl> nodes = new ArrayList<>();
+        List<InProcessRouter> routers = new ArrayList<>();
+        ExecutorService starter = Executors.newFixedThreadPool(nodeCount);
+        List<Future<?>> starting = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            InProcessRouter router = new InProcessRouter();
+            HACEPImpl node = new HACEPImpl("harness-node-" + i);
+            node.setRouter(router);
+            node.setRulesConfiguration(new BenchmarkRulesConfiguration().withChannel(PLAYER_POINTS_LEVEL_CHANNEL, probe));
+            nodes.add(node);
+            routers.add(router);
+            // nodes start together, each one waits for the minimum owners
+            starting.add(starter.submit(node::start));
+        }
+        for (Future<?> future : starting) {
+            future.get();
+        }
+        starter.shutdown();
+
+        try {
+            probe.clear();
+            drive(routers, getWarmup());
+            awaitOutstanding();
+            probe.interval();
+            probe.sumThenResetCompleted();
+
+            GcStats gcStart = GcStats.now();
+            long start = System.nanoTime();
+            drive(routers, getDuration());
+            awaitOutstanding();
+            long elapsed = System.nanoTime() - start;
+            GcStats gc = GcStats.now().since(gcStart);
+
+            Result result = new Result(cacheMode, effectiveOwners, nodeCount,
+                    probe.sumThenResetCompleted() * 1e9 / elapsed, probe.interval(), gc, probe.getUnmatched());
+            LOGGER.info(result.toString());
+            results.add(result);
+        } finally {
+            for (int i = nodes.size() - 1; i >= 0; i--) {
+                nodes.get(i).stop();
+            }
+        }
+    }
+
+    private void drive(List<InProcessRouter> routers, long seconds) throws Exception {
+        int producers = getProducers();
+        int players = getPlayers();
+        long intervalNanos = (long) (1e9 * producers / getRate());
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        AtomicBoolean failed = new AtomicBoolean(false);
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            executor.submit(() -> {
+                // a player is always driven by the same producer, so its facts stay ordered
+                List<Fixtures.FactStream> playerStreams = new ArrayList<>();
+                List<Long> playerIds = new ArrayList<>();
+                for (long player = producer; player < players; player += producers) {
+                    playerStreams.add(stream(player));
+                    playerIds.add(player);
+                }
+                if (playerStreams.isEmpty()) {
+                    return null;
+                }
+                long intended = System.nanoTime();
+                long sent = 0;
+                while (intended < end && !failed.get()) {
+                    long wait = intended - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    int index = (int) (sent % playerStreams.size());
+                    Fact fact = playerStreams.get(index).next();
+                    probe.expect(playerIds.get(index), intended);
+                    if (!routers.get((int) ((sent + producer) % routers.size())).send(fact)) {
+                        failed.set(true);
+                    }
+                    sent++;
+                    intended += intervalNanos;
+                }
+                return null;
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+        if (failed.get()) {
+            throw new IllegalStateException("A node stopped while the harness was running");
+        }
+    }
+
+    private Fixtures.FactStream stream(long player) {
+        return streams.computeIfAbsent(player, id -> new Fixtures.FactStream(id, 0));
+    }
+
+    private void awaitOutstanding() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (probe.outstanding() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        if (probe.outstanding() > 0) {
+            LOGGER.warn("{} facts still outstanding", probe.outstanding());
+        }
+    }
+
+    public void report() {
+        StringBuilder report = new StringBuilder("\n");
+        report.append(String.format("%-10s %6s %5s %12s %10s %10s %10s %10s %10s %6s %8s%n",
+                "mode", "owners", "nodes", "facts/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "gc", "gc ms"));
+        for (Result result : results) {
+            report.append(result.row()).append("\n");
+        }
+        LOGGER.info(report.toString());
+    }
+
+    private static String[] getVariants() {
+        return System.getProperty("harness.variants", "DIST_SYNC:2,REPL_SYNC:1").split(",");
+    }
+
+    private static int getNodes() {
+        return Integer.getInteger("harness.nodes", 4);
+    }
+
+    private static double getRate() {
+        return Double.valueOf(System.getProperty("harness.rate", "2000"));
+    }
+
+    private static int getPlayers() {
+        return Integer.getInteger("harness.players", 1000);
+    }
+
+    private static int getProducers() {
+        return Integer.getInteger("harness.producers", 8);
+    }
+
+    private static long getWarmup() {
+        return Long.getLong("harness.warmup", 10);
+    }
+
+    private static long getDuration() {
+        return Long.getLong("harness.duration", 30);
+    }
+
+    private static class Result {
+
+        private final String cacheMode;
+        private final int owners;
+        private final int nodes;
+        private final double throughput;
+        private final Histogram latency;
+        private final GcStats gc;
+        private final long unmatched;
+
+        Result(String cacheMode, int owners, int nodes, double throughput, Histogram latency, GcStats gc, long unmatched) {
+            this.cacheMode = cacheMode;
+            this.owners = owners;
+            this.nodes = nodes;
+            this.throughput = throughput;
+            this.latency = latency;
+            this.gc = gc;
+            this.unmatched = unmatched;
+        }
+
+        String row() {
+            return String.format("%-10s %6d %5d %12.1f %10.2f %10.2f %10.2f %10.2f %10.2f %6d %8d",
+                    cacheMode, owners, nodes, throughput,
+                    millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(90)),
+                    millis(latency.getValueAtPercentile(99)), millis(latency.getValueAtPercentile(99.9)),
+                    millis(latency.getMaxValue()), gc.getCollections(), gc.getTime());
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" + cacheMode + ":" + owners + " nodes=" + nodes + ", throughput=" + throughput
+                    + ", p99=" + millis(latency.getValueAtPercentile(99)) + "ms, gc=" + gc.getCollections()
+                    + ", unmatched=" + unmatched + "}";
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.benchmarks.cluster;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Collections and collection time of all the collectors since the JVM started.
+ */
+public class GcStats {
+
+    private final long collections;
+    private final long time;
+
+    private GcStats(long collections, long time) {
+        this.collections = collections;
+        this.time = time;
+    }
+
+    public static GcStats now() {
+        long collections = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += Math.max(0, gc.getCollectionCount());
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return new GcStats(collections, time);
+    }
+
+    public GcStats since(GcStats start) {
+        return new GcStats(collections - start.collections, time - start.time);
+    }
+
+    public long getCollections() {
+        return collections;
+    }
+
+    public long getTime() {
+        return time;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.benchmarks.cluster;
+
+import it.redhat.hacep.HACEP;
+import it.redhat.hacep.configuration.JmsConfiguration;
+import it.redhat.hacep.configuration.Router;
+import it.redhat.hacep.model.Fact;
+
+/**
+ * In-process stand-in for the Camel router: facts are handed to the node by the harness instead
+ * of being consumed from JMS, suspend and resume block the senders as a stopped route would.
+ */
+public class InProcessRouter implements Router {
+
+    private final Object lock = new Object();
+
+    private HACEP hacep;
+    private boolean suspended = true;
+    private boolean stopped;
+
+    @Override
+    public void start(JmsConfiguration jmsConfiguration, HACEP hacep) {
+        synchronized (lock) {
+            this.hacep = hacep;
+            this.suspended = false;
+            this.stopped = false;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            stopped = true;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void suspend() {
+        synchronized (lock) {
+            suspended = true;
+        }
+    }
+
+    @Override
+    public void resume() {
+        synchronized (lock) {
+            suspended = false;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * @return false if the node is stopped and the fact was not delivered
+     */
+    public boolean send(Fact fact) throws InterruptedException {
+        synchronized (lock) {
+            while (suspended && !stopped) {
+                lock.wait();
+            }
+            if (stopped) {
+                return false;
+            }
+        }
+        hacep.insertFact(fact);
+        return true;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.benchmarks.cluster;
+
+import it.redhat.hacep.playground.rules.model.outcome.PlayerPointLevel;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.kie.api.runtime.Channel;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live playerPointsLevel channel shared by every node of the harness. The example rules send one
+ * outcome per gameplay, so each outcome completes the oldest pending gameplay of its player.
+ * Latencies are measured from the intended send time, so a stalled sender does not hide them.
+ */
+public class LatencyProbe implements Channel {
+
+    private final ConcurrentMap<Long, Queue<Long>> pending = new ConcurrentHashMap<>();
+    private final Recorder recorder = new Recorder(3);
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder unmatched = new LongAdder();
+
+    public void expect(long playerId, long intendedNanos) {
+        pending.computeIfAbsent(playerId, id -> new ConcurrentLinkedQueue<>()).offer(intendedNanos);
+    }
+
+    @Override
+    public void send(Object object) {
+        long now = System.nanoTime();
+        if (!(object instanceof PlayerPointLevel)) {
+            return;
+        }
+        Queue<Long> queue = pending.get(((PlayerPointLevel) object).getPlayerId());
+        Long intended = queue != null ? queue.poll() : null;
+        if (intended == null) {
+            unmatched.increment();
+            return;
+        }
+        recorder.recordValue(Math.max(0, now - intended));
+        completed.increment();
+    }
+
+    public long outstanding() {
+        long outstanding = 0;
+        for (Queue<Long> queue : pending.values()) {
+            outstanding += queue.size();
+        }
+        return outstanding;
+    }
+
+    /**
+     * @return the latencies recorded since the previous call, in nanoseconds
+     */
+    public Histogram interval() {
+        return recorder.getIntervalHistogram();
+    }
+
+    public long sumThenResetCompleted() {
+        return completed.sumThenReset();
+    }
+
+    public long getUnmatched() {
+        return unmatched.sum();
+    }
+
+    public void clear() {
+        pending.clear();
+        recorder.reset();
+        completed.reset();
+        unmatched.reset();
+    }
+}
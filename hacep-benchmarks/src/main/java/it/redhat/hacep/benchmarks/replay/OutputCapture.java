@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.benchmarks.replay;
+
+import org.kie.api.runtime.Channel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects a digest of everything the rules send on the channels of a replay.
+ * <p>
+ * Groups are replayed concurrently, so only the order inside a group is deterministic: outputs are
+ * compared as a sorted list of "channel digest" lines. Serializable outputs are digested on their
+ * serialized form, anything else on its toString.
+ */
+public class OutputCapture {
+
+    private final Map<String, Queue<String>> outputs = new ConcurrentHashMap<>();
+    private final LongAdder count = new LongAdder();
+
+    public Channel channel(String channelId) {
+        Queue<String> queue = outputs.computeIfAbsent(channelId, id -> new ConcurrentLinkedQueue<>());
+        return object -> {
+            queue.add(digest(object));
+            count.increment();
+        };
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public List<String> lines() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Queue<String>> entry : outputs.entrySet()) {
+            for (String digest : entry.getValue()) {
+                lines.add(entry.getKey() + " " + digest);
+            }
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
+    public void write(File file) throws IOException {
+        Files.write(file.toPath(), lines(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return a description of the first differences with the expected outputs, empty if identical
+     */
+    public List<String> compare(File expected, int maxDifferences) throws IOException {
+        List<String> differences = new ArrayList<>();
+        List<String> actual = lines();
+        List<String> reference = Files.readAllLines(expected.toPath(), StandardCharsets.UTF_8);
+        int a = 0;
+        int r = 0;
+        while ((a < actual.size() || r < reference.size()) && differences.size() < maxDifferences) {
+            int order = a == actual.size() ? 1 : r == reference.size() ? -1 : actual.get(a).compareTo(reference.get(r));
+            if (order == 0) {
+                a++;
+                r++;
+            } else if (order < 0) {
+                differences.add("+ " + actual.get(a++));
+            } else {
+                differences.add("- " + reference.get(r++));
+            }
+        }
+        if (differences.isEmpty() && actual.size() != reference.size()) {
+            differences.add("expected " + reference.size() + " outputs, got " + actual.size());
+        }
+        return differences;
+    }
+
+    private static String digest(Object object) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            if (object instanceof Serializable) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+                    output.writeObject(object);
+                }
+                digest.update(bytes.toByteArray());
+            } else {
+                digest.update(String.valueOf(object).getBytes(StandardCharsets.UTF_8));
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.benchmarks.replay;
+
+import it.redhat.hacep.HACEPImpl;
+import it.redhat.hacep.benchmarks.BenchmarkRulesConfiguration;
+import it.redhat.hacep.benchmarks.cluster.InProcessRouter;
+import it.redhat.hacep.model.Fact;
+import it.redhat.hacep.support.FactRecordingReader;
+import it.redhat.hacep.support.RecordedFact;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds a recording made with grid.capture.file back into 1..N HACEPImpl nodes started in this JVM,
+ * either as fast as possible or paced on the recorded arrival times, then checks that the channel
+ * outputs are the same as the ones of a previous replay.
+ * <p>
+ * Facts of the same group are always replayed by the same thread, in recorded order.
+ * <p>
+ * Configured with system properties:
+ * <ul>
+ * <li>replay.file: the recording, mandatory</li>
+ * <li>replay.speed: 0 for as fast as possible, 1 for the recorded speed, 2 for twice as fast..., default 0</li>
+ * <li>replay.nodes: number of nodes, default 1</li>
+ * <li>replay.threads: sender threads, default 4</li>
+ * <li>replay.outputs: file where the channel outputs are written, optional</li>
+ * <li>replay.expected: outputs of a previous replay to compare with, optional</li>
+ * </ul>
+ */
+public class Replayer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Replayer.class);
+
+    private static final Scheduled END = new Scheduled(0, null);
+
+    private final OutputCapture capture = new OutputCapture();
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("jgroups.configuration", System.getProperty("jgroups.configuration", "jgroups-shared-loopback.xml"));
+        String file = System.getProperty("replay.file");
+        if (file == null) {
+            throw new IllegalArgumentException("replay.file is mandatory");
+        }
+        Replayer replayer = new Replayer();
+        boolean identical = replayer.run(new File(file), getNodes());
+        System.exit(identical ? 0 : 1);
+    }
+
+    public boolean run(File recording, int nodeCount) throws Exception {
+        List<HACEPImpl> nodes = new ArrayList<>();
+        List<InProcessRouter> routers = new ArrayList<>();
+        ExecutorService starter = Executors.newFixedThreadPool(nodeCount);
+        List<Future<?>> starting = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            InProcessRouter router = new InProcessRouter();
+            HACEPImpl node = new HACEPImpl("replay-node-" + i);
+            node.setRouter(router);
+            BenchmarkRulesConfiguration rulesConfiguration = new BenchmarkRulesConfiguration();
+            for (String channelId : new ArrayList<>(rulesConfiguration.getChannels().keySet())) {
+                rulesConfiguration.withChannel(channelId, capture.channel(channelId));
+            }
+            node.setRulesConfiguration(rulesConfiguration);
+            nodes.add(node);
+            routers.add(router);
+            starting.add(starter.submit(node::start));
+        }
+        for (Future<?> future : starting) {
+            future.get();
+        }
+        starter.shutdown();
+
+        try {
+            long start = System.nanoTime();
+            long facts = replay(recording, routers);
+            awaitQuiet();
+            long elapsed = System.nanoTime() - start;
+            LOGGER.info(String.format("Replayed %d facts in %.3f s (%.1f facts/s), %d outputs",
+                    facts, elapsed / 1e9, facts * 1e9 / elapsed, capture.getCount()));
+        } finally {
+            for (int i = nodes.size() - 1; i >= 0; i--) {
+                nodes.get(i).stop();
+            }
+        }
+
+        String outputs = System.getProperty("replay.outputs");
+        if (outputs != null) {
+            capture.write(new File(outputs));
+            LOGGER.info("Outputs written to " + outputs);
+        }
+        String expected = System.getProperty("replay.expected");
+        if (expected != null) {
+            List<String> differences = capture.compare(new File(expected), 20);
+            if (!differences.isEmpty()) {
+                LOGGER.error("Outputs differ from " + expected + ":\n" + String.join("\n", differences));
+                return false;
+            }
+            LOGGER.info("Outputs identical to " + expected);
+        }
+        return true;
+    }
+
+    private long replay(File recording, List<InProcessRouter> routers) throws Exception {
+        int threads = getThreads();
+        double speed = getSpeed();
+        List<BlockingQueue<Scheduled>> queues = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> senders = new ArrayList<>();
+        long start = System.nanoTime();
+        long firstArrival = -1;
+        for (int t = 0; t < threads; t++) {
+            BlockingQueue<Scheduled> queue = new ArrayBlockingQueue<>(10000);
+            InProcessRouter router = routers.get(t % routers.size());
+            queues.add(queue);
+            senders.add(executor.submit(() -> send(queue, router)));
+        }
+
+        long facts = 0;
+        try (FactRecordingReader reader = new FactRecordingReader(recording)) {
+            RecordedFact record;
+            while ((record = reader.next()) != null) {
+                if (firstArrival < 0) {
+                    firstArrival = record.getArrival();
+                }
+                long due = speed > 0 ? start + (long) (TimeUnit.MILLISECONDS.toNanos(record.getArrival() - firstArrival) / speed) : start;
+                int index = Math.floorMod(record.getFact().extractKey().getGroup().hashCode(), threads);
+                queues.get(index).put(new Scheduled(due, record.getFact()));
+                facts++;
+            }
+        } finally {
+            for (BlockingQueue<Scheduled> queue : queues) {
+                queue.put(END);
+            }
+            executor.shutdown();
+        }
+        for (Future<?> sender : senders) {
+            sender.get();
+        }
+        return facts;
+    }
+
+    private Void send(BlockingQueue<Scheduled> queue, InProcessRouter router) throws InterruptedException {
+        Scheduled scheduled;
+        while ((scheduled = queue.take()) != END) {
+            long wait;
+            while ((wait = scheduled.due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (!router.send(scheduled.fact)) {
+                throw new IllegalStateException("A node stopped while replaying");
+            }
+        }
+        return null;
+    }
+
+    private void awaitQuiet() throws InterruptedException {
+        long last;
+        do {
+            last = capture.getCount();
+            Thread.sleep(1000);
+        } while (capture.getCount() != last);
+    }
+
+    private static int getNodes() {
+        return Integer.getInteger("replay.nodes", 1);
+    }
+
+    private static int getThreads() {
+        return Integer.getInteger("replay.threads", 4);
+    }
+
+    private static double getSpeed() {
+        return Double.valueOf(System.getProperty("replay.speed", "0"));
+    }
+
+    private static class Scheduled {
+
+        private final long due;
+        private final Fact fact;
+
+        Scheduled(long due, Fact fact) {
+            this.due = due;
+            this.fact = fact;
+        }
+    }
+}
@@ -21,7 +21,12 @@ import it.redhat.hacep.HACEP;
 import it.redhat.hacep.camel.annotations.HACEPCamelContext;
 import it.redhat.hacep.configuration.JmsConfiguration;
 import it.redhat.hacep.configuration.Router;
+import it.redhat.hacep.metrics.MetricsRegistry;
+import it.redhat.hacep.support.FactRecordingWriter;
+import it.redhat.hacep.support.GroupResequencer;
 import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
 import org.apache.camel.component.jms.JmsComponent;
 import org.apache.camel.impl.DefaultCamelContext;
 import org.slf4j.Logger;
@@ -29,6 +34,8 @@ import org.slf4j.LoggerFactory;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Produces;
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 @ApplicationScoped
@@ -42,6 +49,10 @@ public class CamelRouter implements Router {
 
     private CamelContext camelContext;
 
+    private FactRecordingWriter recording;
+
+    private GroupResequencer<Exchange> resequencer;
+
     public CamelRouter() {
         this.camelContext = new DefaultCamelContext();
     }
@@ -52,13 +63,26 @@ public class CamelRouter implements Router {
             try {
                 JmsComponent component = JmsComponent.jmsComponent(jmsConfiguration.getConnectionFactory());
                 camelContext.addComponent("jms", component);
-                camelContext.addRoutes(new LoadFactFromJmsRoute(CAMEL_ROUTE, jmsConfiguration.getQueueName(), jmsConfiguration.getMaxConsumers()));
-                camelContext.addRoutes(new InsertFactInGridRoute(hacep));
+                ResequenceFactProcessor resequenceProcessor = null;
+                if (isResequenceEnabled()) {
+                    ProducerTemplate putInGrid = camelContext.createProducerTemplate();
+                    resequenceProcessor = new ResequenceFactProcessor(createResequencer(hacep, putInGrid,
+                            jmsConfiguration.getMaxConsumers()), putInGrid);
+                }
+                camelContext.addRoutes(new LoadFactFromJmsRoute(CAMEL_ROUTE, jmsConfiguration.getQueueName(), jmsConfiguration.getMaxConsumers(),
+                        resequenceProcessor));
+                String captureFile = getCaptureFile();
+                if (captureFile != null && !captureFile.isEmpty()) {
+                    recording = new FactRecordingWriter(new File(captureFile));
+                }
+                camelContext.addRoutes(new InsertFactInGridRoute(hacep, recording));
                 camelContext.addRoutes(new ExecuteCommandsFromJmsRoute(jmsConfiguration.getCommandsQueueName()));
                 camelContext.addRoutes(new ResponseToJSONRoute());
                 camelContext.addRoutes(new UpgradeCommandRoute(hacep));
                 camelContext.addRoutes(new InfoCommandRoute(hacep));
                 camelContext.addRoutes(new StatusCommandRoute(hacep));
+                camelContext.addRoutes(new ReportCommandRoute(hacep, "METRICS", "metrics"));
+                camelContext.addRoutes(new ReportCommandRoute(hacep, "SESSIONS", "sessions"));
                 camelContext.start();
             } catch (Exception e) {
                 throw new RuntimeException(e);
@@ -70,13 +94,101 @@ public class CamelRouter implements Router {
     public void stop() {
         if (started.compareAndSet(true, false)) {
             try {
+                if (resequencer != null) {
+                    camelContext.stopRoute(CAMEL_ROUTE);
+                    resequencer.stop();
+                    resequencer = null;
+                }
                 camelContext.stop();
             } catch (Exception e) {
                 throw new RuntimeException(e);
+            } finally {
+                closeRecording();
+            }
+        }
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            try {
+                recording.close();
+            } catch (IOException e) {
+                LOGGER.error("Unable to close the fact recording " + recording.getFile(), e);
             }
+            recording = null;
+        }
+    }
+
+    /**
+     * Each JMS consumer waits for its fact to be in the grid, so the resequencer never holds more facts than
+     * there are consumers, neither in a group nor in total: its per group and total bounds are sized on them.
+     */
+    private GroupResequencer<Exchange> createResequencer(HACEP hacep, ProducerTemplate putInGrid, int consumers) {
+        resequencer = new GroupResequencer<>(exchange -> {
+            putInGrid.send(ResequenceFactProcessor.PUT_IN_GRID, exchange);
+            if (exchange.getException() != null) {
+                LOGGER.error("Unable to put resequenced fact in the grid: " + exchange.getIn().getBody(), exchange.getException());
+            }
+        }, getResequenceTimeout(), consumers, consumers, getResequenceIdleTimeout(),
+                getResequenceRetired(), getResequenceThreads());
+        MetricsRegistry metricsRegistry = hacep.getMetricsRegistry();
+        if (metricsRegistry != null) {
+            metricsRegistry.gauge("hacep_resequencer_held_facts", "Facts held waiting for a gap in their JMS group", resequencer::size);
+            metricsRegistry.gauge("hacep_resequencer_groups", "JMS groups tracked by the resequencer", resequencer::getGroups);
+            metricsRegistry.counter("hacep_resequencer_received_total", "Facts received by the resequencer", resequencer::getReceived);
+            metricsRegistry.counter("hacep_resequencer_late_total", "Facts older than the last one sent for their JMS group",
+                    resequencer::getLate);
+            metricsRegistry.counter("hacep_resequencer_skipped_total", "JMSXGroupSeq numbers given up on", resequencer::getSkipped);
+            metricsRegistry.counter("hacep_resequencer_evicted_total", "Idle JMS groups dropped by the resequencer",
+                    resequencer::getEvicted);
+        }
+        return resequencer;
+    }
+
+    private boolean isResequenceEnabled() {
+        try {
+            return Boolean.valueOf(System.getProperty("grid.resequence", "false"));
+        } catch (IllegalArgumentException e) {
+            return false;
         }
     }
 
+    private long getResequenceTimeout() {
+        try {
+            return Long.valueOf(System.getProperty("grid.resequence.timeout", "50"));
+        } catch (IllegalArgumentException e) {
+            return 50;
+        }
+    }
+
+    private long getResequenceIdleTimeout() {
+        try {
+            return Long.valueOf(System.getProperty("grid.resequence.idleTimeout", "60000"));
+        } catch (IllegalArgumentException e) {
+            return 60000;
+        }
+    }
+
+    private int getResequenceRetired() {
+        try {
+            return Integer.valueOf(System.getProperty("grid.resequence.retired", "100000"));
+        } catch (IllegalArgumentException e) {
+            return 100000;
+        }
+    }
+
+    private int getResequenceThreads() {
+        try {
+            return Integer.valueOf(System.getProperty("grid.resequence.threads", "4"));
+        } catch (IllegalArgumentException e) {
+            return 4;
+        }
+    }
+
+    private String getCaptureFile() {
+        return System.getProperty("grid.capture.file");
+    }
+
     @Override
     public void suspend() {
         if (started.get()) {
@@ -19,21 +19,50 @@ package it.redhat.hacep.camel;
 
 import it.redhat.hacep.HACEP;
 import it.redhat.hacep.cache.Putter;
+import it.redhat.hacep.metrics.Counter;
+import it.redhat.hacep.metrics.MetricsRegistry;
+import it.redhat.hacep.metrics.Stage;
+import it.redhat.hacep.metrics.StageTimers;
+import it.redhat.hacep.support.FactRecordingWriter;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.model.RouteDefinition;
 
 public class InsertFactInGridRoute extends RouteBuilder {
 
 
     private final HACEP hacep;
+    private final FactRecordingWriter recording;
 
     public InsertFactInGridRoute(HACEP hacep) {
+        this(hacep, null);
+    }
+
+    public InsertFactInGridRoute(HACEP hacep, FactRecordingWriter recording) {
         this.hacep = hacep;
+        this.recording = recording;
     }
 
     @Override
     public void configure() throws Exception {
-        from("direct:putInGrid")
-                .bean(hacep, "insertFact(${body})");
+        RouteDefinition route = from("direct:putInGrid");
+        MetricsRegistry metricsRegistry = hacep.getMetricsRegistry();
+        if (metricsRegistry != null) {
+            Counter received = metricsRegistry.counter("hacep_camel_facts_received_total", "Facts received by the Camel ingestion route");
+            route = route.process(exchange -> received.increment());
+        }
+        if (recording != null) {
+            route = route.process(new RecordFactProcessor(recording));
+        }
+        route.bean(hacep, "insertFact(${body})");
+        StageTimers stageTimers = hacep.getStageTimers();
+        if (stageTimers != null) {
+            route.process(exchange -> {
+                Long received = exchange.getProperty(LoadFactFromJmsRoute.RECEIVED_PROPERTY, Long.class);
+                if (received != null) {
+                    stageTimers.record(Stage.CAMEL_CONSUME, received);
+                }
+            });
+        }
     }
 
 }
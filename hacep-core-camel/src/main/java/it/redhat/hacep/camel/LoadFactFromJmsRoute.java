@@ -18,18 +18,27 @@
 package it.redhat.hacep.camel;
 
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.model.RouteDefinition;
 
 public class LoadFactFromJmsRoute extends RouteBuilder {
 
+    static final String RECEIVED_PROPERTY = "hacepReceived";
+
 
     private String routeId;
     private String queueName;
     private int maxConsumers;
+    private ResequenceFactProcessor resequencer;
 
     public LoadFactFromJmsRoute(String routeId, String queueName, int maxConsumers) {
+        this(routeId, queueName, maxConsumers, null);
+    }
+
+    public LoadFactFromJmsRoute(String routeId, String queueName, int maxConsumers, ResequenceFactProcessor resequencer) {
         this.routeId = routeId;
         this.queueName = queueName;
         this.maxConsumers = maxConsumers;
+        this.resequencer = resequencer;
     }
 
     @Override
@@ -38,8 +47,13 @@ public class LoadFactFromJmsRoute extends RouteBuilder {
                 + "?concurrentConsumers=" + maxConsumers
                 + "&maxConcurrentConsumers=" + maxConsumers;
 
-        from(uri)
+        RouteDefinition route = from(uri)
                 .routeId(routeId)
-                .to("direct:putInGrid");
+                .process(exchange -> exchange.setProperty(RECEIVED_PROPERTY, System.nanoTime()));
+        if (resequencer != null) {
+            route.process(resequencer);
+        } else {
+            route.to(ResequenceFactProcessor.PUT_IN_GRID);
+        }
     }
 }
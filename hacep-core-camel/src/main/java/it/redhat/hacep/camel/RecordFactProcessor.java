@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.camel;
+
+import it.redhat.hacep.model.Fact;
+import it.redhat.hacep.support.FactRecordingWriter;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+
+/**
+ * Capture stage of the ingestion route: appends every fact, with its arrival time and JMS group
+ * headers, to a {@link FactRecordingWriter} before it is inserted in the grid.
+ */
+public class RecordFactProcessor implements Processor {
+
+    static final String GROUP_ID_HEADER = "JMSXGroupID";
+    static final String GROUP_SEQ_HEADER = "JMSXGroupSeq";
+
+    private final FactRecordingWriter recording;
+
+    public RecordFactProcessor(FactRecordingWriter recording) {
+        this.recording = recording;
+    }
+
+    @Override
+    public void process(Exchange exchange) throws Exception {
+        Message in = exchange.getIn();
+        Integer groupSeq = in.getHeader(GROUP_SEQ_HEADER, Integer.class);
+        recording.append(System.currentTimeMillis(),
+                in.getHeader(GROUP_ID_HEADER, String.class),
+                groupSeq != null ? groupSeq : 0,
+                in.getBody(Fact.class));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.camel;
+
+import it.redhat.hacep.support.GroupResequencer;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.impl.DefaultExchange;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Resequencing stage of the ingestion route: hands every fact to a {@link GroupResequencer} keyed by its
+ * JMSXGroupID and JMSXGroupSeq headers, which sends it on to the grid in sequence within its group. Facts
+ * without the headers go straight on.
+ * <p>
+ * The consumer thread waits for its fact to be put in the grid, so that the JMS message is acknowledged only
+ * then, as without resequencing, and a fact held by a crashed node is redelivered. The facts held at a time
+ * are then at most one per concurrent consumer. As the broker pins a JMS group to one consumer, the missing
+ * fact of a group can only arrive on the consumer that is waiting, that is after a redelivery: a gap in a
+ * group costs its consumer the whole resequencing timeout, and what gets reordered is a group that more than
+ * one consumer reads, such as after a consumer closes and the broker reassigns its groups.
+ * <p>
+ * The JMSXGroupSeq header is an int, as the JMS specification defines it.
+ */
+public class ResequenceFactProcessor implements Processor {
+
+    public static final String PUT_IN_GRID = "direct:putInGrid";
+
+    private final GroupResequencer<Exchange> resequencer;
+    private final ProducerTemplate putInGrid;
+
+    public ResequenceFactProcessor(GroupResequencer<Exchange> resequencer, ProducerTemplate putInGrid) {
+        this.resequencer = resequencer;
+        this.putInGrid = putInGrid;
+    }
+
+    @Override
+    public void process(Exchange exchange) throws Exception {
+        Message in = exchange.getIn();
+        String group = in.getHeader(RecordFactProcessor.GROUP_ID_HEADER, String.class);
+        Integer sequence = in.getHeader(RecordFactProcessor.GROUP_SEQ_HEADER, Integer.class);
+        if (group == null || sequence == null) {
+            putInGrid.send(PUT_IN_GRID, exchange);
+            return;
+        }
+        // detached from the JMS message, which is only read by its consumer thread
+        Exchange held = new DefaultExchange(exchange.getContext());
+        held.getIn().setBody(in.getBody());
+        held.getIn().setHeader(RecordFactProcessor.GROUP_ID_HEADER, group);
+        held.getIn().setHeader(RecordFactProcessor.GROUP_SEQ_HEADER, sequence);
+        held.setProperty(LoadFactFromJmsRoute.RECEIVED_PROPERTY, exchange.getProperty(LoadFactFromJmsRoute.RECEIVED_PROPERTY));
+        try {
+            resequencer.offer(group, sequence, held).get();
+        } catch (ExecutionException e) {
+            exchange.setException(e.getCause());
+            return;
+        }
+        if (held.getException() != null) {
+            exchange.setException(held.getException());
+        }
+    }
+}
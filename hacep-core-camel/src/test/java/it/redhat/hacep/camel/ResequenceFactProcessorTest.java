@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.camel;
+
+import it.redhat.hacep.support.GroupResequencer;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class ResequenceFactProcessorTest extends CamelTestSupport {
+
+    private GroupResequencer<Exchange> resequencer;
+
+    @Override
+    protected RouteBuilder createRouteBuilder() throws Exception {
+        ProducerTemplate putInGrid = context().createProducerTemplate();
+        resequencer = new GroupResequencer<>(exchange -> putInGrid.send(ResequenceFactProcessor.PUT_IN_GRID, exchange),
+                60000, 100, 1000, 60000, 1000, 2);
+        ResequenceFactProcessor processor = new ResequenceFactProcessor(resequencer, putInGrid);
+        return new RouteBuilder() {
+
+            @Override
+            public void configure() throws Exception {
+                from("direct:start").process(processor);
+                from(ResequenceFactProcessor.PUT_IN_GRID)
+                        .process(exchange -> {
+                            if ("fail".equals(exchange.getIn().getBody())) {
+                                throw new IllegalStateException("grid unavailable");
+                            }
+                        })
+                        .to("mock:result");
+            }
+        };
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        resequencer.stop();
+        super.tearDown();
+    }
+
+    @Test
+    public void testResequencesByJmsGroup() throws Exception {
+        MockEndpoint mockOut = getMockEndpoint("mock:result");
+        mockOut.expectedBodiesReceived("a1", "b1", "x", "a2", "a3");
+        mockOut.message(3).header(RecordFactProcessor.GROUP_SEQ_HEADER).isEqualTo(2);
+
+        send("a1", "a", 1);
+        Future<Exchange> held = template.asyncSend("direct:start", exchange("a3", "a", 3));
+        send("b1", "b", 1);
+        template.sendBody("direct:start", "x");
+        Thread.sleep(100);
+        assertFalse("the consumer of a held fact waits for it to be in the grid", held.isDone());
+        send("a2", "a", 2);
+
+        assertNull(held.get(10, TimeUnit.SECONDS).getException());
+        assertMockEndpointsSatisfied();
+    }
+
+    @Test
+    public void testFailedPutFailsTheExchange() {
+        Exchange result = template.send("direct:start", exchange("fail", "a", 1));
+
+        assertIsInstanceOf(IllegalStateException.class, result.getException());
+    }
+
+    private void send(String body, String group, int sequence) {
+        Exchange result = template.send("direct:start", exchange(body, group, sequence));
+        assertNull(result.getException());
+    }
+
+    private Processor exchange(String body, String group, int sequence) {
+        return exchange -> {
+            exchange.getIn().setBody(body);
+            exchange.getIn().setHeader(RecordFactProcessor.GROUP_ID_HEADER, group);
+            exchange.getIn().setHeader(RecordFactProcessor.GROUP_SEQ_HEADER, sequence);
+        };
+    }
+}
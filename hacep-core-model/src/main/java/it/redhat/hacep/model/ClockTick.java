@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.model;
+
+import java.time.Instant;
+
+/**
+ * Advances the pseudo clock of the session of a group and fires its rules without inserting anything, so that
+ * temporal rules and event expiration run for groups that receive no facts. Replicated to the backups like
+ * any other fact, so they replay the same time.
+ */
+public final class ClockTick implements Fact {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String group;
+    private final long time;
+
+    public ClockTick(String group, long time) {
+        this.group = group;
+        this.time = time;
+    }
+
+    @Override
+    public Instant getInstant() {
+        return Instant.ofEpochMilli(time);
+    }
+
+    @Override
+    public Key extractKey() {
+        return new TickKey(group);
+    }
+
+    @Override
+    public String toString() {
+        return "ClockTick{group='" + group + "', time=" + time + "}";
+    }
+
+    private static class TickKey extends Key<String> {
+
+        private static final long serialVersionUID = 1L;
+
+        TickKey(String group) {
+            super(group);
+        }
+
+        @Override
+        public String getId() {
+            return getGroup();
+        }
+    }
+}
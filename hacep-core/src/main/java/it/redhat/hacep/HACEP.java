@@ -17,6 +17,8 @@
 
 package it.redhat.hacep;
 
+import it.redhat.hacep.metrics.MetricsRegistry;
+import it.redhat.hacep.metrics.StageTimers;
 import it.redhat.hacep.model.Fact;
 import org.infinispan.Cache;
 import org.infinispan.manager.EmbeddedCacheManager;
@@ -35,6 +37,10 @@ public interface HACEP {
 
     String status();
 
+    String metrics();
+
+    String sessions();
+
     void insertFact(Fact fact);
 
     String update(String releaseId);
@@ -42,4 +48,8 @@ public interface HACEP {
     EmbeddedCacheManager getCacheManager();
 
     Cache<String, Object> getSessionCache();
+
+    StageTimers getStageTimers();
+
+    MetricsRegistry getMetricsRegistry();
 }
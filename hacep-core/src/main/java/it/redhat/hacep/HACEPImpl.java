@@ -18,29 +18,64 @@
 package it.redhat.hacep;
 
 import it.redhat.hacep.cache.PutterImpl;
+import it.redhat.hacep.cache.RehashBuffer;
+import it.redhat.hacep.cache.ReorderBuffer;
 import it.redhat.hacep.cache.RulesUpdateVersionImpl;
+import it.redhat.hacep.cache.SessionPrefetcher;
 import it.redhat.hacep.cache.listeners.FactListenerPost;
+import it.redhat.hacep.cache.listeners.PassivationListener;
+import it.redhat.hacep.cache.listeners.SessionPrefetchListener;
 import it.redhat.hacep.cache.listeners.SessionListenerPost;
 import it.redhat.hacep.cache.listeners.SessionListenerPre;
 import it.redhat.hacep.cache.listeners.UpdateVersionListener;
 import it.redhat.hacep.cache.session.HAKieSessionBuilder;
 import it.redhat.hacep.cache.session.KieSessionSaver;
+import it.redhat.hacep.cache.session.LogCompactor;
+import it.redhat.hacep.cache.session.SessionArchive;
+import it.redhat.hacep.cache.session.SessionCensus;
+import it.redhat.hacep.cache.session.SessionClockTicker;
+import it.redhat.hacep.cache.session.SessionMemoryBudget;
+import it.redhat.hacep.cache.session.SessionStatistics;
+import it.redhat.hacep.cache.session.SessionSweeper;
+import it.redhat.hacep.cache.session.SessionTiering;
+import it.redhat.hacep.cache.store.LogStructuredStore;
 import it.redhat.hacep.configuration.*;
+import it.redhat.hacep.drools.RuleProfiler;
+import it.redhat.hacep.metrics.Metrics;
+import it.redhat.hacep.metrics.MetricsRegistry;
+import it.redhat.hacep.metrics.PrometheusExporter;
+import it.redhat.hacep.metrics.StageTimers;
 import it.redhat.hacep.model.Fact;
+import it.redhat.hacep.model.Key;
+import it.redhat.hacep.support.JmxUtils;
+import org.infinispan.AdvancedCache;
 import org.infinispan.Cache;
+import org.infinispan.context.Flag;
 import org.infinispan.manager.EmbeddedCacheManager;
+import org.kie.api.runtime.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
 @ApplicationScoped
 public class HACEPImpl implements HACEP {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(HACEPImpl.class);
+
+    private static final int TOP_RULES = 20;
+
     private final String nodeName;
     private DataGridManager dataGridManager;
     private RulesManager rulesManager;
@@ -60,6 +95,24 @@ public class HACEPImpl implements HACEP {
     private final AtomicBoolean started = new AtomicBoolean(false);
     private RulesUpdateVersionImpl rulesUpdateVersion;
     private PutterImpl putter;
+    private RehashBuffer rehashBuffer;
+    private ScheduledExecutorService compactionScheduler;
+    private ScheduledExecutorService memoryBudgetScheduler;
+    private SessionMemoryBudget sessionMemoryBudget;
+    private ScheduledExecutorService tieringScheduler;
+    private SessionTiering sessionTiering;
+    private ScheduledExecutorService sweepScheduler;
+    private ScheduledExecutorService tickScheduler;
+    private SessionClockTicker sessionClockTicker;
+    private SessionSweeper sessionSweeper;
+    private SessionArchive sessionArchive;
+    private SessionPrefetcher prefetcher;
+    private ReorderBuffer reorderBuffer;
+    private PassivationListener passivationListener;
+    private final MetricsRegistry metricsRegistry = Metrics.newRegistry();
+    private final StageTimers stageTimers = new StageTimers(metricsRegistry);
+    private ObjectName stageTimersName;
+    private PrometheusExporter prometheusExporter;
 
     public HACEPImpl() {
         this("hacep-node");
@@ -75,29 +128,107 @@ public class HACEPImpl implements HACEP {
     public void start() {
         if (started.compareAndSet(false, true)) {
             try {
-                this.rulesManager = new RulesManager(rulesConfiguration);
+                this.rulesManager = new RulesManager(rulesConfiguration, stageTimers);
+                if (RuleProfiler.isEnabled()) {
+                    this.rulesManager.setRuleProfiler(new RuleProfiler(metricsRegistry));
+                }
                 this.dataGridManager = new DataGridManager();
                 this.haKieSessionBuilder = new HAKieSessionBuilder(rulesManager, executorService);
 
                 this.dataGridManager.start(haKieSessionBuilder, nodeName);
 
                 this.dataGridManager.waitForMinimumOwners(1, TimeUnit.MINUTES);
+                this.dataGridManager.preloadSessions();
 
                 this.kieSessionSaver = new KieSessionSaver(haKieSessionBuilder, this.dataGridManager.getSessionCache());
 
-                this.dataGridManager.getFactCache().addListener(new FactListenerPost(this.kieSessionSaver));
-                this.dataGridManager.getSessionCache().addListener(new SessionListenerPre(this.router));
-                this.dataGridManager.getSessionCache().addListener(new SessionListenerPost(this.router));
+                this.rehashBuffer = new RehashBuffer(this.dataGridManager.getFactCache(), this.dataGridManager.getRehashBufferSize());
+
+                if (this.dataGridManager.isReorderEnabled()) {
+                    reorderBuffer = new ReorderBuffer(this.kieSessionSaver::insert, lateChannel(),
+                            this.dataGridManager.getReorderLateness(), this.dataGridManager.getReorderMaxPerGroup(),
+                            this.dataGridManager.getReorderCapacity());
+                }
+                this.dataGridManager.getFactCache().addListener(new FactListenerPost(this.kieSessionSaver, stageTimers, reorderBuffer));
+                this.dataGridManager.getSessionCache().addListener(new SessionListenerPre(this.router, this.rehashBuffer, this.dataGridManager.getStateTransferProgress()));
+                this.dataGridManager.getSessionCache().addListener(new SessionListenerPost(this.router, this.rehashBuffer, this.dataGridManager.getStateTransferProgress()));
+                this.dataGridManager.getPrefetchCache().addListener(new SessionPrefetchListener(this.kieSessionSaver));
 
                 Cache<String, String> infoCache = this.dataGridManager.getReplicatedCache();
                 String groupId = infoCache.putIfAbsent(RulesManager.RULES_GROUP_ID, rulesConfiguration.getGroupId());
                 String artifactId = infoCache.putIfAbsent(RulesManager.RULES_ARTIFACT_ID, rulesConfiguration.getArtifactId());
                 String version = infoCache.putIfAbsent(RulesManager.RULES_VERSION, rulesConfiguration.getVersion());
                 this.rulesManager.start(groupId, artifactId, version);
-                infoCache.addListener(new UpdateVersionListener(this.router, this.rulesManager));
+                infoCache.addListener(new UpdateVersionListener(this.router, this.rulesManager, metricsRegistry));
+
+                long compactionInterval = this.dataGridManager.getLogCompactionInterval();
+                if (compactionInterval > 0) {
+                    compactionScheduler = Executors.newSingleThreadScheduledExecutor();
+                    compactionScheduler.scheduleWithFixedDelay(new LogCompactor(this.dataGridManager.getSessionCache(), this.kieSessionSaver),
+                            compactionInterval, compactionInterval, TimeUnit.MILLISECONDS);
+                }
+
+                if (this.dataGridManager.isPersistenceEnabled()) {
+                    passivationListener = new PassivationListener();
+                    this.dataGridManager.getSessionCache().addListener(passivationListener);
+                }
+                long memoryBudget = this.dataGridManager.getSessionMemoryBudget();
+                if (memoryBudget > 0) {
+                    sessionMemoryBudget = new SessionMemoryBudget(this.dataGridManager.getSessionCache(), this.kieSessionSaver,
+                            memoryBudget, this.dataGridManager.getFactBytes());
+                    long checkInterval = this.dataGridManager.getSessionMemoryCheckInterval();
+                    memoryBudgetScheduler = Executors.newSingleThreadScheduledExecutor();
+                    memoryBudgetScheduler.scheduleWithFixedDelay(sessionMemoryBudget, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+                }
+
+                if (this.dataGridManager.getSessionWarmAfter() > 0 || this.dataGridManager.getMaxHotSessions() > 0) {
+                    sessionTiering = new SessionTiering(this.dataGridManager.getSessionCache(), this.kieSessionSaver,
+                            this.dataGridManager.getSessionWarmAfter(), this.dataGridManager.getSessionColdAfter(),
+                            this.dataGridManager.getMaxHotSessions(), this.dataGridManager.getMaxWarmSessions());
+                    long tieringInterval = this.dataGridManager.getSessionTieringInterval();
+                    tieringScheduler = Executors.newSingleThreadScheduledExecutor();
+                    tieringScheduler.scheduleWithFixedDelay(sessionTiering, tieringInterval, tieringInterval, TimeUnit.MILLISECONDS);
+                }
+
+                if (this.dataGridManager.getSessionIdleTtl() > 0 || this.dataGridManager.getSessionMaxAge() > 0) {
+                    File archiveFile = this.dataGridManager.getSessionArchiveFile();
+                    sessionArchive = archiveFile != null ? new SessionArchive(archiveFile) : null;
+                    sessionSweeper = new SessionSweeper(this.dataGridManager.getSessionCache(), this.kieSessionSaver,
+                            this.dataGridManager::isLocalPrimary, this.dataGridManager.getSessionIdleTtl(),
+                            this.dataGridManager.getSessionMaxAge(), this.dataGridManager.getSessionSweepRate(),
+                            this.dataGridManager.isPersistenceEnabled(), sessionArchive,
+                            this.dataGridManager.getSessionCache().getAdvancedCache().getComponentRegistry().getCacheMarshaller());
+                    long sweepInterval = this.dataGridManager.getSessionSweepInterval();
+                    sweepScheduler = Executors.newSingleThreadScheduledExecutor();
+                    sweepScheduler.scheduleWithFixedDelay(sessionSweeper, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+                }
+
+                long tickInterval = this.dataGridManager.getClockTickInterval();
+                if (tickInterval > 0) {
+                    int slots = Math.max(1, this.dataGridManager.getClockTickSlots());
+                    sessionClockTicker = new SessionClockTicker(this.dataGridManager.getSessionCache(), this.kieSessionSaver,
+                            this.dataGridManager::isLocalPrimary,
+                            this.dataGridManager.isClockTickWatermark() ? this.kieSessionSaver::getWatermark : System::currentTimeMillis,
+                            this.dataGridManager.getClockTickLag(), slots, this.dataGridManager.getClockTickBatch(), this.dataGridManager.getClockTickRate(),
+                            reorderBuffer);
+                    long period = Math.max(1, tickInterval / slots);
+                    tickScheduler = Executors.newSingleThreadScheduledExecutor();
+                    tickScheduler.scheduleWithFixedDelay(sessionClockTicker, period, period, TimeUnit.MILLISECONDS);
+                }
 
                 rulesUpdateVersion = new RulesUpdateVersionImpl(dataGridManager.getReplicatedCache());
-                putter = new PutterImpl(dataGridManager.getFactCache());
+                putter = new PutterImpl(dataGridManager.getFactCache(), rehashBuffer, stageTimers);
+                if (this.dataGridManager.isPrefetchEnabled()) {
+                    int threads = this.dataGridManager.getPrefetchThreads();
+                    AdvancedCache<String, Long> prefetchCache = this.dataGridManager.getPrefetchCache().getAdvancedCache()
+                            .withFlags(Flag.IGNORE_RETURN_VALUES);
+                    prefetcher = new SessionPrefetcher(group -> prefetchCache.putAsync(group, System.currentTimeMillis()),
+                            putter::putInGrid, this.dataGridManager.getPrefetchWindow(), this.dataGridManager.getPrefetchRecent(),
+                            this.dataGridManager.getPrefetchRecentTtl(), this.dataGridManager.getPrefetchCapacity(), threads);
+                    putter.setPrefetcher(prefetcher);
+                }
+                stageTimersName = JmxUtils.register(stageTimers, "StageTimers", nodeName);
+                registerMetrics();
                 this.router.start(jmsConfiguration, this);
             } catch (Exception e) {
                 started.set(false);
@@ -110,7 +241,42 @@ public class HACEPImpl implements HACEP {
     public void stop() {
         if (started.compareAndSet(true, false)) {
             try {
+                long deadline = System.currentTimeMillis() + this.dataGridManager.getShutdownTimeout();
                 this.router.stop();
+                JmxUtils.unregister(stageTimersName);
+                if (this.prometheusExporter != null) {
+                    this.prometheusExporter.stop();
+                    this.prometheusExporter = null;
+                }
+                if (this.compactionScheduler != null) {
+                    this.compactionScheduler.shutdownNow();
+                }
+                if (this.memoryBudgetScheduler != null) {
+                    this.memoryBudgetScheduler.shutdownNow();
+                }
+                if (this.tieringScheduler != null) {
+                    this.tieringScheduler.shutdownNow();
+                }
+                if (this.tickScheduler != null) {
+                    this.tickScheduler.shutdownNow();
+                }
+                if (this.sweepScheduler != null) {
+                    this.sweepScheduler.shutdownNow();
+                    this.sweepScheduler.awaitTermination(this.dataGridManager.getShutdownTimeout(), TimeUnit.MILLISECONDS);
+                    if (this.sessionArchive != null) {
+                        this.sessionArchive.close();
+                    }
+                }
+                if (this.prefetcher != null) {
+                    this.prefetcher.stop();
+                }
+                if (this.reorderBuffer != null) {
+                    this.reorderBuffer.stop();
+                }
+                this.rehashBuffer.stop();
+                if (this.dataGridManager.isHandoffEnabled() && this.dataGridManager.getCacheManager().getMembers().size() > 1) {
+                    this.kieSessionSaver.handoff(this.dataGridManager.getLocalPrimarySessionKeys(), deadline);
+                }
                 this.dataGridManager.stop();
                 this.rulesManager.stop();
             } catch (Exception e) {
@@ -129,16 +295,157 @@ public class HACEPImpl implements HACEP {
         this.router.resume();
     }
 
+    private BiConsumer<Key, Fact> lateChannel() {
+        String name = this.dataGridManager.getReorderLateChannel();
+        if (name.isEmpty()) {
+            return this.kieSessionSaver::insert;
+        }
+        Channel channel = rulesConfiguration.getChannels().get(name);
+        if (channel == null) {
+            LOGGER.warn("Late channel [" + name + "] is not a rules channel, late facts will be inserted anyway");
+            return this.kieSessionSaver::insert;
+        }
+        return (key, fact) -> channel.send(fact);
+    }
+
+    private void registerMetrics() {
+        metricsRegistry.counter("hacep_facts_inserted_total", "Facts inserted in the primary sessions of this node",
+                kieSessionSaver::getInsertedFacts);
+        SessionCensus census = new SessionCensus(dataGridManager.getSessionCache(), dataGridManager::isLocalPrimary,
+                () -> rulesManager.getReleaseId().getVersion());
+        metricsRegistry.gauge("hacep_sessions_primary", "Sessions owned as primary", census::getPrimarySessions);
+        metricsRegistry.gauge("hacep_sessions_backup", "Sessions held as backup", census::getBackupSessions);
+        metricsRegistry.gauge("hacep_sessions_serialized_bytes", "Bytes of serialized sessions and fact logs held by backups",
+                census::getSerializedBytes);
+        metricsRegistry.gauge("hacep_sessions_buffered_facts", "Facts buffered by backups since their last snapshot",
+                census::getBufferedFacts);
+        metricsRegistry.gauge("hacep_sessions_snapshot_backlog", "Backups with facts not yet in a snapshot",
+                census::getSnapshotBacklog);
+        metricsRegistry.gauge("hacep_rules_upgrade_pending_sessions", "Serialized sessions still on a previous rules version",
+                census::getPendingUpgrade);
+        metricsRegistry.gauge("hacep_rehash_in_progress", "1 while a rehash of the sessions is running",
+                () -> dataGridManager.getStateTransferProgress().isInProgress() ? 1 : 0);
+        metricsRegistry.gauge("hacep_rehash_last_duration_seconds", "Duration of the last rehash, facts were parked or the route suspended",
+                () -> dataGridManager.getStateTransferProgress().getLastDuration() / 1000.0);
+        metricsRegistry.gauge("hacep_rehash_parked_facts", "Facts parked while their segment is rehashing", rehashBuffer::size);
+        metricsRegistry.counter("hacep_sessions_prefetched_total", "Sessions rebuilt ahead of their next fact",
+                kieSessionSaver::getPrefetchedSessions);
+        if (prefetcher != null) {
+            metricsRegistry.counter("hacep_prefetch_requests_total", "Session prefetches sent by the ingestion route",
+                    prefetcher::getRequests);
+            metricsRegistry.counter("hacep_prefetch_expired_total", "Groups released before their session prefetch completed",
+                    prefetcher::getExpired);
+            metricsRegistry.counter("hacep_prefetch_failed_total", "Session prefetches that failed", prefetcher::getFailed);
+            metricsRegistry.gauge("hacep_prefetch_held_facts", "Facts held while the session of their group is prefetched",
+                    prefetcher::size);
+        }
+        if (passivationListener != null) {
+            metricsRegistry.counter("hacep_sessions_passivated_total", "Sessions written to the cache store",
+                    passivationListener::getPassivated);
+            metricsRegistry.counter("hacep_sessions_activated_total", "Sessions read back from the cache store",
+                    passivationListener::getActivated);
+        }
+        if (sessionMemoryBudget != null) {
+            metricsRegistry.gauge("hacep_sessions_memory_bytes", "Estimated bytes of the sessions held by this node",
+                    sessionMemoryBudget::getEstimate);
+            metricsRegistry.gauge("hacep_sessions_memory_budget_bytes", "Bytes of sessions held before evicting the coldest",
+                    sessionMemoryBudget::getBudget);
+            metricsRegistry.counter("hacep_sessions_evicted_total", "Sessions evicted to keep within the memory budget",
+                    sessionMemoryBudget::getEvicted);
+        }
+        if (sessionTiering != null) {
+            metricsRegistry.gauge("hacep_sessions_tier{tier=\"hot\"}", "Sessions held by tier", sessionTiering::getHot);
+            metricsRegistry.gauge("hacep_sessions_tier{tier=\"warm\"}", "Sessions held by tier", sessionTiering::getWarm);
+            metricsRegistry.gauge("hacep_sessions_warm_bytes", "Bytes of the compressed snapshots and fact logs of warm sessions",
+                    sessionTiering::getWarmBytes);
+            metricsRegistry.counter("hacep_sessions_demoted_total{tier=\"warm\"}", "Sessions demoted by tier",
+                    sessionTiering::getDemotedWarm);
+            metricsRegistry.counter("hacep_sessions_demoted_total{tier=\"cold\"}", "Sessions demoted by tier",
+                    sessionTiering::getDemotedCold);
+        }
+        if (reorderBuffer != null) {
+            metricsRegistry.gauge("hacep_reorder_held_facts", "Facts held to be inserted in event time order", reorderBuffer::size);
+            metricsRegistry.gauge("hacep_reorder_groups", "Groups tracked by the reorder buffer", reorderBuffer::getGroups);
+            metricsRegistry.gauge("hacep_reorder_max_depth", "Most facts held for a group since the last scrape",
+                    reorderBuffer::getMaxDepth);
+            metricsRegistry.counter("hacep_reorder_received_total", "Facts received by the reorder buffer",
+                    reorderBuffer::getReceived);
+            metricsRegistry.counter("hacep_reorder_reordered_total", "Facts received before a later fact of their group",
+                    reorderBuffer::getReordered);
+            metricsRegistry.counter("hacep_reorder_late_total", "Facts too late to be reordered, sent to the late channel",
+                    reorderBuffer::getLate);
+            metricsRegistry.counter("hacep_reorder_timed_out_total", "Facts emitted by wall time before their watermark",
+                    reorderBuffer::getTimedOut);
+        }
+        if (sessionClockTicker != null) {
+            metricsRegistry.counter("hacep_sessions_ticked_total", "Clock ticks of idle sessions replicated to their backups",
+                    sessionClockTicker::getTicked);
+        }
+        if (sessionSweeper != null) {
+            metricsRegistry.counter("hacep_sessions_swept_total", "Sessions examined by the expiry sweeper",
+                    sessionSweeper::getExamined);
+            metricsRegistry.counter("hacep_sessions_expired_total", "Sessions removed by idle TTL or max age",
+                    sessionSweeper::getExpired);
+            metricsRegistry.counter("hacep_sessions_archived_total", "Expired sessions appended to the session archive",
+                    sessionSweeper::getArchived);
+        }
+        LogStructuredStore<?, ?> logStore = dataGridManager.getLogStore();
+        if (logStore != null && logStore.isWriteBehind()) {
+            metricsRegistry.gauge("hacep_store_pending_writes", "Sessions queued for the cache store", logStore::getPendingWrites);
+            metricsRegistry.gauge("hacep_store_write_lag_seconds", "Age of the oldest session queued for the cache store",
+                    logStore::getWriteLag);
+            metricsRegistry.counter("hacep_store_writes_total", "Queued sessions written to the cache store",
+                    logStore::getFlushedWrites);
+            metricsRegistry.counter("hacep_store_coalesced_writes_total", "Session updates replacing one still queued",
+                    logStore::getCoalescedWrites);
+            metricsRegistry.counter("hacep_store_blocked_writes_total", "Session updates that waited for a full queue",
+                    logStore::getBlockedWrites);
+        }
+
+        int port = getPrometheusPort();
+        if (port >= 0) {
+            try {
+                prometheusExporter = new PrometheusExporter(metricsRegistry);
+                prometheusExporter.start(port);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to start the Prometheus exporter on port " + port, e);
+                prometheusExporter = null;
+            }
+        }
+    }
+
+    private int getPrometheusPort() {
+        try {
+            return Integer.valueOf(System.getProperty("grid.metrics.prometheus.port", "-1"));
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
     @Override
     public String info() {
         return dataGridManager.info();
     }
 
+    @Override
+    public String sessions() {
+        return dataGridManager.getSessionStatistics().report(SessionStatistics.getTopSize());
+    }
+
     @Override
     public String status() {
         return dataGridManager.status();
     }
 
+    @Override
+    public String metrics() {
+        RuleProfiler ruleProfiler = rulesManager != null ? rulesManager.getRuleProfiler() : null;
+        if (ruleProfiler == null) {
+            return stageTimers.report();
+        }
+        return stageTimers.report() + System.lineSeparator() + ruleProfiler.report(TOP_RULES);
+    }
+
     @Override
     public void insertFact(Fact fact) {
         putter.put(fact);
@@ -159,6 +466,20 @@ public class HACEPImpl implements HACEP {
         return dataGridManager.getSessionCache();
     }
 
+    @Override
+    public StageTimers getStageTimers() {
+        return stageTimers;
+    }
+
+    @Override
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    public PrometheusExporter getPrometheusExporter() {
+        return prometheusExporter;
+    }
+
     public DataGridManager getDataGridManager() {
         return dataGridManager;
     }
@@ -17,6 +17,8 @@
 
 package it.redhat.hacep.cache;
 
+import it.redhat.hacep.metrics.Stage;
+import it.redhat.hacep.metrics.StageTimers;
 import it.redhat.hacep.model.Fact;
 import it.redhat.hacep.model.Key;
 import org.infinispan.Cache;
@@ -28,18 +30,58 @@ public class PutterImpl implements Putter {
     private static final Logger LOGGER = LoggerFactory.getLogger(PutterImpl.class);
 
     private final Cache<Key, Fact> cache;
+    private final RehashBuffer rehashBuffer;
+    private final StageTimers stageTimers;
+    private SessionPrefetcher prefetcher;
 
     public PutterImpl(Cache<Key, Fact> cache) {
+        this(cache, null);
+    }
+
+    public PutterImpl(Cache<Key, Fact> cache, RehashBuffer rehashBuffer) {
+        this(cache, rehashBuffer, null);
+    }
+
+    public PutterImpl(Cache<Key, Fact> cache, RehashBuffer rehashBuffer, StageTimers stageTimers) {
         this.cache = cache;
+        this.rehashBuffer = rehashBuffer;
+        this.stageTimers = stageTimers;
+    }
+
+    public void setPrefetcher(SessionPrefetcher prefetcher) {
+        this.prefetcher = prefetcher;
     }
 
     @Override
     public void put(Fact fact) {
+        if (prefetcher != null && prefetcher.offer(fact)) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Session is being prefetched, event held");
+            }
+            return;
+        }
+        putInGrid(fact);
+    }
+
+    /**
+     * Puts the fact in the grid, or parks it while its segment is rehashing.
+     */
+    public void putInGrid(Fact fact) {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("Putting event in the grid");
         }
+        long start = System.nanoTime();
+        if (rehashBuffer != null && rehashBuffer.offer(fact)) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Segment is rehashing, event parked");
+            }
+            return;
+        }
         if (cache != null) {
             cache.put(fact.extractKey(), fact);
         }
+        if (stageTimers != null) {
+            stageTimers.record(Stage.PUT, start);
+        }
     }
 }
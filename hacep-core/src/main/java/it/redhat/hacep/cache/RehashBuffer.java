@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache;
+
+import it.redhat.hacep.model.Fact;
+import it.redhat.hacep.model.Key;
+import org.infinispan.Cache;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parks the facts whose segment is changing primary owner during a rehash, so that
+ * ingestion keeps flowing for every other segment. Parked facts are put in the grid,
+ * in arrival order, once the rehash is complete.
+ * <p>
+ * Every park starts a new epoch: a drain scheduled by an earlier release stops as soon as
+ * its segment is parked again, leaving the remaining facts to the release of the new rehash.
+ */
+public class RehashBuffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RehashBuffer.class);
+
+    private final Cache<Key, Fact> cache;
+    private final int capacity;
+
+    private final ConcurrentMap<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final ExecutorService drainer = Executors.newSingleThreadExecutor();
+    private final AtomicLong epochs = new AtomicLong();
+
+    private volatile boolean segmentScoped = false;
+
+    public RehashBuffer(Cache<Key, Fact> cache, int capacity) {
+        this.cache = cache;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Parks the segments whose primary owner differs between the two hashes.
+     *
+     * @return false if the moving segments cannot be computed and the caller must fall back to a full suspension
+     */
+    public boolean park(ConsistentHash start, ConsistentHash end) {
+        if (start == null || end == null || start.getNumSegments() != end.getNumSegments() || getDistributionManager() == null) {
+            segmentScoped = false;
+            return false;
+        }
+        Set<Integer> moving = new HashSet<>();
+        for (int segment = 0; segment < start.getNumSegments(); segment++) {
+            if (!Objects.equals(start.locatePrimaryOwnerForSegment(segment), end.locatePrimaryOwnerForSegment(segment))) {
+                moving.add(segment);
+            }
+        }
+        long epoch = epochs.incrementAndGet();
+        for (Integer segment : moving) {
+            parkSegment(segment, epoch);
+        }
+        segmentScoped = true;
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info(String.format("Parking ingestion for [%d] of [%d] segments", moving.size(), start.getNumSegments()));
+        }
+        return true;
+    }
+
+    private void parkSegment(Integer segment, long epoch) {
+        while (true) {
+            Segment s = segments.computeIfAbsent(segment, k -> new Segment());
+            synchronized (s) {
+                // a drain may have released the segment between the lookup and the lock
+                if (segments.get(segment) == s) {
+                    s.parked = true;
+                    s.epoch = epoch;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drains all the parked segments asynchronously, the segments holding more facts first.
+     *
+     * @return false if the last rehash was not handled by this buffer
+     */
+    public boolean release() {
+        List<Integer> parked = new ArrayList<>(segments.keySet());
+        parked.sort(Comparator.comparingInt(this::parkedFacts).reversed());
+        for (Integer segment : parked) {
+            long epoch = epochOf(segment);
+            drainer.execute(() -> drain(segment, epoch));
+        }
+        return segmentScoped;
+    }
+
+    /**
+     * @return true if the fact has been parked, false if the caller must put it in the grid
+     */
+    public boolean offer(Fact fact) {
+        if (segments.isEmpty()) {
+            return false;
+        }
+        Segment s = segments.get(segmentOf(fact.extractKey()));
+        if (s == null) {
+            return false;
+        }
+        synchronized (s) {
+            while (s.parked && s.facts.size() >= capacity) {
+                try {
+                    s.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+            if (s.parked) {
+                s.facts.offer(fact);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isParked(Key key) {
+        Segment s = segments.get(segmentOf(key));
+        return s != null && s.parked;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment s : segments.values()) {
+            synchronized (s) {
+                size += s.facts.size();
+            }
+        }
+        return size;
+    }
+
+    private long epochOf(Integer segment) {
+        Segment s = segments.get(segment);
+        if (s == null) {
+            return 0;
+        }
+        synchronized (s) {
+            return s.epoch;
+        }
+    }
+
+    private int parkedFacts(Integer segment) {
+        Segment s = segments.get(segment);
+        if (s == null) {
+            return 0;
+        }
+        synchronized (s) {
+            return s.facts.size();
+        }
+    }
+
+    public int parkedSegments() {
+        return segments.size();
+    }
+
+    public void stop() {
+        // on the drainer as well, so that a drain in flight and the final one do not interleave
+        for (Integer segment : segments.keySet()) {
+            long epoch = epochOf(segment);
+            drainer.execute(() -> drain(segment, epoch));
+        }
+        drainer.shutdown();
+        try {
+            drainer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Puts the parked facts of a segment in the grid one at a time, outside the segment monitor so that
+     * offers keep parking behind them. The segment is released once empty, unless it was parked again
+     * by a later rehash in the meantime.
+     */
+    private void drain(Integer segment, long epoch) {
+        Segment s = segments.get(segment);
+        if (s == null) {
+            return;
+        }
+        int drained = 0;
+        while (true) {
+            Fact fact;
+            synchronized (s) {
+                if (s.epoch != epoch) {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug(String.format("Segment [%d] parked again, [%d] parked facts drained", segment, drained));
+                    }
+                    return;
+                }
+                fact = s.facts.poll();
+                if (fact == null) {
+                    s.parked = false;
+                    segments.remove(segment, s);
+                    s.notifyAll();
+                    break;
+                }
+                s.notifyAll();
+            }
+            try {
+                cache.put(fact.extractKey(), fact);
+                drained++;
+            } catch (Exception e) {
+                LOGGER.error("Unable to put parked fact in the grid: " + fact, e);
+            }
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(String.format("Segment [%d] released, [%d] parked facts drained", segment, drained));
+        }
+    }
+
+    private int segmentOf(Key key) {
+        DistributionManager distributionManager = getDistributionManager();
+        if (distributionManager == null) {
+            return -1;
+        }
+        return distributionManager.getReadConsistentHash().getSegment(key);
+    }
+
+    private DistributionManager getDistributionManager() {
+        return cache.getAdvancedCache().getDistributionManager();
+    }
+
+    private static class Segment {
+        private final Queue<Fact> facts = new ArrayDeque<>();
+        private boolean parked;
+        private long epoch;
+    }
+}
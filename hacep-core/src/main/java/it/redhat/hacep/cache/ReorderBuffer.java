@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache;
+
+import it.redhat.hacep.model.Fact;
+import it.redhat.hacep.model.Key;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Reorders the facts of each group by {@link Fact#getInstant()} before they are inserted in the session, so
+ * that facts received out of order by concurrent consumers do not move the session clock backwards.
+ * <p>
+ * A group holds its facts until its watermark, the latest instant seen minus the allowed lateness, passes
+ * them, or until they have been held for the allowed lateness, so that idle groups are not stalled. A fact
+ * older than the last one emitted for its group is too late to be reordered and goes to the late channel.
+ * Groups beyond maxPerGroup facts, or all groups beyond capacity facts held overall, emit their oldest facts
+ * right away. Empty groups are forgotten once the allowed lateness has passed, keeping only the instant of
+ * their last emitted fact, so that a fact older than it is still late when its group comes back.
+ * <p>
+ * The clock ticks of idle sessions go through {@link #tick(String, long)}, so that they neither overtake the
+ * facts held for their group nor let an older fact in after them.
+ * <p>
+ * Like the {@link RehashBuffer}, held facts are only in the memory of the primary owner of their group.
+ */
+public class ReorderBuffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReorderBuffer.class);
+
+    private final BiConsumer<Key, Fact> sink;
+    private final BiConsumer<Key, Fact> late;
+    private final long allowedLateness;
+    private final int maxPerGroup;
+    private final int capacity;
+
+    private final ConcurrentMap<String, Group> groups = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> forgotten = new ConcurrentHashMap<>();
+    private final AtomicInteger held = new AtomicInteger();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder reordered = new LongAdder();
+    private final LongAdder lateFacts = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private volatile int maxDepth;
+
+    /**
+     * @param sink            inserts a fact in the session of its group
+     * @param late            receives the facts too late to be reordered
+     * @param allowedLateness milliseconds, in event time and in wall time, a fact is held for the late ones
+     * @param maxPerGroup     max facts held for a group
+     * @param capacity        max facts held overall
+     */
+    public ReorderBuffer(BiConsumer<Key, Fact> sink, BiConsumer<Key, Fact> late,
+                         long allowedLateness, int maxPerGroup, int capacity) {
+        this.sink = sink;
+        this.late = late;
+        this.allowedLateness = allowedLateness;
+        this.maxPerGroup = Math.max(1, maxPerGroup);
+        this.capacity = Math.max(1, capacity);
+        long tick = Math.max(1, allowedLateness / 4);
+        this.timer.scheduleWithFixedDelay(() -> advance(System.currentTimeMillis()), tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    public void offer(Key key, Fact fact) {
+        String group = key.getGroup();
+        long instant = fact.getInstant().toEpochMilli();
+        long now = System.currentTimeMillis();
+        received.increment();
+        while (true) {
+            Group g = groups.computeIfAbsent(group, this::group);
+            synchronized (g) {
+                if (g.removed) {
+                    continue;
+                }
+                if (instant < g.emitted) {
+                    lateFacts.increment();
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug(String.format("Fact [%s] at [%d] is late, group [%s] is at [%d]", fact, instant, group, g.emitted));
+                    }
+                    deliver(late, key, fact);
+                    return;
+                }
+                if (instant < g.maxInstant) {
+                    reordered.increment();
+                } else {
+                    g.maxInstant = instant;
+                }
+                g.facts.offer(new Held(key, fact, instant, now, g.sequence++));
+                held.incrementAndGet();
+                if (g.facts.size() > maxDepth) {
+                    maxDepth = g.facts.size();
+                }
+                emit(g, now);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Emits the facts held for longer than the allowed lateness and forgets the groups idle since then.
+     */
+    void advance(long now) {
+        for (Group g : groups.values()) {
+            synchronized (g) {
+                emit(g, now);
+                if (g.facts.isEmpty() && now - g.lastEmit >= allowedLateness) {
+                    g.removed = true;
+                    if (g.emitted != Long.MIN_VALUE) {
+                        forgotten.put(g.group, g.emitted);
+                    }
+                    groups.remove(g.group, g);
+                }
+            }
+        }
+    }
+
+    /**
+     * Bounds a clock tick of the session of a group: a group with facts held is not ticked, an active group
+     * is ticked no further than its watermark, a forgotten group up to the given time. A fact older than the
+     * tick is late from then on.
+     *
+     * @return the time the session of the group may be ticked to, Long.MIN_VALUE if it must not be ticked
+     */
+    public long tick(String group, long time) {
+        while (true) {
+            Group g = groups.get(group);
+            if (g == null) {
+                forgotten.merge(group, time, Math::max);
+                if (!groups.containsKey(group)) {
+                    return time;
+                }
+                // came back meanwhile, bound it as an active group
+                continue;
+            }
+            synchronized (g) {
+                if (g.removed) {
+                    continue;
+                }
+                if (!g.facts.isEmpty() || g.maxInstant == Long.MIN_VALUE) {
+                    return Long.MIN_VALUE;
+                }
+                long bound = Math.min(time, g.maxInstant - allowedLateness);
+                g.emitted = Math.max(g.emitted, bound);
+                return bound;
+            }
+        }
+    }
+
+    private Group group(String group) {
+        Group g = new Group(group);
+        Long emitted = forgotten.remove(group);
+        if (emitted != null) {
+            g.emitted = emitted;
+            g.maxInstant = emitted;
+        }
+        return g;
+    }
+
+    private void emit(Group g, long now) {
+        long watermark = g.maxInstant - allowedLateness;
+        Held head;
+        while ((head = g.facts.peek()) != null) {
+            boolean expired = now - head.arrival >= allowedLateness;
+            if (head.instant > watermark && !expired && g.facts.size() <= maxPerGroup && held.get() <= capacity) {
+                return;
+            }
+            if (expired && head.instant > watermark) {
+                timedOut.increment();
+            }
+            g.facts.poll();
+            held.decrementAndGet();
+            g.emitted = Math.max(g.emitted, head.instant);
+            g.lastEmit = now;
+            deliver(sink, head.key, head.fact);
+        }
+    }
+
+    private void deliver(BiConsumer<Key, Fact> consumer, Key key, Fact fact) {
+        try {
+            consumer.accept(key, fact);
+        } catch (Exception e) {
+            LOGGER.error("Unable to insert reordered fact: " + fact, e);
+        }
+    }
+
+    public int size() {
+        return held.get();
+    }
+
+    public int getGroups() {
+        return groups.size();
+    }
+
+    /**
+     * @return the most facts held for a single group since the last call
+     */
+    public int getMaxDepth() {
+        int depth = maxDepth;
+        maxDepth = 0;
+        return depth;
+    }
+
+    public long getReceived() {
+        return received.sum();
+    }
+
+    /**
+     * @return facts received before a fact with a later instant of the same group
+     */
+    public long getReordered() {
+        return reordered.sum();
+    }
+
+    public long getLate() {
+        return lateFacts.sum();
+    }
+
+    /**
+     * @return facts emitted by the wall time bound before the watermark of their group passed them
+     */
+    public long getTimedOut() {
+        return timedOut.sum();
+    }
+
+    /**
+     * Inserts every held fact, in order within each group.
+     */
+    public void stop() {
+        timer.shutdownNow();
+        try {
+            timer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        advance(Long.MAX_VALUE);
+    }
+
+    private static class Group {
+        private final String group;
+        private final PriorityQueue<Held> facts = new PriorityQueue<>();
+        private long maxInstant = Long.MIN_VALUE;
+        private long emitted = Long.MIN_VALUE;
+        private long lastEmit = System.currentTimeMillis();
+        private long sequence;
+        private boolean removed;
+
+        Group(String group) {
+            this.group = group;
+        }
+    }
+
+    private static class Held implements Comparable<Held> {
+        private final Key key;
+        private final Fact fact;
+        private final long instant;
+        private final long arrival;
+        private final long sequence;
+
+        Held(Key key, Fact fact, long instant, long arrival, long sequence) {
+            this.key = key;
+            this.fact = fact;
+            this.instant = instant;
+            this.arrival = arrival;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Held other) {
+            int compare = Long.compare(instant, other.instant);
+            return compare != 0 ? compare : Long.compare(sequence, other.sequence);
+        }
+    }
+}
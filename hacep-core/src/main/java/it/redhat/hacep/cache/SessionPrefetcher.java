@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache;
+
+import it.redhat.hacep.model.Fact;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Prefetches the session of a group not seen recently on its owner as soon as a fact for it is received,
+ * and holds the facts of that group for up to a reorder window while the prefetch runs, so that the insert
+ * finds the session live. Facts of the other groups keep flowing; the facts of a held group are put in the
+ * grid in arrival order once the prefetch completes or the window expires.
+ * <p>
+ * Like the {@link RehashBuffer}, held facts are only in the memory of the receiving node.
+ */
+public class SessionPrefetcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionPrefetcher.class);
+
+    private final Function<String, CompletableFuture<?>> prefetch;
+    private final Consumer<Fact> sink;
+    private final long window;
+    private final long recentTtl;
+    private final int capacity;
+
+    private final Map<String, Long> recent;
+    private final Map<String, Group> held = new HashMap<>();
+    private final ExecutorService releaser;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private int heldFacts;
+
+    /**
+     * @param prefetch  warms up the session of a group on its owner, completing when it is live
+     * @param sink      puts a fact in the grid
+     * @param window    max milliseconds the facts of a group are held while its session is prefetched
+     * @param recent    groups remembered as recently seen, whose sessions are assumed live
+     * @param recentTtl milliseconds a group is remembered as recently seen
+     * @param capacity  max facts held, new groups are not held beyond it
+     */
+    public SessionPrefetcher(Function<String, CompletableFuture<?>> prefetch, Consumer<Fact> sink,
+                             long window, int recent, long recentTtl, int capacity, int threads) {
+        this.prefetch = prefetch;
+        this.sink = sink;
+        this.window = window;
+        this.recentTtl = recentTtl;
+        this.capacity = capacity;
+        this.recent = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > recent;
+            }
+        };
+        this.releaser = Executors.newFixedThreadPool(Math.max(1, threads));
+    }
+
+    /**
+     * @return true if the fact has been held, false if the caller must put it in the grid
+     */
+    public boolean offer(Fact fact) {
+        String group = fact.extractKey().getGroup();
+        long now = System.currentTimeMillis();
+        Group g;
+        synchronized (this) {
+            g = held.get(group);
+            if (g != null) {
+                g.facts.offer(fact);
+                heldFacts++;
+                return true;
+            }
+            Long seen = recent.put(group, now);
+            if ((seen != null && now - seen < recentTtl) || heldFacts >= capacity) {
+                return false;
+            }
+            g = new Group(group);
+            g.facts.offer(fact);
+            held.put(group, g);
+            heldFacts++;
+        }
+        requests.increment();
+        Group prefetching = g;
+        timer.schedule(() -> {
+            if (release(prefetching)) {
+                expired.increment();
+            }
+        }, window, TimeUnit.MILLISECONDS);
+        try {
+            prefetch.apply(group).whenComplete((result, e) -> {
+                if (e != null) {
+                    failed.increment();
+                    if (LOGGER.isDebugEnabled()) LOGGER.debug("Unable to prefetch the session of group " + group, e);
+                }
+                release(prefetching);
+            });
+        } catch (RuntimeException e) {
+            failed.increment();
+            LOGGER.warn("Unable to prefetch the session of group " + group, e);
+            release(prefetching);
+        }
+        return true;
+    }
+
+    /**
+     * @return false if the group was already released
+     */
+    private boolean release(Group g) {
+        synchronized (this) {
+            if (g.released) {
+                return false;
+            }
+            g.released = true;
+        }
+        releaser.execute(() -> drain(g));
+        return true;
+    }
+
+    private void drain(Group g) {
+        List<Fact> batch = new ArrayList<>();
+        while (true) {
+            synchronized (this) {
+                if (g.facts.isEmpty()) {
+                    held.remove(g.group, g);
+                    return;
+                }
+                batch.addAll(g.facts);
+                heldFacts -= g.facts.size();
+                g.facts.clear();
+            }
+            for (Fact fact : batch) {
+                try {
+                    sink.accept(fact);
+                } catch (Exception e) {
+                    LOGGER.error("Unable to put held fact in the grid: " + fact, e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    public synchronized int size() {
+        return heldFacts;
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return groups released by the window before their prefetch completed
+     */
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Puts every held fact in the grid, without waiting for the prefetches.
+     */
+    public void stop() {
+        timer.shutdownNow();
+        List<Group> groups;
+        synchronized (this) {
+            groups = new ArrayList<>(held.values());
+        }
+        groups.forEach(this::release);
+        releaser.shutdown();
+        try {
+            releaser.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Group {
+        private final String group;
+        private final Queue<Fact> facts = new ArrayDeque<>();
+        private boolean released;
+
+        Group(String group) {
+            this.group = group;
+        }
+    }
+}
@@ -17,7 +17,10 @@
 
 package it.redhat.hacep.cache.listeners;
 
+import it.redhat.hacep.cache.ReorderBuffer;
 import it.redhat.hacep.cache.session.KieSessionSaver;
+import it.redhat.hacep.metrics.Stage;
+import it.redhat.hacep.metrics.StageTimers;
 import it.redhat.hacep.model.Fact;
 import it.redhat.hacep.model.Key;
 import org.infinispan.notifications.Listener;
@@ -32,13 +35,29 @@ public class FactListenerPost {
     private static final Logger LOGGER = LoggerFactory.getLogger(KieSessionSaver.class);
 
     private final KieSessionSaver saver;
+    private final StageTimers stageTimers;
+    private final ReorderBuffer reorderBuffer;
 
     public FactListenerPost(KieSessionSaver kieSessionSaver) {
+        this(kieSessionSaver, null);
+    }
+
+    public FactListenerPost(KieSessionSaver kieSessionSaver, StageTimers stageTimers) {
+        this(kieSessionSaver, stageTimers, null);
+    }
+
+    /**
+     * @param reorderBuffer when not null, facts go through it to be inserted in event time order
+     */
+    public FactListenerPost(KieSessionSaver kieSessionSaver, StageTimers stageTimers, ReorderBuffer reorderBuffer) {
         this.saver = kieSessionSaver;
+        this.stageTimers = stageTimers;
+        this.reorderBuffer = reorderBuffer;
     }
 
     @CacheEntryCreated
     public void eventReceived(CacheEntryCreatedEvent event) {
+        long start = System.nanoTime();
         Object key = event.getKey();
         Object value = event.getValue();
         if (LOGGER.isDebugEnabled()) LOGGER.debug("Event received: (" + key + ", " + value + ")");
@@ -47,7 +66,14 @@ public class FactListenerPost {
             LOGGER.warn("Event is not HACEP compliant: (" + key + ", " + value + ")");
             return;
         }
-        saver.insert((Key) key, (Fact) value);
+        if (reorderBuffer != null) {
+            reorderBuffer.offer((Key) key, (Fact) value);
+        } else {
+            saver.insert((Key) key, (Fact) value);
+        }
+        if (stageTimers != null) {
+            stageTimers.record(Stage.LISTENER_DISPATCH, start);
+        }
         if (LOGGER.isDebugEnabled()) LOGGER.debug("Chain complete for: (" + key + ", " + value + ")");
 
     }
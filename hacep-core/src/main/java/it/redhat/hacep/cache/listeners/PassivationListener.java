@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.listeners;
+
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryActivated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryPassivated;
+import org.infinispan.notifications.cachelistener.event.CacheEntryActivatedEvent;
+import org.infinispan.notifications.cachelistener.event.CacheEntryPassivatedEvent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the sessions written to and read back from the cache store of this node.
+ */
+@Listener(observation = Listener.Observation.POST)
+public class PassivationListener {
+
+    private final LongAdder passivated = new LongAdder();
+    private final LongAdder activated = new LongAdder();
+
+    @CacheEntryPassivated
+    public void passivated(CacheEntryPassivatedEvent event) {
+        passivated.increment();
+    }
+
+    @CacheEntryActivated
+    public void activated(CacheEntryActivatedEvent event) {
+        activated.increment();
+    }
+
+    public long getPassivated() {
+        return passivated.sum();
+    }
+
+    public long getActivated() {
+        return activated.sum();
+    }
+}
@@ -17,7 +17,10 @@
 
 package it.redhat.hacep.cache.listeners;
 
+import it.redhat.hacep.cache.RehashBuffer;
+import it.redhat.hacep.cache.transfer.StateTransferProgress;
 import it.redhat.hacep.configuration.Router;
+import it.redhat.hacep.jfr.Events;
 import org.infinispan.notifications.Listener;
 import org.infinispan.notifications.cachelistener.annotation.DataRehashed;
 import org.infinispan.notifications.cachelistener.event.DataRehashedEvent;
@@ -30,9 +33,13 @@ public class SessionListenerPost {
     private static final Logger LOGGER = LoggerFactory.getLogger(SessionListenerPost.class);
 
     private final Router router;
+    private final RehashBuffer rehashBuffer;
+    private final StateTransferProgress progress;
 
-    public SessionListenerPost(Router router) {
+    public SessionListenerPost(Router router, RehashBuffer rehashBuffer, StateTransferProgress progress) {
         this.router = router;
+        this.rehashBuffer = rehashBuffer;
+        this.progress = progress;
     }
 
     @DataRehashed
@@ -40,7 +47,11 @@ public class SessionListenerPost {
         if (LOGGER.isInfoEnabled()) {
             LOGGER.info("Rehashing FINISHED for cache " + event.getCache());
         }
-        this.router.resume();
+        this.progress.finished();
+        Events.instant(Events.Type.REHASH_RESUME, null, null, this.rehashBuffer.size(), this.progress.getBytesReceived());
+        if (!this.rehashBuffer.release()) {
+            this.router.resume();
+        }
     }
 
 }
\ No newline at end of file
@@ -17,7 +17,10 @@
 
 package it.redhat.hacep.cache.listeners;
 
+import it.redhat.hacep.cache.RehashBuffer;
+import it.redhat.hacep.cache.transfer.StateTransferProgress;
 import it.redhat.hacep.configuration.Router;
+import it.redhat.hacep.jfr.Events;
 import org.infinispan.notifications.Listener;
 import org.infinispan.notifications.cachelistener.annotation.DataRehashed;
 import org.infinispan.notifications.cachelistener.event.DataRehashedEvent;
@@ -30,9 +33,13 @@ public class SessionListenerPre {
     private static final Logger LOGGER = LoggerFactory.getLogger(SessionListenerPre.class);
     
     private final Router router;
+    private final RehashBuffer rehashBuffer;
+    private final StateTransferProgress progress;
 
-    public SessionListenerPre(Router router) {
+    public SessionListenerPre(Router router, RehashBuffer rehashBuffer, StateTransferProgress progress) {
         this.router = router;
+        this.rehashBuffer = rehashBuffer;
+        this.progress = progress;
     }
 
     @DataRehashed
@@ -40,7 +47,12 @@ public class SessionListenerPre {
         if (LOGGER.isInfoEnabled()) {
             LOGGER.info("Rehashing STARTED for cache " + event.getCache());
         }
-        this.router.suspend();
+        this.progress.started(event.getConsistentHashAtStart(), event.getConsistentHashAtEnd(),
+                event.getCache().getCacheManager().getAddress(), event.getCache().getAdvancedCache().getDataContainer().size());
+        if (!this.rehashBuffer.park(event.getConsistentHashAtStart(), event.getConsistentHashAtEnd())) {
+            this.router.suspend();
+        }
+        Events.instant(Events.Type.REHASH_SUSPEND, null, null, this.progress.getExpectedSessions(), 0);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.listeners;
+
+import it.redhat.hacep.cache.session.KieSessionSaver;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
+import org.infinispan.notifications.cachelistener.event.CacheEntryModifiedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prefetches the session of a group when the ingress of any node asks for it, by a put of the group in the
+ * prefetch cache. The put completes once the primary owner of the group has rebuilt the session.
+ */
+@Listener(primaryOnly = true, observation = Listener.Observation.POST)
+public class SessionPrefetchListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionPrefetchListener.class);
+
+    private final KieSessionSaver saver;
+
+    public SessionPrefetchListener(KieSessionSaver kieSessionSaver) {
+        this.saver = kieSessionSaver;
+    }
+
+    @CacheEntryModified
+    public void prefetchRequested(CacheEntryModifiedEvent<String, Long> event) {
+        String group = event.getKey();
+        if (LOGGER.isDebugEnabled()) LOGGER.debug("Prefetch requested for group: " + group);
+        saver.prefetch(group);
+    }
+}
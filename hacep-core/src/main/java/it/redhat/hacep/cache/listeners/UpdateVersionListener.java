@@ -19,6 +19,10 @@ package it.redhat.hacep.cache.listeners;
 
 import it.redhat.hacep.configuration.Router;
 import it.redhat.hacep.configuration.RulesManager;
+import it.redhat.hacep.jfr.Events;
+import it.redhat.hacep.metrics.Counter;
+import it.redhat.hacep.metrics.MetricsRegistry;
+import it.redhat.hacep.metrics.Timer;
 import org.infinispan.notifications.Listener;
 import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
 import org.infinispan.notifications.cachelistener.event.CacheEntryModifiedEvent;
@@ -32,10 +36,18 @@ public class UpdateVersionListener {
 
     private final Router router;
     private final RulesManager rulesManager;
+    private final Timer upgradeTimer;
+    private final Counter upgrades;
 
     public UpdateVersionListener(Router router, RulesManager rulesManager) {
+        this(router, rulesManager, null);
+    }
+
+    public UpdateVersionListener(Router router, RulesManager rulesManager, MetricsRegistry metricsRegistry) {
         this.router = router;
         this.rulesManager = rulesManager;
+        this.upgradeTimer = metricsRegistry != null ? metricsRegistry.timer("hacep_rules_upgrade_seconds", "Time the route is suspended to upgrade the rules") : null;
+        this.upgrades = metricsRegistry != null ? metricsRegistry.counter("hacep_rules_upgrades_total", "Rules version upgrades") : null;
     }
 
     @CacheEntryModified
@@ -52,11 +64,18 @@ public class UpdateVersionListener {
     }
 
     private void updateVersion(String value) {
+        long start = System.nanoTime();
+        Object event = Events.begin(Events.Type.UPGRADE);
         try {
             router.suspend();
             rulesManager.updateToVersion(value);
         } finally {
             router.resume();
+            Events.commit(event, null, value, 0, 0, 0);
+            if (upgradeTimer != null) {
+                upgradeTimer.recordSince(start);
+                upgrades.increment();
+            }
         }
     }
 
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import it.redhat.hacep.model.Fact;
+import org.infinispan.commons.marshall.Marshaller;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Append-only log of the facts replicated to a log-only backup.
+ * Facts are marshalled with the grid marshaller into length-prefixed records. The records are deflated
+ * into chunks once the open chunk reaches {@link #CHUNK_SIZE}, or when the log is drained, both under the
+ * lock of the session, so that shipping the log never changes it.
+ */
+public class FactLog {
+
+    static final int CHUNK_SIZE = 16 * 1024;
+
+    private final Marshaller marshaller;
+    private final List<byte[]> chunks = new ArrayList<>();
+    private ByteArrayOutputStream open;
+    private int length;
+    private long sealedBytes;
+
+    public FactLog(Marshaller marshaller) {
+        this.marshaller = marshaller;
+    }
+
+    public FactLog(Marshaller marshaller, List<byte[]> chunks, int length) {
+        this(marshaller);
+        this.chunks.addAll(chunks);
+        this.length = length;
+        for (byte[] chunk : chunks) {
+            sealedBytes += chunk.length;
+        }
+    }
+
+    public synchronized void append(Fact fact) {
+        try {
+            byte[] record = marshaller.objectToByteBuffer(fact);
+            if (open == null) {
+                open = new ByteArrayOutputStream();
+            }
+            DataOutputStream out = new DataOutputStream(open);
+            out.writeInt(record.length);
+            out.write(record);
+            length++;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot append fact to the log", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted appending fact to the log", e);
+        }
+        if (open.size() >= CHUNK_SIZE) {
+            seal();
+        }
+    }
+
+    /**
+     * @return the sealed chunks and a deflated copy of the open one, the log is left as is
+     */
+    public synchronized List<byte[]> chunks() {
+        List<byte[]> copy = new ArrayList<>(chunks);
+        if (open != null) {
+            copy.add(deflate(open));
+        }
+        return copy;
+    }
+
+    /**
+     * @return the sealed chunks, the log is left empty
+     */
+    public synchronized List<byte[]> drain() {
+        seal();
+        List<byte[]> drained = new ArrayList<>(chunks);
+        chunks.clear();
+        length = 0;
+        sealedBytes = 0;
+        return drained;
+    }
+
+    public void replay(List<byte[]> drained, Consumer<Fact> consumer) {
+        for (byte[] chunk : drained) {
+            try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(chunk)))) {
+                int first;
+                while ((first = in.read()) >= 0) {
+                    byte[] record = new byte[(first << 24) | (in.readUnsignedByte() << 16) | in.readUnsignedShort()];
+                    in.readFully(record);
+                    consumer.accept((Fact) marshaller.objectFromByteBuffer(record));
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                throw new IllegalStateException("Cannot replay the fact log", e);
+            }
+        }
+    }
+
+    public synchronized int length() {
+        return length;
+    }
+
+    public synchronized boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * @return the size of the log, deflated for the sealed chunks and raw for the open one
+     */
+    public synchronized long byteSize() {
+        return sealedBytes + (open != null ? open.size() : 0);
+    }
+
+    private void seal() {
+        if (open != null) {
+            byte[] chunk = deflate(open);
+            chunks.add(chunk);
+            sealedBytes += chunk.length;
+            open = null;
+        }
+    }
+
+    private static byte[] deflate(ByteArrayOutputStream records) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(records.size() / 4 + 64);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+            records.writeTo(out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot seal the fact log", e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -17,7 +17,10 @@
 
 package it.redhat.hacep.cache.session;
 
+import it.redhat.hacep.cache.transfer.StateTransferThreads;
 import it.redhat.hacep.configuration.RulesManager;
+import it.redhat.hacep.jfr.Events;
+import it.redhat.hacep.metrics.Stage;
 import it.redhat.hacep.model.Fact;
 import it.redhat.hacep.support.KieSessionUtils;
 import org.infinispan.atomic.Delta;
@@ -27,15 +30,21 @@ import org.kie.api.runtime.KieSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import static it.redhat.hacep.cache.session.JDGExternalizerIDs.HASerializerSessionID;
 import static org.infinispan.commons.util.Util.asSet;
@@ -52,14 +61,19 @@ public class HAKieSerializedSession extends HAKieSession {
 
     private String version;
     private byte[] session = null;
+    private boolean compressed;
+    private int rawSize;
     private transient long size = 0;
     private Queue<Fact> buffer = new ConcurrentLinkedQueue<>();
+    private FactLog log;
+    private transient String group;
 
     public HAKieSerializedSession(RulesManager rulesManager, Executor executor) {
         super(rulesManager, executor);
         this.rulesManager = rulesManager;
         this.executor = executor;
         this.version = rulesManager.getReleaseId().getVersion();
+        this.log = new FactLog(rulesManager.getFactMarshaller());
         LOGGER.debug(String.format("Create serialized empty session with version [%s]", this.version));
     }
 
@@ -69,18 +83,57 @@ public class HAKieSerializedSession extends HAKieSession {
         this.executor = executor;
         this.version = version;
         this.session = session;
+        this.log = new FactLog(rulesManager.getFactMarshaller());
+        if (session != null) {
+            stats.snapshot(System.currentTimeMillis(), session.length);
+        }
         LOGGER.debug(String.format("Create serialized session with version [%s]", this.version));
     }
 
     public void add(Fact f) {
+        long start = System.nanoTime();
+        rememberGroup(f);
         if (isUpgradeNeeded()) {
             rebuildSessionAndUpgrade();
         }
         buffer.offer(f);
         size++;
+        stats.inserted(System.currentTimeMillis(), stats.getFactCount());
         if (this.needToSave()) {
             this.createSnapshot();
         }
+        rulesManager.getStageTimers().record(Stage.REPLICA_ADD, start);
+    }
+
+    /**
+     * Log-only replication: the fact is only appended to the log, the session is materialized
+     * on promotion, on compaction or when the log grows beyond grid.replication.log.maxLength.
+     */
+    public void append(Fact f) {
+        long start = System.nanoTime();
+        rememberGroup(f);
+        if (isUpgradeNeeded()) {
+            rebuildSessionAndUpgrade();
+        }
+        if (!buffer.isEmpty()) {
+            waitForSnapshotToComplete();
+            while (!buffer.isEmpty()) {
+                log.append(buffer.remove());
+            }
+            size = 0;
+        }
+        log.append(f);
+        stats.inserted(System.currentTimeMillis(), stats.getFactCount());
+        if (log.length() > rulesManager.getMaxLogLength()) {
+            this.createSnapshot();
+        }
+        rulesManager.getStageTimers().record(Stage.REPLICA_ADD, start);
+    }
+
+    private void rememberGroup(Fact f) {
+        if (group == null && Events.ENABLED) {
+            group = f.extractKey().getGroup();
+        }
     }
 
     private boolean isUpgradeNeeded() {
@@ -92,6 +145,9 @@ public class HAKieSerializedSession extends HAKieSession {
             latch = new CountDownLatch(1);
             executor.execute(() -> {
                 KieSession localSession = null;
+                long start = System.nanoTime();
+                Object event = Events.begin(Events.Type.SNAPSHOT);
+                long replayed = size + log.length();
                 try {
                     if (LOGGER.isDebugEnabled()) {
                         LOGGER.debug(String.format("Start consuming buffer: Size [%s] - Buffer [%s]", getSessionSize(), size));
@@ -100,7 +156,9 @@ public class HAKieSerializedSession extends HAKieSession {
                         rebuildSessionAndUpgrade();
                     }
                     localSession = buildSession();
-                    session = rulesManager.serialize(localSession);
+                    byte[] snapshot = rulesManager.serialize(localSession);
+                    setSnapshot(snapshot);
+                    stats.snapshot(System.currentTimeMillis(), snapshot.length);
                     if (LOGGER.isDebugEnabled()) {
                         LOGGER.debug(String.format("Buffer empty: Size [%s] - Buffer [%s]", getSessionSize(), size));
                     }
@@ -110,6 +168,8 @@ public class HAKieSerializedSession extends HAKieSession {
                     saving.set(false);
                     latch.countDown();
                     KieSessionUtils.dispose(localSession);
+                    rulesManager.getStageTimers().record(Stage.REPLICA_SNAPSHOT, start);
+                    Events.commit(event, group, version, replayed, getSessionSize(), 0);
                 }
             });
         }
@@ -121,7 +181,20 @@ public class HAKieSerializedSession extends HAKieSession {
             rebuildSessionAndUpgrade();
         }
         KieSession session = buildSession();
-        return new HAKieSession(rulesManager, executor, session);
+        return carryStats(new HAKieSession(rulesManager, executor, session));
+    }
+
+    public HAKieStandbySession toStandby() {
+        this.waitForSnapshotToComplete();
+        if (isUpgradeNeeded()) {
+            rebuildSessionAndUpgrade();
+        }
+        KieSession localSession = rulesManager.deserializeOrCreate(snapshotBytes());
+        rulesManager.registerReplayChannels(localSession);
+        if (!buffer.isEmpty() || !log.isEmpty()) {
+            replayBuffer(localSession);
+        }
+        return carryStats(new HAKieStandbySession(rulesManager, executor, localSession));
     }
 
     public void waitForSnapshotToComplete() {
@@ -141,16 +214,18 @@ public class HAKieSerializedSession extends HAKieSession {
     private void rebuildSessionAndUpgrade() {
         KieContainer kieContainer = null;
         KieSession kieSession = null;
+        Object event = Events.begin(Events.Type.UPGRADE);
         try {
             kieContainer = rulesManager.newKieContainer(this.version);
-            kieSession = rulesManager.deserializeOrCreate(kieContainer, this.session);
+            kieSession = rulesManager.deserializeOrCreate(kieContainer, snapshotBytes());
             replayFacts(kieSession);
             kieContainer.updateToVersion(rulesManager.getReleaseId());
-            this.session = rulesManager.serialize(kieContainer, kieSession);
+            setSnapshot(rulesManager.serialize(kieContainer, kieSession));
             this.version = rulesManager.getReleaseId().getVersion();
         } finally {
             KieSessionUtils.dispose(kieSession);
             KieSessionUtils.dispose(kieContainer);
+            Events.commit(event, group, this.version, size + log.length(), getSessionSize(), 0);
         }
     }
 
@@ -158,25 +233,28 @@ public class HAKieSerializedSession extends HAKieSession {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug(String.format("Rebuild session from serialized byte array. Buffer size [%s]", getSessionSize()));
         }
-        KieSession localSession = rulesManager.deserializeOrCreate(this.session);
+        KieSession localSession = rulesManager.deserializeOrCreate(snapshotBytes());
         return replayFacts(localSession);
     }
 
     private KieSession replayFacts(KieSession session) {
-        if (!buffer.isEmpty()) {
+        if (!buffer.isEmpty() || !log.isEmpty()) {
             rulesManager.registerReplayChannels(session);
-            while (!buffer.isEmpty()) {
-                Fact fact = buffer.remove();
-                KieSessionUtils.advanceClock(session, fact);
-                session.insert(fact);
-            }
-            size = 0;
-            session.fireAllRules();
+            replayBuffer(session);
         }
         rulesManager.registerChannels(session);
         return session;
     }
 
+    private void replayBuffer(KieSession session) {
+        log.replay(log.drain(), fact -> KieSessionUtils.insert(session, fact));
+        while (!buffer.isEmpty()) {
+            KieSessionUtils.insert(session, buffer.remove());
+        }
+        size = 0;
+        session.fireAllRules();
+    }
+
     @Override
     public void insert(Fact fact) {
         throw new IllegalStateException("Insert a new fact is not expected on HAKieSerializedSession");
@@ -197,14 +275,109 @@ public class HAKieSerializedSession extends HAKieSession {
         return true;
     }
 
+    @Override
+    public boolean needsRebuild() {
+        return true;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
     public byte[] getSerializedSession() {
-        return this.session;
+        return snapshotBytes();
+    }
+
+    public synchronized int getSessionSize() {
+        if (compressed) {
+            return rawSize;
+        }
+        return this.session != null ? this.session.length : 0;
     }
 
-    public int getSessionSize() {
+    /**
+     * @return bytes of the snapshot held in memory, compressed or not
+     */
+    public synchronized int getMemorySize() {
         return this.session != null ? this.session.length : 0;
     }
 
+    public synchronized boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Deflates the snapshot held in memory, until the next snapshot replaces it. Readers of the
+     * snapshot inflate a copy, so the session stays compressed until it is rebuilt or evicted.
+     *
+     * @return false if there was nothing to compress or a snapshot is in progress
+     */
+    public synchronized boolean compress() {
+        if (compressed || session == null || saving.get()) {
+            return false;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(session);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(session.length / 4 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            if (out.size() >= session.length) {
+                return false;
+            }
+            rawSize = session.length;
+            session = out.toByteArray();
+            compressed = true;
+            return true;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private synchronized void setSnapshot(byte[] snapshot) {
+        this.session = snapshot;
+        this.compressed = false;
+    }
+
+    private synchronized byte[] snapshotBytes() {
+        if (!compressed) {
+            return session;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(session);
+            byte[] raw = new byte[rawSize];
+            int read = 0;
+            while (read < rawSize) {
+                int inflated = inflater.inflate(raw, read, rawSize - read);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IllegalStateException("Truncated compressed session");
+                }
+                read += inflated;
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted compressed session", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public long getBufferedFacts() {
+        return this.size + log.length();
+    }
+
+    public int getLoggedFacts() {
+        return log.length();
+    }
+
+    public long getLogSize() {
+        return log.byteSize();
+    }
+
     public static class HASerializedSessionExternalizer implements AdvancedExternalizer<HAKieSerializedSession> {
 
         private final HAKieSessionBuilder builder;
@@ -225,25 +398,51 @@ public class HAKieSerializedSession extends HAKieSession {
 
         @Override
         public void writeObject(ObjectOutput output, HAKieSerializedSession object) throws IOException {
-            output.writeInt(object.getSessionSize());
-            if (object.session != null) {
-                output.write(object.session);
+            byte[] snapshot = object.snapshotBytes();
+            int len = snapshot != null ? snapshot.length : 0;
+            StateTransferThreads.sent(len);
+            writeFormat(output);
+            output.writeInt(len);
+            if (snapshot != null) {
+                output.write(snapshot);
                 output.writeUTF(object.version);
             }
             output.writeObject(object.buffer);
+            List<byte[]> chunks = object.log.chunks();
+            output.writeInt(object.log.length());
+            output.writeInt(chunks.size());
+            for (byte[] chunk : chunks) {
+                output.writeInt(chunk.length);
+                output.write(chunk);
+            }
+            writeTimestamps(output, object);
         }
 
         @Override
         public HAKieSerializedSession readObject(ObjectInput input) throws IOException, ClassNotFoundException {
             HAKieSerializedSession object = builder.buildSerialized();
-            int len = input.readInt();
+            int first = input.readUnsignedByte();
+            int format = readFormat(first);
+            int len = format == UNVERSIONED ? readUnversionedLength(first, input) : input.readInt();
             if (len > 0) {
                 object.session = new byte[len];
-                input.read(object.session);
+                input.readFully(object.session);
                 object.version = input.readUTF();
             }
             object.buffer = (Queue<Fact>) input.readObject();
-            return object;
+            object.size = object.buffer.size();
+            if (format >= FACT_LOG_FORMAT) {
+                int logLength = input.readInt();
+                int chunkCount = input.readInt();
+                List<byte[]> chunks = new ArrayList<>(chunkCount);
+                for (int i = 0; i < chunkCount; i++) {
+                    byte[] chunk = new byte[input.readInt()];
+                    input.readFully(chunk);
+                    chunks.add(chunk);
+                }
+                object.log = new FactLog(object.rulesManager.getFactMarshaller(), chunks, logLength);
+            }
+            return readTimestamps(input, format, object);
         }
     }
 }
@@ -17,7 +17,12 @@
 
 package it.redhat.hacep.cache.session;
 
+import it.redhat.hacep.cache.transfer.StateTransferThreads;
 import it.redhat.hacep.configuration.RulesManager;
+import it.redhat.hacep.jfr.Events;
+import it.redhat.hacep.metrics.Stage;
+import it.redhat.hacep.metrics.StageTimers;
+import it.redhat.hacep.model.ClockTick;
 import it.redhat.hacep.model.Fact;
 import it.redhat.hacep.support.KieSessionUtils;
 import org.infinispan.atomic.Delta;
@@ -44,6 +49,8 @@ public class HAKieSession implements DeltaAware {
 
     private Fact lastFact;
     private KieSession session;
+    private boolean fullSnapshotRequested = false;
+    SessionStats stats = new SessionStats();
 
     public HAKieSession(RulesManager rulesManager, Executor executor) {
         this.rulesManager = rulesManager;
@@ -56,10 +63,17 @@ public class HAKieSession implements DeltaAware {
     }
 
     public final HAKieSerializedSession wrapWithSerializedSession() {
-        if (session != null) {
-            return new HAKieSerializedSession(rulesManager, executor, rulesManager.getReleaseId().getVersion(), this.toByteArray());
-        }
-        return new HAKieSerializedSession(rulesManager, executor);
+        HAKieSerializedSession serialized = session != null
+                ? new HAKieSerializedSession(rulesManager, executor, rulesManager.getReleaseId().getVersion(), this.toByteArray())
+                : new HAKieSerializedSession(rulesManager, executor);
+        return carryStats(serialized);
+    }
+
+    /**
+     * A serialized session holding the given snapshot, with the rules and executor of this one.
+     */
+    final HAKieSerializedSession serializedSnapshot(String version, byte[] snapshot) {
+        return new HAKieSerializedSession(rulesManager, executor, version, snapshot);
     }
 
     public void insert(Fact fact) {
@@ -68,17 +82,64 @@ public class HAKieSession implements DeltaAware {
             rulesManager.registerChannels(session);
         }
         lastFact = fact;
-        KieSessionUtils.advanceClock(session, fact);
-        session.insert(fact);
-        session.fireAllRules();
+        StageTimers timers = rulesManager.getStageTimers();
+        Object event = Events.begin(Events.Type.INSERT);
+        long start = System.nanoTime();
+        KieSessionUtils.insert(session, fact);
+        timers.record(Stage.INSERT, start);
+        String group = event != null ? fact.extractKey().getGroup() : null;
+        Events.commit(event, group, null, 1, 0, 0);
+
+        event = Events.begin(Events.Type.FIRE_ALL_RULES);
+        start = System.nanoTime();
+        int fired = session.fireAllRules();
+        timers.record(Stage.FIRE_ALL_RULES, start);
+        if (event != null) {
+            Events.commit(event, group, null, session.getFactCount(), 0, fired);
+        }
+        if (!(fact instanceof ClockTick)) {
+            stats.inserted(System.currentTimeMillis(), session.getFactCount());
+        }
+    }
+
+    /**
+     * Advances the clock of a live session and fires its rules, replicating the tick with the next put.
+     *
+     * @return false if the clock is already at or past the tick, there is nothing to replicate
+     */
+    public boolean tick(ClockTick tick) {
+        if (session == null || session.getSessionClock().getCurrentTime() >= tick.getInstant().toEpochMilli()) {
+            return false;
+        }
+        insert(tick);
+        return true;
     }
 
     private byte[] toByteArray() {
-        return rulesManager.serialize(session);
+        byte[] buffer = rulesManager.serialize(session);
+        stats.snapshot(System.currentTimeMillis(), buffer.length);
+        return buffer;
     }
 
+    /**
+     * Ships the whole serialized session to the backups on the next put, instead of the last fact.
+     * Drools cannot diff a session, so this costs a full serialization and as many bytes on the wire.
+     */
+    public void shipFullSnapshot() {
+        if (session != null) {
+            fullSnapshotRequested = true;
+        }
+    }
+
+    /**
+     * The last inserted fact, replayed by the backups, or the full serialized session when
+     * {@link #shipFullSnapshot()} was called since the last put.
+     */
     @Override
     public Delta delta() {
+        if (fullSnapshotRequested) {
+            return new HAKieSessionFullSnapshot(rulesManager.getReleaseId().getVersion(), this.toByteArray());
+        }
         if (lastFact != null) {
             return new HAKieSessionDeltaFact(lastFact);
         }
@@ -88,6 +149,7 @@ public class HAKieSession implements DeltaAware {
     @Override
     public void commit() {
         lastFact = null;
+        fullSnapshotRequested = false;
     }
 
     @Override
@@ -105,10 +167,91 @@ public class HAKieSession implements DeltaAware {
         return false;
     }
 
+    /**
+     * Whether this copy must be rebuilt before it can take inserts as a primary: true for every
+     * backup copy, serialized or hot standby.
+     */
+    public boolean needsRebuild() {
+        return false;
+    }
+
+    protected KieSession getKieSession() {
+        return session;
+    }
+
+    protected KieSession releaseKieSession() {
+        KieSession released = session;
+        session = null;
+        return released;
+    }
+
     public HAKieSession rebuild() {
         throw new IllegalStateException("Cannot rebuild an HAKieSession");
     }
 
+    public SessionStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Hands the statistics of this session over to the session replacing it on this node.
+     */
+    final <T extends HAKieSession> T carryStats(T next) {
+        next.stats = stats;
+        return next;
+    }
+
+    /**
+     * Version of the serialized forms of a session, written first with the high bit set. The unversioned
+     * form is the original one, without fact log nor lifecycle timestamps: it starts with the high byte of
+     * a non-negative length instead. Version 1 appends the fact log to the serialized session and the
+     * lifecycle timestamps to both forms.
+     */
+    static final int FORMAT_VERSION = 1;
+    static final int UNVERSIONED = 0;
+    static final int FACT_LOG_FORMAT = 1;
+    private static final int VERSION_FLAG = 0x80;
+
+    static void writeFormat(ObjectOutput output) throws IOException {
+        output.writeByte(VERSION_FLAG | FORMAT_VERSION);
+    }
+
+    /**
+     * @param first the first byte of the serialized form, unsigned
+     */
+    static int readFormat(int first) throws IOException {
+        if ((first & VERSION_FLAG) == 0) {
+            return UNVERSIONED;
+        }
+        int version = first & ~VERSION_FLAG;
+        if (version > FORMAT_VERSION) {
+            throw new IOException("Unknown session format version [" + version + "]");
+        }
+        return version;
+    }
+
+    /**
+     * @return the length starting the unversioned form, whose high byte was read as the format
+     */
+    static int readUnversionedLength(int first, ObjectInput input) throws IOException {
+        return (first << 24) | (input.readUnsignedByte() << 16) | input.readUnsignedShort();
+    }
+
+    /**
+     * Lifecycle timestamps, appended to every serialized form of a session since {@link #FORMAT_VERSION} 1.
+     */
+    static void writeTimestamps(ObjectOutput output, HAKieSession session) throws IOException {
+        output.writeLong(session.stats.getCreated());
+        output.writeLong(session.stats.getLastInsert());
+    }
+
+    static <T extends HAKieSession> T readTimestamps(ObjectInput input, int version, T session) throws IOException {
+        if (version >= 1) {
+            session.stats.restore(input.readLong(), input.readLong());
+        }
+        return session;
+    }
+
     public static class HASessionExternalizer implements AdvancedExternalizer<HAKieSession> {
 
         private final HAKieSessionBuilder builder;
@@ -119,7 +262,7 @@ public class HAKieSession implements DeltaAware {
 
         @Override
         public Set<Class<? extends HAKieSession>> getTypeClasses() {
-            return asSet(HAKieSession.class);
+            return asSet(HAKieSession.class, HAKieStandbySession.class);
         }
 
         @Override
@@ -129,25 +272,31 @@ public class HAKieSession implements DeltaAware {
 
         @Override
         public void writeObject(ObjectOutput output, HAKieSession object) throws IOException {
+            writeFormat(output);
             if (object.session != null) {
                 byte[] buffer = object.toByteArray();
+                StateTransferThreads.sent(buffer.length);
                 output.writeInt(buffer.length);
                 output.write(buffer);
                 output.writeUTF(builder.getVersion());
             } else {
                 output.writeInt(0);
             }
+            writeTimestamps(output, object);
         }
+
         @Override
         public HAKieSession readObject(ObjectInput input) throws IOException, ClassNotFoundException {
-            int len = input.readInt();
+            int first = input.readUnsignedByte();
+            int format = readFormat(first);
+            int len = format == UNVERSIONED ? readUnversionedLength(first, input) : input.readInt();
             if (len > 0) {
                 byte[] buffer = new byte[len];
-                input.read(buffer);
+                input.readFully(buffer);
                 String version = input.readUTF();
-                return builder.buildSerialized(version, buffer);
+                return readTimestamps(input, format, builder.buildSerialized(version, buffer));
             } else {
-                return builder.buildSerialized();
+                return readTimestamps(input, format, builder.buildSerialized());
             }
         }
 
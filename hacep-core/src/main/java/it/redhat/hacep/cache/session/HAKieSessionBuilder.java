@@ -18,6 +18,8 @@
 package it.redhat.hacep.cache.session;
 
 import it.redhat.hacep.configuration.RulesManager;
+import it.redhat.hacep.metrics.StageTimers;
+import org.infinispan.commons.marshall.StreamingMarshaller;
 import org.kie.api.runtime.KieSession;
 
 import java.util.concurrent.ExecutorService;
@@ -26,10 +28,16 @@ public class HAKieSessionBuilder {
 
     private final RulesManager rulesManager;
     private final ExecutorService executorService;
+    private final ReplicationPolicy replicationPolicy;
 
     public HAKieSessionBuilder(RulesManager rulesManager, ExecutorService executorService) {
+        this(rulesManager, executorService, new ReplicationPolicy());
+    }
+
+    public HAKieSessionBuilder(RulesManager rulesManager, ExecutorService executorService, ReplicationPolicy replicationPolicy) {
         this.rulesManager = rulesManager;
         this.executorService = executorService;
+        this.replicationPolicy = replicationPolicy;
     }
 
     public HAKieSession build() {
@@ -48,6 +56,26 @@ public class HAKieSessionBuilder {
         return new HAKieSerializedSession(rulesManager, executorService, version, buffer);
     }
 
+    public HAKieStandbySession buildStandby(KieSession session) {
+        return new HAKieStandbySession(rulesManager, executorService, session);
+    }
+
+    /**
+     * Marshals the facts logged by log-only backups with the given marshaller, which the grid sets to its
+     * own before any session cache starts.
+     */
+    public void setFactMarshaller(StreamingMarshaller marshaller) {
+        rulesManager.setFactMarshaller(marshaller);
+    }
+
+    public ReplicationMode getReplicationMode(String group) {
+        return replicationPolicy.modeFor(group);
+    }
+
+    public StageTimers getStageTimers() {
+        return rulesManager.getStageTimers();
+    }
+
     public String getVersion() {
         return rulesManager.getReleaseId().getVersion();
     }
@@ -17,7 +17,9 @@
 
 package it.redhat.hacep.cache.session;
 
+import it.redhat.hacep.jfr.Events;
 import it.redhat.hacep.model.Fact;
+import it.redhat.hacep.model.Key;
 import org.infinispan.atomic.Delta;
 import org.infinispan.atomic.DeltaAware;
 import org.infinispan.commons.marshall.AdvancedExternalizer;
@@ -34,9 +36,15 @@ public class HAKieSessionDeltaFact implements Delta {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(HAKieSessionDeltaFact.class);
 
+    private final HAKieSessionBuilder builder;
     private final Fact fact;
 
     public HAKieSessionDeltaFact(Fact fact) {
+        this(null, fact);
+    }
+
+    public HAKieSessionDeltaFact(HAKieSessionBuilder builder, Fact fact) {
+        this.builder = builder;
         this.fact = fact;
     }
 
@@ -46,6 +54,22 @@ public class HAKieSessionDeltaFact implements Delta {
             throw new IllegalStateException();
         }
 
+        Object event = Events.begin(Events.Type.DELTA_MERGE);
+        DeltaAware merged = doMerge(d);
+        if (event != null) {
+            Key key = fact.extractKey();
+            Events.commit(event, key != null ? key.getGroup() : null, null, 1, 0, 0);
+        }
+        return merged;
+    }
+
+    private DeltaAware doMerge(DeltaAware d) {
+        if (replicationMode() == ReplicationMode.HOT_STANDBY) {
+            HAKieStandbySession standby = toStandby(d);
+            standby.apply(fact);
+            return standby;
+        }
+
         HAKieSerializedSession haSession;
         if (HAKieSerializedSession.class.isAssignableFrom(d.getClass())) {
             haSession = (HAKieSerializedSession) d;
@@ -57,16 +81,54 @@ public class HAKieSessionDeltaFact implements Delta {
                 throw new IllegalArgumentException("Class [" + d.getClass() + "]");
             }
         }
-        haSession.add(fact);
+        if (replicationMode() == ReplicationMode.LOG_ONLY) {
+            haSession.append(fact);
+        } else {
+            haSession.add(fact);
+        }
         return haSession;
     }
 
+    private ReplicationMode replicationMode() {
+        if (builder == null) {
+            return ReplicationMode.BUFFERED;
+        }
+        Key key = fact.extractKey();
+        return builder.getReplicationMode(key != null ? key.getGroup() : null);
+    }
+
+    private HAKieStandbySession toStandby(DeltaAware d) {
+        if (HAKieStandbySession.class.isAssignableFrom(d.getClass())) {
+            return (HAKieStandbySession) d;
+        }
+        if (HAKieSerializedSession.class.isAssignableFrom(d.getClass())) {
+            LOGGER.debug("Promote serialized session to hot standby");
+            return ((HAKieSerializedSession) d).toStandby();
+        }
+        if (HAKieSession.class.isAssignableFrom(d.getClass())) {
+            HAKieSession live = (HAKieSession) d;
+            return live.carryStats(builder.buildStandby(live.releaseKieSession()));
+        }
+        // This should never happen
+        throw new IllegalArgumentException("Class [" + d.getClass() + "]");
+    }
+
     public Fact getFact() {
         return fact;
     }
 
     public static class HASessionDeltaFactExternalizer implements AdvancedExternalizer<HAKieSessionDeltaFact> {
 
+        private final HAKieSessionBuilder builder;
+
+        public HASessionDeltaFactExternalizer() {
+            this(null);
+        }
+
+        public HASessionDeltaFactExternalizer(HAKieSessionBuilder builder) {
+            this.builder = builder;
+        }
+
         @Override
         public Set<Class<? extends HAKieSessionDeltaFact>> getTypeClasses() {
             return Util.asSet(HAKieSessionDeltaFact.class);
@@ -85,7 +147,7 @@ public class HAKieSessionDeltaFact implements Delta {
         @Override
         public HAKieSessionDeltaFact readObject(ObjectInput input) throws IOException, ClassNotFoundException {
             Object o = input.readObject();
-            return new HAKieSessionDeltaFact((Fact) o);
+            return new HAKieSessionDeltaFact(builder, (Fact) o);
         }
     }
 }
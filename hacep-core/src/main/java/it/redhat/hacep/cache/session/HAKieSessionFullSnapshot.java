@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import it.redhat.hacep.jfr.Events;
+import org.infinispan.atomic.Delta;
+import org.infinispan.atomic.DeltaAware;
+import org.infinispan.commons.marshall.AdvancedExternalizer;
+import org.infinispan.commons.util.Util;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Set;
+
+/**
+ * Not a delta of the session state but the whole serialized session, shipped by a live session to its
+ * backups to replace their buffered copy: they then have no facts to replay when promoted.
+ */
+public class HAKieSessionFullSnapshot implements Delta {
+
+    private final HAKieSessionBuilder builder;
+    private final String version;
+    private final byte[] session;
+
+    public HAKieSessionFullSnapshot(String version, byte[] session) {
+        this(null, version, session);
+    }
+
+    public HAKieSessionFullSnapshot(HAKieSessionBuilder builder, String version, byte[] session) {
+        this.builder = builder;
+        this.version = version;
+        this.session = session;
+    }
+
+    @Override
+    public DeltaAware merge(DeltaAware d) {
+        Object event = Events.begin(Events.Type.DELTA_MERGE);
+        HAKieSerializedSession merged;
+        if (d != null && HAKieSession.class.isAssignableFrom(d.getClass())) {
+            HAKieSession replaced = (HAKieSession) d;
+            merged = replaced.carryStats(replaced.serializedSnapshot(version, session));
+            replaced.dispose();
+        } else if (builder != null) {
+            merged = builder.buildSerialized(version, session);
+        } else {
+            throw new IllegalStateException("No session to merge the snapshot into and no builder to create one");
+        }
+        Events.commit(event, null, version, 0, session != null ? session.length : 0, 0);
+        return merged;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public byte[] getSession() {
+        return session;
+    }
+
+    public static class HASessionFullSnapshotExternalizer implements AdvancedExternalizer<HAKieSessionFullSnapshot> {
+
+        private final HAKieSessionBuilder builder;
+
+        public HASessionFullSnapshotExternalizer(HAKieSessionBuilder builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public Set<Class<? extends HAKieSessionFullSnapshot>> getTypeClasses() {
+            return Util.asSet(HAKieSessionFullSnapshot.class);
+        }
+
+        @Override
+        public Integer getId() {
+            return JDGExternalizerIDs.HASessionFullSnapshotID.getId();
+        }
+
+        @Override
+        public void writeObject(ObjectOutput output, HAKieSessionFullSnapshot object) throws IOException {
+            output.writeUTF(object.version);
+            output.writeInt(object.session.length);
+            output.write(object.session);
+        }
+
+        @Override
+        public HAKieSessionFullSnapshot readObject(ObjectInput input) throws IOException, ClassNotFoundException {
+            String version = input.readUTF();
+            byte[] session = new byte[input.readInt()];
+            input.readFully(session);
+            return new HAKieSessionFullSnapshot(builder, version, session);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import it.redhat.hacep.configuration.RulesManager;
+import it.redhat.hacep.model.ClockTick;
+import it.redhat.hacep.model.Fact;
+import it.redhat.hacep.support.KieSessionUtils;
+import org.infinispan.atomic.Delta;
+import org.kie.api.runtime.KieSession;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Backup copy of a session kept live in lock-step with its primary. Replicated facts are applied
+ * immediately with the replay channels registered; promotion only swaps the channels.
+ */
+public class HAKieStandbySession extends HAKieSession {
+
+    private final RulesManager rulesManager;
+    private final Executor executor;
+
+    public HAKieStandbySession(RulesManager rulesManager, Executor executor, KieSession session) {
+        super(rulesManager, executor, session);
+        this.rulesManager = rulesManager;
+        this.executor = executor;
+        rulesManager.registerReplayChannels(session);
+    }
+
+    public void apply(Fact fact) {
+        KieSession session = getKieSession();
+        KieSessionUtils.insert(session, fact);
+        session.fireAllRules();
+        if (!(fact instanceof ClockTick)) {
+            stats.inserted(System.currentTimeMillis(), session.getFactCount());
+        }
+    }
+
+    @Override
+    public HAKieSession rebuild() {
+        KieSession session = releaseKieSession();
+        rulesManager.registerChannels(session);
+        return carryStats(new HAKieSession(rulesManager, executor, session));
+    }
+
+    @Override
+    public void insert(Fact fact) {
+        throw new IllegalStateException("Insert a new fact is not expected on HAKieStandbySession");
+    }
+
+    @Override
+    public Delta delta() {
+        throw new IllegalStateException("Delta not expected on HAKieStandbySession");
+    }
+
+    @Override
+    public void commit() {
+        throw new IllegalStateException("Delta not expected on HAKieStandbySession");
+    }
+
+    @Override
+    public boolean needsRebuild() {
+        return true;
+    }
+}
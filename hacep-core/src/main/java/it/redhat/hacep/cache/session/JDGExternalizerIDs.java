@@ -22,6 +22,7 @@ public enum JDGExternalizerIDs {
     HASessionID(30),
     HASessionDeltaID(31),
     HASessionDeltaFactID(32),
+    HASessionFullSnapshotID(33),
     HASerializerSessionID(35);
 
     private int id;
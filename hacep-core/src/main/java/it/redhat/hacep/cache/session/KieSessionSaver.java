@@ -18,36 +18,63 @@
 package it.redhat.hacep.cache.session;
 
 import it.redhat.hacep.configuration.RulesManager;
+import it.redhat.hacep.jfr.Events;
+import it.redhat.hacep.metrics.Stage;
+import it.redhat.hacep.metrics.StageTimers;
+import it.redhat.hacep.model.ClockTick;
 import it.redhat.hacep.model.Fact;
 import it.redhat.hacep.model.Key;
 import org.infinispan.Cache;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.context.Flag;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.remoting.transport.Address;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 
 public class KieSessionSaver {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(KieSessionSaver.class);
 
-    private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ReentrantLock> locks = new ConcurrentHashMap<>();
 
     private final HAKieSessionBuilder haKieSessionBuilder;
 
     private final Cache<String, Object> sessionCache;
 
+    private final LongAdder insertedFacts = new LongAdder();
+
+    private final LongAdder prefetchedSessions = new LongAdder();
+
+    private final LongAdder tickedSessions = new LongAdder();
+
+    private final LongAccumulator watermark = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    private final StageTimers stageTimers;
+
     public KieSessionSaver(HAKieSessionBuilder haKieSessionBuilder, Cache<String, Object> sessionCache) {
         this.haKieSessionBuilder = haKieSessionBuilder;
         this.sessionCache = sessionCache;
+        this.stageTimers = haKieSessionBuilder.getStageTimers();
     }
 
     public void insert(Key key, Fact fact) {
         String sessionKey = key.getGroup();
 
         if (LOGGER.isDebugEnabled()) LOGGER.debug("Getting session for fact: " + fact + ", key: " + sessionKey);
-        synchronized (getLock(sessionKey)) {
+        long start = System.nanoTime();
+        ReentrantLock lock = lock(sessionKey);
+        try {
+            stageTimers.record(Stage.LOCK_WAIT, start);
             HAKieSession haKieSession;
             Object value = sessionCache.get(sessionKey);
             if (value == null) {
@@ -58,33 +85,266 @@ public class KieSessionSaver {
                 sessionCache.put(sessionKey, haKieSession);
             } else {
                 haKieSession = (HAKieSession) value;
-                if (haKieSession.isSerialized()) {
+                if (haKieSession.needsRebuild()) {
+                    Object event = Events.begin(Events.Type.REBUILD);
+                    long replayed = 0;
+                    long bytes = 0;
+                    if (event != null && haKieSession instanceof HAKieSerializedSession) {
+                        replayed = ((HAKieSerializedSession) haKieSession).getBufferedFacts();
+                        bytes = ((HAKieSerializedSession) haKieSession).getSessionSize();
+                    }
+                    start = System.nanoTime();
                     haKieSession = haKieSession.rebuild();
+                    stageTimers.record(Stage.REBUILD, start);
+                    Events.commit(event, sessionKey, null, replayed, bytes, 0);
                 }
             }
 
             if (LOGGER.isDebugEnabled()) LOGGER.debug("Insert fact: " + fact);
             haKieSession.insert(fact);
+            insertedFacts.increment();
+            watermark.accumulate(fact.getInstant().toEpochMilli());
 
             if (LOGGER.isDebugEnabled()) LOGGER.debug("Put back HAKieSession in the grid for key: " + sessionKey);
 
+            start = System.nanoTime();
             sessionCache.put(sessionKey, haKieSession);
+            stageTimers.record(Stage.SESSION_PUT, start);
             if (LOGGER.isDebugEnabled()) LOGGER.debug("Done saving HAKieSession for key: " + sessionKey);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ships a fresh full snapshot of the given sessions to their backups, so that the new primaries
+     * do not have to replay the buffered facts. Sessions are skipped once the deadline is reached.
+     *
+     * @return the number of snapshots shipped
+     */
+    public int handoff(Collection<String> sessionKeys, long deadline) {
+        int shipped = 0;
+        for (String sessionKey : sessionKeys) {
+            if (System.currentTimeMillis() > deadline) {
+                LOGGER.warn(String.format("Handoff timeout, [%d] of [%d] sessions shipped", shipped, sessionKeys.size()));
+                break;
+            }
+            ReentrantLock lock = lock(sessionKey);
+            try {
+                Object value = sessionCache.get(sessionKey);
+                if (value == null) {
+                    continue;
+                }
+                HAKieSession haKieSession = (HAKieSession) value;
+                if (haKieSession.needsRebuild()) {
+                    if (haKieSession instanceof HAKieSerializedSession
+                            && ((HAKieSerializedSession) haKieSession).getBufferedFacts() == 0) {
+                        continue;
+                    }
+                    haKieSession = haKieSession.rebuild();
+                }
+                haKieSession.shipFullSnapshot();
+                sessionCache.put(sessionKey, haKieSession);
+                shipped++;
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info(String.format("Handoff complete, [%d] snapshots shipped", shipped));
+        }
+        return shipped;
+    }
+
+    /**
+     * Evicts a session held by this node to the cache store, waiting for any insert in progress.
+     *
+     * @return false if the session was not in memory
+     */
+    public boolean evict(String sessionKey) {
+        ReentrantLock lock = lock(sessionKey);
+        try {
+            if (!sessionCache.getAdvancedCache().getDataContainer().containsKey(sessionKey)) {
+                return false;
+            }
+            sessionCache.evict(sessionKey);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces a live session held by this node with its compressed snapshot, waiting for any insert in
+     * progress. The change is local: backups keep their copy and the next insert rebuilds the session.
+     *
+     * @return false if the session was not live in memory
+     */
+    public boolean demote(String sessionKey) {
+        ReentrantLock lock = lock(sessionKey);
+        try {
+            InternalCacheEntry<String, Object> entry = sessionCache.getAdvancedCache().getDataContainer().peek(sessionKey);
+            if (entry == null || entry.getValue() == null || entry.getValue().getClass() != HAKieSession.class) {
+                return false;
+            }
+            HAKieSession haKieSession = (HAKieSession) entry.getValue();
+            HAKieSerializedSession serialized = haKieSession.wrapWithSerializedSession();
+            serialized.compress();
+            sessionCache.getAdvancedCache()
+                    .withFlags(Flag.CACHE_MODE_LOCAL, Flag.SKIP_CACHE_STORE, Flag.IGNORE_RETURN_VALUES)
+                    .put(sessionKey, serialized);
+            haKieSession.dispose();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Materializes the fact log of a log-only backup held by this node into a fresh snapshot, waiting for any
+     * insert in progress.
+     *
+     * @return false if the session was not a backup in memory with logged facts
+     */
+    public boolean compact(String sessionKey) {
+        ReentrantLock lock = lock(sessionKey);
+        try {
+            InternalCacheEntry<String, Object> entry = sessionCache.getAdvancedCache().getDataContainer().peek(sessionKey);
+            if (entry == null || !(entry.getValue() instanceof HAKieSerializedSession)
+                    || ((HAKieSerializedSession) entry.getValue()).getLoggedFacts() == 0) {
+                return false;
+            }
+            HAKieSerializedSession session = (HAKieSerializedSession) entry.getValue();
+            session.createSnapshot();
+            session.waitForSnapshotToComplete();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rebuilds a session ahead of its next fact, so that the insert finds it live. Only the primary owner
+     * prefetches, and only a session already in its memory: passivated sessions are activated by their insert.
+     * The rebuilt session is put locally, backups keep their copy.
+     *
+     * @return false if this node is not the primary owner, or the session was already live or is not in memory
+     */
+    public boolean prefetch(String sessionKey) {
+        if (!isLocalPrimary(sessionKey)) {
+            return false;
+        }
+        ReentrantLock lock = lock(sessionKey);
+        try {
+            InternalCacheEntry<String, Object> entry = sessionCache.getAdvancedCache().getDataContainer().peek(sessionKey);
+            if (entry == null || !(entry.getValue() instanceof HAKieSerializedSession)) {
+                return false;
+            }
+            long start = System.nanoTime();
+            HAKieSession haKieSession = ((HAKieSession) entry.getValue()).rebuild();
+            stageTimers.record(Stage.REBUILD, start);
+            sessionCache.getAdvancedCache()
+                    .withFlags(Flag.CACHE_MODE_LOCAL, Flag.SKIP_CACHE_STORE, Flag.IGNORE_RETURN_VALUES)
+                    .put(sessionKey, haKieSession);
+            prefetchedSessions.increment();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
 
+    private boolean isLocalPrimary(String sessionKey) {
+        DistributionManager distributionManager = sessionCache.getAdvancedCache().getDistributionManager();
+        Address address = sessionCache.getCacheManager().getAddress();
+        return distributionManager == null || address == null || address.equals(distributionManager.getPrimaryLocation(sessionKey));
+    }
+
+    /**
+     * Removes a session from the grid, its backups and the cache store, waiting for any insert in progress.
+     * The session is read again under its lock, activating it if it is in the cache store, and removed only
+     * if the given predicate still accepts it: the predicate may archive the session before it goes.
+     *
+     * @return false if the session does not exist or was kept
+     */
+    public boolean expire(String sessionKey, Predicate<HAKieSession> expired) {
+        ReentrantLock lock = lock(sessionKey);
+        try {
+            Object value = sessionCache.get(sessionKey);
+            if (!(value instanceof HAKieSession) || !expired.test((HAKieSession) value)) {
+                return false;
+            }
+            sessionCache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).remove(sessionKey);
+            ((HAKieSession) value).dispose();
+            // the lock goes with the session, so that the map only holds the groups still around
+            locks.remove(sessionKey, lock);
+            return true;
+        } finally {
+            lock.unlock();
         }
     }
 
+    /**
+     * Advances the clock of a live session held by this node to the given time and fires its rules, waiting
+     * for any insert in progress. The tick is replicated to the backups as a {@link ClockTick} fact.
+     *
+     * @return false if the session was not live in memory or its clock was already there
+     */
+    public boolean tick(String sessionKey, long time) {
+        ReentrantLock lock = lock(sessionKey);
+        try {
+            InternalCacheEntry<String, Object> entry = sessionCache.getAdvancedCache().getDataContainer().peek(sessionKey);
+            if (entry == null || entry.getValue() == null || entry.getValue().getClass() != HAKieSession.class) {
+                return false;
+            }
+            HAKieSession haKieSession = (HAKieSession) entry.getValue();
+            if (!haKieSession.tick(new ClockTick(sessionKey, time))) {
+                return false;
+            }
+            sessionCache.put(sessionKey, haKieSession);
+            tickedSessions.increment();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getTickedSessions() {
+        return tickedSessions.sum();
+    }
+
+    /**
+     * @return the latest fact instant inserted by this node, Long.MIN_VALUE before the first fact
+     */
+    public long getWatermark() {
+        return watermark.get();
+    }
+
+    public long getPrefetchedSessions() {
+        return prefetchedSessions.sum();
+    }
+
+    public long getInsertedFacts() {
+        return insertedFacts.sum();
+    }
+
     //@todo must be evaluated. In production code something like [1] or use infinispan locking (verifying that everything happens locally)
     // [1] https://github.com/ModeShape/modeshape/blob/master/modeshape-jcr/src/main/java/org/modeshape/jcr/value/binary/NamedLocks.java
-    private Object getLock(String name) {
-        Object lock = locks.get(name);
-        if (lock == null) {
-            Object newLock = new Object();
-            lock = locks.putIfAbsent(name, newLock);
-            if (lock == null) {
-                lock = newLock;
+    /**
+     * Locks a session for the calling thread. A lock removed by {@link #expire} while the thread waited for it
+     * is not used: the thread retries with the lock now in the map.
+     */
+    private ReentrantLock lock(String sessionKey) {
+        while (true) {
+            ReentrantLock lock = locks.computeIfAbsent(sessionKey, k -> new ReentrantLock());
+            lock.lock();
+            if (locks.get(sessionKey) == lock) {
+                return lock;
             }
+            lock.unlock();
         }
-        return lock;
+    }
+
+    int getLockedSessions() {
+        return locks.size();
     }
 }
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import org.infinispan.Cache;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodic job materializing the fact logs of the local log-only backups.
+ * It only runs while no fact was inserted on this node since the previous run, and it gives up
+ * as soon as new facts show up, so compaction only uses otherwise idle CPU. Each session is compacted
+ * through the {@link KieSessionSaver}, under the same lock as its inserts.
+ */
+public class LogCompactor implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogCompactor.class);
+
+    private final Cache<String, Object> sessionCache;
+    private final KieSessionSaver kieSessionSaver;
+
+    private long lastInsertedFacts = -1;
+
+    public LogCompactor(Cache<String, Object> sessionCache, KieSessionSaver kieSessionSaver) {
+        this.sessionCache = sessionCache;
+        this.kieSessionSaver = kieSessionSaver;
+    }
+
+    @Override
+    public void run() {
+        try {
+            long insertedFacts = kieSessionSaver.getInsertedFacts();
+            boolean idle = insertedFacts == lastInsertedFacts;
+            lastInsertedFacts = insertedFacts;
+            if (!idle) {
+                return;
+            }
+            int compacted = 0;
+            for (InternalCacheEntry<String, Object> entry : sessionCache.getAdvancedCache().getDataContainer()) {
+                if (kieSessionSaver.getInsertedFacts() != insertedFacts) {
+                    LOGGER.debug("Node is busy again, compaction interrupted");
+                    break;
+                }
+                Object value = entry.getValue();
+                if (value instanceof HAKieSerializedSession && ((HAKieSerializedSession) value).getLoggedFacts() > 0
+                        && kieSessionSaver.compact(entry.getKey())) {
+                    compacted++;
+                }
+            }
+            if (compacted > 0 && LOGGER.isInfoEnabled()) {
+                LOGGER.info(String.format("Compacted [%d] log-only sessions", compacted));
+            }
+        } catch (Exception e) {
+            LOGGER.error("Unexpected exception during log compaction", e);
+        }
+    }
+}
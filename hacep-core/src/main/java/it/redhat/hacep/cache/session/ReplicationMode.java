@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+public enum ReplicationMode {
+
+    /**
+     * Backups buffer the replicated facts and snapshot the session every grid.buffer facts.
+     */
+    BUFFERED,
+
+    /**
+     * Backups apply every replicated fact to a live session with the replay channels, so promotion is immediate.
+     */
+    HOT_STANDBY,
+
+    /**
+     * Backups only append the replicated facts to a compact log and never fire rules; the session is
+     * materialized from the last shipped snapshot plus the log on promotion or compaction.
+     */
+    LOG_ONLY
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Chooses the replication mode of a session: groups matching one of the group patterns use
+ * the corresponding mode, every other group uses the default mode of the cache. A group matching
+ * the patterns of several modes takes the first of them in {@link ReplicationMode} declaration order,
+ * so HOT_STANDBY wins over LOG_ONLY.
+ */
+public class ReplicationPolicy {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationPolicy.class);
+
+    private final ReplicationMode defaultMode;
+    private final Map<ReplicationMode, Pattern> groupPatterns = new EnumMap<>(ReplicationMode.class);
+
+    public ReplicationPolicy() {
+        this(getConfiguredMode());
+        addGroupPattern(ReplicationMode.HOT_STANDBY, System.getProperty("grid.replication.hotStandby.groups"));
+        addGroupPattern(ReplicationMode.LOG_ONLY, System.getProperty("grid.replication.logOnly.groups"));
+    }
+
+    public ReplicationPolicy(ReplicationMode defaultMode) {
+        this.defaultMode = defaultMode;
+    }
+
+    public ReplicationPolicy addGroupPattern(ReplicationMode mode, String regex) {
+        if (regex != null && !regex.isEmpty()) {
+            if (groupPatterns.containsKey(mode)) {
+                throw new IllegalArgumentException(String.format("A group pattern for %s is already set", mode));
+            }
+            groupPatterns.put(mode, Pattern.compile(regex));
+        }
+        return this;
+    }
+
+    /**
+     * Called on the backups while merging replicated facts, so it never fails: overlapping patterns
+     * resolve by the precedence of the modes.
+     */
+    public ReplicationMode modeFor(String group) {
+        if (group != null) {
+            // EnumMap iterates in declaration order, which is the precedence of the modes
+            for (Map.Entry<ReplicationMode, Pattern> entry : groupPatterns.entrySet()) {
+                if (entry.getValue().matcher(group).matches()) {
+                    return entry.getKey();
+                }
+            }
+        }
+        return defaultMode;
+    }
+
+    public ReplicationMode getDefaultMode() {
+        return defaultMode;
+    }
+
+    private static ReplicationMode getConfiguredMode() {
+        String mode = System.getProperty("grid.replication.mode", ReplicationMode.BUFFERED.name());
+        try {
+            return ReplicationMode.valueOf(mode);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Unknown replication mode [{}], using {}", mode, ReplicationMode.BUFFERED);
+            return ReplicationMode.BUFFERED;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local, append-only and gzipped file of the sessions expired by the {@link SessionSweeper}, kept for
+ * audit. Every record holds the group, the creation, last activity and expiry time of the session and
+ * the session as marshalled by the session cache. Every open appends a new gzip member to the file, which
+ * {@link #read(File, Consumer)} reads back as a single stream.
+ */
+public class SessionArchive implements Closeable {
+
+    private final File file;
+    private final DataOutputStream output;
+
+    private long archived;
+
+    public SessionArchive(File file) throws IOException {
+        this.file = file;
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create the archive directory [" + parent + "]");
+        }
+        this.output = new DataOutputStream(new GZIPOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file, true)), 8192, true));
+    }
+
+    /**
+     * Appends a session and flushes it, so that the record is on disk before the session is removed.
+     */
+    public synchronized void append(String group, long created, long lastActivity, long expired, byte[] session) throws IOException {
+        output.writeUTF(group);
+        output.writeLong(created);
+        output.writeLong(lastActivity);
+        output.writeLong(expired);
+        output.writeInt(session.length);
+        output.write(session);
+        output.flush();
+        archived++;
+    }
+
+    public synchronized long getArchived() {
+        return archived;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        output.close();
+    }
+
+    /**
+     * Reads back the records of an archive, stopping at the end of the last complete one.
+     */
+    public static void read(File file, Consumer<Record> consumer) throws IOException {
+        try (DataInputStream input = new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))))) {
+            while (true) {
+                String group;
+                try {
+                    group = input.readUTF();
+                } catch (EOFException e) {
+                    return;
+                }
+                long created = input.readLong();
+                long lastActivity = input.readLong();
+                long expired = input.readLong();
+                byte[] session = new byte[input.readInt()];
+                input.readFully(session);
+                consumer.accept(new Record(group, created, lastActivity, expired, session));
+            }
+        }
+    }
+
+    public static class Record {
+
+        private final String group;
+        private final long created;
+        private final long lastActivity;
+        private final long expired;
+        private final byte[] session;
+
+        Record(String group, long created, long lastActivity, long expired, byte[] session) {
+            this.group = group;
+            this.created = created;
+            this.lastActivity = lastActivity;
+            this.expired = expired;
+            this.session = session;
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public long getLastActivity() {
+            return lastActivity;
+        }
+
+        public long getExpired() {
+            return expired;
+        }
+
+        /**
+         * @return the session marshalled by the session cache
+         */
+        public byte[] getSession() {
+            return session;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import org.infinispan.Cache;
+import org.infinispan.container.entries.InternalCacheEntry;
+
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Counts the sessions held by this node for the metrics gauges. A scan of the session data container
+ * is shared by every gauge read within {@link #MAX_AGE} milliseconds.
+ */
+public class SessionCensus {
+
+    static final long MAX_AGE = 1000;
+
+    private final Cache<String, Object> sessionCache;
+    private final Predicate<Object> isLocalPrimary;
+    private final Supplier<String> currentVersion;
+
+    private long lastScan;
+    private long primarySessions;
+    private long backupSessions;
+    private long serializedBytes;
+    private long bufferedFacts;
+    private long snapshotBacklog;
+    private long pendingUpgrade;
+
+    public SessionCensus(Cache<String, Object> sessionCache, Predicate<Object> isLocalPrimary, Supplier<String> currentVersion) {
+        this.sessionCache = sessionCache;
+        this.isLocalPrimary = isLocalPrimary;
+        this.currentVersion = currentVersion;
+    }
+
+    private synchronized void scan() {
+        long now = System.currentTimeMillis();
+        if (now - lastScan < MAX_AGE) {
+            return;
+        }
+        long primary = 0, backup = 0, bytes = 0, buffered = 0, backlog = 0, upgrade = 0;
+        String version = currentVersion.get();
+        for (InternalCacheEntry<String, Object> entry : sessionCache.getAdvancedCache().getDataContainer()) {
+            if (isLocalPrimary.test(entry.getKey())) {
+                primary++;
+            } else {
+                backup++;
+            }
+            Object value = entry.getValue();
+            if (value instanceof HAKieSerializedSession) {
+                HAKieSerializedSession session = (HAKieSerializedSession) value;
+                bytes += session.getMemorySize() + session.getLogSize();
+                long facts = session.getBufferedFacts();
+                buffered += facts;
+                if (facts > 0) {
+                    backlog++;
+                }
+                if (session.getVersion() != null && !session.getVersion().equals(version)) {
+                    upgrade++;
+                }
+            }
+        }
+        primarySessions = primary;
+        backupSessions = backup;
+        serializedBytes = bytes;
+        bufferedFacts = buffered;
+        snapshotBacklog = backlog;
+        pendingUpgrade = upgrade;
+        lastScan = now;
+    }
+
+    public synchronized long getPrimarySessions() {
+        scan();
+        return primarySessions;
+    }
+
+    public synchronized long getBackupSessions() {
+        scan();
+        return backupSessions;
+    }
+
+    /**
+     * @return bytes of serialized sessions and fact logs held by backups
+     */
+    public synchronized long getSerializedBytes() {
+        scan();
+        return serializedBytes;
+    }
+
+    /**
+     * @return facts waiting in backups to be replayed on their last snapshot
+     */
+    public synchronized long getBufferedFacts() {
+        scan();
+        return bufferedFacts;
+    }
+
+    /**
+     * @return backups with facts not yet folded into a snapshot
+     */
+    public synchronized long getSnapshotBacklog() {
+        scan();
+        return snapshotBacklog;
+    }
+
+    /**
+     * @return serialized sessions still on a previous rules version
+     */
+    public synchronized long getPendingUpgrade() {
+        scan();
+        return pendingUpgrade;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import it.redhat.hacep.cache.ReorderBuffer;
+import it.redhat.hacep.support.RateLimiter;
+import org.infinispan.Cache;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Advances the clocks of the live sessions this node is primary owner of and fires their rules, so that
+ * temporal rules and event expiration run for groups that receive no facts. Sessions are spread by group
+ * over a wheel of slots and each run ticks the sessions of the next slot, least recently active first, so
+ * that a whole turn of the wheel ticks every session once. A run ticks at most batch sessions, at most
+ * ticksPerSecond a second.
+ * <p>
+ * The time comes from the given clock, wall time or the watermark of the facts inserted by this node, minus
+ * a lag. A session whose clock is already there is left alone, the others replicate the tick to their
+ * backups. With a {@link ReorderBuffer}, a session is not ticked while facts of its group are held, and an
+ * active group is ticked no further than its own watermark.
+ */
+public class SessionClockTicker implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionClockTicker.class);
+
+    private final Cache<String, Object> sessionCache;
+    private final KieSessionSaver kieSessionSaver;
+    private final Predicate<Object> isPrimary;
+    private final LongSupplier clock;
+    private final long lag;
+    private final int slots;
+    private final int batch;
+    private final RateLimiter rateLimiter;
+    private final ReorderBuffer reorderBuffer;
+
+    private final LongAdder ticked = new LongAdder();
+    private int slot;
+
+    /**
+     * @param clock          time the sessions are advanced to, Long.MIN_VALUE while unknown
+     * @param lag            milliseconds the ticks stay behind the clock, so as not to overtake facts in flight
+     * @param slots          slots of the wheel, one is ticked per run
+     * @param batch          max sessions ticked per run
+     * @param ticksPerSecond max sessions ticked per second, 0 for no limit
+     * @param reorderBuffer  when not null, bounds the ticks of each group
+     */
+    public SessionClockTicker(Cache<String, Object> sessionCache, KieSessionSaver kieSessionSaver, Predicate<Object> isPrimary,
+                              LongSupplier clock, long lag, int slots, int batch, long ticksPerSecond,
+                              ReorderBuffer reorderBuffer) {
+        this.sessionCache = sessionCache;
+        this.kieSessionSaver = kieSessionSaver;
+        this.isPrimary = isPrimary;
+        this.clock = clock;
+        this.lag = lag;
+        this.slots = Math.max(1, slots);
+        this.batch = Math.max(1, batch);
+        this.rateLimiter = new RateLimiter(ticksPerSecond);
+        this.reorderBuffer = reorderBuffer;
+    }
+
+    @Override
+    public void run() {
+        try {
+            long time = clock.getAsLong();
+            if (time != Long.MIN_VALUE) {
+                tick(time - lag);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Unexpected exception ticking the session clocks", e);
+        }
+    }
+
+    /**
+     * Ticks the sessions of the next slot of the wheel.
+     *
+     * @return the sessions ticked
+     */
+    public synchronized int tick(long time) {
+        int current = slot;
+        slot = (slot + 1) % slots;
+        List<Due> due = new ArrayList<>();
+        for (InternalCacheEntry<String, Object> entry : sessionCache.getAdvancedCache().getDataContainer()) {
+            Object value = entry.getValue();
+            if (value != null && value.getClass() == HAKieSession.class
+                    && Math.floorMod(entry.getKey().hashCode(), slots) == current && isPrimary.test(entry.getKey())) {
+                due.add(new Due(entry.getKey(), ((HAKieSession) value).getStats().getLastActivity()));
+            }
+        }
+        due.sort(Comparator.comparingLong(session -> session.lastActivity));
+
+        int count = 0;
+        for (int i = 0; i < due.size() && i < batch; i++) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            String key = due.get(i).key;
+            long bound = reorderBuffer != null ? reorderBuffer.tick(key, time) : time;
+            if (bound == Long.MIN_VALUE) {
+                continue;
+            }
+            rateLimiter.acquire(1);
+            if (kieSessionSaver.tick(key, bound)) {
+                count++;
+            }
+        }
+        ticked.add(count);
+        if (LOGGER.isDebugEnabled() && count > 0) {
+            LOGGER.debug(String.format("Ticked [%d] sessions of slot [%d] to [%d]", count, current, time));
+        }
+        return count;
+    }
+
+    public long getTicked() {
+        return ticked.sum();
+    }
+
+    private static class Due {
+
+        private final String key;
+        private final long lastActivity;
+
+        Due(String key, long lastActivity) {
+            this.key = key;
+            this.lastActivity = lastActivity;
+        }
+    }
+}
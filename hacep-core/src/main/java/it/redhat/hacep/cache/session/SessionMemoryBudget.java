@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import org.infinispan.Cache;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the sessions held by this node within a byte budget, evicting the least recently inserted
+ * ones to the cache store once the estimate goes over it, down to {@link #LOW_WATERMARK} of the budget.
+ * <p>
+ * Serialized sessions weigh their snapshot and fact log plus the buffered facts, live sessions the
+ * larger of their last snapshot and their working memory facts; facts are estimated at
+ * grid.persistence.memory.factBytes each.
+ */
+public class SessionMemoryBudget implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionMemoryBudget.class);
+
+    static final double LOW_WATERMARK = 0.9;
+
+    private final Cache<String, Object> sessionCache;
+    private final KieSessionSaver kieSessionSaver;
+    private final long budget;
+    private final long factBytes;
+
+    private final LongAdder evicted = new LongAdder();
+    private volatile long estimate;
+
+    public SessionMemoryBudget(Cache<String, Object> sessionCache, KieSessionSaver kieSessionSaver, long budget, long factBytes) {
+        this.sessionCache = sessionCache;
+        this.kieSessionSaver = kieSessionSaver;
+        this.budget = budget;
+        this.factBytes = factBytes;
+    }
+
+    @Override
+    public void run() {
+        try {
+            enforce();
+        } catch (Exception e) {
+            LOGGER.error("Unexpected exception enforcing the session memory budget", e);
+        }
+    }
+
+    public int enforce() {
+        List<Weighed> sessions = new ArrayList<>();
+        long total = 0;
+        for (InternalCacheEntry<String, Object> entry : sessionCache.getAdvancedCache().getDataContainer()) {
+            Object value = entry.getValue();
+            if (value instanceof HAKieSession) {
+                Weighed weighed = new Weighed(entry.getKey(), (HAKieSession) value);
+                sessions.add(weighed);
+                total += weighed.bytes;
+            }
+        }
+        estimate = total;
+        if (total <= budget) {
+            return 0;
+        }
+        sessions.sort(Comparator.comparingLong(weighed -> weighed.lastInsert));
+        long target = (long) (budget * LOW_WATERMARK);
+        int count = 0;
+        for (Weighed weighed : sessions) {
+            if (total <= target) {
+                break;
+            }
+            if (kieSessionSaver.evict(weighed.key)) {
+                total -= weighed.bytes;
+                count++;
+            }
+        }
+        estimate = total;
+        evicted.add(count);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(String.format("Evicted [%d] sessions, estimate [%d] bytes of a [%d] budget", count, total, budget));
+        }
+        return count;
+    }
+
+    long weigh(HAKieSession session) {
+        SessionStats stats = session.getStats();
+        if (session instanceof HAKieSerializedSession) {
+            HAKieSerializedSession serialized = (HAKieSerializedSession) session;
+            return serialized.getMemorySize() + serialized.getLogSize()
+                    + (serialized.getBufferedFacts() - serialized.getLoggedFacts()) * factBytes;
+        }
+        return Math.max(stats.getSnapshotBytes(), stats.getFactCount() * factBytes);
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return the estimate of the last check, after its evictions
+     */
+    public long getEstimate() {
+        return estimate;
+    }
+
+    public long getEvicted() {
+        return evicted.sum();
+    }
+
+    private class Weighed {
+
+        private final String key;
+        private final long bytes;
+        private final long lastInsert;
+
+        Weighed(String key, HAKieSession session) {
+            this.key = key;
+            this.bytes = weigh(session);
+            this.lastInsert = session.getStats().getLastInsert();
+        }
+    }
+}
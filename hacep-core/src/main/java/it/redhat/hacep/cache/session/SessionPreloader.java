@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.EvictionConfiguration;
+import org.infinispan.container.DataContainer;
+import org.infinispan.context.Flag;
+import org.infinispan.persistence.manager.PersistenceManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Preloads the persisted sessions in two passes over the cache store: the sessions this node is primary
+ * owner of, which {@link #preloadPrimary()} waits for before the node serves traffic, then the backups it
+ * owns in the background. Sessions owned by other nodes only, left in a shared or copied store, are not
+ * loaded.
+ * <p>
+ * The store is scanned for keys only and each session is loaded with a local get on the preload threads,
+ * so a session a fact has already loaded or updated is never overwritten with its stored copy. Like the
+ * Infinispan preload, loading stops once the eviction size is reached.
+ */
+public class SessionPreloader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionPreloader.class);
+
+    public enum Phase {
+        IDLE, PRIMARY, REMAINDER, DONE, STOPPED, FAILED
+    }
+
+    private final Cache<?, ?> cache;
+    private final Predicate<Object> isPrimary;
+    private final Predicate<Object> isLocal;
+    private final int threads;
+
+    private final LongAdder primaryLoaded = new LongAdder();
+    private final LongAdder remainderLoaded = new LongAdder();
+
+    private volatile Phase phase = Phase.IDLE;
+    private volatile boolean stopping;
+    private volatile long startTime;
+    private volatile long primaryDuration;
+    private volatile long duration;
+    private ExecutorService executor;
+    private Thread background;
+
+    /**
+     * @param isPrimary whether this node is primary owner of a key
+     * @param isLocal   whether this node is an owner, primary or backup, of a key
+     */
+    public SessionPreloader(Cache<?, ?> cache, Predicate<Object> isPrimary, Predicate<Object> isLocal, int threads) {
+        this.cache = cache;
+        this.isPrimary = isPrimary;
+        this.isLocal = isLocal;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Loads the sessions this node is primary owner of, returning when they are all in memory.
+     */
+    public synchronized void preloadPrimary() {
+        if (phase != Phase.IDLE) {
+            return;
+        }
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> new Thread(r, "hacep-preload-" + count.incrementAndGet()));
+        startTime = System.currentTimeMillis();
+        phase = Phase.PRIMARY;
+        LOGGER.info("Preloading primary sessions with [{}] threads", threads);
+        if (load(true, primaryLoaded)) {
+            primaryDuration = System.currentTimeMillis() - startTime;
+            LOGGER.info("Preloaded [{}] primary sessions in [{}] ms", primaryLoaded.sum(), primaryDuration);
+        }
+    }
+
+    /**
+     * Loads the backups owned by this node on a background thread.
+     */
+    public synchronized void preloadRemainder() {
+        if (phase != Phase.PRIMARY) {
+            finish();
+            return;
+        }
+        phase = Phase.REMAINDER;
+        background = new Thread(() -> {
+            if (load(false, remainderLoaded)) {
+                duration = System.currentTimeMillis() - startTime;
+                phase = Phase.DONE;
+                LOGGER.info("Preloaded [{}] backup sessions in [{}] ms", remainderLoaded.sum(), duration);
+            }
+            finish();
+        }, "hacep-preload");
+        background.setDaemon(true);
+        background.start();
+    }
+
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            stopping = true;
+            thread = background;
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        finish();
+    }
+
+    private synchronized void finish() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    private boolean load(boolean primary, LongAdder loaded) {
+        AdvancedCache<?, ?> local = cache.getAdvancedCache().withFlags(Flag.CACHE_MODE_LOCAL, Flag.SKIP_OWNERSHIP_CHECK,
+                Flag.SKIP_LISTENER_NOTIFICATION);
+        DataContainer<?, ?> dataContainer = cache.getAdvancedCache().getDataContainer();
+        PersistenceManager persistenceManager = cache.getAdvancedCache().getComponentRegistry().getComponent(PersistenceManager.class);
+        long maxEntries = getMaxEntries();
+        Predicate<Object> filter = primary ? isPrimary : isPrimary.negate().and(isLocal);
+        try {
+            persistenceManager.processOnAllStores(executor, filter::test, (entry, context) -> {
+                if (stopping || (maxEntries < Long.MAX_VALUE && dataContainer.sizeIncludingExpired() >= maxEntries)) {
+                    context.stop();
+                    return;
+                }
+                if (local.get(entry.getKey()) != null) {
+                    loaded.increment();
+                }
+            }, false, false);
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to preload the " + (primary ? "primary" : "backup") + " sessions", e);
+            phase = Phase.FAILED;
+            return false;
+        }
+        if (stopping) {
+            phase = Phase.STOPPED;
+            return false;
+        }
+        return true;
+    }
+
+    private long getMaxEntries() {
+        EvictionConfiguration eviction = cache.getCacheConfiguration().eviction();
+        return eviction.strategy().isEnabled() && eviction.size() > 0 ? eviction.size() : Long.MAX_VALUE;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public long getPrimaryLoaded() {
+        return primaryLoaded.sum();
+    }
+
+    public long getRemainderLoaded() {
+        return remainderLoaded.sum();
+    }
+
+    public String info() {
+        long elapsed = phase == Phase.DONE ? duration : startTime > 0 ? System.currentTimeMillis() - startTime : 0;
+        return String.format("preload [%s], primary sessions [%d] in [%d ms], backup sessions [%d], elapsed [%d ms]",
+                phase, getPrimaryLoaded(), primaryDuration, getRemainderLoaded(), elapsed);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import org.infinispan.Cache;
+import org.infinispan.container.entries.InternalCacheEntry;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Top-N of the largest and of the hottest sessions held by this node, built on demand from the
+ * {@link SessionStats} of the session data container. Largest is by serialized bytes, the last snapshot
+ * for live sessions, then by working memory facts; hottest is by insert rate.
+ */
+public class SessionStatistics {
+
+    private final Cache<String, Object> sessionCache;
+    private final Predicate<Object> isLocalPrimary;
+
+    public SessionStatistics(Cache<String, Object> sessionCache, Predicate<Object> isLocalPrimary) {
+        this.sessionCache = sessionCache;
+        this.isLocalPrimary = isLocalPrimary;
+    }
+
+    public List<Row> collect() {
+        long now = System.currentTimeMillis();
+        List<Row> rows = new ArrayList<>();
+        for (InternalCacheEntry<String, Object> entry : sessionCache.getAdvancedCache().getDataContainer()) {
+            Object value = entry.getValue();
+            if (value instanceof HAKieSession) {
+                rows.add(new Row(entry.getKey(), isLocalPrimary.test(entry.getKey()), (HAKieSession) value, now));
+            }
+        }
+        return rows;
+    }
+
+    public List<Row> largest(int n) {
+        return top(collect(), n, Comparator.comparingLong(Row::getBytes).thenComparingLong(Row::getFacts));
+    }
+
+    public List<Row> hottest(int n) {
+        return top(collect(), n, Comparator.comparingDouble(Row::getInsertRate));
+    }
+
+    public String report(int n) {
+        List<Row> rows = collect();
+        StringBuilder report = new StringBuilder();
+        report.append("Largest sessions:\n");
+        table(report, top(rows, n, Comparator.comparingLong(Row::getBytes).thenComparingLong(Row::getFacts)));
+        report.append("Hottest sessions:\n");
+        table(report, top(rows, n, Comparator.comparingDouble(Row::getInsertRate)));
+        return report.toString();
+    }
+
+    private static List<Row> top(List<Row> rows, int n, Comparator<Row> comparator) {
+        List<Row> sorted = new ArrayList<>(rows);
+        sorted.sort(comparator.reversed());
+        return sorted.subList(0, Math.min(n, sorted.size()));
+    }
+
+    private static void table(StringBuilder report, List<Row> rows) {
+        SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss");
+        report.append(String.format("  %-30s %-8s %12s %10s %10s %10s %9s%n",
+                "group", "role", "bytes", "buffered", "facts", "facts/s", "snapshot"));
+        for (Row row : rows) {
+            report.append(String.format("  %-30s %-8s %12d %10d %10d %10.1f %9s%n",
+                    row.group, row.primary ? "primary" : "backup", row.bytes, row.buffered, row.facts, row.insertRate,
+                    row.lastSnapshot > 0 ? format.format(new Date(row.lastSnapshot)) : "never"));
+        }
+    }
+
+    public static int getTopSize() {
+        try {
+            return Integer.valueOf(System.getProperty("grid.sessions.top", "10"));
+        } catch (IllegalArgumentException e) {
+            return 10;
+        }
+    }
+
+    public static class Row {
+
+        private final String group;
+        private final boolean primary;
+        private final long bytes;
+        private final long buffered;
+        private final long facts;
+        private final long lastSnapshot;
+        private final double insertRate;
+
+        Row(String group, boolean primary, HAKieSession session, long now) {
+            SessionStats stats = session.getStats();
+            this.group = group;
+            this.primary = primary;
+            if (session instanceof HAKieSerializedSession) {
+                HAKieSerializedSession serialized = (HAKieSerializedSession) session;
+                this.bytes = serialized.getSessionSize() + serialized.getLogSize();
+                this.buffered = serialized.getBufferedFacts();
+            } else {
+                this.bytes = stats.getSnapshotBytes();
+                this.buffered = 0;
+            }
+            this.facts = stats.getFactCount();
+            this.lastSnapshot = stats.getLastSnapshot();
+            this.insertRate = stats.getInsertRate(now);
+        }
+
+        public String getGroup() {
+            return group;
+        }
+
+        public boolean isPrimary() {
+            return primary;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getBuffered() {
+            return buffered;
+        }
+
+        public long getFacts() {
+            return facts;
+        }
+
+        public long getLastSnapshot() {
+            return lastSnapshot;
+        }
+
+        public double getInsertRate() {
+            return insertRate;
+        }
+    }
+}
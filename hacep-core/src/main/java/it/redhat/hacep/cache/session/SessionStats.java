@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+/**
+ * Cheap statistics of a session, kept on the node holding it; only its creation and last insert travel
+ * with the serialized session. Updated by the single thread owning the session, read by
+ * {@link SessionStatistics} from any thread.
+ */
+public class SessionStats {
+
+    static final long RATE_WINDOW = 1000;
+
+    private volatile long created = System.currentTimeMillis();
+    private volatile long inserted;
+    private volatile long lastInsert;
+    private volatile long factCount;
+    private volatile long lastSnapshot;
+    private volatile long snapshotBytes;
+    private volatile double rate;
+    private volatile long windowStart;
+    private long windowCount;
+
+    void inserted(long now, long factCount) {
+        inserted++;
+        lastInsert = now;
+        this.factCount = factCount;
+        if (windowStart == 0) {
+            windowStart = now;
+        }
+        windowCount++;
+        long elapsed = now - windowStart;
+        if (elapsed >= RATE_WINDOW) {
+            double current = windowCount * 1000.0 / elapsed;
+            rate = (decay(rate, elapsed - RATE_WINDOW) + current) / 2;
+            windowStart = now;
+            windowCount = 0;
+        }
+    }
+
+    /**
+     * Restores the lifecycle of a session read from the cache store or another node.
+     */
+    void restore(long created, long lastInsert) {
+        this.created = created;
+        this.lastInsert = lastInsert;
+    }
+
+    void snapshot(long now, long bytes) {
+        lastSnapshot = now;
+        snapshotBytes = bytes;
+    }
+
+    public long getInserted() {
+        return inserted;
+    }
+
+    public long getLastInsert() {
+        return lastInsert;
+    }
+
+    /**
+     * @return facts in the working memory after the last insert, 0 when the session is only serialized
+     */
+    public long getFactCount() {
+        return factCount;
+    }
+
+    /**
+     * @return when the last snapshot was taken or received, 0 if never
+     */
+    public long getLastSnapshot() {
+        return lastSnapshot;
+    }
+
+    /**
+     * @return when the session was first created in the grid
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * @return when the session was last inserted into or snapshotted, or created
+     */
+    public long getLastActivity() {
+        return Math.max(created, Math.max(lastInsert, lastSnapshot));
+    }
+
+    public long getSnapshotBytes() {
+        return snapshotBytes;
+    }
+
+    /**
+     * @return facts per second, halved for every window without inserts
+     */
+    public double getInsertRate(long now) {
+        long start = windowStart;
+        return start == 0 ? 0 : decay(rate, now - start - RATE_WINDOW);
+    }
+
+    private static double decay(double rate, long idle) {
+        return idle <= 0 ? rate : rate * Math.pow(0.5, (double) idle / RATE_WINDOW);
+    }
+}
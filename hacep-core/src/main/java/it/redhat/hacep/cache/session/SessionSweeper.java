@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import it.redhat.hacep.support.RateLimiter;
+import org.infinispan.Cache;
+import org.infinispan.commons.marshall.Marshaller;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.persistence.manager.PersistenceManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Removes the sessions this node is primary owner of once idle for longer than idleTtl or older than maxAge,
+ * from memory, the backups and the cache store. Each sweep walks the sessions in memory, then the ones
+ * only in the cache store, examining at most sessionsPerSecond sessions a second so that it never competes
+ * with the inserts. Expired sessions are appended to the {@link SessionArchive} before being removed, and
+ * kept if that fails. Backups are left to their primary owner.
+ */
+public class SessionSweeper implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionSweeper.class);
+
+    private final Cache<String, Object> sessionCache;
+    private final KieSessionSaver kieSessionSaver;
+    private final Predicate<Object> isPrimary;
+    private final long idleTtl;
+    private final long maxAge;
+    private final RateLimiter rateLimiter;
+    private final boolean persistence;
+    private final SessionArchive archive;
+    private final Marshaller marshaller;
+
+    private final LongAdder examined = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder archived = new LongAdder();
+
+    /**
+     * @param idleTtl           idle milliseconds after which a session expires, 0 for no limit
+     * @param maxAge            milliseconds from its creation after which a session expires, 0 for no limit
+     * @param sessionsPerSecond sessions examined per second, 0 for no limit
+     * @param persistence       whether the sessions only in the cache store are swept too
+     * @param archive           file the expired sessions are appended to, null to drop them
+     * @param marshaller        marshaller of the archived sessions
+     */
+    public SessionSweeper(Cache<String, Object> sessionCache, KieSessionSaver kieSessionSaver, Predicate<Object> isPrimary,
+                          long idleTtl, long maxAge, long sessionsPerSecond, boolean persistence,
+                          SessionArchive archive, Marshaller marshaller) {
+        this.sessionCache = sessionCache;
+        this.kieSessionSaver = kieSessionSaver;
+        this.isPrimary = isPrimary;
+        this.idleTtl = idleTtl;
+        this.maxAge = maxAge;
+        this.rateLimiter = new RateLimiter(sessionsPerSecond);
+        this.persistence = persistence;
+        this.archive = archive;
+        this.marshaller = marshaller;
+    }
+
+    @Override
+    public void run() {
+        try {
+            sweep(System.currentTimeMillis());
+        } catch (Exception e) {
+            LOGGER.error("Unexpected exception sweeping the expired sessions", e);
+        }
+    }
+
+    /**
+     * @return the sessions removed by this sweep
+     */
+    public int sweep(long now) {
+        List<String> candidates = new ArrayList<>();
+        DataContainer<String, Object> dataContainer = sessionCache.getAdvancedCache().getDataContainer();
+        for (InternalCacheEntry<String, Object> entry : dataContainer) {
+            if (Thread.currentThread().isInterrupted()) {
+                return 0;
+            }
+            if (entry.getValue() instanceof HAKieSession && isPrimary.test(entry.getKey())) {
+                rateLimiter.acquire(1);
+                examined.increment();
+                if (isExpired((HAKieSession) entry.getValue(), now)) {
+                    candidates.add(entry.getKey());
+                }
+            }
+        }
+
+        if (persistence) {
+            PersistenceManager persistenceManager = sessionCache.getAdvancedCache().getComponentRegistry().getComponent(PersistenceManager.class);
+            persistenceManager.processOnAllStores(Runnable::run, key -> isPrimary.test(key) && !dataContainer.containsKey(key), (entry, context) -> {
+                if (Thread.currentThread().isInterrupted()) {
+                    context.stop();
+                    return;
+                }
+                rateLimiter.acquire(1);
+                examined.increment();
+                Object value = entry.getValue();
+                if (value instanceof HAKieSession && isExpired((HAKieSession) value, now)) {
+                    candidates.add((String) entry.getKey());
+                }
+            }, true, false);
+        }
+
+        int removed = 0;
+        long archivedBefore = archived.sum();
+        for (String key : candidates) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            if (kieSessionSaver.expire(key, session -> isExpired(session, now) && archive(key, session, now))) {
+                removed++;
+            }
+        }
+        expired.add(removed);
+        if (removed > 0) {
+            LOGGER.info(String.format("Expired [%d] sessions, [%d] archived", removed, archived.sum() - archivedBefore));
+        }
+        return removed;
+    }
+
+    boolean isExpired(HAKieSession session, long now) {
+        SessionStats stats = session.getStats();
+        return (idleTtl > 0 && now - stats.getLastActivity() >= idleTtl)
+                || (maxAge > 0 && now - stats.getCreated() >= maxAge);
+    }
+
+    private boolean archive(String key, HAKieSession session, long now) {
+        if (archive == null) {
+            return true;
+        }
+        SessionStats stats = session.getStats();
+        try {
+            archive.append(key, stats.getCreated(), stats.getLastActivity(), now, marshaller.objectToByteBuffer(session));
+            archived.increment();
+            return true;
+        } catch (IOException e) {
+            LOGGER.error("Unable to archive the expired session [" + key + "], keeping it", e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public long getExamined() {
+        return examined.sum();
+    }
+
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    public long getArchived() {
+        return archived.sum();
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import org.infinispan.Cache;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Moves the sessions held by this node between three tiers, least recently active first:
+ * <ul>
+ * <li>hot: live KieSessions, primaries and hot standby backups</li>
+ * <li>warm: serialized sessions with their snapshot compressed in memory</li>
+ * <li>cold: sessions evicted to the cache store</li>
+ * </ul>
+ * A live primary is demoted to warm once idle for warmAfter or when more than maxHot sessions are live,
+ * a warm session is evicted once idle for coldAfter or when more than maxWarm are held. Hot standby
+ * backups stay live, as their replication mode asks. Sessions are promoted back on their next fact.
+ */
+public class SessionTiering implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionTiering.class);
+
+    private final Cache<String, Object> sessionCache;
+    private final KieSessionSaver kieSessionSaver;
+    private final long warmAfter;
+    private final long coldAfter;
+    private final int maxHot;
+    private final int maxWarm;
+
+    private final LongAdder demotedWarm = new LongAdder();
+    private final LongAdder demotedCold = new LongAdder();
+    private volatile int hot;
+    private volatile int warm;
+    private volatile long warmBytes;
+
+    /**
+     * @param warmAfter idle milliseconds before a live session is demoted, 0 demotes only over maxHot
+     * @param coldAfter idle milliseconds before a warm session is evicted, 0 keeps warm sessions in memory
+     * @param maxHot    live sessions over which the least active are demoted, 0 for no limit
+     * @param maxWarm   warm sessions over which the least active are evicted, 0 for no limit
+     */
+    public SessionTiering(Cache<String, Object> sessionCache, KieSessionSaver kieSessionSaver,
+                          long warmAfter, long coldAfter, int maxHot, int maxWarm) {
+        this.sessionCache = sessionCache;
+        this.kieSessionSaver = kieSessionSaver;
+        this.warmAfter = warmAfter;
+        this.coldAfter = coldAfter;
+        this.maxHot = maxHot;
+        this.maxWarm = maxWarm;
+    }
+
+    @Override
+    public void run() {
+        try {
+            enforce(System.currentTimeMillis());
+        } catch (Exception e) {
+            LOGGER.error("Unexpected exception moving sessions between tiers", e);
+        }
+    }
+
+    /**
+     * @return the sessions demoted by this check
+     */
+    public int enforce(long now) {
+        List<Tiered> live = new ArrayList<>();
+        List<Tiered> serialized = new ArrayList<>();
+        for (InternalCacheEntry<String, Object> entry : sessionCache.getAdvancedCache().getDataContainer()) {
+            Object value = entry.getValue();
+            if (value instanceof HAKieSerializedSession) {
+                serialized.add(new Tiered(entry.getKey(), (HAKieSession) value));
+            } else if (value instanceof HAKieSession) {
+                live.add(new Tiered(entry.getKey(), (HAKieSession) value));
+            }
+        }
+
+        int toWarm = 0;
+        live.sort(Comparator.comparingLong(tiered -> tiered.lastActivity));
+        int excess = maxHot > 0 ? live.size() - maxHot : 0;
+        int remaining = live.size();
+        for (int i = 0; i < live.size(); i++) {
+            Tiered tiered = live.get(i);
+            if (i >= excess && (warmAfter <= 0 || now - tiered.lastActivity < warmAfter)) {
+                break;
+            }
+            if (kieSessionSaver.demote(tiered.key)) {
+                remaining--;
+                toWarm++;
+            }
+        }
+
+        long bytes = 0;
+        for (Tiered tiered : serialized) {
+            HAKieSerializedSession session = (HAKieSerializedSession) tiered.session;
+            if (warmAfter > 0 && now - tiered.lastActivity >= warmAfter) {
+                session.compress();
+            }
+            bytes += session.getMemorySize() + session.getLogSize();
+        }
+
+        int toCold = 0;
+        if (coldAfter > 0 || maxWarm > 0) {
+            serialized.sort(Comparator.comparingLong(tiered -> tiered.lastActivity));
+            excess = maxWarm > 0 ? serialized.size() + toWarm - maxWarm : 0;
+            for (int i = 0; i < serialized.size(); i++) {
+                Tiered tiered = serialized.get(i);
+                if (i >= excess && (coldAfter <= 0 || now - tiered.lastActivity < coldAfter)) {
+                    break;
+                }
+                HAKieSerializedSession session = (HAKieSerializedSession) tiered.session;
+                long weight = session.getMemorySize() + session.getLogSize();
+                if (kieSessionSaver.evict(tiered.key)) {
+                    bytes -= weight;
+                    toCold++;
+                }
+            }
+        }
+
+        hot = remaining;
+        warm = serialized.size() + toWarm - toCold;
+        warmBytes = bytes;
+        demotedWarm.add(toWarm);
+        demotedCold.add(toCold);
+        if (LOGGER.isDebugEnabled() && toWarm + toCold > 0) {
+            LOGGER.debug(String.format("Demoted [%d] sessions to warm and [%d] to cold, [%d] hot and [%d] warm left",
+                    toWarm, toCold, hot, warm));
+        }
+        return toWarm + toCold;
+    }
+
+    public int getHot() {
+        return hot;
+    }
+
+    public int getWarm() {
+        return warm;
+    }
+
+    /**
+     * @return bytes of the warm sessions at the last check, not counting those demoted by it
+     */
+    public long getWarmBytes() {
+        return warmBytes;
+    }
+
+    public long getDemotedWarm() {
+        return demotedWarm.sum();
+    }
+
+    public long getDemotedCold() {
+        return demotedCold.sum();
+    }
+
+    private static class Tiered {
+
+        private final String key;
+        private final HAKieSession session;
+        private final long lastActivity;
+
+        Tiered(String key, HAKieSession session) {
+            this.key = key;
+            this.session = session;
+            this.lastActivity = session.getStats().getLastActivity();
+        }
+    }
+}
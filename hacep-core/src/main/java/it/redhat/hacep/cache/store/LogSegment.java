@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One file of a {@link LogStructuredStore}. Records are only appended to the active segment; once
+ * sealed a segment is memory-mapped for reads and only deleted by the compaction.
+ * <p>
+ * Sizes and live bytes are guarded by the write lock of the store.
+ */
+class LogSegment {
+
+    static final String SUFFIX = ".log";
+
+    private final int id;
+    private final Path path;
+    private final FileChannel channel;
+    private volatile MappedByteBuffer mapped;
+
+    private long size;
+    private long live;
+
+    private LogSegment(int id, Path path, FileChannel channel, long size) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.size = size;
+    }
+
+    static LogSegment open(Path directory, int id) throws IOException {
+        Path path = directory.resolve(fileName(id));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new LogSegment(id, path, channel, channel.size());
+    }
+
+    static String fileName(int id) {
+        return String.format("%08d%s", id, SUFFIX);
+    }
+
+    static int idOf(Path path) {
+        String name = path.getFileName().toString();
+        return Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    int getId() {
+        return id;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    long getLive() {
+        return live;
+    }
+
+    void addLive(long bytes) {
+        live += bytes;
+    }
+
+    double getLiveRatio() {
+        return size == 0 ? 1 : (double) live / size;
+    }
+
+    boolean isSealed() {
+        return mapped != null;
+    }
+
+    /**
+     * @return the offset of the record
+     */
+    long append(ByteBuffer record) throws IOException {
+        long offset = size;
+        long position = offset;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        size = position;
+        return offset;
+    }
+
+    void read(long offset, byte[] into) throws IOException {
+        MappedByteBuffer buffer = mapped;
+        if (buffer != null) {
+            ByteBuffer view = buffer.duplicate();
+            view.position((int) offset);
+            view.get(into);
+            return;
+        }
+        ByteBuffer target = ByteBuffer.wrap(into);
+        long position = offset;
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position);
+            if (read < 0) {
+                throw new IOException(String.format("Unexpected end of segment [%s] at [%d]", path, position));
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Drops the bytes from the given offset, after a torn write found on startup.
+     */
+    void truncate(long offset) throws IOException {
+        channel.truncate(offset);
+        size = offset;
+    }
+
+    void seal() throws IOException {
+        channel.force(false);
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    void close() throws IOException {
+        mapped = null;
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
@@ -0,0 +1,818 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.store;
+
+import org.infinispan.commons.configuration.ConfiguredBy;
+import org.infinispan.commons.io.ByteBuffer;
+import org.infinispan.executors.ExecutorAllCompletionService;
+import org.infinispan.filter.KeyFilter;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.metadata.InternalMetadata;
+import org.infinispan.persistence.TaskContextImpl;
+import org.infinispan.persistence.spi.AdvancedCacheLoader;
+import org.infinispan.persistence.spi.AdvancedLoadWriteStore;
+import org.infinispan.persistence.spi.InitializationContext;
+import org.infinispan.persistence.spi.PersistenceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Append-only store for large, frequently rewritten session blobs. Every write and delete is appended
+ * to the active {@link LogSegment}, sealed and memory-mapped once it reaches maxSegmentSize; an in-memory
+ * index maps each key to its last record. Like the SingleFileStore, the index holds every stored key in
+ * memory, only the values stay on disk. A background compaction copies the live records of the sealed
+ * segments under compactionThreshold to the active one and deletes them.
+ * <p>
+ * The last delete of a key is live, so carried over by the compaction, as long as an older segment may still
+ * hold a put of that key: tombstones in the oldest segment are dropped.
+ * <p>
+ * On a clean stop the index is written next to the segments, so that the next start does not read them;
+ * after a crash the segments are scanned in order and a torn record at the tail of the last one is dropped.
+ * A bad record in any other segment is corruption, and fails the start.
+ * <p>
+ * With writeBehind, writes and deletes are queued and coalesced per key by a {@link WriteBehind}, already
+ * encoded as records; loads read the queue first, iterations and stop wait for it to be written.
+ * <p>
+ * Record layout: length, crc32, type, key length, value length, metadata length, expiry, key, value, metadata.
+ */
+@ConfiguredBy(LogStructuredStoreConfiguration.class)
+public class LogStructuredStore<K, V> implements AdvancedLoadWriteStore<K, V> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogStructuredStore.class);
+
+    static final String INDEX_FILE = "index";
+    private static final int INDEX_MAGIC = 0x484c4f47;
+    private static final int INDEX_VERSION = 2;
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    static final int HEADER = 4 + 4 + 1 + 4 + 4 + 4 + 8;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ConcurrentMap<Object, Location> index = new ConcurrentHashMap<>();
+    private final Map<Object, Location> tombstones = new HashMap<>();
+    private final NavigableMap<Integer, LogSegment> segments = new ConcurrentSkipListMap<>();
+
+    private InitializationContext ctx;
+    private LogStructuredStoreConfiguration configuration;
+    private Path directory;
+    private LogSegment active;
+    private ScheduledExecutorService compactor;
+    private WriteBehind writeBehind;
+    private volatile boolean stopping;
+
+    @Override
+    public void init(InitializationContext ctx) {
+        this.ctx = ctx;
+        this.configuration = ctx.getConfiguration();
+    }
+
+    @Override
+    public void start() {
+        String location = configuration.location() != null ? configuration.location() : System.getProperty("java.io.tmpdir");
+        directory = Paths.get(location, ctx.getCache().getName());
+        stopping = false;
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + LogSegment.SUFFIX)) {
+                for (Path file : files) {
+                    int id = LogSegment.idOf(file);
+                    segments.put(id, LogSegment.open(directory, id));
+                }
+            }
+            if (!readIndex()) {
+                index.clear();
+                tombstones.clear();
+                scan();
+            }
+            Files.deleteIfExists(directory.resolve(INDEX_FILE));
+            for (LogSegment segment : new ArrayList<>(segments.values())) {
+                if (segment.getSize() == 0) {
+                    segments.remove(segment.getId());
+                    segment.delete();
+                } else {
+                    segment.seal();
+                }
+            }
+            active = LogSegment.open(directory, segments.isEmpty() ? 1 : segments.lastKey() + 1);
+        } catch (IOException e) {
+            throw new PersistenceException(e);
+        }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info(String.format("Log store [%s] started with [%d] entries in [%d] segments", directory, index.size(), segments.size()));
+        }
+        long interval = configuration.compactionInterval();
+        if (interval > 0) {
+            compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "hacep-log-compactor-" + ctx.getCache().getName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(this::compact, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        if (configuration.writeBehind()) {
+            writeBehind = new WriteBehind(ctx.getCache().getName(), this::store,
+                    configuration.writeBehindDelay(), configuration.writeBehindQueueSize());
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (writeBehind != null) {
+            try {
+                writeBehind.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PersistenceException(e);
+            }
+            writeBehind = null;
+        }
+        stopping = true;
+        if (compactor != null) {
+            // no interrupts: an interrupted channel read or write closes the channel
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            compactor = null;
+        }
+        lock.writeLock().lock();
+        try {
+            active.force();
+            writeIndex();
+            for (LogSegment segment : segments.values()) {
+                segment.close();
+            }
+            active.close();
+            segments.clear();
+            index.clear();
+            tombstones.clear();
+        } catch (IOException e) {
+            throw new PersistenceException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The entry is marshalled here, on the thread writing it, so that a queued write never holds the value itself.
+     */
+    @Override
+    public void write(MarshalledEntry<? extends K, ? extends V> entry) {
+        InternalMetadata metadata = entry.getMetadata();
+        long expiry = metadata != null ? metadata.expiryTime() : -1;
+        java.nio.ByteBuffer record = encode(PUT, bytes(entry.getKeyBytes()), bytes(entry.getValueBytes()),
+                bytes(entry.getMetadataBytes()), expiry);
+        if (writeBehind != null) {
+            queue(entry.getKey(), record.array());
+        } else {
+            writeRecord(entry.getKey(), record, expiry);
+        }
+    }
+
+    private void store(Object key, byte[] record) {
+        if (record != null) {
+            writeRecord(key, java.nio.ByteBuffer.wrap(record), Record.decode(record).expiry);
+        } else {
+            remove(key, location -> true);
+        }
+    }
+
+    private void queue(Object key, byte[] record) {
+        try {
+            writeBehind.put(key, record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException(e);
+        }
+    }
+
+    private void flush() {
+        if (writeBehind != null) {
+            try {
+                writeBehind.flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PersistenceException(e);
+            }
+        }
+    }
+
+    private void writeRecord(Object key, java.nio.ByteBuffer record, long expiry) {
+        lock.writeLock().lock();
+        try {
+            Location location = append(record, expiry);
+            location.segment.addLive(location.length);
+            release(index.put(key, location));
+            release(tombstones.remove(key));
+        } catch (IOException e) {
+            throw new PersistenceException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(Object key) {
+        if (writeBehind != null) {
+            boolean existed = contains(key);
+            queue(key, null);
+            return existed;
+        }
+        return remove(key, location -> true);
+    }
+
+    private boolean remove(Object key, Predicate<Location> condition) {
+        lock.writeLock().lock();
+        try {
+            Location location = index.get(key);
+            if (location == null || !condition.test(location)) {
+                return false;
+            }
+            index.remove(key);
+            release(location);
+            Location tombstone = append(encode(DELETE, marshall(key), EMPTY, EMPTY, -1), -1);
+            tombstone.segment.addLive(tombstone.length);
+            release(tombstones.put(key, tombstone));
+            return true;
+        } catch (IOException e) {
+            throw new PersistenceException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public MarshalledEntry<K, V> load(Object key) {
+        WriteBehind.Pending queued = writeBehind != null ? writeBehind.get(key) : null;
+        if (queued != null) {
+            return queued.getRecord() != null ? entry(key, Record.decode(queued.getRecord())) : null;
+        }
+        lock.readLock().lock();
+        try {
+            Location location = index.get(key);
+            if (location == null || location.isExpired(now())) {
+                return null;
+            }
+            return entry(key, read(location));
+        } catch (IOException e) {
+            throw new PersistenceException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private MarshalledEntry<K, V> entry(Object key, Record record) {
+        if (record.expiry > 0 && record.expiry < now()) {
+            return null;
+        }
+        return ctx.getMarshalledEntryFactory().newMarshalledEntry(key, buffer(record.value),
+                record.metadata.length > 0 ? buffer(record.metadata) : null);
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        WriteBehind.Pending queued = writeBehind != null ? writeBehind.get(key) : null;
+        if (queued != null) {
+            return queued.getRecord() != null;
+        }
+        Location location = index.get(key);
+        return location != null && !location.isExpired(now());
+    }
+
+    /**
+     * Entries are grouped by segment and read in file order, one task per segment.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void process(KeyFilter<? super K> filter, AdvancedCacheLoader.CacheLoaderTask<K, V> task, Executor executor,
+                        boolean fetchValue, boolean fetchMetadata) {
+        flush();
+        long now = now();
+        Map<Integer, List<Map.Entry<Object, Location>>> bySegment = new TreeMap<>();
+        for (Map.Entry<Object, Location> entry : index.entrySet()) {
+            if (entry.getValue().isExpired(now) || (filter != null && !filter.accept((K) entry.getKey()))) {
+                continue;
+            }
+            bySegment.computeIfAbsent(entry.getValue().segment.getId(), id -> new ArrayList<>()).add(entry);
+        }
+        AdvancedCacheLoader.TaskContext taskContext = new TaskContextImpl();
+        ExecutorAllCompletionService completion = new ExecutorAllCompletionService(executor);
+        for (List<Map.Entry<Object, Location>> batch : bySegment.values()) {
+            batch.sort(Comparator.comparingLong(entry -> entry.getValue().offset));
+            completion.submit(() -> {
+                for (Map.Entry<Object, Location> entry : batch) {
+                    if (taskContext.isStopped()) {
+                        break;
+                    }
+                    MarshalledEntry<K, V> marshalledEntry = fetchValue || fetchMetadata
+                            ? load(entry.getKey())
+                            : ctx.getMarshalledEntryFactory().newMarshalledEntry(entry.getKey(), (Object) null, (InternalMetadata) null);
+                    if (marshalledEntry != null) {
+                        task.processEntry(marshalledEntry, taskContext);
+                    }
+                }
+                return null;
+            });
+        }
+        completion.waitUntilAllCompleted();
+        if (completion.isExceptionThrown()) {
+            throw new PersistenceException("Execution exception!", completion.getFirstException());
+        }
+    }
+
+    @Override
+    public int size() {
+        flush();
+        long now = now();
+        int size = 0;
+        for (Location location : index.values()) {
+            if (!location.isExpired(now)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        flush();
+        lock.writeLock().lock();
+        try {
+            index.clear();
+            tombstones.clear();
+            for (LogSegment segment : segments.values()) {
+                segment.delete();
+            }
+            segments.clear();
+            int next = active.getId() + 1;
+            active.delete();
+            active = LogSegment.open(directory, next);
+        } catch (IOException e) {
+            throw new PersistenceException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void purge(Executor threadPool, PurgeListener<? super K> listener) {
+        long now = now();
+        for (Map.Entry<Object, Location> entry : index.entrySet()) {
+            if (entry.getValue().isExpired(now) && remove(entry.getKey(), location -> location.isExpired(now))) {
+                listener.entryPurged((K) entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Compacts the sealed segments whose live bytes are under the threshold, oldest first.
+     */
+    void compact() {
+        try {
+            for (LogSegment segment : new ArrayList<>(segments.values())) {
+                if (stopping) {
+                    return;
+                }
+                if (segment.getLiveRatio() < configuration.compactionThreshold()) {
+                    compact(segment);
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("Unexpected exception compacting " + directory, e);
+        }
+    }
+
+    private void compact(LogSegment segment) throws IOException, ClassNotFoundException, InterruptedException {
+        long offset = 0;
+        int moved = 0;
+        byte[] header = new byte[4];
+        while (offset < segment.getSize()) {
+            if (stopping) {
+                return;
+            }
+            byte[] bytes;
+            lock.readLock().lock();
+            try {
+                if (segments.get(segment.getId()) != segment) {
+                    return;
+                }
+                segment.read(offset, header);
+                bytes = new byte[4 + java.nio.ByteBuffer.wrap(header).getInt()];
+                segment.read(offset, bytes);
+            } finally {
+                lock.readLock().unlock();
+            }
+            Record record = Record.decode(bytes);
+            Object key = unmarshall(record.key);
+            lock.writeLock().lock();
+            try {
+                Location location = index.get(key);
+                if (record.type == PUT) {
+                    if (location != null && location.segment == segment && location.offset == offset) {
+                        Location copy = append(java.nio.ByteBuffer.wrap(bytes), location.expiry);
+                        copy.segment.addLive(copy.length);
+                        release(index.put(key, copy));
+                        moved++;
+                    }
+                } else {
+                    Location tombstone = tombstones.get(key);
+                    if (tombstone != null && tombstone.segment == segment && tombstone.offset == offset) {
+                        if (location == null && segments.firstKey() < segment.getId()) {
+                            // an older segment may still hold a put of this key
+                            Location copy = append(java.nio.ByteBuffer.wrap(bytes), -1);
+                            copy.segment.addLive(copy.length);
+                            tombstones.put(key, copy);
+                        } else {
+                            tombstones.remove(key);
+                        }
+                        release(tombstone);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            offset += bytes.length;
+        }
+        lock.writeLock().lock();
+        try {
+            // the copies must be on disk before the originals go
+            active.force();
+            if (segments.remove(segment.getId(), segment)) {
+                segment.delete();
+                dropTombstones();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(String.format("Compacted segment [%s], [%d] records moved", segment, moved));
+        }
+    }
+
+    int getSegmentCount() {
+        return segments.size() + 1;
+    }
+
+    public boolean isWriteBehind() {
+        return writeBehind != null;
+    }
+
+    /**
+     * @return keys waiting in the write-behind queue
+     */
+    public int getPendingWrites() {
+        WriteBehind queue = writeBehind;
+        return queue != null ? queue.size() : 0;
+    }
+
+    /**
+     * @return seconds since the oldest update waiting in the write-behind queue
+     */
+    public double getWriteLag() {
+        WriteBehind queue = writeBehind;
+        return queue != null ? queue.getLag() : 0;
+    }
+
+    public long getFlushedWrites() {
+        WriteBehind queue = writeBehind;
+        return queue != null ? queue.getFlushed() : 0;
+    }
+
+    /**
+     * @return updates that replaced one still queued for the same key
+     */
+    public long getCoalescedWrites() {
+        WriteBehind queue = writeBehind;
+        return queue != null ? queue.getCoalesced() : 0;
+    }
+
+    /**
+     * @return writes that waited for the queue to make room
+     */
+    public long getBlockedWrites() {
+        WriteBehind queue = writeBehind;
+        return queue != null ? queue.getBlocked() : 0;
+    }
+
+    private Location append(java.nio.ByteBuffer record, long expiry) throws IOException {
+        int length = record.remaining();
+        if (active.getSize() > 0 && active.getSize() + length > configuration.maxSegmentSize()) {
+            active.seal();
+            segments.put(active.getId(), active);
+            active = LogSegment.open(directory, active.getId() + 1);
+        }
+        long offset = active.append(record);
+        return new Location(active, offset, length, expiry);
+    }
+
+    /**
+     * Releases the tombstones of the oldest segment, which no older put can need anymore, so that the segment
+     * gets compacted once they are most of it.
+     */
+    private void dropTombstones() {
+        int oldest = segments.isEmpty() ? active.getId() : segments.firstKey();
+        Iterator<Location> iterator = tombstones.values().iterator();
+        while (iterator.hasNext()) {
+            Location tombstone = iterator.next();
+            if (tombstone.segment.getId() <= oldest) {
+                release(tombstone);
+                iterator.remove();
+            }
+        }
+    }
+
+    private void release(Location previous) {
+        if (previous != null) {
+            previous.segment.addLive(-previous.length);
+        }
+    }
+
+    private Record read(Location location) throws IOException {
+        byte[] bytes = new byte[location.length];
+        location.segment.read(location.offset, bytes);
+        return Record.decode(bytes);
+    }
+
+    private void scan() throws IOException {
+        for (LogSegment segment : segments.values()) {
+            segment.addLive(-segment.getLive());
+        }
+        byte[] header = new byte[4];
+        for (LogSegment segment : segments.values()) {
+            boolean tail = segment.getId() == segments.lastKey();
+            long offset = 0;
+            long size = segment.getSize();
+            while (offset + HEADER <= size) {
+                segment.read(offset, header);
+                int length = java.nio.ByteBuffer.wrap(header).getInt();
+                if (length < HEADER - 4 || offset + 4 + length > size) {
+                    break;
+                }
+                byte[] bytes = new byte[4 + length];
+                segment.read(offset, bytes);
+                if (!Record.isValid(bytes)) {
+                    break;
+                }
+                Record record = Record.decode(bytes);
+                Object key;
+                try {
+                    key = unmarshall(record.key);
+                } catch (ClassNotFoundException e) {
+                    throw new PersistenceException(e);
+                }
+                segment.addLive(bytes.length);
+                Location location = new Location(segment, offset, bytes.length, record.expiry);
+                if (record.type == PUT) {
+                    release(index.put(key, location));
+                    release(tombstones.remove(key));
+                } else {
+                    release(index.remove(key));
+                    release(tombstones.put(key, location));
+                }
+                offset += bytes.length;
+            }
+            if (offset < size) {
+                if (!tail) {
+                    throw new PersistenceException(String.format("Corrupted record in segment [%s] at [%d], [%d] bytes unreadable", segment, offset, size - offset));
+                }
+                LOGGER.warn(String.format("Torn record at the tail of segment [%s] at [%d], dropping [%d] bytes", segment, offset, size - offset));
+                segment.truncate(offset);
+            }
+        }
+    }
+
+    private boolean readIndex() {
+        Path path = directory.resolve(INDEX_FILE);
+        if (!Files.exists(path)) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        try (DataInputStream input = new DataInputStream(new CheckedInputStream(new BufferedInputStream(Files.newInputStream(path)), crc))) {
+            if (input.readInt() != INDEX_MAGIC || input.readInt() != INDEX_VERSION) {
+                return false;
+            }
+            int segmentCount = input.readInt();
+            if (segmentCount != segments.size()) {
+                return false;
+            }
+            for (int i = 0; i < segmentCount; i++) {
+                LogSegment segment = segments.get(input.readInt());
+                if (segment == null || segment.getSize() != input.readLong()) {
+                    return false;
+                }
+            }
+            if (!readLocations(input, index) || !readLocations(input, tombstones)) {
+                return false;
+            }
+            int expected = (int) crc.getValue();
+            return input.readInt() == expected;
+        } catch (IOException | ClassNotFoundException e) {
+            LOGGER.warn("Unable to read the index of " + directory + ", scanning the segments", e);
+            return false;
+        }
+    }
+
+    private boolean readLocations(DataInputStream input, Map<Object, Location> locations) throws IOException, ClassNotFoundException {
+        int entries = input.readInt();
+        for (int i = 0; i < entries; i++) {
+            byte[] key = new byte[input.readInt()];
+            input.readFully(key);
+            LogSegment segment = segments.get(input.readInt());
+            long offset = input.readLong();
+            int length = input.readInt();
+            long expiry = input.readLong();
+            if (segment == null) {
+                return false;
+            }
+            locations.put(unmarshall(key), new Location(segment, offset, length, expiry));
+            segment.addLive(length);
+        }
+        return true;
+    }
+
+    private void writeIndex() throws IOException, InterruptedException {
+        Path temporary = directory.resolve(INDEX_FILE + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream output = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)), crc))) {
+            output.writeInt(INDEX_MAGIC);
+            output.writeInt(INDEX_VERSION);
+            List<LogSegment> all = new ArrayList<>(segments.values());
+            all.add(active);
+            output.writeInt(all.size());
+            for (LogSegment segment : all) {
+                output.writeInt(segment.getId());
+                output.writeLong(segment.getSize());
+            }
+            writeLocations(output, index);
+            writeLocations(output, tombstones);
+            output.writeInt((int) crc.getValue());
+        }
+        Files.move(temporary, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeLocations(DataOutputStream output, Map<Object, Location> locations) throws IOException, InterruptedException {
+        output.writeInt(locations.size());
+        for (Map.Entry<Object, Location> entry : locations.entrySet()) {
+            byte[] key = marshall(entry.getKey());
+            Location location = entry.getValue();
+            output.writeInt(key.length);
+            output.write(key);
+            output.writeInt(location.segment.getId());
+            output.writeLong(location.offset);
+            output.writeInt(location.length);
+            output.writeLong(location.expiry);
+        }
+    }
+
+    static java.nio.ByteBuffer encode(byte type, byte[] key, byte[] value, byte[] metadata, long expiry) {
+        int length = HEADER - 4 + key.length + value.length + metadata.length;
+        java.nio.ByteBuffer record = java.nio.ByteBuffer.allocate(4 + length);
+        record.putInt(length).putInt(0).put(type)
+                .putInt(key.length).putInt(value.length).putInt(metadata.length).putLong(expiry)
+                .put(key).put(value).put(metadata);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 8, record.capacity() - 8);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    private byte[] marshall(Object key) throws IOException, InterruptedException {
+        return ctx.getMarshaller().objectToByteBuffer(key);
+    }
+
+    private Object unmarshall(byte[] key) throws IOException, ClassNotFoundException {
+        return ctx.getMarshaller().objectFromByteBuffer(key);
+    }
+
+    private ByteBuffer buffer(byte[] bytes) {
+        return ctx.getByteBufferFactory().newByteBuffer(bytes, 0, bytes.length);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        if (buffer == null) {
+            return EMPTY;
+        }
+        if (buffer.getOffset() == 0 && buffer.getLength() == buffer.getBuf().length) {
+            return buffer.getBuf();
+        }
+        return Arrays.copyOfRange(buffer.getBuf(), buffer.getOffset(), buffer.getOffset() + buffer.getLength());
+    }
+
+    private long now() {
+        return ctx.getTimeService().wallClockTime();
+    }
+
+    private static final class Location {
+
+        private final LogSegment segment;
+        private final long offset;
+        private final int length;
+        private final long expiry;
+
+        Location(LogSegment segment, long offset, int length, long expiry) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.expiry = expiry;
+        }
+
+        boolean isExpired(long now) {
+            return expiry > 0 && expiry < now;
+        }
+    }
+
+    static final class Record {
+
+        final byte type;
+        final long expiry;
+        final byte[] key;
+        final byte[] value;
+        final byte[] metadata;
+
+        private Record(byte type, long expiry, byte[] key, byte[] value, byte[] metadata) {
+            this.type = type;
+            this.expiry = expiry;
+            this.key = key;
+            this.value = value;
+            this.metadata = metadata;
+        }
+
+        static boolean isValid(byte[] bytes) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 8, bytes.length - 8);
+            return java.nio.ByteBuffer.wrap(bytes).getInt(4) == (int) crc.getValue();
+        }
+
+        static Record decode(byte[] bytes) {
+            java.nio.ByteBuffer buffer = java.nio.ByteBuffer.wrap(bytes);
+            buffer.position(8);
+            byte type = buffer.get();
+            byte[] key = new byte[buffer.getInt()];
+            byte[] value = new byte[buffer.getInt()];
+            byte[] metadata = new byte[buffer.getInt()];
+            long expiry = buffer.getLong();
+            buffer.get(key).get(value).get(metadata);
+            return new Record(type, expiry, key, value, metadata);
+        }
+    }
+}
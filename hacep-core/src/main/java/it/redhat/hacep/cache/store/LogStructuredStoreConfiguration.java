@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.store;
+
+import org.infinispan.commons.configuration.BuiltBy;
+import org.infinispan.commons.configuration.ConfigurationFor;
+import org.infinispan.commons.configuration.attributes.Attribute;
+import org.infinispan.commons.configuration.attributes.AttributeDefinition;
+import org.infinispan.commons.configuration.attributes.AttributeSet;
+import org.infinispan.configuration.cache.AbstractStoreConfiguration;
+import org.infinispan.configuration.cache.AsyncStoreConfiguration;
+import org.infinispan.configuration.cache.SingletonStoreConfiguration;
+
+@BuiltBy(LogStructuredStoreConfigurationBuilder.class)
+@ConfigurationFor(LogStructuredStore.class)
+public class LogStructuredStoreConfiguration extends AbstractStoreConfiguration {
+
+    static final AttributeDefinition<String> LOCATION = AttributeDefinition.builder("location", null, String.class).immutable().build();
+    static final AttributeDefinition<Long> MAX_SEGMENT_SIZE = AttributeDefinition.builder("maxSegmentSize", 64L * 1024 * 1024).immutable().build();
+    static final AttributeDefinition<Double> COMPACTION_THRESHOLD = AttributeDefinition.builder("compactionThreshold", 0.5).immutable().build();
+    static final AttributeDefinition<Long> COMPACTION_INTERVAL = AttributeDefinition.builder("compactionInterval", 60000L).immutable().build();
+    static final AttributeDefinition<Boolean> WRITE_BEHIND = AttributeDefinition.builder("writeBehind", false).immutable().build();
+    static final AttributeDefinition<Long> WRITE_BEHIND_DELAY = AttributeDefinition.builder("writeBehindDelay", 1000L).immutable().build();
+    static final AttributeDefinition<Integer> WRITE_BEHIND_QUEUE_SIZE = AttributeDefinition.builder("writeBehindQueueSize", 10000).immutable().build();
+
+    public static AttributeSet attributeDefinitionSet() {
+        return new AttributeSet(LogStructuredStoreConfiguration.class, AbstractStoreConfiguration.attributeDefinitionSet(),
+                LOCATION, MAX_SEGMENT_SIZE, COMPACTION_THRESHOLD, COMPACTION_INTERVAL,
+                WRITE_BEHIND, WRITE_BEHIND_DELAY, WRITE_BEHIND_QUEUE_SIZE);
+    }
+
+    private final Attribute<String> location;
+    private final Attribute<Long> maxSegmentSize;
+    private final Attribute<Double> compactionThreshold;
+    private final Attribute<Long> compactionInterval;
+    private final Attribute<Boolean> writeBehind;
+    private final Attribute<Long> writeBehindDelay;
+    private final Attribute<Integer> writeBehindQueueSize;
+
+    public LogStructuredStoreConfiguration(AttributeSet attributes, AsyncStoreConfiguration async, SingletonStoreConfiguration singletonStore) {
+        super(attributes, async, singletonStore);
+        this.location = attributes.attribute(LOCATION);
+        this.maxSegmentSize = attributes.attribute(MAX_SEGMENT_SIZE);
+        this.compactionThreshold = attributes.attribute(COMPACTION_THRESHOLD);
+        this.compactionInterval = attributes.attribute(COMPACTION_INTERVAL);
+        this.writeBehind = attributes.attribute(WRITE_BEHIND);
+        this.writeBehindDelay = attributes.attribute(WRITE_BEHIND_DELAY);
+        this.writeBehindQueueSize = attributes.attribute(WRITE_BEHIND_QUEUE_SIZE);
+    }
+
+    public String location() {
+        return location.get();
+    }
+
+    public long maxSegmentSize() {
+        return maxSegmentSize.get();
+    }
+
+    public double compactionThreshold() {
+        return compactionThreshold.get();
+    }
+
+    public long compactionInterval() {
+        return compactionInterval.get();
+    }
+
+    public boolean writeBehind() {
+        return writeBehind.get();
+    }
+
+    public long writeBehindDelay() {
+        return writeBehindDelay.get();
+    }
+
+    public int writeBehindQueueSize() {
+        return writeBehindQueueSize.get();
+    }
+}
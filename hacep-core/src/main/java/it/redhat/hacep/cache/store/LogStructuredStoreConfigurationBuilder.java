@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.store;
+
+import org.infinispan.commons.CacheConfigurationException;
+import org.infinispan.commons.configuration.Builder;
+import org.infinispan.configuration.cache.AbstractStoreConfigurationBuilder;
+import org.infinispan.configuration.cache.PersistenceConfigurationBuilder;
+
+import static it.redhat.hacep.cache.store.LogStructuredStoreConfiguration.*;
+
+public class LogStructuredStoreConfigurationBuilder
+        extends AbstractStoreConfigurationBuilder<LogStructuredStoreConfiguration, LogStructuredStoreConfigurationBuilder> {
+
+    public LogStructuredStoreConfigurationBuilder(PersistenceConfigurationBuilder builder) {
+        super(builder, LogStructuredStoreConfiguration.attributeDefinitionSet());
+    }
+
+    /**
+     * Directory holding a sub-directory of segments for each cache.
+     */
+    public LogStructuredStoreConfigurationBuilder location(String location) {
+        attributes.attribute(LOCATION).set(location);
+        return this;
+    }
+
+    /**
+     * Size in bytes over which the active segment is sealed and a new one started.
+     */
+    public LogStructuredStoreConfigurationBuilder maxSegmentSize(long maxSegmentSize) {
+        attributes.attribute(MAX_SEGMENT_SIZE).set(maxSegmentSize);
+        return this;
+    }
+
+    /**
+     * Fraction of live bytes under which a sealed segment is compacted.
+     */
+    public LogStructuredStoreConfigurationBuilder compactionThreshold(double compactionThreshold) {
+        attributes.attribute(COMPACTION_THRESHOLD).set(compactionThreshold);
+        return this;
+    }
+
+    /**
+     * Period in milliseconds of the compaction, 0 disables it.
+     */
+    public LogStructuredStoreConfigurationBuilder compactionInterval(long compactionInterval) {
+        attributes.attribute(COMPACTION_INTERVAL).set(compactionInterval);
+        return this;
+    }
+
+    /**
+     * Queues the writes and deletes, coalescing those of the same key, and writes them from a background thread.
+     */
+    public LogStructuredStoreConfigurationBuilder writeBehind(boolean writeBehind) {
+        attributes.attribute(WRITE_BEHIND).set(writeBehind);
+        return this;
+    }
+
+    /**
+     * Milliseconds a queued update waits for more updates of the same key before being written.
+     */
+    public LogStructuredStoreConfigurationBuilder writeBehindDelay(long writeBehindDelay) {
+        attributes.attribute(WRITE_BEHIND_DELAY).set(writeBehindDelay);
+        return this;
+    }
+
+    /**
+     * Keys queued over which writers of new keys block until the queue is written.
+     */
+    public LogStructuredStoreConfigurationBuilder writeBehindQueueSize(int writeBehindQueueSize) {
+        attributes.attribute(WRITE_BEHIND_QUEUE_SIZE).set(writeBehindQueueSize);
+        return this;
+    }
+
+    @Override
+    public void validate() {
+        super.validate();
+        long maxSegmentSize = attributes.attribute(MAX_SEGMENT_SIZE).get();
+        if (maxSegmentSize <= 0 || maxSegmentSize > Integer.MAX_VALUE) {
+            throw new CacheConfigurationException("Log segments must be between 1 byte and 2GB, not " + maxSegmentSize);
+        }
+        if (attributes.attribute(WRITE_BEHIND).get() && attributes.attribute(WRITE_BEHIND_QUEUE_SIZE).get() <= 0) {
+            throw new CacheConfigurationException("The write-behind queue size must be positive");
+        }
+    }
+
+    @Override
+    public LogStructuredStoreConfiguration create() {
+        return new LogStructuredStoreConfiguration(attributes.protect(), async.create(), singletonStore.create());
+    }
+
+    @Override
+    public Builder<?> read(LogStructuredStoreConfiguration template) {
+        super.read(template);
+        return this;
+    }
+
+    @Override
+    public LogStructuredStoreConfigurationBuilder self() {
+        return this;
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Write-behind queue of a {@link LogStructuredStore}. Updates of a key still queued replace the queued one,
+ * so a hot session is written once per delay whatever its fact rate. Writers block while the queue holds
+ * queueSize keys, which are then written without waiting for the delay.
+ * <p>
+ * Only the flusher thread writes to the store, so the writes of a key are never reordered. Entries are
+ * queued as encoded records, marshalled on the writer thread: the flusher never touches the cache values,
+ * which may be changing under their owner meanwhile.
+ */
+class WriteBehind {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehind.class);
+
+    static final int BATCH_SIZE = 256;
+
+    private final Map<Object, Pending> pending = new LinkedHashMap<>();
+    private final BiConsumer<Object, byte[]> writer;
+    private final long delay;
+    private final int queueSize;
+    private final Thread flusher;
+
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+
+    private boolean running = true;
+    private int draining;
+    private long sequence;
+
+    /**
+     * @param writer writes an encoded record to the store, deletes the key when the record is null
+     */
+    WriteBehind(String name, BiConsumer<Object, byte[]> writer, long delay, int queueSize) {
+        this.writer = writer;
+        this.delay = TimeUnit.MILLISECONDS.toNanos(delay);
+        this.queueSize = queueSize;
+        this.flusher = new Thread(this::run, "hacep-log-writer-" + name);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    synchronized void put(Object key, byte[] record) throws InterruptedException {
+        boolean waited = false;
+        while (!pending.containsKey(key) && pending.size() >= queueSize) {
+            if (!waited) {
+                blocked.increment();
+                waited = true;
+            }
+            notifyAll();
+            wait();
+        }
+        Pending queued = pending.get(key);
+        if (queued != null) {
+            queued.record = record;
+            queued.sequence = ++sequence;
+            coalesced.increment();
+        } else {
+            pending.put(key, new Pending(record, System.nanoTime(), ++sequence));
+            if (pending.size() == 1) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return the queued update of the key, with a null record for a delete, or null if none
+     */
+    synchronized Pending get(Object key) {
+        Pending queued = pending.get(key);
+        return queued != null ? new Pending(queued.record, queued.since, queued.sequence) : null;
+    }
+
+    /**
+     * Waits for the updates queued before the call to be written.
+     */
+    synchronized void flush() throws InterruptedException {
+        long target = sequence;
+        draining++;
+        try {
+            notifyAll();
+            while (isQueued(target)) {
+                wait();
+            }
+        } finally {
+            draining--;
+        }
+    }
+
+    /**
+     * Writes every queued update and stops the flusher.
+     */
+    void close() throws InterruptedException {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        flusher.join();
+    }
+
+    private boolean isQueued(long target) {
+        for (Pending queued : pending.values()) {
+            if (queued.sequence <= target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void run() {
+        List<Object> keys = new ArrayList<>(BATCH_SIZE);
+        List<Pending> batch = new ArrayList<>(BATCH_SIZE);
+        while (true) {
+            boolean closing;
+            synchronized (this) {
+                try {
+                    long wait;
+                    while ((wait = nextDue()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(this, wait);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                closing = !running;
+                if (closing && pending.isEmpty()) {
+                    return;
+                }
+                boolean all = closing || draining > 0 || pending.size() >= queueSize;
+                long now = System.nanoTime();
+                Iterator<Map.Entry<Object, Pending>> iterator = pending.entrySet().iterator();
+                while (iterator.hasNext() && keys.size() < BATCH_SIZE) {
+                    Map.Entry<Object, Pending> queued = iterator.next();
+                    if (!all && now - queued.getValue().since < delay) {
+                        break;
+                    }
+                    keys.add(queued.getKey());
+                    batch.add(new Pending(queued.getValue().record, queued.getValue().since, queued.getValue().sequence));
+                }
+            }
+            boolean failed = false;
+            for (int i = 0; i < keys.size(); i++) {
+                try {
+                    writer.accept(keys.get(i), batch.get(i).record);
+                } catch (RuntimeException e) {
+                    if (!closing) {
+                        LOGGER.error("Unable to write " + keys.get(i) + ", retrying", e);
+                        batch.set(i, null);
+                        failed = true;
+                    } else {
+                        LOGGER.error("Unable to write " + keys.get(i) + " on stop, the update is lost", e);
+                    }
+                }
+            }
+            synchronized (this) {
+                for (int i = 0; i < keys.size(); i++) {
+                    Pending written = batch.get(i);
+                    Pending queued = pending.get(keys.get(i));
+                    if (queued != null && written != null && queued.sequence == written.sequence) {
+                        pending.remove(keys.get(i));
+                        flushed.increment();
+                    } else if (written == null && queued != null) {
+                        // retry later, after the keys queued behind it
+                        queued.since = System.nanoTime();
+                    }
+                }
+                notifyAll();
+                if (failed) {
+                    try {
+                        TimeUnit.SECONDS.timedWait(this, 1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            keys.clear();
+            batch.clear();
+        }
+    }
+
+    /**
+     * @return nanoseconds before the oldest queued update is due, 0 if one is due now
+     */
+    private long nextDue() {
+        if (!running || (draining > 0 && !pending.isEmpty()) || pending.size() >= queueSize) {
+            return 0;
+        }
+        if (pending.isEmpty()) {
+            return delay > 0 ? delay : TimeUnit.SECONDS.toNanos(1);
+        }
+        long due = pending.values().iterator().next().since + delay - System.nanoTime();
+        return Math.max(due, 0);
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * @return seconds since the oldest queued update, 0 when the queue is empty
+     */
+    synchronized double getLag() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        return (System.nanoTime() - pending.values().iterator().next().since) / 1e9;
+    }
+
+    long getFlushed() {
+        return flushed.sum();
+    }
+
+    long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    long getBlocked() {
+        return blocked.sum();
+    }
+
+    static final class Pending {
+
+        private byte[] record;
+        private long since;
+        private long sequence;
+
+        Pending(byte[] record, long since, long sequence) {
+            this.record = record;
+            this.since = since;
+            this.sequence = sequence;
+        }
+
+        byte[] getRecord() {
+            return record;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.transfer;
+
+import it.redhat.hacep.cache.session.HAKieSerializedSession;
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.context.Flag;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.interceptors.base.BaseCustomInterceptor;
+
+/**
+ * Counts the sessions applied by the state transfer of the session cache, the only puts flagged
+ * PUT_FOR_STATE_TRANSFER, on the {@link StateTransferProgress} of the node.
+ */
+public class ReceivedStateInterceptor extends BaseCustomInterceptor {
+
+    private final StateTransferProgress progress;
+
+    public ReceivedStateInterceptor(StateTransferProgress progress) {
+        this.progress = progress;
+    }
+
+    @Override
+    public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable {
+        if (command.hasFlag(Flag.PUT_FOR_STATE_TRANSFER)) {
+            Object value = command.getValue();
+            progress.received(value instanceof HAKieSerializedSession ? ((HAKieSerializedSession) value).getSessionSize() : 0);
+        }
+        return invokeNextInterceptor(ctx, command);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.transfer;
+
+import it.redhat.hacep.support.RateLimiter;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.remoting.transport.Address;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the sessions moved during a rehash and throttles the outbound session state. Sessions sent are reported
+ * by the {@link StateTransferThreads} of the state transfer executor, sessions received by the
+ * {@link ReceivedStateInterceptor}; other marshalling of the sessions is not state transfer and is not counted.
+ * Expected sessions and time remaining are estimates based on the local sessions per owned segment.
+ */
+public class StateTransferProgress implements StateTransferProgressMBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StateTransferProgress.class);
+
+    private final RateLimiter throttle;
+
+    private final AtomicLong sessionsReceived = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong sessionsSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    private volatile boolean inProgress = false;
+    private volatile long startTime = 0;
+    private volatile long lastDuration = 0;
+    private volatile int incomingSegments = 0;
+    private volatile long expectedSessions = 0;
+
+    public StateTransferProgress(long bytesPerSecond) {
+        this.throttle = new RateLimiter(bytesPerSecond);
+    }
+
+    public void started(ConsistentHash start, ConsistentHash end, Address self, int localSessions) {
+        int incoming = 0;
+        int owned = 0;
+        if (start != null && end != null && self != null) {
+            for (int segment = 0; segment < end.getNumSegments(); segment++) {
+                boolean ownedAtStart = segment < start.getNumSegments() && start.locateOwnersForSegment(segment).contains(self);
+                if (ownedAtStart) {
+                    owned++;
+                } else if (end.locateOwnersForSegment(segment).contains(self)) {
+                    incoming++;
+                }
+            }
+        }
+        sessionsReceived.set(0);
+        bytesReceived.set(0);
+        sessionsSent.set(0);
+        bytesSent.set(0);
+        this.incomingSegments = incoming;
+        this.expectedSessions = owned > 0 ? (long) incoming * localSessions / owned : 0;
+        this.startTime = System.currentTimeMillis();
+        this.inProgress = true;
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info(String.format("State transfer started: incoming segments [%d], expected sessions [%d]", incoming, expectedSessions));
+        }
+    }
+
+    public void finished() {
+        if (inProgress) {
+            inProgress = false;
+            lastDuration = System.currentTimeMillis() - startTime;
+            if (LOGGER.isInfoEnabled()) {
+                LOGGER.info("State transfer finished: " + info());
+            }
+        }
+    }
+
+    public void received(int bytes) {
+        if (inProgress) {
+            sessionsReceived.incrementAndGet();
+            bytesReceived.addAndGet(bytes);
+        }
+    }
+
+    public void sent(int bytes) {
+        if (inProgress) {
+            sessionsSent.incrementAndGet();
+            bytesSent.addAndGet(bytes);
+            throttle.acquire(bytes);
+        }
+    }
+
+    @Override
+    public boolean isInProgress() {
+        return inProgress;
+    }
+
+    @Override
+    public long getElapsedTime() {
+        return inProgress ? System.currentTimeMillis() - startTime : 0;
+    }
+
+    @Override
+    public long getLastDuration() {
+        return lastDuration;
+    }
+
+    @Override
+    public int getIncomingSegments() {
+        return incomingSegments;
+    }
+
+    @Override
+    public long getExpectedSessions() {
+        return expectedSessions;
+    }
+
+    @Override
+    public long getSessionsReceived() {
+        return sessionsReceived.get();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    @Override
+    public long getSessionsSent() {
+        return sessionsSent.get();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    @Override
+    public long getEstimatedTimeRemaining() {
+        long received = sessionsReceived.get();
+        long elapsed = getElapsedTime();
+        if (!inProgress || received == 0 || elapsed == 0) {
+            return -1;
+        }
+        long remaining = Math.max(0, expectedSessions - received);
+        return remaining * elapsed / received;
+    }
+
+    @Override
+    public long getThrottle() {
+        return throttle.getPermitsPerSecond();
+    }
+
+    public String info() {
+        return String.format("in progress [%s], elapsed [%d ms], last duration [%d ms], incoming segments [%d], " +
+                        "sessions received [%d/%d], bytes received [%d], sessions sent [%d], bytes sent [%d], ETA [%d ms]",
+                inProgress, getElapsedTime(), lastDuration, incomingSegments,
+                getSessionsReceived(), expectedSessions, getBytesReceived(), getSessionsSent(), getBytesSent(),
+                getEstimatedTimeRemaining());
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.transfer;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factory of the state transfer executor, which pushes the sessions of the moving segments to their new
+ * owners. Sessions marshalled on these threads are outbound state: {@link #sent(int)} counts and throttles them
+ * on the {@link StateTransferProgress} of the node, and does nothing on any other thread, so that replication,
+ * store writes and passivation are neither counted nor slowed down.
+ * <p>
+ * The tasks run here are Infinispan's outbound transfers, which walk the segments and their sessions in their own
+ * order: there is no hook to send the sessions of hot groups first. Hot groups only come first when the facts
+ * parked during the rehash are replayed, see {@link it.redhat.hacep.cache.RehashBuffer}.
+ */
+public class StateTransferThreads implements ThreadFactory {
+
+    private final StateTransferProgress progress;
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    public StateTransferThreads(StateTransferProgress progress, String nodeName) {
+        this.progress = progress;
+        this.prefix = "hacep-state-transfer-" + nodeName + "-";
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new TransferThread(runnable, prefix + count.incrementAndGet(), progress);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Accounts for a session of the given size marshalled by the current thread.
+     */
+    public static void sent(int bytes) {
+        Thread current = Thread.currentThread();
+        if (current instanceof TransferThread) {
+            ((TransferThread) current).progress.sent(bytes);
+        }
+    }
+
+    private static final class TransferThread extends Thread {
+
+        private final StateTransferProgress progress;
+
+        TransferThread(Runnable runnable, String name, StateTransferProgress progress) {
+            super(runnable, name);
+            this.progress = progress;
+        }
+    }
+}
@@ -18,21 +18,43 @@
 package it.redhat.hacep.configuration;
 
 import it.redhat.hacep.cache.session.*;
+import it.redhat.hacep.cache.store.LogStructuredStore;
+import it.redhat.hacep.cache.store.LogStructuredStoreConfigurationBuilder;
+import it.redhat.hacep.cache.transfer.ReceivedStateInterceptor;
+import it.redhat.hacep.cache.transfer.StateTransferProgress;
+import it.redhat.hacep.cache.transfer.StateTransferThreads;
 import it.redhat.hacep.model.Fact;
 import it.redhat.hacep.model.Key;
+import it.redhat.hacep.support.JmxUtils;
 import org.infinispan.Cache;
+import org.infinispan.commons.executors.BlockingThreadPoolExecutorFactory;
+import org.infinispan.commons.marshall.StreamingMarshaller;
+import org.infinispan.configuration.cache.AbstractStoreConfigurationBuilder;
 import org.infinispan.configuration.cache.CacheMode;
 import org.infinispan.configuration.cache.Configuration;
 import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.cache.InterceptorConfiguration;
+import org.infinispan.configuration.cache.PersistenceConfigurationBuilder;
+import org.infinispan.configuration.cache.StoreConfiguration;
 import org.infinispan.configuration.global.GlobalConfiguration;
 import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.distribution.DistributionManager;
 import org.infinispan.eviction.EvictionStrategy;
 import org.infinispan.eviction.EvictionType;
+import org.infinispan.factories.KnownComponentNames;
 import org.infinispan.manager.DefaultCacheManager;
 import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.persistence.manager.PersistenceManager;
+import org.infinispan.remoting.transport.Address;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.ObjectName;
+import java.io.File;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -48,21 +70,40 @@ public class DataGridManager {
 
     private static final String REPLICATED_CACHE_NAME = "___infos";
 
+    private static final String PREFETCH_CACHE_NAME = "___prefetch";
+
     private final AtomicBoolean started = new AtomicBoolean(false);
 
     private DefaultCacheManager manager;
 
+    private StateTransferProgress stateTransferProgress;
+    private ObjectName stateTransferProgressName;
+    private SessionStatistics sessionStatistics;
+    private SessionPreloader sessionPreloader;
+
     public void start(HAKieSessionBuilder builder, String nodeName) {
         if (started.compareAndSet(false, true)) {
-            GlobalConfiguration globalConfiguration = new GlobalConfigurationBuilder().clusteredDefault()
+            this.stateTransferProgress = new StateTransferProgress(stateTransferThrottle());
+
+            GlobalConfigurationBuilder globalConfigurationBuilder = new GlobalConfigurationBuilder().clusteredDefault();
+            globalConfigurationBuilder
                     .transport().addProperty("configurationFile", System.getProperty("jgroups.configuration", "jgroups-tcp.xml"))
                     .clusterName("HACEP").nodeName(nodeName)
                     .globalJmxStatistics().allowDuplicateDomains(true).enable()
+                    .stateTransferThreadPool().threadFactory(new StateTransferThreads(stateTransferProgress, nodeName));
+            Integer stateTransferThreads = stateTransferThreads();
+            if (stateTransferThreads != null) {
+                // otherwise the Infinispan default pool
+                globalConfigurationBuilder.stateTransferThreadPool()
+                        .threadPoolFactory(new BlockingThreadPoolExecutorFactory(stateTransferThreads, 1, 0, 60000));
+            }
+            GlobalConfiguration globalConfiguration = globalConfigurationBuilder
                     .serialization()
                     .addAdvancedExternalizer(new HAKieSession.HASessionExternalizer(builder))
                     .addAdvancedExternalizer(new HAKieSerializedSession.HASerializedSessionExternalizer(builder))
                     .addAdvancedExternalizer(new HAKieSessionDeltaEmpty.HASessionDeltaEmptyExternalizer(builder))
-                    .addAdvancedExternalizer(new HAKieSessionDeltaFact.HASessionDeltaFactExternalizer())
+                    .addAdvancedExternalizer(new HAKieSessionDeltaFact.HASessionDeltaFactExternalizer(builder))
+                    .addAdvancedExternalizer(new HAKieSessionFullSnapshot.HASessionFullSnapshotExternalizer(builder))
                     .build();
 
             ConfigurationBuilder commonConfigurationBuilder = new ConfigurationBuilder();
@@ -85,24 +126,45 @@ public class DataGridManager {
                     .expiration()
                     .maxIdle(factsExpiration(), TimeUnit.MILLISECONDS);
 
+            // prefetch requests are keyed by session group, so they reach the primary owner of the session
+            ConfigurationBuilder prefetchCacheConfigurationBuilder = new ConfigurationBuilder().read(commonConfiguration);
+            prefetchCacheConfigurationBuilder
+                    .expiration()
+                    .lifespan(getPrefetchRecentTtl(), TimeUnit.MILLISECONDS);
+
             ConfigurationBuilder sessionCacheConfigurationBuilder = new ConfigurationBuilder().read(commonConfiguration);
+            sessionCacheConfigurationBuilder
+                    .clustering().stateTransfer()
+                    .chunkSize(stateTransferChunkSize())
+                    .timeout(stateTransferTimeout());
+            sessionCacheConfigurationBuilder
+                    .customInterceptors().addInterceptor()
+                    .interceptor(new ReceivedStateInterceptor(stateTransferProgress)).position(InterceptorConfiguration.Position.FIRST);
             ConfigurationBuilder replicatedInfos = new ConfigurationBuilder();
             replicatedInfos.clustering().cacheMode(CacheMode.REPL_SYNC);
 
             if (persistence()) {
-                sessionCacheConfigurationBuilder
+                PersistenceConfigurationBuilder sessionPersistence = sessionCacheConfigurationBuilder
                         .persistence()
-                        .passivation(isPassivated())
-                        .addSingleFileStore()
-                        .shared(shared())
-                        .preload(preload())
-                        .fetchPersistentState(fetchPersistentState())
-                        .purgeOnStartup(purgeOnStartup())
-                        .location(location())
-                        .async().threadPoolSize(threadPoolSize()).enabled(false)
-                        .singleton().enabled(false)
+                        .passivation(isPassivated());
+                if (isLogStore()) {
+                    configureStore(sessionPersistence.addStore(LogStructuredStoreConfigurationBuilder.class)
+                            .location(location())
+                            .maxSegmentSize(logSegmentSize())
+                            .compactionThreshold(logCompactionThreshold())
+                            .compactionInterval(logCompactionInterval())
+                            .writeBehind(writeBehind())
+                            .writeBehindDelay(writeBehindDelay())
+                            .writeBehindQueueSize(writeBehindQueueSize()), false);
+                } else {
+                    configureStore(sessionPersistence.addSingleFileStore().location(location()), writeBehind());
+                }
+                sessionCacheConfigurationBuilder
                         .eviction()
                         .strategy(EvictionStrategy.LRU).type(EvictionType.COUNT).size(evictionSize());
+                if (getSessionMemoryBudget() > 0 && System.getProperty("grid.persistence.evictionSize") == null) {
+                    sessionCacheConfigurationBuilder.eviction().strategy(EvictionStrategy.NONE).size(-1);
+                }
 
                 replicatedInfos
                         .persistence()
@@ -120,11 +182,30 @@ public class DataGridManager {
             this.manager.defineConfiguration(FACT_CACHE_NAME, factCacheConfigurationBuilder.build());
             this.manager.defineConfiguration(SESSION_CACHE_NAME, sessionCacheConfigurationBuilder.build());
             this.manager.defineConfiguration(REPLICATED_CACHE_NAME, replicatedInfos.build());
+            this.manager.defineConfiguration(PREFETCH_CACHE_NAME, prefetchCacheConfigurationBuilder.build());
 
             this.manager.start();
+            // set before the caches start, so that the facts logged during state transfer use it as well
+            builder.setFactMarshaller(this.manager.getGlobalComponentRegistry()
+                    .getComponent(StreamingMarshaller.class, KnownComponentNames.GLOBAL_MARSHALLER));
+            this.sessionStatistics = new SessionStatistics(getSessionCache(), this::isLocalPrimary);
+            if (persistence() && preload()) {
+                this.sessionPreloader = new SessionPreloader(getSessionCache(), this::isLocalPrimary, this::isLocal, preloadThreads());
+            }
+            this.stateTransferProgressName = JmxUtils.register(stateTransferProgress, "StateTransfer", nodeName);
         }
     }
 
+    private <T extends StoreConfiguration, S extends AbstractStoreConfigurationBuilder<T, S>> void configureStore(S store, boolean async) {
+        // preloaded by the SessionPreloader once the cluster is formed, primary sessions first
+        store.shared(shared())
+                .preload(false)
+                .fetchPersistentState(fetchPersistentState())
+                .purgeOnStartup(purgeOnStartup())
+                .async().threadPoolSize(threadPoolSize()).enabled(async).modificationQueueSize(writeBehindQueueSize())
+                .singleton().enabled(false);
+    }
+
     public boolean waitForMinimumOwners(long timeout, TimeUnit unit) {
         checkStatus();
 
@@ -149,9 +230,29 @@ public class DataGridManager {
         }
     }
 
+    /**
+     * Loads the primary sessions of this node from the cache store, then the others in the background.
+     * Call it once the cluster is formed, so that the primary owners are known.
+     */
+    public void preloadSessions() {
+        checkStatus();
+        if (sessionPreloader != null) {
+            sessionPreloader.preloadPrimary();
+            sessionPreloader.preloadRemainder();
+        }
+    }
+
+    public SessionPreloader getSessionPreloader() {
+        return sessionPreloader;
+    }
+
     public void stop() {
         if (started.compareAndSet(true, false)) {
+            if (sessionPreloader != null) {
+                sessionPreloader.stop();
+            }
             LOGGER.info("Stopping cache manager");
+            JmxUtils.unregister(stateTransferProgressName);
             this.manager.stop();
             ExecutorService service = Executors.newSingleThreadExecutor();
             service.submit(() -> {
@@ -184,19 +285,68 @@ public class DataGridManager {
         return this.manager.getCache(SESSION_CACHE_NAME, true);
     }
 
+    public Cache<String, Long> getPrefetchCache() {
+        checkStatus();
+        return this.manager.getCache(PREFETCH_CACHE_NAME, true);
+    }
+
+    /**
+     * @return the log store of the session cache, null when grid.persistence.store is not log
+     */
+    public LogStructuredStore<?, ?> getLogStore() {
+        if (!persistence() || !isLogStore()) {
+            return null;
+        }
+        PersistenceManager persistenceManager = getSessionCache().getAdvancedCache().getComponentRegistry()
+                .getComponent(PersistenceManager.class);
+        Iterator<LogStructuredStore> stores = persistenceManager.getStores(LogStructuredStore.class).iterator();
+        return stores.hasNext() ? stores.next() : null;
+    }
+
     public EmbeddedCacheManager getCacheManager() {
         return manager;
     }
 
+    public StateTransferProgress getStateTransferProgress() {
+        return stateTransferProgress;
+    }
+
     private void checkStatus() {
         if (!started.get()) {
             throw new IllegalStateException("Datagrid manager needs to be started!");
         }
     }
 
+    public SessionStatistics getSessionStatistics() {
+        checkStatus();
+        return sessionStatistics;
+    }
+
+    public boolean isLocalPrimary(Object key) {
+        DistributionManager distributionManager = getSessionCache().getAdvancedCache().getDistributionManager();
+        Address address = manager.getAddress();
+        return distributionManager == null || address == null || address.equals(distributionManager.getPrimaryLocation(key));
+    }
+
+    public boolean isLocal(Object key) {
+        DistributionManager distributionManager = getSessionCache().getAdvancedCache().getDistributionManager();
+        return distributionManager == null || distributionManager.getLocality(key).isLocal();
+    }
+
+    public Set<String> getLocalPrimarySessionKeys() {
+        checkStatus();
+        Set<String> keys = new HashSet<>();
+        for (InternalCacheEntry<String, Object> entry : getSessionCache().getAdvancedCache().getDataContainer()) {
+            if (isLocalPrimary(entry.getKey())) {
+                keys.add(entry.getKey());
+            }
+        }
+        return keys;
+    }
+
     public void removeSession(Key key) {
         checkStatus();
-        this.getSessionCache().remove(key);
+        this.getSessionCache().remove(key.getGroup());
     }
 
     public String info() {
@@ -208,13 +358,88 @@ public class DataGridManager {
         info.append("Cluster Name: ").append(manager.getClusterName()).append("\n");
         info.append("Member list: ").append(manager.getMembers()).append("\n");
         info.append("Caches: ").append(manager.getCacheNames()).append("\n");
+        info.append("Sessions state transfer: ").append(stateTransferProgress.info()).append("\n");
+        if (sessionPreloader != null) {
+            info.append("Sessions preload: ").append(sessionPreloader.info()).append("\n");
+        }
+        if (started.get()) {
+            info.append(sessionStatistics.report(SessionStatistics.getTopSize()));
+        }
         return info.toString();
     }
 
     public String status() {
+        if (sessionPreloader != null && sessionPreloader.getPhase() != SessionPreloader.Phase.DONE) {
+            return manager.getStatus() + ", " + sessionPreloader.info();
+        }
         return manager.getStatus().toString();
     }
 
+    public boolean isHandoffEnabled() {
+        try {
+            return Boolean.valueOf(System.getProperty("grid.shutdown.handoff", "true"));
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    public long getShutdownTimeout() {
+        try {
+            return Long.valueOf(System.getProperty("grid.shutdown.timeout", "30000"));
+        } catch (IllegalArgumentException e) {
+            return 30000;
+        }
+    }
+
+    public long getLogCompactionInterval() {
+        try {
+            return Long.valueOf(System.getProperty("grid.replication.log.compactionInterval", "60000"));
+        } catch (IllegalArgumentException e) {
+            return 60000;
+        }
+    }
+
+    public int getRehashBufferSize() {
+        try {
+            return Integer.valueOf(System.getProperty("grid.rehash.buffer", "10000"));
+        } catch (IllegalArgumentException e) {
+            return 10000;
+        }
+    }
+
+    private int stateTransferChunkSize() {
+        try {
+            return Integer.valueOf(System.getProperty("grid.stateTransfer.chunkSize", "16"));
+        } catch (IllegalArgumentException e) {
+            return 16;
+        }
+    }
+
+    private long stateTransferTimeout() {
+        try {
+            return Long.valueOf(System.getProperty("grid.stateTransfer.timeout", "240000"));
+        } catch (IllegalArgumentException e) {
+            return 240000;
+        }
+    }
+
+    private Integer stateTransferThreads() {
+        try {
+            String threads = System.getProperty("grid.stateTransfer.threads");
+            return threads != null ? Integer.valueOf(threads) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private long stateTransferThrottle() {
+        try {
+            return Long.valueOf(System.getProperty("grid.stateTransfer.throttle", "0"));
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
     private CacheMode getCacheMode() {
         try {
             return CacheMode.valueOf(System.getProperty("grid.mode", "DIST_SYNC"));
@@ -231,6 +456,303 @@ public class DataGridManager {
         }
     }
 
+    /**
+     * @return bytes of sessions this node may hold before evicting the coldest ones, 0 when the sessions are
+     * only evicted by count. Needs grid.persistence and passivation, so that evicted sessions are not lost.
+     */
+    public long getSessionMemoryBudget() {
+        if (!persistence() || !isPassivated()) {
+            return 0;
+        }
+        return (long) (Runtime.getRuntime().maxMemory() * memoryFraction());
+    }
+
+    public long getSessionMemoryCheckInterval() {
+        try {
+            return Long.valueOf(System.getProperty("grid.persistence.memory.checkInterval", "1000"));
+        } catch (IllegalArgumentException e) {
+            return 1000;
+        }
+    }
+
+    public long getFactBytes() {
+        try {
+            return Long.valueOf(System.getProperty("grid.persistence.memory.factBytes", "512"));
+        } catch (IllegalArgumentException e) {
+            return 512;
+        }
+    }
+
+    /**
+     * @return idle milliseconds before a live session is demoted to a compressed snapshot, 0 disables it
+     */
+    public long getSessionWarmAfter() {
+        try {
+            return Long.valueOf(System.getProperty("grid.sessions.warmAfter", "0"));
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return idle milliseconds before a warm session is evicted to the cache store, 0 without grid.persistence
+     */
+    public long getSessionColdAfter() {
+        if (!persistence()) {
+            return 0;
+        }
+        try {
+            return Long.valueOf(System.getProperty("grid.sessions.coldAfter", "0"));
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
+    public int getMaxHotSessions() {
+        try {
+            return Integer.valueOf(System.getProperty("grid.sessions.hot.max", "0"));
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
+    public int getMaxWarmSessions() {
+        if (!persistence()) {
+            return 0;
+        }
+        try {
+            return Integer.valueOf(System.getProperty("grid.sessions.warm.max", "0"));
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
+    public long getSessionTieringInterval() {
+        try {
+            return Long.valueOf(System.getProperty("grid.sessions.tiering.checkInterval", "1000"));
+        } catch (IllegalArgumentException e) {
+            return 1000;
+        }
+    }
+
+    /**
+     * @return idle milliseconds after which the sweeper removes a session, 0 for no limit
+     */
+    public long getSessionIdleTtl() {
+        try {
+            return Long.valueOf(System.getProperty("grid.sessions.idleTtl", "0"));
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return milliseconds from its creation after which the sweeper removes a session, 0 for no limit
+     */
+    public long getSessionMaxAge() {
+        try {
+            return Long.valueOf(System.getProperty("grid.sessions.maxAge", "0"));
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
+    public long getSessionSweepInterval() {
+        try {
+            return Long.valueOf(System.getProperty("grid.sessions.sweep.interval", "60000"));
+        } catch (IllegalArgumentException e) {
+            return 60000;
+        }
+    }
+
+    public long getSessionSweepRate() {
+        try {
+            return Long.valueOf(System.getProperty("grid.sessions.sweep.rate", "1000"));
+        } catch (IllegalArgumentException e) {
+            return 1000;
+        }
+    }
+
+    /**
+     * @return the file the expired sessions are archived to, null when they are dropped
+     */
+    public File getSessionArchiveFile() {
+        boolean archive;
+        try {
+            archive = Boolean.valueOf(System.getProperty("grid.sessions.archive", "true"));
+        } catch (IllegalArgumentException e) {
+            archive = true;
+        }
+        if (!archive) {
+            return null;
+        }
+        String defaultFile = new File(location(), "hacep-sessions-archive-" + manager.getAddress() + ".gz").getPath();
+        try {
+            return new File(System.getProperty("grid.sessions.archive.file", defaultFile));
+        } catch (IllegalArgumentException e) {
+            return new File(defaultFile);
+        }
+    }
+
+    /**
+     * @return milliseconds between two clock ticks of a live primary session, 0 disables the ticks
+     */
+    public long getClockTickInterval() {
+        try {
+            return Long.valueOf(System.getProperty("grid.clock.tick.interval", "0"));
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return whether the sessions are ticked to the latest fact instant of the node instead of the wall time
+     */
+    public boolean isClockTickWatermark() {
+        return "watermark".equalsIgnoreCase(System.getProperty("grid.clock.tick.source", "wall"));
+    }
+
+    /**
+     * @return milliseconds the ticks stay behind their source time, so as not to overtake the facts in flight
+     */
+    public long getClockTickLag() {
+        try {
+            return Long.valueOf(System.getProperty("grid.clock.tick.lag", "1000"));
+        } catch (IllegalArgumentException e) {
+            return 1000;
+        }
+    }
+
+    public int getClockTickSlots() {
+        try {
+            return Integer.valueOf(System.getProperty("grid.clock.tick.slots", "10"));
+        } catch (IllegalArgumentException e) {
+            return 10;
+        }
+    }
+
+    public int getClockTickBatch() {
+        try {
+            return Integer.valueOf(System.getProperty("grid.clock.tick.batch", "1000"));
+        } catch (IllegalArgumentException e) {
+            return 1000;
+        }
+    }
+
+    public long getClockTickRate() {
+        try {
+            return Long.valueOf(System.getProperty("grid.clock.tick.rate", "1000"));
+        } catch (IllegalArgumentException e) {
+            return 1000;
+        }
+    }
+
+    public boolean isReorderEnabled() {
+        try {
+            return Boolean.valueOf(System.getProperty("grid.reorder", "false"));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return milliseconds the facts of a group are held for the late ones, in event time and in wall time
+     */
+    public long getReorderLateness() {
+        try {
+            return Long.valueOf(System.getProperty("grid.reorder.lateness", "100"));
+        } catch (IllegalArgumentException e) {
+            return 100;
+        }
+    }
+
+    public int getReorderMaxPerGroup() {
+        try {
+            return Integer.valueOf(System.getProperty("grid.reorder.maxPerGroup", "1000"));
+        } catch (IllegalArgumentException e) {
+            return 1000;
+        }
+    }
+
+    public int getReorderCapacity() {
+        try {
+            return Integer.valueOf(System.getProperty("grid.reorder.capacity", "100000"));
+        } catch (IllegalArgumentException e) {
+            return 100000;
+        }
+    }
+
+    /**
+     * @return the rules channel receiving the facts too late to be reordered, empty to insert them anyway
+     */
+    public String getReorderLateChannel() {
+        try {
+            return System.getProperty("grid.reorder.lateChannel", "");
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    public boolean isPrefetchEnabled() {
+        try {
+            return Boolean.valueOf(System.getProperty("grid.prefetch", "false"));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public long getPrefetchWindow() {
+        try {
+            return Long.valueOf(System.getProperty("grid.prefetch.window", "20"));
+        } catch (IllegalArgumentException e) {
+            return 20;
+        }
+    }
+
+    public int getPrefetchRecent() {
+        try {
+            return Integer.valueOf(System.getProperty("grid.prefetch.recent", "100000"));
+        } catch (IllegalArgumentException e) {
+            return 100000;
+        }
+    }
+
+    public long getPrefetchRecentTtl() {
+        try {
+            return Long.valueOf(System.getProperty("grid.prefetch.recentTtl", "60000"));
+        } catch (IllegalArgumentException e) {
+            return 60000;
+        }
+    }
+
+    public int getPrefetchCapacity() {
+        try {
+            return Integer.valueOf(System.getProperty("grid.prefetch.capacity", "10000"));
+        } catch (IllegalArgumentException e) {
+            return 10000;
+        }
+    }
+
+    public int getPrefetchThreads() {
+        try {
+            return Integer.valueOf(System.getProperty("grid.prefetch.threads", "4"));
+        } catch (IllegalArgumentException e) {
+            return 4;
+        }
+    }
+
+    public boolean isPersistenceEnabled() {
+        return persistence();
+    }
+
+    private double memoryFraction() {
+        try {
+            return Math.max(0, Math.min(1, Double.valueOf(System.getProperty("grid.persistence.memory.fraction", "0"))));
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
     private boolean persistence() {
         try {
             return Boolean.valueOf(System.getProperty("grid.persistence", "false"));
@@ -287,6 +809,15 @@ public class DataGridManager {
         }
     }
 
+    private int preloadThreads() {
+        try {
+            return Integer.valueOf(System.getProperty("grid.persistence.preload.threads",
+                    String.valueOf(Runtime.getRuntime().availableProcessors())));
+        } catch (IllegalArgumentException e) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+    }
+
     private int threadPoolSize() {
         try {
             return Integer.valueOf(System.getProperty("grid.persistence.threadPoolSize", "5"));
@@ -303,6 +834,61 @@ public class DataGridManager {
         }
     }
 
+    private boolean isLogStore() {
+        return "log".equalsIgnoreCase(System.getProperty("grid.persistence.store", "file"));
+    }
+
+    private long logSegmentSize() {
+        try {
+            return Long.valueOf(System.getProperty("grid.persistence.log.segmentSize", "67108864"));
+        } catch (IllegalArgumentException e) {
+            return 67108864;
+        }
+    }
+
+    private double logCompactionThreshold() {
+        try {
+            return Double.valueOf(System.getProperty("grid.persistence.log.compactionThreshold", "0.5"));
+        } catch (IllegalArgumentException e) {
+            return 0.5;
+        }
+    }
+
+    private long logCompactionInterval() {
+        try {
+            return Long.valueOf(System.getProperty("grid.persistence.log.compactionInterval", "60000"));
+        } catch (IllegalArgumentException e) {
+            return 60000;
+        }
+    }
+
+    /**
+     * The log store queues and coalesces its own writes, the file store relies on the Infinispan async store.
+     */
+    private boolean writeBehind() {
+        try {
+            return Boolean.valueOf(System.getProperty("grid.persistence.writeBehind", "false"));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private long writeBehindDelay() {
+        try {
+            return Long.valueOf(System.getProperty("grid.persistence.writeBehind.delay", "1000"));
+        } catch (IllegalArgumentException e) {
+            return 1000;
+        }
+    }
+
+    private int writeBehindQueueSize() {
+        try {
+            return Integer.valueOf(System.getProperty("grid.persistence.writeBehind.queueSize", "10000"));
+        } catch (IllegalArgumentException e) {
+            return 10000;
+        }
+    }
+
     private int evictionSize() {
         try {
             return Integer.valueOf(System.getProperty("grid.persistence.evictionSize", "100"));
@@ -18,8 +18,12 @@
 package it.redhat.hacep.configuration;
 
 import it.redhat.hacep.drools.KieSessionByteArraySerializer;
+import it.redhat.hacep.drools.RuleProfiler;
+import it.redhat.hacep.metrics.StageTimers;
 import it.redhat.hacep.support.KieSessionUtils;
 import org.drools.core.util.StringUtils;
+import org.infinispan.commons.marshall.StreamingMarshaller;
+import org.infinispan.commons.marshall.jboss.GenericJBossMarshaller;
 import org.kie.api.KieBase;
 import org.kie.api.KieServices;
 import org.kie.api.builder.Message;
@@ -46,13 +50,21 @@ public class RulesManager {
     private final AtomicBoolean started = new AtomicBoolean(false);
 
     private final RulesConfiguration rulesConfiguration;
+    private final StageTimers stageTimers;
 
     private KieContainer kieContainer;
     private KieServices kieServices;
     private ReleaseId releaseId;
+    private RuleProfiler ruleProfiler;
+    private volatile StreamingMarshaller factMarshaller = new GenericJBossMarshaller();
 
     public RulesManager(RulesConfiguration rulesConfiguration) {
+        this(rulesConfiguration, new StageTimers());
+    }
+
+    public RulesManager(RulesConfiguration rulesConfiguration, StageTimers stageTimers) {
         this.rulesConfiguration = rulesConfiguration;
+        this.stageTimers = stageTimers;
     }
 
     public void start(String groupId, String artifactId, String version) {
@@ -161,12 +173,41 @@ public class RulesManager {
 
     public void registerChannels(KieSession session) {
         rulesConfiguration.getChannels().forEach(session::registerChannel);
+        if (ruleProfiler != null) {
+            session.addEventListener(ruleProfiler.newListener(() -> releaseId.getVersion()));
+        }
     }
 
     public void registerReplayChannels(KieSession session) {
         rulesConfiguration.getReplayChannels().forEach(session::registerChannel);
     }
 
+    public StageTimers getStageTimers() {
+        return stageTimers;
+    }
+
+    public RuleProfiler getRuleProfiler() {
+        return ruleProfiler;
+    }
+
+    /**
+     * Profiles the sessions receiving their live channels from now on, null to stop profiling new ones.
+     */
+    public void setRuleProfiler(RuleProfiler ruleProfiler) {
+        this.ruleProfiler = ruleProfiler;
+    }
+
+    /**
+     * @return the marshaller of the facts logged by log-only backups, the grid marshaller once the grid started
+     */
+    public StreamingMarshaller getFactMarshaller() {
+        return factMarshaller;
+    }
+
+    public void setFactMarshaller(StreamingMarshaller factMarshaller) {
+        this.factMarshaller = factMarshaller;
+    }
+
     public int getMaxBufferSize() {
         try {
             return Integer.valueOf(System.getProperty("grid.buffer", "1000"));
@@ -175,6 +216,14 @@ public class RulesManager {
         }
     }
 
+    public int getMaxLogLength() {
+        try {
+            return Integer.valueOf(System.getProperty("grid.replication.log.maxLength", "10000"));
+        } catch (IllegalArgumentException e) {
+            return 10000;
+        }
+    }
+
     private Marshaller createSerializableMarshaller(KieBase kieBase) {
         KieServices ks = KieServices.Factory.get();
         KieMarshallers marshallers = ks.getMarshallers();
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.drools;
+
+import it.redhat.hacep.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Aggregates, per rules release version and rule, the firings, the matches created and cancelled and
+ * the time spent in consequences of the primary sessions of a node.
+ * <p>
+ * A rule is reported once when its mean consequence time goes over grid.rules.profiling.threshold
+ * microseconds, or when it creates more than grid.rules.profiling.matchRatio matches per firing: the
+ * signature of a wide accumulate window re-evaluated on every insert.
+ */
+public class RuleProfiler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RuleProfiler.class);
+
+    /** Stats are only judged, at firing time, after this many firings or matches created */
+    static final long MIN_SAMPLES = 100;
+
+    private final ConcurrentMap<String, RuleStats> stats = new ConcurrentHashMap<>();
+    private final Set<String> overThreshold = ConcurrentHashMap.newKeySet();
+    private final MetricsRegistry metricsRegistry;
+    private final long thresholdNanos;
+    private final long matchRatio;
+
+    public RuleProfiler(MetricsRegistry metricsRegistry) {
+        this(metricsRegistry, getThreshold() * 1000, getMatchRatio());
+    }
+
+    public RuleProfiler(MetricsRegistry metricsRegistry, long thresholdNanos, long matchRatio) {
+        this.metricsRegistry = metricsRegistry;
+        this.thresholdNanos = thresholdNanos;
+        this.matchRatio = matchRatio;
+        if (metricsRegistry != null) {
+            metricsRegistry.gauge("hacep_rules_over_threshold", "Rules over the consequence time or match ratio thresholds",
+                    overThreshold::size);
+        }
+    }
+
+    /**
+     * @param version supplies the rules version of the session at every event
+     * @return a listener for a single session, sessions are never used by two threads at the same time
+     */
+    public RuleProfilingListener newListener(Supplier<String> version) {
+        return new RuleProfilingListener(this, version);
+    }
+
+    RuleStats stats(String version, String rule) {
+        String key = version + ":" + rule;
+        RuleStats ruleStats = stats.get(key);
+        if (ruleStats == null) {
+            ruleStats = stats.computeIfAbsent(key, k -> register(new RuleStats(version, rule)));
+        }
+        return ruleStats;
+    }
+
+    private RuleStats register(RuleStats ruleStats) {
+        if (metricsRegistry != null) {
+            String labels = "{rule=\"" + escape(ruleStats.rule) + "\",version=\"" + escape(ruleStats.version) + "\"}";
+            metricsRegistry.counter("hacep_rule_fired_total" + labels, "Rule firings", ruleStats.fired::sum);
+            metricsRegistry.counter("hacep_rule_matches_created_total" + labels, "Rule matches created", ruleStats.created::sum);
+            metricsRegistry.counter("hacep_rule_matches_cancelled_total" + labels, "Rule matches cancelled", ruleStats.cancelled::sum);
+            metricsRegistry.gauge("hacep_rule_consequence_seconds" + labels, "Time spent in the rule consequence since start",
+                    () -> ruleStats.consequenceNanos.sum() / 1e9);
+        }
+        return ruleStats;
+    }
+
+    void check(RuleStats ruleStats) {
+        long fired = ruleStats.fired.sum();
+        long created = ruleStats.created.sum();
+        if (fired < MIN_SAMPLES && created < MIN_SAMPLES) {
+            return;
+        }
+        String reason = null;
+        if (fired >= MIN_SAMPLES && ruleStats.consequenceNanos.sum() / fired > thresholdNanos) {
+            reason = String.format("mean consequence time %.1f us", ruleStats.consequenceNanos.sum() / 1000.0 / fired);
+        } else if (created > matchRatio * Math.max(fired, 1)) {
+            reason = String.format("%d matches created for %d firings", created, fired);
+        }
+        if (reason != null && overThreshold.add(ruleStats.version + ":" + ruleStats.rule)) {
+            LOGGER.warn(String.format("Rule [%s] of version [%s] over threshold: %s", ruleStats.rule, ruleStats.version, reason));
+        }
+    }
+
+    public List<RuleStats> getTop(int n) {
+        List<RuleStats> all = new ArrayList<>(stats.values());
+        all.sort(Comparator.comparingLong((RuleStats s) -> s.consequenceNanos.sum()).reversed());
+        return all.subList(0, Math.min(n, all.size()));
+    }
+
+    public String report(int n) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-40s %-14s %10s %12s %12s %12s %10s%n",
+                "rule", "version", "fired", "created", "cancelled", "total ms", "max us"));
+        for (RuleStats ruleStats : getTop(n)) {
+            report.append(String.format("%-40s %-14s %10d %12d %12d %12.1f %10.1f%n",
+                    ruleStats.rule, ruleStats.version, ruleStats.fired.sum(), ruleStats.created.sum(), ruleStats.cancelled.sum(),
+                    ruleStats.consequenceNanos.sum() / 1e6, ruleStats.maxNanos.get() / 1e3));
+        }
+        return report.toString();
+    }
+
+    public void reset() {
+        stats.clear();
+        overThreshold.clear();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    public static boolean isEnabled() {
+        try {
+            return Boolean.valueOf(System.getProperty("grid.rules.profiling", "false"));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static long getThreshold() {
+        try {
+            return Long.valueOf(System.getProperty("grid.rules.profiling.threshold", "1000"));
+        } catch (IllegalArgumentException e) {
+            return 1000;
+        }
+    }
+
+    private static long getMatchRatio() {
+        try {
+            return Long.valueOf(System.getProperty("grid.rules.profiling.matchRatio", "100"));
+        } catch (IllegalArgumentException e) {
+            return 100;
+        }
+    }
+
+    public static class RuleStats {
+
+        private final String version;
+        private final String rule;
+        final LongAdder fired = new LongAdder();
+        final LongAdder created = new LongAdder();
+        final LongAdder cancelled = new LongAdder();
+        final LongAdder consequenceNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        RuleStats(String version, String rule) {
+            this.version = version;
+            this.rule = rule;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public String getRule() {
+            return rule;
+        }
+
+        public long getFired() {
+            return fired.sum();
+        }
+
+        public long getMatchesCreated() {
+            return created.sum();
+        }
+
+        public long getMatchesCancelled() {
+            return cancelled.sum();
+        }
+
+        public long getConsequenceNanos() {
+            return consequenceNanos.sum();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.drools;
+
+import org.kie.api.event.rule.AfterMatchFiredEvent;
+import org.kie.api.event.rule.BeforeMatchFiredEvent;
+import org.kie.api.event.rule.DefaultAgendaEventListener;
+import org.kie.api.event.rule.MatchCancelledEvent;
+import org.kie.api.event.rule.MatchCreatedEvent;
+
+import java.util.function.Supplier;
+
+/**
+ * Agenda listener of one session feeding a {@link RuleProfiler}.
+ */
+public class RuleProfilingListener extends DefaultAgendaEventListener {
+
+    private final RuleProfiler profiler;
+    private final Supplier<String> version;
+
+    private long firingStart;
+
+    RuleProfilingListener(RuleProfiler profiler, Supplier<String> version) {
+        this.profiler = profiler;
+        this.version = version;
+    }
+
+    @Override
+    public void matchCreated(MatchCreatedEvent event) {
+        profiler.stats(version.get(), event.getMatch().getRule().getName()).created.increment();
+    }
+
+    @Override
+    public void matchCancelled(MatchCancelledEvent event) {
+        profiler.stats(version.get(), event.getMatch().getRule().getName()).cancelled.increment();
+    }
+
+    @Override
+    public void beforeMatchFired(BeforeMatchFiredEvent event) {
+        firingStart = System.nanoTime();
+    }
+
+    @Override
+    public void afterMatchFired(AfterMatchFiredEvent event) {
+        long elapsed = System.nanoTime() - firingStart;
+        RuleProfiler.RuleStats stats = profiler.stats(version.get(), event.getMatch().getRule().getName());
+        stats.fired.increment();
+        stats.consequenceNanos.add(elapsed);
+        stats.maxNanos.accumulate(elapsed);
+        profiler.check(stats);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.jfr;
+
+final class EventFactory {
+
+    private EventFactory() {
+    }
+
+    static HacepEvent create(Events.Type type) {
+        switch (type) {
+            case INSERT:
+                return new InsertEvent();
+            case FIRE_ALL_RULES:
+                return new FireAllRulesEvent();
+            case REBUILD:
+                return new RebuildEvent();
+            case SNAPSHOT:
+                return new SnapshotEvent();
+            case UPGRADE:
+                return new UpgradeEvent();
+            case DELTA_MERGE:
+                return new DeltaMergeEvent();
+            case REHASH_SUSPEND:
+                return new RehashSuspendEvent();
+            case REHASH_RESUME:
+                return new RehashResumeEvent();
+            default:
+                throw new IllegalArgumentException(type.toString());
+        }
+    }
+}
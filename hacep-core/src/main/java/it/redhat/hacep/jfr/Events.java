@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.jfr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entry point of the HACEP flight recorder events, safe to call on JVMs without jdk.jfr.
+ * <p>
+ * {@link #begin(Type)} returns null when the events are off (no jdk.jfr, or grid.jfr=false), so call sites
+ * never load an event class: <pre>
+ *     Object event = Events.begin(Events.Type.INSERT);
+ *     ...
+ *     Events.commit(event, group, version, facts, bytes, firedRules);
+ * </pre>
+ * When a JFR recording does not enable an event, begin and commit reduce to a flag check on an object
+ * that does not escape. The event classes are only referenced by {@link EventFactory}, which is never
+ * loaded when the events are off.
+ */
+public final class Events {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Events.class);
+
+    public enum Type {
+        INSERT, FIRE_ALL_RULES, REBUILD, SNAPSHOT, UPGRADE, DELTA_MERGE, REHASH_SUSPEND, REHASH_RESUME
+    }
+
+    public static final boolean ENABLED = isEnabled();
+
+    private Events() {
+    }
+
+    public static Object begin(Type type) {
+        if (!ENABLED) {
+            return null;
+        }
+        HacepEvent event = EventFactory.create(type);
+        event.begin();
+        return event;
+    }
+
+    public static void commit(Object event, String group, String version, long facts, long bytes, long firedRules) {
+        if (event == null) {
+            return;
+        }
+        HacepEvent hacepEvent = (HacepEvent) event;
+        hacepEvent.end();
+        if (hacepEvent.shouldCommit()) {
+            hacepEvent.group = group;
+            hacepEvent.version = version;
+            hacepEvent.facts = facts;
+            hacepEvent.bytes = bytes;
+            hacepEvent.firedRules = firedRules;
+            hacepEvent.commit();
+        }
+    }
+
+    /**
+     * Emits an event without duration.
+     */
+    public static void instant(Type type, String group, String version, long facts, long bytes) {
+        if (ENABLED) {
+            commit(EventFactory.create(type), group, version, facts, bytes, 0);
+        }
+    }
+
+    private static boolean isEnabled() {
+        if (!Boolean.valueOf(System.getProperty("grid.jfr", "true"))) {
+            return false;
+        }
+        try {
+            Class.forName("jdk.jfr.Event", false, Events.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            LOGGER.info("Flight recorder API not available, HACEP events are disabled");
+            return false;
+        }
+    }
+}
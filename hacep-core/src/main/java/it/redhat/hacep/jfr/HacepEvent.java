@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Fields shared by every HACEP flight recorder event, fields that do not apply to an event are left
+ * null or 0.
+ */
+@Category("HACEP")
+@Enabled(true)
+@StackTrace(false)
+abstract class HacepEvent extends Event {
+
+    @Label("Group")
+    @Description("Session group key")
+    String group;
+
+    @Label("Rules Version")
+    String version;
+
+    @Label("Facts")
+    @Description("Facts inserted, replayed or held, depending on the event")
+    long facts;
+
+    @Label("Bytes")
+    @Description("Serialized session bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Fired Rules")
+    long firedRules;
+}
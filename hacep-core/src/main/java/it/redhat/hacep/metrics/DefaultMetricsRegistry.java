@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.metrics;
+
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory registry: LongAdder counters, and HdrHistogram recorders for timers and histograms.
+ * <p>
+ * The quantiles of a timer or a histogram cover a sliding window of {@link #WINDOW} milliseconds, kept
+ * as {@link #BUCKETS} rotating histograms, like the summaries of the Prometheus client; the count and
+ * the sum cover every recorded value. Recorded values are moved to the current bucket when read, so a
+ * value stays in the window until up to a window after the read that first sees it.
+ */
+public class DefaultMetricsRegistry implements MetricsRegistry {
+
+    static final long WINDOW = TimeUnit.MINUTES.toMillis(10);
+    static final int BUCKETS = 5;
+
+    private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+    private final long window;
+    private final LongSupplier clock;
+
+    public DefaultMetricsRegistry() {
+        this(WINDOW, System::currentTimeMillis);
+    }
+
+    DefaultMetricsRegistry(long window, LongSupplier clock) {
+        this.window = window;
+        this.clock = clock;
+    }
+
+    @Override
+    public Counter counter(String name, String help) {
+        return (Counter) metrics.computeIfAbsent(name, n -> new DefaultCounter(n, help));
+    }
+
+    @Override
+    public void counter(String name, String help, LongSupplier value) {
+        metrics.put(name, new Metric.Value(name, help, Metric.Type.COUNTER) {
+            @Override
+            public double value() {
+                return value.getAsLong();
+            }
+        });
+    }
+
+    @Override
+    public void gauge(String name, String help, DoubleSupplier value) {
+        metrics.put(name, new Metric.Value(name, help, Metric.Type.GAUGE) {
+            @Override
+            public double value() {
+                return value.getAsDouble();
+            }
+        });
+    }
+
+    @Override
+    public Timer timer(String name, String help) {
+        return (Timer) metrics.computeIfAbsent(name, n -> new DefaultTimer(n, help, window, clock));
+    }
+
+    @Override
+    public Histogram histogram(String name, String help) {
+        return (Histogram) metrics.computeIfAbsent(name, n -> new DefaultHistogram(n, help, window, clock));
+    }
+
+    @Override
+    public Iterable<Metric> getMetrics() {
+        return metrics.values();
+    }
+
+    private static class DefaultCounter extends Metric.Value implements Counter {
+
+        private final LongAdder count = new LongAdder();
+
+        DefaultCounter(String name, String help) {
+            super(name, help, Type.COUNTER);
+        }
+
+        @Override
+        public void increment() {
+            count.increment();
+        }
+
+        @Override
+        public void increment(long amount) {
+            count.add(amount);
+        }
+
+        @Override
+        public double value() {
+            return count.sum();
+        }
+    }
+
+    private static class WindowedDistribution extends Metric.Distribution {
+
+        private final Recorder recorder = new Recorder(3);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final org.HdrHistogram.Histogram[] buckets = new org.HdrHistogram.Histogram[BUCKETS];
+        private final long bucketLength;
+        private final LongSupplier clock;
+        private org.HdrHistogram.Histogram interval;
+        private int current;
+        private long bucketStart;
+
+        WindowedDistribution(String name, String help, Type type, long window, LongSupplier clock) {
+            super(name, help, type);
+            this.bucketLength = Math.max(1, window / BUCKETS);
+            this.clock = clock;
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new org.HdrHistogram.Histogram(3);
+            }
+            this.bucketStart = clock.getAsLong();
+        }
+
+        void recordValue(long value) {
+            value = Math.max(value, 0);
+            recorder.recordValue(value);
+            count.increment();
+            sum.add(value);
+        }
+
+        @Override
+        public synchronized Snapshot snapshot() {
+            rotate(clock.getAsLong());
+            interval = recorder.getIntervalHistogram(interval);
+            buckets[current].add(interval);
+            org.HdrHistogram.Histogram recent = new org.HdrHistogram.Histogram(3);
+            for (org.HdrHistogram.Histogram bucket : buckets) {
+                recent.add(bucket);
+            }
+            return new WindowSnapshot(count.sum(), sum.sum(), recent);
+        }
+
+        private void rotate(long now) {
+            long elapsed = (now - bucketStart) / bucketLength;
+            if (elapsed <= 0) {
+                return;
+            }
+            for (long i = 0; i < Math.min(elapsed, BUCKETS); i++) {
+                current = (current + 1) % BUCKETS;
+                buckets[current].reset();
+            }
+            bucketStart += elapsed * bucketLength;
+        }
+    }
+
+    private static class WindowSnapshot implements Snapshot {
+
+        private final long count;
+        private final double sum;
+        private final org.HdrHistogram.Histogram recent;
+
+        WindowSnapshot(long count, double sum, org.HdrHistogram.Histogram recent) {
+            this.count = count;
+            this.sum = sum;
+            this.recent = recent;
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public double getSum() {
+            return sum;
+        }
+
+        @Override
+        public double getValueAtQuantile(double quantile) {
+            return recent.getTotalCount() == 0 ? Double.NaN : recent.getValueAtPercentile(quantile * 100);
+        }
+
+        @Override
+        public double getMax() {
+            return recent.getTotalCount() == 0 ? Double.NaN : recent.getMaxValue();
+        }
+    }
+
+    private static class DefaultTimer extends WindowedDistribution implements Timer {
+
+        DefaultTimer(String name, String help, long window, LongSupplier clock) {
+            super(name, help, Type.TIMER, window, clock);
+        }
+
+        @Override
+        public void record(long nanos) {
+            recordValue(nanos);
+        }
+    }
+
+    private static class DefaultHistogram extends WindowedDistribution implements Histogram {
+
+        DefaultHistogram(String name, String help, long window, LongSupplier clock) {
+            super(name, help, Type.HISTOGRAM, window, clock);
+        }
+
+        @Override
+        public void record(long value) {
+            recordValue(value);
+        }
+    }
+}
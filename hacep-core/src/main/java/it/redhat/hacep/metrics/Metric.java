@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.metrics;
+
+/**
+ * A metric of a {@link MetricsRegistry}, as read by the exporters: a {@link Value} for counters and gauges,
+ * a {@link Distribution} for timers and histograms.
+ */
+public abstract class Metric {
+
+    public enum Type {
+        COUNTER, GAUGE, TIMER, HISTOGRAM
+    }
+
+    private final String name;
+    private final String help;
+    private final Type type;
+
+    Metric(String name, String help, Type type) {
+        this.name = name;
+        this.help = help;
+        this.type = type;
+    }
+
+    /**
+     * @return the name, with its Prometheus labels if any
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public abstract static class Value extends Metric {
+
+        protected Value(String name, String help, Type type) {
+            super(name, help, type);
+        }
+
+        public abstract double value();
+    }
+
+    public abstract static class Distribution extends Metric {
+
+        protected Distribution(String name, String help, Type type) {
+            super(name, help, type);
+        }
+
+        public abstract Snapshot snapshot();
+    }
+}
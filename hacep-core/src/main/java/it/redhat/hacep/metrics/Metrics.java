@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+public final class Metrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Metrics.class);
+
+    private Metrics() {
+    }
+
+    /**
+     * @return an instance of the class named by grid.metrics.registry, else the first MetricsRegistry
+     * found with ServiceLoader, else a {@link DefaultMetricsRegistry}
+     */
+    public static MetricsRegistry newRegistry() {
+        String className = System.getProperty("grid.metrics.registry");
+        if (className != null && !className.isEmpty()) {
+            try {
+                return (MetricsRegistry) Class.forName(className, true, Metrics.class.getClassLoader()).newInstance();
+            } catch (Exception e) {
+                LOGGER.warn("Unable to create metrics registry " + className + ", using the default one", e);
+                return new DefaultMetricsRegistry();
+            }
+        }
+        Iterator<MetricsRegistry> registries = ServiceLoader.load(MetricsRegistry.class).iterator();
+        if (registries.hasNext()) {
+            return registries.next();
+        }
+        return new DefaultMetricsRegistry();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.metrics;
+
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics SPI of HACEP. Names follow the Prometheus conventions (snake case, base units, _total suffix
+ * for counters); registering a name twice returns the existing counter, timer or histogram and replaces
+ * a function counter or a gauge.
+ * <p>
+ * A counter or gauge name may carry Prometheus labels, as in <code>hacep_rule_fired_total{rule="r1"}</code>:
+ * the names sharing the part before the brace are exported as one family.
+ * <p>
+ * The implementation is picked by {@link Metrics#newRegistry()}; exporters such as the
+ * {@link PrometheusExporter} read any implementation through {@link #getMetrics()}.
+ */
+public interface MetricsRegistry {
+
+    Counter counter(String name, String help);
+
+    /**
+     * Counter read from a monotonic value maintained elsewhere.
+     */
+    void counter(String name, String help, LongSupplier value);
+
+    void gauge(String name, String help, DoubleSupplier value);
+
+    /**
+     * Durations in nanoseconds, exported in seconds.
+     */
+    Timer timer(String name, String help);
+
+    Histogram histogram(String name, String help);
+
+    /**
+     * @return every metric, sorted by name
+     */
+    Iterable<Metric> getMetrics();
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves a {@link MetricsRegistry} in the Prometheus text format (version 0.0.4) on /metrics, with the
+ * HTTP server of the JDK. Timers and histograms are exported as summaries, timers in seconds, with the
+ * quantiles of their recent window; the metrics of a family, the names sharing the part before their
+ * labels, share a single HELP and TYPE.
+ */
+public class PrometheusExporter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrometheusExporter.class);
+
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final MetricsRegistry registry;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public PrometheusExporter(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public synchronized void start(int port) throws IOException {
+        if (server != null) {
+            return;
+        }
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "hacep-prometheus-exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", this::handle);
+        server.start();
+        if (LOGGER.isInfoEnabled()) LOGGER.info("Prometheus metrics on port " + getPort());
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : -1;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to collect the metrics", e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    public String scrape() {
+        Map<String, List<Metric>> families = new LinkedHashMap<>();
+        for (Metric metric : registry.getMetrics()) {
+            families.computeIfAbsent(family(metric.getName()), name -> new ArrayList<>()).add(metric);
+        }
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, List<Metric>> family : families.entrySet()) {
+            String name = family.getKey();
+            Metric first = family.getValue().get(0);
+            header(text, name, first.getHelp(), typeOf(first.getType()));
+            for (Metric metric : family.getValue()) {
+                String labels = metric.getName().substring(name.length());
+                if (metric instanceof Metric.Value) {
+                    sample(text, name, labels, ((Metric.Value) metric).value());
+                } else if (metric instanceof Metric.Distribution) {
+                    double scale = metric.getType() == Metric.Type.TIMER ? 1e-9 : 1;
+                    Snapshot snapshot = ((Metric.Distribution) metric).snapshot();
+                    for (double quantile : QUANTILES) {
+                        sample(text, name, withLabel(labels, "quantile=\"" + quantile + "\""),
+                                snapshot.getValueAtQuantile(quantile) * scale);
+                    }
+                    sample(text, name + "_sum", labels, snapshot.getSum() * scale);
+                    sample(text, name + "_count", labels, snapshot.getCount());
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    private static String family(String name) {
+        int brace = name.indexOf('{');
+        return brace < 0 ? name : name.substring(0, brace);
+    }
+
+    private static String typeOf(Metric.Type type) {
+        switch (type) {
+            case COUNTER:
+                return "counter";
+            case GAUGE:
+                return "gauge";
+            default:
+                return "summary";
+        }
+    }
+
+    private static String withLabel(String labels, String label) {
+        return labels.isEmpty() ? "{" + label + "}" : labels.substring(0, labels.length() - 1) + "," + label + "}";
+    }
+
+    private static void header(StringBuilder text, String name, String help, String type) {
+        text.append("# HELP ").append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, double value) {
+        text.append(name).append(labels).append(' ');
+        if (Double.isNaN(value)) {
+            text.append("NaN");
+        } else if (Double.isInfinite(value)) {
+            text.append(value > 0 ? "+Inf" : "-Inf");
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            text.append((long) value);
+        } else {
+            text.append(String.format(Locale.ROOT, "%.9g", value));
+        }
+        text.append('\n');
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.metrics;
+
+/**
+ * Reading of a {@link Timer} or a {@link Histogram}: the count and the sum of every recorded value, and
+ * the quantiles and the max of the values recorded over a recent window.
+ */
+public interface Snapshot {
+
+    long getCount();
+
+    double getSum();
+
+    default double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : getSum() / count;
+    }
+
+    /**
+     * @return the value at the quantile, in [0, 1], of the recent window, NaN if the window is empty
+     */
+    double getValueAtQuantile(double quantile);
+
+    /**
+     * @return the largest value of the recent window, NaN if the window is empty
+     */
+    double getMax();
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.metrics;
+
+/**
+ * Timed stages of the ingestion pipeline, from the JMS receipt to the replication on the backups.
+ */
+public enum Stage {
+
+    /** Camel ingestion route, from the JMS consumer to the return of insertFact */
+    CAMEL_CONSUME("camelConsume"),
+    /** PutterImpl.put: rehash buffer check and fact cache put */
+    PUT("put"),
+    /** FactListenerPost dispatch of a fact to the KieSessionSaver */
+    LISTENER_DISPATCH("listenerDispatch"),
+    /** wait for the per-session lock in KieSessionSaver */
+    LOCK_WAIT("lockWait"),
+    /** rebuild of a serialized session promoted to primary */
+    REBUILD("rebuild"),
+    /** KieSession.insert, clock advance included */
+    INSERT("insert"),
+    /** KieSession.fireAllRules */
+    FIRE_ALL_RULES("fireAllRules"),
+    /** put of the session in the session cache, replication to the backups included */
+    SESSION_PUT("sessionPut"),
+    /** a backup adding a fact to its serialized session */
+    REPLICA_ADD("replicaAdd"),
+    /** a backup building and serializing a new snapshot of its session */
+    REPLICA_SNAPSHOT("replicaSnapshot");
+
+    private final String id;
+
+    Stage(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Latency of every {@link Stage} of a node, recorded in nanoseconds into a hacep_stage_..._seconds timer
+ * of the {@link MetricsRegistry}, so that JMX, the METRICS command and the exporters read the same values.
+ * <p>
+ * Exposed over JMX as it.redhat.hacep:type=StageTimers, with count, mean and percentile attributes in
+ * microseconds for every stage: count and mean cover every call, percentiles and max the recent window
+ * of the registry.
+ */
+public class StageTimers implements DynamicMBean {
+
+    private static final String[] STATISTICS = {"count", "mean", "p50", "p90", "p99", "p999", "max"};
+
+    private final Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+
+    public StageTimers() {
+        this(new DefaultMetricsRegistry());
+    }
+
+    public StageTimers(MetricsRegistry registry) {
+        for (Stage stage : Stage.values()) {
+            timers.put(stage, registry.timer("hacep_stage_" + stage.getId().replaceAll("([A-Z])", "_$1").toLowerCase() + "_seconds",
+                    "Latency of the " + stage.getId() + " stage"));
+        }
+    }
+
+    /**
+     * Records the time elapsed since start, a value of System.nanoTime().
+     */
+    public void record(Stage stage, long start) {
+        timers.get(stage).recordSince(start);
+    }
+
+    public Snapshot getSnapshot(Stage stage) {
+        return timers.get(stage).snapshot();
+    }
+
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-18s %12s %10s %10s %10s %10s %10s %10s%n",
+                "stage", "count", "mean us", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us"));
+        for (Stage stage : Stage.values()) {
+            Snapshot snapshot = getSnapshot(stage);
+            report.append(String.format("%-18s %12d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    stage.getId(), snapshot.getCount(), micros(snapshot.getMean()),
+                    micros(snapshot.getValueAtQuantile(0.5)), micros(snapshot.getValueAtQuantile(0.9)),
+                    micros(snapshot.getValueAtQuantile(0.99)), micros(snapshot.getValueAtQuantile(0.999)),
+                    micros(snapshot.getMax())));
+        }
+        return report.toString();
+    }
+
+    private static double micros(double nanos) {
+        return nanos / 1000.0;
+    }
+
+    private double statistic(Snapshot snapshot, String statistic) {
+        switch (statistic) {
+            case "count":
+                return snapshot.getCount();
+            case "mean":
+                return micros(snapshot.getMean());
+            case "p50":
+                return micros(snapshot.getValueAtQuantile(0.5));
+            case "p90":
+                return micros(snapshot.getValueAtQuantile(0.9));
+            case "p99":
+                return micros(snapshot.getValueAtQuantile(0.99));
+            case "p999":
+                return micros(snapshot.getValueAtQuantile(0.999));
+            case "max":
+                return micros(snapshot.getMax());
+            default:
+                throw new IllegalArgumentException(statistic);
+        }
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        int dot = attribute.indexOf('.');
+        if (dot > 0) {
+            String id = attribute.substring(0, dot);
+            String statistic = attribute.substring(dot + 1);
+            for (Stage stage : Stage.values()) {
+                if (stage.getId().equals(id)) {
+                    try {
+                        return statistic(getSnapshot(stage), statistic);
+                    } catch (IllegalArgumentException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("StageTimers attributes are read only");
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // skipped, as the JMX contract requires
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if ("report".equals(actionName)) {
+            return report();
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (Stage stage : Stage.values()) {
+            for (String statistic : STATISTICS) {
+                attributes.add(new MBeanAttributeInfo(stage.getId() + "." + statistic, "double",
+                        statistic.equals("count") ? "Timed " + stage.getId() + " calls" : stage.getId() + " " + statistic + " in microseconds",
+                        true, false, false));
+            }
+        }
+        MBeanOperationInfo[] operations = {
+                new MBeanOperationInfo("report", "Table of every stage", null, "java.lang.String", MBeanOperationInfo.INFO)
+        };
+        return new MBeanInfo(StageTimers.class.getName(), "HACEP pipeline stage latencies",
+                attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, operations, null);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.support;
+
+import it.redhat.hacep.model.Fact;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Sequential reader of a {@link FactRecordingWriter} file.
+ */
+public class FactRecordingReader implements Closeable {
+
+    private final ObjectInputStream input;
+
+    private boolean finished;
+
+    public FactRecordingReader(File file) throws IOException {
+        this.input = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))));
+        if (input.readInt() != FactRecordingWriter.MAGIC) {
+            throw new StreamCorruptedException(file + " is not a fact recording");
+        }
+        int version = input.readInt();
+        if (version != FactRecordingWriter.VERSION) {
+            throw new StreamCorruptedException("Unsupported fact recording version " + version);
+        }
+    }
+
+    /**
+     * @return the next record, null at the end of the recording or at a truncated tail
+     */
+    public RecordedFact next() throws IOException, ClassNotFoundException {
+        if (finished) {
+            return null;
+        }
+        try {
+            long arrival = input.readLong();
+            String groupId = input.readBoolean() ? input.readUTF() : null;
+            int groupSeq = input.readInt();
+            Fact fact = (Fact) input.readObject();
+            return new RecordedFact(arrival, groupId, groupSeq, fact);
+        } catch (EOFException | StreamCorruptedException e) {
+            // end of the stream, or the tail of a recording that was not closed: everything before it is good
+            finished = true;
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
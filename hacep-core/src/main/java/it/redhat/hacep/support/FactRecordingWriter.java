@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.support;
+
+import it.redhat.hacep.model.Fact;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append-only capture of the facts entering a node.
+ * <p>
+ * The file is a gzip stream holding one ObjectOutputStream: a header (magic, version) followed by
+ * records of arrival time, JMS group id, JMS group sequence and the fact itself. The object stream is
+ * reset and sync-flushed every {@link #FLUSH_INTERVAL} records, so class descriptors are written once
+ * per batch and a crash loses at most the last batch: {@link FactRecordingReader} stops cleanly at a
+ * truncated tail.
+ * <p>
+ * An existing file is never overwritten, a numeric suffix is added instead.
+ */
+public class FactRecordingWriter implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FactRecordingWriter.class);
+
+    static final int MAGIC = 0x48435052;
+    static final int VERSION = 1;
+    static final int FLUSH_INTERVAL = 1000;
+
+    private final File file;
+    private final ObjectOutputStream output;
+
+    private long records;
+    private boolean closed;
+
+    public FactRecordingWriter(File file) throws IOException {
+        this.file = nextFree(file);
+        this.output = new ObjectOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(this.file)), 8192, true));
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.flush();
+        if (LOGGER.isInfoEnabled()) LOGGER.info("Recording facts to " + this.file.getAbsolutePath());
+    }
+
+    public synchronized void append(long arrival, String groupId, int groupSeq, Fact fact) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Recording " + file + " is closed");
+        }
+        output.writeLong(arrival);
+        output.writeBoolean(groupId != null);
+        if (groupId != null) {
+            output.writeUTF(groupId);
+        }
+        output.writeInt(groupSeq);
+        output.writeObject(fact);
+        if (++records % FLUSH_INTERVAL == 0) {
+            output.reset();
+            output.flush();
+        }
+    }
+
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            output.close();
+            if (LOGGER.isInfoEnabled()) LOGGER.info("Recorded " + records + " facts to " + file.getAbsolutePath());
+        }
+    }
+
+    private static File nextFree(File file) {
+        File candidate = file;
+        for (int i = 1; candidate.exists(); i++) {
+            candidate = new File(file.getPath() + "." + i);
+        }
+        return candidate;
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Resequences the messages of each group by their sequence number, such as JMSXGroupID and JMSXGroupSeq.
+ * Unlike a single stream resequencer, a gap in a group only holds the messages of that group.
+ * <p>
+ * A group starts from sequence 1, the first JMSXGroupSeq. A message following the last one delivered is
+ * delivered right away, together with the messages it unblocks. Messages after a gap are held until the gap is
+ * filled or for at most timeout milliseconds. They are also released early when their group holds more than
+ * maxPerGroup messages or all groups hold more than capacity. Messages older than the last one delivered are
+ * delivered as they come and counted as late.
+ * <p>
+ * The messages of a group are delivered one at a time and in order, never under the lock of the group. A thread
+ * offering a message that can go delivers it together with the messages it unblocks, unless another thread is
+ * already delivering for that group; anything queued behind them, and the messages released by the timeout, are
+ * delivered by a pool of threads. {@link #offer} returns a future completed once
+ * the message is delivered, so that the caller can hold the acknowledgement of its source until then.
+ * <p>
+ * Group state is dropped once the group has been idle for idleTimeout milliseconds, so memory follows the
+ * active groups only; the next sequence of the last retired groups is remembered, so that a group coming back
+ * continues where it stopped. A forgotten group starts over from sequence 1.
+ */
+public class GroupResequencer<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GroupResequencer.class);
+
+    public static final long FIRST_SEQUENCE = 1;
+
+    private final Consumer<T> sink;
+    private final long timeout;
+    private final int maxPerGroup;
+    private final int capacity;
+    private final long idleTimeout;
+
+    private final ConcurrentMap<String, Group<T>> groups = new ConcurrentHashMap<>();
+    private final Map<String, Long> retired;
+    private final Set<Group<T>> waiting = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger held = new AtomicInteger();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService delivery;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder late = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    /**
+     * @param sink        receives the messages in sequence within each group
+     * @param timeout     max milliseconds a message is held waiting for a gap to be filled
+     * @param maxPerGroup max messages held for a group
+     * @param capacity    max messages held overall
+     * @param idleTimeout milliseconds after which the state of an idle group is dropped
+     * @param retired     dropped groups whose next sequence is remembered
+     * @param threads     threads delivering the messages released by the timeout
+     */
+    public GroupResequencer(Consumer<T> sink, long timeout, int maxPerGroup, int capacity, long idleTimeout, int retired, int threads) {
+        this.sink = sink;
+        this.timeout = timeout;
+        this.maxPerGroup = Math.max(1, maxPerGroup);
+        this.capacity = Math.max(1, capacity);
+        this.idleTimeout = idleTimeout;
+        int maxRetired = Math.max(0, retired);
+        this.retired = Collections.synchronizedMap(new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxRetired;
+            }
+        });
+        this.delivery = Executors.newFixedThreadPool(Math.max(1, threads));
+        long tick = Math.max(1, timeout / 10);
+        timer.scheduleWithFixedDelay(() -> release(System.currentTimeMillis()), tick, tick, TimeUnit.MILLISECONDS);
+        long sweep = Math.max(1, idleTimeout);
+        timer.scheduleWithFixedDelay(() -> evict(System.currentTimeMillis()), sweep, sweep, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return completed once the message has been delivered, exceptionally if the sink failed
+     */
+    public CompletableFuture<Void> offer(String group, long sequence, T message) {
+        long now = System.currentTimeMillis();
+        received.increment();
+        Pending<T> pending = new Pending<>(sequence, now, message);
+        while (true) {
+            Group<T> g = groups.computeIfAbsent(group, this::newGroup);
+            boolean deliver;
+            int batch;
+            synchronized (g) {
+                if (g.removed) {
+                    continue;
+                }
+                g.lastSeen = now;
+                if (sequence < g.next) {
+                    late.increment();
+                    queue(g, pending);
+                } else if (sequence == g.next) {
+                    g.next++;
+                    queue(g, pending);
+                    drain(g);
+                } else {
+                    if (g.pending == null) {
+                        g.pending = new PriorityQueue<>();
+                        waiting.add(g);
+                    }
+                    g.pending.offer(pending);
+                    int total = held.incrementAndGet();
+                    if (g.pending.size() > maxPerGroup || total > capacity) {
+                        skip(g);
+                    }
+                }
+                deliver = claim(g);
+                batch = pending.queued ? g.outbox.size() : 0;
+            }
+            if (deliver) {
+                deliver(g, batch);
+            }
+            return pending.delivered;
+        }
+    }
+
+    private Group<T> newGroup(String group) {
+        Long next = retired.remove(group);
+        return new Group<>(group, next != null ? next : FIRST_SEQUENCE);
+    }
+
+    /**
+     * Releases the messages held past the timeout, skipping the gaps before them, to the delivery threads.
+     */
+    void release(long now) {
+        for (Group<T> g : waiting) {
+            boolean deliver;
+            synchronized (g) {
+                while (g.pending != null && now - g.pending.peek().arrival >= timeout) {
+                    skip(g);
+                }
+                deliver = claim(g);
+            }
+            if (deliver) {
+                handOff(g);
+            }
+        }
+    }
+
+    void evict(long now) {
+        for (Group<T> g : groups.values()) {
+            if (now - g.lastSeen < idleTimeout) {
+                continue;
+            }
+            synchronized (g) {
+                if (g.pending == null && g.outbox.isEmpty() && !g.delivering && now - g.lastSeen >= idleTimeout) {
+                    g.removed = true;
+                    groups.remove(g.group, g);
+                    retired.put(g.group, g.next);
+                    evicted.increment();
+                }
+            }
+        }
+    }
+
+    private void skip(Group<T> g) {
+        Pending<T> head = g.pending.poll();
+        held.decrementAndGet();
+        skipped.add(head.sequence - g.next);
+        g.next = head.sequence + 1;
+        queue(g, head);
+        drain(g);
+    }
+
+    private void drain(Group<T> g) {
+        if (g.pending == null) {
+            return;
+        }
+        Pending<T> head;
+        while ((head = g.pending.peek()) != null && head.sequence <= g.next) {
+            g.pending.poll();
+            held.decrementAndGet();
+            if (head.sequence == g.next) {
+                g.next++;
+            } else {
+                late.increment();
+            }
+            queue(g, head);
+        }
+        if (g.pending.isEmpty()) {
+            g.pending = null;
+            waiting.remove(g);
+        }
+    }
+
+    private void queue(Group<T> g, Pending<T> pending) {
+        pending.queued = true;
+        g.outbox.add(pending);
+    }
+
+    /**
+     * @return true if the calling thread has to deliver the outbox of the group, no other one doing it
+     */
+    private boolean claim(Group<T> g) {
+        if (g.delivering || g.outbox.isEmpty()) {
+            return false;
+        }
+        g.delivering = true;
+        return true;
+    }
+
+    /**
+     * Delivers at most limit messages of the outbox of a claimed group, outside its lock, then hands the rest to
+     * the delivery threads.
+     */
+    private void deliver(Group<T> g, int limit) {
+        for (int delivered = 0; ; delivered++) {
+            if (delivered == limit) {
+                handOff(g);
+                return;
+            }
+            Pending<T> next;
+            synchronized (g) {
+                next = g.outbox.poll();
+                if (next == null) {
+                    g.delivering = false;
+                    return;
+                }
+            }
+            try {
+                sink.accept(next.message);
+                next.delivered.complete(null);
+            } catch (Exception e) {
+                LOGGER.error("Unable to deliver resequenced message: " + next.message, e);
+                next.delivered.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Passes the delivery of a claimed group to the delivery threads.
+     */
+    private void handOff(Group<T> g) {
+        synchronized (g) {
+            if (g.outbox.isEmpty()) {
+                g.delivering = false;
+                return;
+            }
+        }
+        try {
+            delivery.execute(() -> deliver(g, Integer.MAX_VALUE));
+        } catch (RejectedExecutionException e) {
+            deliver(g, Integer.MAX_VALUE);
+        }
+    }
+
+    public int size() {
+        return held.get();
+    }
+
+    public int getGroups() {
+        return groups.size();
+    }
+
+    public long getReceived() {
+        return received.sum();
+    }
+
+    /**
+     * @return messages older than the last one delivered for their group
+     */
+    public long getLate() {
+        return late.sum();
+    }
+
+    /**
+     * @return sequence numbers given up on by the timeout or the bounds
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    public long getEvicted() {
+        return evicted.sum();
+    }
+
+    /**
+     * Delivers every held message, in sequence within each group.
+     */
+    public void stop() {
+        timer.shutdownNow();
+        try {
+            timer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        release(Long.MAX_VALUE);
+        delivery.shutdown();
+        try {
+            delivery.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Group<T> {
+        private final String group;
+        private final ArrayDeque<Pending<T>> outbox = new ArrayDeque<>();
+        private long next;
+        private PriorityQueue<Pending<T>> pending;
+        private volatile long lastSeen = System.currentTimeMillis();
+        private boolean delivering;
+        private boolean removed;
+
+        Group(String group, long next) {
+            this.group = group;
+            this.next = next;
+        }
+    }
+
+    private static class Pending<T> implements Comparable<Pending<T>> {
+        private final long sequence;
+        private final long arrival;
+        private final T message;
+        private final CompletableFuture<Void> delivered = new CompletableFuture<>();
+        private boolean queued;
+
+        Pending(long sequence, long arrival, T message) {
+            this.sequence = sequence;
+            this.arrival = arrival;
+            this.message = message;
+        }
+
+        @Override
+        public int compareTo(Pending<T> other) {
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
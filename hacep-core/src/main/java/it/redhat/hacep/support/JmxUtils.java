@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+public class JmxUtils {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JmxUtils.class);
+
+    public static final String DOMAIN = "it.redhat.hacep";
+
+    public static ObjectName register(Object mbean, String type, String nodeName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(nodeName));
+            if (server.isRegistered(name)) {
+                LOGGER.warn("MBean [{}] already registered, replacing it", name);
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(mbean, name);
+            return name;
+        } catch (Exception e) {
+            LOGGER.warn("Unable to register MBean " + type + " for node " + nodeName, e);
+            return null;
+        }
+    }
+
+    public static void unregister(ObjectName name) {
+        if (name != null) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Unable to unregister MBean " + name, e);
+            }
+        }
+    }
+}
@@ -17,6 +17,7 @@
 
 package it.redhat.hacep.support;
 
+import it.redhat.hacep.model.ClockTick;
 import it.redhat.hacep.model.Fact;
 import org.drools.core.time.SessionPseudoClock;
 import org.kie.api.builder.Message;
@@ -37,6 +38,9 @@ public class KieSessionUtils {
         long gts = fact.getInstant().toEpochMilli();
         long current = clock.getCurrentTime();
         if (gts < current) {
+            if (fact instanceof ClockTick) {
+                return;
+            }
             if (LOGGER.isWarnEnabled()) {
                 LOGGER.warn(String.format("Moving clock backwards. New Clock is [%s], current was [%s]", gts, current));
             }
@@ -44,6 +48,16 @@ public class KieSessionUtils {
         clock.advanceTime(gts - current, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Advances the clock of the session to the fact and inserts it, unless it is a {@link ClockTick}.
+     */
+    public static void insert(KieSession kieSession, Fact fact) {
+        advanceClock(kieSession, fact);
+        if (!(fact instanceof ClockTick)) {
+            kieSession.insert(fact);
+        }
+    }
+
     public static void dispose(KieSession kieSession) {
         if (kieSession != null) {
             try {
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.support;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket allowing up to permitsPerSecond permits per second, with a burst of one second.
+ * A rate lower or equal to zero means unlimited.
+ */
+public class RateLimiter {
+
+    private final long permitsPerSecond;
+
+    private double available;
+    private long lastRefill;
+
+    public RateLimiter(long permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.available = permitsPerSecond;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public void acquire(long permits) {
+        if (isUnlimited() || permits <= 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (this) {
+            refill();
+            available -= permits;
+            waitNanos = available < 0 ? (long) (-available * TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean tryAcquire(long permits) {
+        if (isUnlimited() || permits <= 0) {
+            return true;
+        }
+        synchronized (this) {
+            refill();
+            if (available >= permits) {
+                available -= permits;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public boolean isUnlimited() {
+        return permitsPerSecond <= 0;
+    }
+
+    public long getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        double tokens = (double) (now - lastRefill) * permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        available = Math.min(permitsPerSecond, available + tokens);
+        lastRefill = now;
+    }
+}
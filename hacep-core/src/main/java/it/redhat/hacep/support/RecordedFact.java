@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.support;
+
+import it.redhat.hacep.model.Fact;
+
+/**
+ * A fact as it arrived on the ingestion route, with the JMS group headers it came with.
+ */
+public class RecordedFact {
+
+    private final long arrival;
+    private final String groupId;
+    private final int groupSeq;
+    private final Fact fact;
+
+    public RecordedFact(long arrival, String groupId, int groupSeq, Fact fact) {
+        this.arrival = arrival;
+        this.groupId = groupId;
+        this.groupSeq = groupSeq;
+        this.fact = fact;
+    }
+
+    /**
+     * @return arrival time in milliseconds since the epoch
+     */
+    public long getArrival() {
+        return arrival;
+    }
+
+    /**
+     * @return JMSXGroupID of the message, null if it had none
+     */
+    public String getGroupId() {
+        return groupId;
+    }
+
+    /**
+     * @return JMSXGroupSeq of the message, 0 if it had none
+     */
+    public int getGroupSeq() {
+        return groupSeq;
+    }
+
+    public Fact getFact() {
+        return fact;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordedFact{arrival=" + arrival + ", groupId=" + groupId + ", groupSeq=" + groupSeq + ", fact=" + fact + "}";
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache;
+
+import it.redhat.hacep.model.Fact;
+import it.redhat.hacep.model.Key;
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.remoting.transport.Address;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class RehashBufferTest {
+
+    private Cache<Key, Fact> cache;
+    private ConsistentHash readHash;
+    private ConsistentHash start;
+    private ConsistentHash end;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        cache = mock(Cache.class);
+        AdvancedCache<Key, Fact> advancedCache = mock(AdvancedCache.class);
+        DistributionManager distributionManager = mock(DistributionManager.class);
+        readHash = mock(ConsistentHash.class);
+        when(cache.getAdvancedCache()).thenReturn(advancedCache);
+        when(advancedCache.getDistributionManager()).thenReturn(distributionManager);
+        when(distributionManager.getReadConsistentHash()).thenReturn(readHash);
+
+        Address node1 = mock(Address.class);
+        Address node2 = mock(Address.class);
+        start = mock(ConsistentHash.class);
+        end = mock(ConsistentHash.class);
+        when(start.getNumSegments()).thenReturn(2);
+        when(end.getNumSegments()).thenReturn(2);
+        when(start.locatePrimaryOwnerForSegment(0)).thenReturn(node1);
+        when(end.locatePrimaryOwnerForSegment(0)).thenReturn(node1);
+        when(start.locatePrimaryOwnerForSegment(1)).thenReturn(node1);
+        when(end.locatePrimaryOwnerForSegment(1)).thenReturn(node2);
+    }
+
+    @Test
+    public void testOnlyMovingSegmentsAreParked() {
+        Fact stable = fact(0);
+        Fact moving = fact(1);
+
+        RehashBuffer buffer = new RehashBuffer(cache, 10);
+        Assert.assertTrue(buffer.park(start, end));
+
+        Assert.assertFalse(buffer.offer(stable));
+        Assert.assertTrue(buffer.offer(moving));
+        Assert.assertEquals(1, buffer.size());
+        Assert.assertEquals(1, buffer.parkedSegments());
+
+        verify(cache, never()).put(any(), any());
+        buffer.stop();
+    }
+
+    @Test
+    public void testParkedFactsDrainInOrder() {
+        Fact first = fact(1);
+        Fact second = fact(1);
+        Fact third = fact(1);
+
+        RehashBuffer buffer = new RehashBuffer(cache, 10);
+        buffer.park(start, end);
+        buffer.offer(first);
+        buffer.offer(second);
+        buffer.offer(third);
+
+        Assert.assertTrue(buffer.release());
+        verify(cache, timeout(10000).times(3)).put(any(), any());
+
+        InOrder inOrder = inOrder(cache);
+        inOrder.verify(cache).put(first.extractKey(), first);
+        inOrder.verify(cache).put(second.extractKey(), second);
+        inOrder.verify(cache).put(third.extractKey(), third);
+
+        Assert.assertEquals(0, buffer.parkedSegments());
+        Assert.assertFalse(buffer.offer(fact(1)));
+        buffer.stop();
+    }
+
+    @Test(timeout = 10000)
+    public void testParkAgainWhileDraining() throws Exception {
+        Fact first = fact(1);
+        Fact second = fact(1);
+        Fact third = fact(1);
+        Fact fourth = fact(1);
+        CountDownLatch putting = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            putting.countDown();
+            proceed.await();
+            return null;
+        }).when(cache).put(first.extractKey(), first);
+
+        RehashBuffer buffer = new RehashBuffer(cache, 10);
+        buffer.park(start, end);
+        buffer.offer(first);
+        buffer.offer(second);
+        buffer.release();
+        putting.await();
+
+        // The drain does not hold the segment while it puts, and a new rehash moves it again
+        Assert.assertTrue(buffer.offer(third));
+        Assert.assertTrue(buffer.park(start, end));
+        proceed.countDown();
+
+        // The drain of the first rehash stops, the segment stays parked
+        Assert.assertTrue(buffer.offer(fourth));
+        Assert.assertTrue(buffer.isParked(fourth.extractKey()));
+        Assert.assertEquals(3, buffer.size());
+
+        Assert.assertTrue(buffer.release());
+        verify(cache, timeout(10000).times(4)).put(any(), any());
+
+        InOrder inOrder = inOrder(cache);
+        inOrder.verify(cache).put(first.extractKey(), first);
+        inOrder.verify(cache).put(second.extractKey(), second);
+        inOrder.verify(cache).put(third.extractKey(), third);
+        inOrder.verify(cache).put(fourth.extractKey(), fourth);
+        buffer.stop();
+    }
+
+    @Test
+    public void testFallbackWithoutConsistentHash() {
+        RehashBuffer buffer = new RehashBuffer(cache, 10);
+        Assert.assertFalse(buffer.park(null, null));
+        Assert.assertFalse(buffer.release());
+        Assert.assertFalse(buffer.offer(fact(1)));
+        buffer.stop();
+    }
+
+    private Fact fact(int segment) {
+        Key key = mock(Key.class);
+        Fact fact = mock(Fact.class);
+        when(fact.extractKey()).thenReturn(key);
+        when(readHash.getSegment(key)).thenReturn(segment);
+        return fact;
+    }
+}
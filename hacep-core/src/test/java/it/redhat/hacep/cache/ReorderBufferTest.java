@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache;
+
+import it.redhat.hacep.model.Fact;
+import it.redhat.hacep.model.Key;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReorderBufferTest {
+
+    private final List<Fact> inserted = Collections.synchronizedList(new ArrayList<>());
+    private final List<Fact> late = Collections.synchronizedList(new ArrayList<>());
+    private ReorderBuffer buffer;
+
+    @After
+    public void stop() {
+        if (buffer != null) {
+            buffer.stop();
+        }
+    }
+
+    private ReorderBuffer buffer(long lateness, int maxPerGroup) {
+        buffer = new ReorderBuffer((key, fact) -> inserted.add(fact), (key, fact) -> late.add(fact), lateness, maxPerGroup, 1000);
+        return buffer;
+    }
+
+    @Test
+    public void testEmitsInInstantOrderBehindWatermark() {
+        ReorderBuffer buffer = buffer(60000, 100);
+        Fact a1 = fact("a", 100000);
+        Fact a3 = fact("a", 150000);
+        Fact a2 = fact("a", 120000);
+        Fact b1 = fact("b", 100000);
+        buffer.offer(a1.extractKey(), a1);
+        buffer.offer(a3.extractKey(), a3);
+        buffer.offer(a2.extractKey(), a2);
+        buffer.offer(b1.extractKey(), b1);
+        Assert.assertTrue(inserted.isEmpty());
+        Assert.assertEquals(4, buffer.size());
+        Assert.assertEquals(1, buffer.getReordered());
+
+        Fact a4 = fact("a", 190000);
+        buffer.offer(a4.extractKey(), a4);
+        Assert.assertEquals(Arrays.asList(a1, a2), inserted);
+
+        Fact tooLate = fact("a", 110000);
+        buffer.offer(tooLate.extractKey(), tooLate);
+        Assert.assertEquals(Collections.singletonList(tooLate), late);
+        Assert.assertEquals(1, buffer.getLate());
+
+        buffer.stop();
+        Assert.assertEquals(Arrays.asList(a1, a2, a3, a4, b1), inserted);
+        Assert.assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testIdleGroupIsReleasedByWallTime() throws Exception {
+        ReorderBuffer buffer = buffer(50, 100);
+        Fact a1 = fact("a", 100000);
+        buffer.offer(a1.extractKey(), a1);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (buffer.getGroups() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertEquals(Collections.singletonList(a1), inserted);
+        Assert.assertEquals(1, buffer.getTimedOut());
+        Assert.assertEquals(0, buffer.getGroups());
+    }
+
+    @Test
+    public void testForgottenGroupKeepsItsLastInstant() {
+        ReorderBuffer buffer = buffer(60000, 100);
+        Fact a1 = fact("a", 100000);
+        buffer.offer(a1.extractKey(), a1);
+        buffer.advance(System.currentTimeMillis() + 60000);
+        buffer.advance(System.currentTimeMillis() + 120000);
+        Assert.assertEquals(Collections.singletonList(a1), inserted);
+        Assert.assertEquals(0, buffer.getGroups());
+
+        Fact tooLate = fact("a", 90000);
+        buffer.offer(tooLate.extractKey(), tooLate);
+        Assert.assertEquals(Collections.singletonList(tooLate), late);
+
+        Fact a2 = fact("a", 110000);
+        buffer.offer(a2.extractKey(), a2);
+        buffer.stop();
+        Assert.assertEquals(Arrays.asList(a1, a2), inserted);
+    }
+
+    @Test
+    public void testTicksStayBehindTheWatermark() {
+        ReorderBuffer buffer = buffer(60000, 100);
+        Fact a1 = fact("a", 100000);
+        buffer.offer(a1.extractKey(), a1);
+        Assert.assertEquals(Long.MIN_VALUE, buffer.tick("a", 200000));
+
+        buffer.advance(System.currentTimeMillis() + 60000);
+        Assert.assertEquals(Collections.singletonList(a1), inserted);
+        Assert.assertEquals(40000, buffer.tick("a", 200000));
+        Assert.assertEquals(200000, buffer.tick("b", 200000));
+
+        Fact tooLate = fact("b", 150000);
+        buffer.offer(tooLate.extractKey(), tooLate);
+        Assert.assertEquals(Collections.singletonList(tooLate), late);
+    }
+
+    @Test
+    public void testMaxPerGroup() {
+        ReorderBuffer buffer = buffer(60000, 2);
+        Fact a3 = fact("a", 3000);
+        Fact a1 = fact("a", 1000);
+        Fact a2 = fact("a", 2000);
+        buffer.offer(a3.extractKey(), a3);
+        buffer.offer(a1.extractKey(), a1);
+        buffer.offer(a2.extractKey(), a2);
+
+        Assert.assertEquals(Collections.singletonList(a1), inserted);
+        Assert.assertEquals(2, buffer.size());
+        Assert.assertEquals(3, buffer.getMaxDepth());
+    }
+
+    private Fact fact(String group, long instant) {
+        Key<String> key = new Key<String>(group) {
+            @Override
+            public String getId() {
+                return group;
+            }
+        };
+        Fact fact = mock(Fact.class);
+        when(fact.extractKey()).thenReturn(key);
+        when(fact.getInstant()).thenReturn(Instant.ofEpochMilli(instant));
+        return fact;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache;
+
+import it.redhat.hacep.model.Fact;
+import it.redhat.hacep.model.Key;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SessionPrefetcherTest {
+
+    private final Map<String, CompletableFuture<Boolean>> prefetches = new ConcurrentHashMap<>();
+    private final List<Fact> put = Collections.synchronizedList(new ArrayList<>());
+    private SessionPrefetcher prefetcher;
+
+    @Before
+    public void setup() {
+        prefetches.clear();
+        put.clear();
+    }
+
+    @After
+    public void stop() {
+        if (prefetcher != null) {
+            prefetcher.stop();
+        }
+    }
+
+    private SessionPrefetcher prefetcher(long window, int capacity) {
+        prefetcher = new SessionPrefetcher(group -> prefetches.computeIfAbsent(group, g -> new CompletableFuture<>()),
+                put::add, window, 100, 60000, capacity, 2);
+        return prefetcher;
+    }
+
+    @Test
+    public void testHeldUntilPrefetched() throws Exception {
+        SessionPrefetcher prefetcher = prefetcher(60000, 100);
+        Fact a1 = fact("a");
+        Fact a2 = fact("a");
+        Fact b1 = fact("b");
+
+        Assert.assertTrue(prefetcher.offer(a1));
+        Assert.assertTrue(prefetcher.offer(a2));
+        Assert.assertTrue(prefetcher.offer(b1));
+        Assert.assertEquals(3, prefetcher.size());
+        Assert.assertEquals(2, prefetcher.getRequests());
+        Assert.assertTrue(put.isEmpty());
+
+        prefetches.get("a").complete(true);
+        await(2);
+
+        Assert.assertEquals(Arrays.asList(a1, a2), put);
+        Assert.assertEquals(1, prefetcher.size());
+        Assert.assertFalse(prefetcher.offer(fact("a")));
+        Assert.assertEquals(0, prefetcher.getExpired());
+    }
+
+    @Test
+    public void testWindowExpires() throws Exception {
+        SessionPrefetcher prefetcher = prefetcher(50, 100);
+        Fact a1 = fact("a");
+
+        Assert.assertTrue(prefetcher.offer(a1));
+        await(1);
+
+        Assert.assertEquals(Collections.singletonList(a1), put);
+        Assert.assertEquals(1, prefetcher.getExpired());
+    }
+
+    @Test
+    public void testFailedPrefetchReleases() throws Exception {
+        SessionPrefetcher prefetcher = prefetcher(60000, 100);
+
+        Assert.assertTrue(prefetcher.offer(fact("a")));
+        prefetches.get("a").completeExceptionally(new IllegalStateException());
+        await(1);
+
+        Assert.assertEquals(1, prefetcher.getFailed());
+    }
+
+    @Test
+    public void testCapacity() {
+        SessionPrefetcher prefetcher = prefetcher(60000, 1);
+
+        Assert.assertTrue(prefetcher.offer(fact("a")));
+        Assert.assertFalse(prefetcher.offer(fact("b")));
+        Assert.assertTrue(prefetcher.offer(fact("a")));
+        Assert.assertEquals(2, prefetcher.size());
+    }
+
+    private void await(int facts) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (put.size() < facts && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+    }
+
+    private Fact fact(String group) {
+        Key<String> key = new Key<String>(group) {
+            @Override
+            public String getId() {
+                return group;
+            }
+        };
+        Fact fact = mock(Fact.class);
+        when(fact.extractKey()).thenReturn(key);
+        return fact;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import it.redhat.hacep.cluster.TestFact;
+import it.redhat.hacep.model.Fact;
+import org.infinispan.commons.marshall.jboss.GenericJBossMarshaller;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+public class FactLogTest {
+
+    @Test
+    public void testShippingLeavesTheLogUnchanged() {
+        FactLog log = new FactLog(new GenericJBossMarshaller());
+        List<Fact> facts = new ArrayList<>();
+        for (long i = 0; i < 10; i++) {
+            facts.add(new TestFact(1L, i, new Date(i * 1000), null));
+            log.append(facts.get((int) i));
+        }
+        long byteSize = log.byteSize();
+
+        List<byte[]> shipped = log.chunks();
+        Assert.assertEquals(1, shipped.size());
+        Assert.assertEquals(10, log.length());
+        Assert.assertEquals(byteSize, log.byteSize());
+        Assert.assertEquals(1, log.chunks().size());
+
+        FactLog copy = new FactLog(new GenericJBossMarshaller(), shipped, log.length());
+        List<Fact> replayed = new ArrayList<>();
+        copy.replay(copy.drain(), replayed::add);
+        Assert.assertEquals(facts, replayed);
+        Assert.assertTrue(copy.isEmpty());
+    }
+
+    @Test
+    public void testSealsFullChunksOnAppend() {
+        FactLog log = new FactLog(new GenericJBossMarshaller());
+        List<Fact> facts = new ArrayList<>();
+        for (long i = 0; log.chunks().size() < 3; i++) {
+            Fact fact = new TestFact(1L, i, new Date(i * 1000), null);
+            facts.add(fact);
+            log.append(fact);
+        }
+
+        List<Fact> replayed = new ArrayList<>();
+        log.replay(log.drain(), replayed::add);
+        Assert.assertEquals(facts, replayed);
+        Assert.assertEquals(0, log.length());
+        Assert.assertEquals(0, log.byteSize());
+    }
+}
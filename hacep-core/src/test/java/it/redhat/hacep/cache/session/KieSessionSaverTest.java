@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.container.DataContainer;
+import org.infinispan.context.Flag;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class KieSessionSaverTest {
+
+    private Cache<String, Object> cache;
+    private KieSessionSaver saver;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        cache = mock(Cache.class);
+        AdvancedCache<String, Object> advancedCache = mock(AdvancedCache.class);
+        DataContainer<String, Object> dataContainer = mock(DataContainer.class);
+        when(cache.getAdvancedCache()).thenReturn(advancedCache);
+        when(advancedCache.getDataContainer()).thenReturn(dataContainer);
+        when(advancedCache.withFlags(any(Flag.class))).thenReturn(advancedCache);
+        saver = new KieSessionSaver(mock(HAKieSessionBuilder.class), cache);
+    }
+
+    @Test
+    public void testExpiredSessionsReleaseTheirLock() {
+        when(cache.get("expired")).thenReturn(mock(HAKieSession.class));
+        when(cache.get("kept")).thenReturn(mock(HAKieSession.class));
+
+        saver.evict("expired");
+        saver.evict("kept");
+        saver.evict("other");
+        Assert.assertEquals(3, saver.getLockedSessions());
+
+        Assert.assertTrue(saver.expire("expired", session -> true));
+        Assert.assertFalse(saver.expire("kept", session -> false));
+        Assert.assertEquals(2, saver.getLockedSessions());
+        verify(cache.getAdvancedCache()).remove("expired");
+
+        // a session created again for the same group gets a new lock
+        saver.evict("expired");
+        Assert.assertEquals(3, saver.getLockedSessions());
+    }
+}
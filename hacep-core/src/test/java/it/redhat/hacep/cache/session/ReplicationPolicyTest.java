@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReplicationPolicyTest {
+
+    @Test
+    public void testGroupPatterns() {
+        ReplicationPolicy policy = new ReplicationPolicy(ReplicationMode.BUFFERED)
+                .addGroupPattern(ReplicationMode.HOT_STANDBY, "vip-.*")
+                .addGroupPattern(ReplicationMode.LOG_ONLY, "bot-.*");
+        Assert.assertEquals(ReplicationMode.HOT_STANDBY, policy.modeFor("vip-1"));
+        Assert.assertEquals(ReplicationMode.LOG_ONLY, policy.modeFor("bot-1"));
+        Assert.assertEquals(ReplicationMode.BUFFERED, policy.modeFor("regular-1"));
+        Assert.assertEquals(ReplicationMode.BUFFERED, policy.modeFor(null));
+    }
+
+    @Test
+    public void testHotStandbyWinsOverlappingPatterns() {
+        ReplicationPolicy policy = new ReplicationPolicy(ReplicationMode.BUFFERED)
+                .addGroupPattern(ReplicationMode.LOG_ONLY, ".*-bot")
+                .addGroupPattern(ReplicationMode.HOT_STANDBY, "vip-.*");
+        Assert.assertEquals(ReplicationMode.HOT_STANDBY, policy.modeFor("vip-bot"));
+        Assert.assertEquals(ReplicationMode.LOG_ONLY, policy.modeFor("regular-bot"));
+    }
+
+    @Test
+    public void testSamePatternForTwoModesResolvesToHotStandby() {
+        ReplicationPolicy policy = new ReplicationPolicy(ReplicationMode.BUFFERED)
+                .addGroupPattern(ReplicationMode.LOG_ONLY, "vip-.*")
+                .addGroupPattern(ReplicationMode.HOT_STANDBY, "vip-.*");
+        Assert.assertEquals(ReplicationMode.HOT_STANDBY, policy.modeFor("vip-1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSecondPatternForAModeIsRejected() {
+        new ReplicationPolicy(ReplicationMode.BUFFERED)
+                .addGroupPattern(ReplicationMode.HOT_STANDBY, "vip-.*")
+                .addGroupPattern(ReplicationMode.HOT_STANDBY, "gold-.*");
+    }
+}
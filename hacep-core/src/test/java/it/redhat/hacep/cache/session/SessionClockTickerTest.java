@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import it.redhat.hacep.cache.ReorderBuffer;
+import it.redhat.hacep.configuration.RulesManager;
+import it.redhat.hacep.model.Fact;
+import it.redhat.hacep.model.Key;
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.builder.ReleaseId;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class SessionClockTickerTest {
+
+    private Cache<String, Object> cache;
+    private KieSessionSaver saver;
+    private RulesManager rulesManager;
+    private List<InternalCacheEntry<String, Object>> entries;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        cache = mock(Cache.class);
+        AdvancedCache<String, Object> advancedCache = mock(AdvancedCache.class);
+        DataContainer<String, Object> dataContainer = mock(DataContainer.class);
+        when(cache.getAdvancedCache()).thenReturn(advancedCache);
+        when(advancedCache.getDataContainer()).thenReturn(dataContainer);
+        entries = new ArrayList<>();
+        when(dataContainer.iterator()).thenAnswer(invocation -> entries.iterator());
+        saver = mock(KieSessionSaver.class);
+        when(saver.tick(anyString(), anyLong())).thenReturn(true);
+        rulesManager = mock(RulesManager.class);
+        ReleaseId releaseId = mock(ReleaseId.class);
+        when(releaseId.getVersion()).thenReturn("1.0");
+        when(rulesManager.getReleaseId()).thenReturn(releaseId);
+    }
+
+    @Test
+    public void testTicksLeastActiveLivePrimaries() {
+        add("recent", new HAKieSession(rulesManager, Runnable::run), 9000);
+        add("idle", new HAKieSession(rulesManager, Runnable::run), 1000);
+        add("older", new HAKieSession(rulesManager, Runnable::run), 5000);
+        add("backup", new HAKieSession(rulesManager, Runnable::run), 1000);
+        add("serialized", new HAKieSerializedSession(rulesManager, Runnable::run), 1000);
+        SessionClockTicker ticker = new SessionClockTicker(cache, saver, key -> !"backup".equals(key),
+                () -> 10000, 0, 1, 2, 0, null);
+
+        Assert.assertEquals(2, ticker.tick(10000));
+        verify(saver).tick("idle", 10000);
+        verify(saver).tick("older", 10000);
+        verify(saver, never()).tick(eq("recent"), anyLong());
+        verify(saver, never()).tick(eq("backup"), anyLong());
+        verify(saver, never()).tick(eq("serialized"), anyLong());
+        Assert.assertEquals(2, ticker.getTicked());
+    }
+
+    @Test
+    public void testWheelTicksEverySessionOncePerTurn() {
+        for (int i = 0; i < 20; i++) {
+            add("group" + i, new HAKieSession(rulesManager, Runnable::run), 1000);
+        }
+        SessionClockTicker ticker = new SessionClockTicker(cache, saver, key -> true, () -> 10000, 0, 4, 100, 0, null);
+
+        int ticked = 0;
+        for (int i = 0; i < 4; i++) {
+            ticked += ticker.tick(10000 + i);
+        }
+
+        Assert.assertEquals(20, ticked);
+        for (int i = 0; i < 20; i++) {
+            verify(saver, times(1)).tick(eq("group" + i), anyLong());
+        }
+    }
+
+    @Test
+    public void testRunAppliesLag() {
+        add("idle", new HAKieSession(rulesManager, Runnable::run), 1000);
+        new SessionClockTicker(cache, saver, key -> true, () -> 10000, 500, 1, 10, 0, null).run();
+        new SessionClockTicker(cache, saver, key -> true, () -> Long.MIN_VALUE, 500, 1, 10, 0, null).run();
+
+        verify(saver, times(1)).tick(anyString(), anyLong());
+        verify(saver).tick("idle", 9500);
+    }
+
+    @Test
+    public void testTicksAreBoundedByTheReorderBuffer() {
+        List<Fact> inserted = new ArrayList<>();
+        List<Fact> late = new ArrayList<>();
+        ReorderBuffer reorderBuffer = new ReorderBuffer((key, fact) -> inserted.add(fact), (key, fact) -> late.add(fact),
+                60000, 100, 1000);
+        try {
+            add("held", new HAKieSession(rulesManager, Runnable::run), 1000);
+            add("idle", new HAKieSession(rulesManager, Runnable::run), 1000);
+            offer(reorderBuffer, "held", 100000);
+            SessionClockTicker ticker = new SessionClockTicker(cache, saver, key -> true, () -> 200000, 0, 1, 10, 0,
+                    reorderBuffer);
+
+            Assert.assertEquals(1, ticker.tick(200000));
+            verify(saver, never()).tick(eq("held"), anyLong());
+            verify(saver).tick("idle", 200000);
+
+            Fact older = offer(reorderBuffer, "idle", 150000);
+            Assert.assertEquals(Collections.singletonList(older), late);
+            Fact newer = offer(reorderBuffer, "idle", 210000);
+            Assert.assertFalse(late.contains(newer));
+        } finally {
+            reorderBuffer.stop();
+        }
+    }
+
+    private Fact offer(ReorderBuffer reorderBuffer, String group, long instant) {
+        Key<String> key = new Key<String>(group) {
+            @Override
+            public String getId() {
+                return group;
+            }
+        };
+        Fact fact = mock(Fact.class);
+        when(fact.getInstant()).thenReturn(Instant.ofEpochMilli(instant));
+        reorderBuffer.offer(key, fact);
+        return fact;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void add(String key, HAKieSession session, long lastActivity) {
+        session.getStats().restore(lastActivity, lastActivity);
+        InternalCacheEntry<String, Object> entry = mock(InternalCacheEntry.class);
+        when(entry.getKey()).thenReturn(key);
+        when(entry.getValue()).thenReturn(session);
+        entries.add(entry);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import it.redhat.hacep.configuration.RulesManager;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.builder.ReleaseId;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SessionFormatTest {
+
+    private RulesManager rulesManager;
+    private HAKieSessionBuilder builder;
+
+    @Before
+    public void setup() {
+        rulesManager = mock(RulesManager.class);
+        ReleaseId releaseId = mock(ReleaseId.class);
+        when(releaseId.getVersion()).thenReturn("1.0");
+        when(rulesManager.getReleaseId()).thenReturn(releaseId);
+        builder = mock(HAKieSessionBuilder.class);
+        when(builder.buildSerialized()).thenAnswer(invocation -> new HAKieSerializedSession(rulesManager, Runnable::run));
+        when(builder.buildSerialized(anyString(), any(byte[].class))).thenAnswer(invocation -> new HAKieSerializedSession(
+                rulesManager, Runnable::run, (String) invocation.getArguments()[0], (byte[]) invocation.getArguments()[1]));
+    }
+
+    @Test
+    public void testSessionKeepsItsTimestamps() throws Exception {
+        HAKieSession session = new HAKieSession(rulesManager, Runnable::run);
+        session.getStats().restore(5000, 7000);
+        HAKieSession.HASessionExternalizer externalizer = new HAKieSession.HASessionExternalizer(builder);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            externalizer.writeObject(output, session);
+        }
+        HAKieSession read;
+        try (ObjectInputStream input = input(bytes)) {
+            read = externalizer.readObject(input);
+        }
+
+        Assert.assertEquals(5000, read.getStats().getCreated());
+        Assert.assertEquals(7000, read.getStats().getLastInsert());
+    }
+
+    /**
+     * The fixtures under formats/ are the bytes written by the original externalizers, before the
+     * format was versioned: a live session of 4 bytes and a serialized session of 3 bytes with an
+     * empty buffer, both at version 0.9.
+     */
+    @Test
+    public void testReadsUnversionedSession() throws Exception {
+        long before = System.currentTimeMillis();
+        HAKieSession read;
+        try (ObjectInputStream input = fixture("baseline-session.bin")) {
+            read = new HAKieSession.HASessionExternalizer(builder).readObject(input);
+            Assert.assertEquals(-1, input.read());
+        }
+
+        Assert.assertTrue(read instanceof HAKieSerializedSession);
+        Assert.assertEquals(4, ((HAKieSerializedSession) read).getSessionSize());
+        Assert.assertEquals("0.9", ((HAKieSerializedSession) read).getVersion());
+        Assert.assertTrue(read.getStats().getCreated() >= before);
+    }
+
+    @Test
+    public void testReadsUnversionedSerializedSession() throws Exception {
+        HAKieSerializedSession read;
+        try (ObjectInputStream input = fixture("baseline-serialized-session.bin")) {
+            read = new HAKieSerializedSession.HASerializedSessionExternalizer(builder).readObject(input);
+            Assert.assertEquals(-1, input.read());
+        }
+
+        Assert.assertEquals(3, read.getSessionSize());
+        Assert.assertEquals("0.9", read.getVersion());
+        Assert.assertEquals(0, read.getBufferedFacts());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsNewerFormat() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeByte(0x80 | (HAKieSession.FORMAT_VERSION + 1));
+            output.writeInt(0);
+        }
+        try (ObjectInputStream input = input(bytes)) {
+            new HAKieSession.HASessionExternalizer(builder).readObject(input);
+        }
+    }
+
+    private ObjectInputStream input(ByteArrayOutputStream bytes) throws IOException {
+        return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    private ObjectInputStream fixture(String name) throws IOException {
+        return new ObjectInputStream(getClass().getResourceAsStream("/formats/" + name));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class SessionMemoryBudgetTest {
+
+    private Cache<String, Object> cache;
+    private KieSessionSaver saver;
+    private List<InternalCacheEntry<String, Object>> entries;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        cache = mock(Cache.class);
+        AdvancedCache<String, Object> advancedCache = mock(AdvancedCache.class);
+        DataContainer<String, Object> dataContainer = mock(DataContainer.class);
+        when(cache.getAdvancedCache()).thenReturn(advancedCache);
+        when(advancedCache.getDataContainer()).thenReturn(dataContainer);
+        entries = new ArrayList<>();
+        when(dataContainer.iterator()).thenAnswer(invocation -> entries.iterator());
+        saver = mock(KieSessionSaver.class);
+        when(saver.evict(anyString())).thenReturn(true);
+    }
+
+    @Test
+    public void testWithinBudget() {
+        live("a", 1000, 10);
+        live("b", 2000, 10);
+        SessionMemoryBudget budget = new SessionMemoryBudget(cache, saver, 2000, 100);
+
+        Assert.assertEquals(0, budget.enforce());
+        Assert.assertEquals(2000, budget.getEstimate());
+        verify(saver, never()).evict(anyString());
+    }
+
+    @Test
+    public void testEvictsColdestFirst() {
+        live("warm", 2000, 10);
+        live("cold", 1000, 10);
+        live("hot", 3000, 10);
+        SessionMemoryBudget budget = new SessionMemoryBudget(cache, saver, 2500, 100);
+
+        Assert.assertEquals(1, budget.enforce());
+        verify(saver).evict("cold");
+        verify(saver, never()).evict("warm");
+        verify(saver, never()).evict("hot");
+        Assert.assertEquals(2000, budget.getEstimate());
+        Assert.assertEquals(1, budget.getEvicted());
+    }
+
+    @Test
+    public void testSerializedWeight() {
+        HAKieSerializedSession session = mock(HAKieSerializedSession.class);
+        when(session.getStats()).thenReturn(new SessionStats());
+        when(session.getMemorySize()).thenReturn(1000);
+        when(session.getLogSize()).thenReturn(200L);
+        when(session.getBufferedFacts()).thenReturn(15L);
+        when(session.getLoggedFacts()).thenReturn(10);
+        SessionMemoryBudget budget = new SessionMemoryBudget(cache, saver, 2500, 100);
+
+        Assert.assertEquals(1000 + 200 + 5 * 100, budget.weigh(session));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void live(String key, long lastInsert, long facts) {
+        SessionStats stats = new SessionStats();
+        stats.inserted(lastInsert, facts);
+        HAKieSession session = mock(HAKieSession.class);
+        when(session.getStats()).thenReturn(stats);
+        InternalCacheEntry<String, Object> entry = mock(InternalCacheEntry.class);
+        when(entry.getKey()).thenReturn(key);
+        when(entry.getValue()).thenReturn(session);
+        entries.add(entry);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+public class SessionPreloaderTest {
+
+    private static final String CACHE_NAME = "sessions";
+
+    private String location;
+    private DefaultCacheManager manager;
+
+    @Before
+    public void createTemporaryLocationName() {
+        location = "./target/" + UUID.randomUUID().toString();
+    }
+
+    @After
+    public void stopManager() {
+        if (manager != null) {
+            manager.stop();
+        }
+    }
+
+    private Cache<String, String> start() {
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        builder.persistence()
+                .passivation(false)
+                .addSingleFileStore()
+                .location(location)
+                .preload(false);
+        manager = new DefaultCacheManager(new GlobalConfigurationBuilder().globalJmxStatistics().allowDuplicateDomains(true).build());
+        manager.defineConfiguration(CACHE_NAME, builder.build());
+        return manager.getCache(CACHE_NAME);
+    }
+
+    @Test
+    public void testPrimaryFirst() throws Exception {
+        Cache<String, String> cache = start();
+        for (int i = 0; i < 50; i++) {
+            cache.put("primary" + i, "p" + i);
+            cache.put("backup" + i, "b" + i);
+            cache.put("other" + i, "o" + i);
+        }
+        manager.stop();
+
+        cache = start();
+        Assert.assertEquals(0, cache.getAdvancedCache().getDataContainer().size());
+
+        SessionPreloader preloader = new SessionPreloader(cache, key -> ((String) key).startsWith("primary"),
+                key -> !((String) key).startsWith("other"), 4);
+        preloader.preloadPrimary();
+
+        Assert.assertEquals(SessionPreloader.Phase.PRIMARY, preloader.getPhase());
+        Assert.assertEquals(50, preloader.getPrimaryLoaded());
+        Assert.assertEquals(50, cache.getAdvancedCache().getDataContainer().size());
+        Assert.assertNotNull(cache.getAdvancedCache().getDataContainer().get("primary7"));
+        Assert.assertNull(cache.getAdvancedCache().getDataContainer().get("backup7"));
+
+        preloader.preloadRemainder();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (preloader.getPhase() != SessionPreloader.Phase.DONE && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertEquals(SessionPreloader.Phase.DONE, preloader.getPhase());
+        Assert.assertEquals(50, preloader.getRemainderLoaded());
+        Assert.assertEquals(100, cache.getAdvancedCache().getDataContainer().size());
+        Assert.assertEquals("b7", cache.get("backup7"));
+        Assert.assertNull(cache.getAdvancedCache().getDataContainer().get("other7"));
+        preloader.stop();
+    }
+}
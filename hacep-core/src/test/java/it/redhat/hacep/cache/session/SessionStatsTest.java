@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SessionStatsTest {
+
+    @Test
+    public void testInsertRate() {
+        SessionStats stats = new SessionStats();
+        long now = 1_000_000;
+        for (int i = 0; i <= 100; i++) {
+            stats.inserted(now + i * 10, i);
+        }
+        Assert.assertEquals(101, stats.getInserted());
+        Assert.assertEquals(100, stats.getFactCount());
+        Assert.assertEquals(50, stats.getInsertRate(now + 1000), 1);
+    }
+
+    @Test
+    public void testRateDecaysWhenIdle() {
+        SessionStats stats = new SessionStats();
+        long now = 1_000_000;
+        for (int i = 0; i <= 100; i++) {
+            stats.inserted(now + i * 10, i);
+        }
+        double rate = stats.getInsertRate(now + 1000);
+        Assert.assertEquals(rate / 2, stats.getInsertRate(now + 3000), 0.01);
+        Assert.assertTrue(stats.getInsertRate(now + 60000) < 0.01);
+    }
+
+    @Test
+    public void testSnapshot() {
+        SessionStats stats = new SessionStats();
+        Assert.assertEquals(0, stats.getLastSnapshot());
+        stats.snapshot(42, 1024);
+        Assert.assertEquals(42, stats.getLastSnapshot());
+        Assert.assertEquals(1024, stats.getSnapshotBytes());
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.commons.marshall.Marshaller;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class SessionSweeperTest {
+
+    private Cache<String, Object> cache;
+    private KieSessionSaver saver;
+    private List<InternalCacheEntry<String, Object>> entries;
+    private Map<String, HAKieSession> sessions;
+    private File archiveFile;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() throws IOException {
+        cache = mock(Cache.class);
+        AdvancedCache<String, Object> advancedCache = mock(AdvancedCache.class);
+        DataContainer<String, Object> dataContainer = mock(DataContainer.class);
+        when(cache.getAdvancedCache()).thenReturn(advancedCache);
+        when(advancedCache.getDataContainer()).thenReturn(dataContainer);
+        entries = new ArrayList<>();
+        sessions = new HashMap<>();
+        when(dataContainer.iterator()).thenAnswer(invocation -> entries.iterator());
+        saver = mock(KieSessionSaver.class);
+        when(saver.expire(anyString(), any(Predicate.class))).thenAnswer(invocation -> {
+            HAKieSession session = sessions.get((String) invocation.getArguments()[0]);
+            return session != null && ((Predicate<HAKieSession>) invocation.getArguments()[1]).test(session);
+        });
+        archiveFile = File.createTempFile("hacep-sessions-archive", ".gz");
+    }
+
+    @After
+    public void cleanup() {
+        archiveFile.delete();
+    }
+
+    @Test
+    public void testExpiresIdleAndOldPrimarySessions() {
+        add("idle", 1000, 2000);
+        add("old", 500, 9900);
+        add("active", 8000, 9000);
+        add("backup", 1000, 1000);
+        SessionSweeper sweeper = new SessionSweeper(cache, saver, key -> !"backup".equals(key),
+                5000, 9000, 0, false, null, null);
+
+        Assert.assertEquals(2, sweeper.sweep(10000));
+        verify(saver).expire(eq("idle"), any());
+        verify(saver).expire(eq("old"), any());
+        verify(saver, never()).expire(eq("active"), any());
+        verify(saver, never()).expire(eq("backup"), any());
+        Assert.assertEquals(3, sweeper.getExamined());
+        Assert.assertEquals(2, sweeper.getExpired());
+    }
+
+    @Test
+    public void testArchivesExpiredSessions() throws Exception {
+        add("idle", 1000, 2000);
+        add("active", 8000, 9000);
+        Marshaller marshaller = mock(Marshaller.class);
+        when(marshaller.objectToByteBuffer(any())).thenReturn(new byte[]{1, 2, 3});
+        try (SessionArchive archive = new SessionArchive(archiveFile)) {
+            SessionSweeper sweeper = new SessionSweeper(cache, saver, key -> true, 5000, 0, 0, false, archive, marshaller);
+            Assert.assertEquals(1, sweeper.sweep(10000));
+            Assert.assertEquals(1, sweeper.getArchived());
+        }
+        try (SessionArchive archive = new SessionArchive(archiveFile)) {
+            archive.append("later", 1, 2, 3, new byte[0]);
+        }
+
+        List<SessionArchive.Record> records = new ArrayList<>();
+        SessionArchive.read(archiveFile, records::add);
+        Assert.assertEquals(2, records.size());
+        SessionArchive.Record record = records.get(0);
+        Assert.assertEquals("idle", record.getGroup());
+        Assert.assertEquals(1000, record.getCreated());
+        Assert.assertEquals(2000, record.getLastActivity());
+        Assert.assertEquals(10000, record.getExpired());
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, record.getSession());
+        Assert.assertEquals("later", records.get(1).getGroup());
+    }
+
+    @Test
+    public void testKeepsSessionsItCannotArchive() throws Exception {
+        add("idle", 1000, 2000);
+        Marshaller marshaller = mock(Marshaller.class);
+        when(marshaller.objectToByteBuffer(any())).thenThrow(new IOException("marshalling"));
+        try (SessionArchive archive = new SessionArchive(archiveFile)) {
+            SessionSweeper sweeper = new SessionSweeper(cache, saver, key -> true, 5000, 0, 0, false, archive, marshaller);
+            Assert.assertEquals(0, sweeper.sweep(10000));
+            Assert.assertEquals(0, sweeper.getExpired());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void add(String key, long created, long lastActivity) {
+        HAKieSession session = mock(HAKieSession.class);
+        SessionStats stats = mock(SessionStats.class);
+        when(stats.getCreated()).thenReturn(created);
+        when(stats.getLastActivity()).thenReturn(lastActivity);
+        when(session.getStats()).thenReturn(stats);
+        InternalCacheEntry<String, Object> entry = mock(InternalCacheEntry.class);
+        when(entry.getKey()).thenReturn(key);
+        when(entry.getValue()).thenReturn(session);
+        entries.add(entry);
+        sessions.put(key, session);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.session;
+
+import it.redhat.hacep.configuration.RulesManager;
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.builder.ReleaseId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class SessionTieringTest {
+
+    private Cache<String, Object> cache;
+    private KieSessionSaver saver;
+    private List<InternalCacheEntry<String, Object>> entries;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        cache = mock(Cache.class);
+        AdvancedCache<String, Object> advancedCache = mock(AdvancedCache.class);
+        DataContainer<String, Object> dataContainer = mock(DataContainer.class);
+        when(cache.getAdvancedCache()).thenReturn(advancedCache);
+        when(advancedCache.getDataContainer()).thenReturn(dataContainer);
+        entries = new ArrayList<>();
+        when(dataContainer.iterator()).thenAnswer(invocation -> entries.iterator());
+        saver = mock(KieSessionSaver.class);
+        when(saver.demote(anyString())).thenReturn(true);
+        when(saver.evict(anyString())).thenReturn(true);
+    }
+
+    @Test
+    public void testDemotesIdleLiveSessions() {
+        add("idle", mock(HAKieSession.class), 1000);
+        add("active", mock(HAKieSession.class), 9000);
+        SessionTiering tiering = new SessionTiering(cache, saver, 5000, 0, 0, 0);
+
+        Assert.assertEquals(1, tiering.enforce(10000));
+        verify(saver).demote("idle");
+        verify(saver, never()).demote("active");
+        Assert.assertEquals(1, tiering.getHot());
+        Assert.assertEquals(1, tiering.getWarm());
+        Assert.assertEquals(1, tiering.getDemotedWarm());
+    }
+
+    @Test
+    public void testMaxHot() {
+        add("a", mock(HAKieSession.class), 9000);
+        add("b", mock(HAKieSession.class), 8000);
+        add("c", mock(HAKieSession.class), 9500);
+        SessionTiering tiering = new SessionTiering(cache, saver, 0, 0, 1, 0);
+
+        Assert.assertEquals(2, tiering.enforce(10000));
+        verify(saver).demote("a");
+        verify(saver).demote("b");
+        verify(saver, never()).demote("c");
+        Assert.assertEquals(1, tiering.getHot());
+    }
+
+    @Test
+    public void testEvictsIdleWarmSessions() {
+        HAKieSerializedSession idle = serialized(1000);
+        HAKieSerializedSession recent = serialized(500);
+        HAKieSerializedSession active = serialized(300);
+        add("idle", idle, 1000);
+        add("recent", recent, 7000);
+        add("active", active, 9900);
+        SessionTiering tiering = new SessionTiering(cache, saver, 2000, 5000, 0, 0);
+
+        Assert.assertEquals(1, tiering.enforce(10000));
+        verify(saver).evict("idle");
+        verify(saver, never()).evict("recent");
+        verify(recent).compress();
+        verify(active, never()).compress();
+        Assert.assertEquals(2, tiering.getWarm());
+        Assert.assertEquals(800, tiering.getWarmBytes());
+        Assert.assertEquals(1, tiering.getDemotedCold());
+    }
+
+    @Test
+    public void testCompressedSnapshot() {
+        RulesManager rulesManager = mock(RulesManager.class);
+        ReleaseId releaseId = mock(ReleaseId.class);
+        when(releaseId.getVersion()).thenReturn("1.0");
+        when(rulesManager.getReleaseId()).thenReturn(releaseId);
+        byte[] snapshot = new byte[10000];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = (byte) (i % 7);
+        }
+        HAKieSerializedSession session = new HAKieSerializedSession(rulesManager, Runnable::run, "1.0", snapshot.clone());
+
+        Assert.assertTrue(session.compress());
+        Assert.assertTrue(session.isCompressed());
+        Assert.assertFalse(session.compress());
+        Assert.assertEquals(snapshot.length, session.getSessionSize());
+        Assert.assertTrue(session.getMemorySize() < snapshot.length);
+        Assert.assertTrue(Arrays.equals(snapshot, session.getSerializedSession()));
+    }
+
+    private HAKieSerializedSession serialized(int bytes) {
+        HAKieSerializedSession session = mock(HAKieSerializedSession.class);
+        when(session.getMemorySize()).thenReturn(bytes);
+        return session;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void add(String key, HAKieSession session, long lastActivity) {
+        SessionStats stats = mock(SessionStats.class);
+        when(stats.getLastActivity()).thenReturn(lastActivity);
+        when(session.getStats()).thenReturn(stats);
+        InternalCacheEntry<String, Object> entry = mock(InternalCacheEntry.class);
+        when(entry.getKey()).thenReturn(key);
+        when(entry.getValue()).thenReturn(session);
+        entries.add(entry);
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.store;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.persistence.manager.PersistenceManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class LogStructuredStoreTest {
+
+    private static final String CACHE_NAME = "sessions";
+
+    private String location;
+    private DefaultCacheManager manager;
+
+    @Before
+    public void createTemporaryLocationName() {
+        location = "./target/" + UUID.randomUUID().toString();
+    }
+
+    @After
+    public void stopManager() {
+        if (manager != null) {
+            manager.stop();
+        }
+    }
+
+    private Cache<String, String> start() {
+        return start(false);
+    }
+
+    private Cache<String, String> start(boolean writeBehind) {
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        builder.persistence()
+                .passivation(false)
+                .addStore(LogStructuredStoreConfigurationBuilder.class)
+                .location(location)
+                .maxSegmentSize(4096)
+                .compactionInterval(0)
+                .writeBehind(writeBehind)
+                .writeBehindDelay(60000)
+                .writeBehindQueueSize(1000)
+                .preload(true);
+        manager = new DefaultCacheManager(new GlobalConfigurationBuilder().globalJmxStatistics().allowDuplicateDomains(true).build());
+        manager.defineConfiguration(CACHE_NAME, builder.build());
+        return manager.getCache(CACHE_NAME);
+    }
+
+    private void stop() {
+        manager.stop();
+        manager = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private LogStructuredStore<String, String> store(Cache<String, String> cache) {
+        PersistenceManager persistenceManager = cache.getAdvancedCache().getComponentRegistry().getComponent(PersistenceManager.class);
+        return persistenceManager.getStores(LogStructuredStore.class).iterator().next();
+    }
+
+    private void fill(Cache<String, String> cache) {
+        for (int i = 0; i < 200; i++) {
+            cache.put("k" + i, "v" + i + "-" + UUID.randomUUID());
+        }
+        for (int i = 0; i < 100; i++) {
+            cache.put("k" + i, "w" + i);
+        }
+        for (int i = 190; i < 200; i++) {
+            cache.remove("k" + i);
+        }
+    }
+
+    private void verify(Cache<String, String> cache) {
+        Assert.assertEquals(190, cache.size());
+        Assert.assertEquals("w5", cache.get("k5"));
+        Assert.assertTrue(cache.get("k150").startsWith("v150-"));
+        Assert.assertNull(cache.get("k195"));
+    }
+
+    @Test
+    public void testRestartWithIndex() {
+        fill(start());
+        stop();
+
+        Assert.assertTrue(Files.exists(Paths.get(location, CACHE_NAME, LogStructuredStore.INDEX_FILE)));
+        verify(start());
+    }
+
+    @Test
+    public void testRestartWithoutIndex() throws Exception {
+        fill(start());
+        stop();
+
+        Files.delete(Paths.get(location, CACHE_NAME, LogStructuredStore.INDEX_FILE));
+        verify(start());
+    }
+
+    @Test
+    public void testCompaction() {
+        Cache<String, String> cache = start();
+        fill(cache);
+        LogStructuredStore<String, String> store = store(cache);
+        int segments = store.getSegmentCount();
+
+        store.compact();
+
+        Assert.assertTrue(store.getSegmentCount() < segments);
+        verify(cache);
+        stop();
+        verify(start());
+    }
+
+    @Test
+    public void testCompactionDropsTombstones() {
+        Cache<String, String> cache = start();
+        fill(cache);
+        for (int i = 0; i < 190; i++) {
+            cache.remove("k" + i);
+        }
+        LogStructuredStore<String, String> store = store(cache);
+        for (int i = 0; i < 10; i++) {
+            store.compact();
+        }
+        int segments = store.getSegmentCount();
+
+        store.compact();
+
+        Assert.assertEquals(segments, store.getSegmentCount());
+        Assert.assertEquals(0, cache.size());
+        stop();
+        Assert.assertEquals(0, start().size());
+    }
+
+    @Test
+    public void testWriteBehind() {
+        Cache<String, String> cache = start(true);
+        fill(cache);
+        LogStructuredStore<String, String> store = store(cache);
+
+        Assert.assertEquals(200, store.getPendingWrites());
+        Assert.assertEquals(110, store.getCoalescedWrites());
+        Assert.assertEquals(0, store.getFlushedWrites());
+        Assert.assertEquals("w5", store.load("k5").getValue());
+        Assert.assertNull(store.load("k195"));
+        Assert.assertFalse(store.contains("k195"));
+
+        Assert.assertEquals(190, store.size());
+        Assert.assertEquals(0, store.getPendingWrites());
+        Assert.assertEquals(200, store.getFlushedWrites());
+        cache.put("k5", "x5");
+        stop();
+
+        Cache<String, String> restarted = start();
+        Assert.assertEquals("x5", restarted.get("k5"));
+        restarted.put("k5", "w5");
+        verify(restarted);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWriteBehindQueuesAMarshalledCopy() {
+        Cache<String, Object> cache = (Cache) start(true);
+        List<String> value = new ArrayList<>();
+        value.add("first");
+        cache.put("k", value);
+        value.add("second");
+        LogStructuredStore<String, String> store = store((Cache) cache);
+
+        Assert.assertEquals(1, store.getPendingWrites());
+        Object queued = store.load("k").getValue();
+        Assert.assertNotSame(value, queued);
+        Assert.assertEquals(1, ((List<String>) queued).size());
+        stop();
+
+        Cache<String, Object> restarted = (Cache) start(true);
+        Assert.assertEquals(1, ((List<String>) restarted.get("k")).size());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cache.transfer;
+
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.remoting.transport.Address;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StateTransferProgressTest {
+
+    @Test
+    public void testExpectedSessions() {
+        Address self = mock(Address.class);
+        Address other = mock(Address.class);
+        ConsistentHash start = mock(ConsistentHash.class);
+        ConsistentHash end = mock(ConsistentHash.class);
+        when(start.getNumSegments()).thenReturn(4);
+        when(end.getNumSegments()).thenReturn(4);
+        for (int segment = 0; segment < 4; segment++) {
+            when(start.locateOwnersForSegment(segment)).thenReturn(segment < 2 ? Arrays.asList(self, other) : Collections.singletonList(other));
+            when(end.locateOwnersForSegment(segment)).thenReturn(segment < 3 ? Arrays.asList(self, other) : Collections.singletonList(other));
+        }
+        StateTransferProgress progress = new StateTransferProgress(0);
+
+        progress.started(start, end, self, 10);
+
+        Assert.assertTrue(progress.isInProgress());
+        Assert.assertEquals(1, progress.getIncomingSegments());
+        Assert.assertEquals(5, progress.getExpectedSessions());
+        Assert.assertEquals(-1, progress.getEstimatedTimeRemaining());
+    }
+
+    @Test
+    public void testCountsOnlyDuringATransfer() throws InterruptedException {
+        StateTransferProgress progress = new StateTransferProgress(0);
+        progress.received(100);
+        progress.sent(100);
+        Assert.assertEquals(0, progress.getSessionsReceived());
+        Assert.assertEquals(0, progress.getSessionsSent());
+
+        progress.started(null, null, null, 0);
+        progress.received(100);
+        progress.received(50);
+        progress.sent(10);
+        Thread.sleep(5);
+        progress.finished();
+        progress.received(100);
+
+        Assert.assertFalse(progress.isInProgress());
+        Assert.assertEquals(2, progress.getSessionsReceived());
+        Assert.assertEquals(150, progress.getBytesReceived());
+        Assert.assertEquals(1, progress.getSessionsSent());
+        Assert.assertEquals(10, progress.getBytesSent());
+        Assert.assertTrue(progress.getLastDuration() > 0);
+        Assert.assertEquals(0, progress.getElapsedTime());
+
+        progress.started(null, null, null, 0);
+        Assert.assertEquals(0, progress.getSessionsReceived());
+        Assert.assertEquals(0, progress.getBytesSent());
+    }
+
+    @Test
+    public void testOnlyTransferThreadsAreCountedAndThrottled() throws InterruptedException {
+        StateTransferProgress progress = new StateTransferProgress(1000);
+        progress.started(null, null, null, 0);
+
+        StateTransferThreads.sent(5000);
+        Assert.assertEquals(0, progress.getSessionsSent());
+
+        long[] waited = new long[1];
+        Thread thread = new StateTransferThreads(progress, "node1").newThread(() -> {
+            long start = System.nanoTime();
+            StateTransferThreads.sent(1000);
+            StateTransferThreads.sent(200);
+            waited[0] = System.nanoTime() - start;
+        });
+        Assert.assertTrue(thread.isDaemon());
+        Assert.assertTrue(thread.getName().startsWith("hacep-state-transfer-node1-"));
+        thread.start();
+        thread.join();
+
+        Assert.assertEquals(2, progress.getSessionsSent());
+        Assert.assertEquals(1200, progress.getBytesSent());
+        Assert.assertEquals(1000, progress.getThrottle());
+        Assert.assertTrue("waited " + waited[0], waited[0] >= 150_000_000L);
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cluster;
+
+import it.redhat.hacep.cache.session.HAKieSerializedSession;
+import it.redhat.hacep.cache.session.HAKieSession;
+import it.redhat.hacep.cache.session.HAKieSessionBuilder;
+import it.redhat.hacep.cache.session.HAKieSessionFullSnapshot;
+import it.redhat.hacep.cache.session.KieSessionSaver;
+import it.redhat.hacep.configuration.RulesManager;
+import it.redhat.hacep.model.Fact;
+import it.redhat.hacep.model.Key;
+import org.infinispan.Cache;
+import org.infinispan.atomic.DeltaAware;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.remoting.transport.Address;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.kie.api.runtime.Channel;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static it.redhat.hacep.cluster.RulesConfigurationTestImpl.RulesTestBuilder;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HandoffTest extends AbstractClusterTest {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(HandoffTest.class);
+
+    private static ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+    @Mock
+    private Channel replayChannel;
+    @Mock
+    private Channel additionsChannel;
+
+    private ZonedDateTime now = ZonedDateTime.now();
+
+    @After
+    public void clearBuffer() {
+        System.clearProperty("grid.buffer");
+    }
+
+    @Test
+    public void testHandoffShipsFullSnapshots() {
+        System.setProperty("grid.buffer", "100");
+
+        LOGGER.info("Start test handoff ships full snapshots");
+
+        RulesManager rulesManager = startRulesManager();
+        Cache<String, Object> cache1 = startNodes(2, rulesManager).getCache();
+        Cache<String, Object> cache2 = startNodes(2, rulesManager).getCache();
+
+        KieSessionSaver saver = new KieSessionSaver(new HAKieSessionBuilder(rulesManager, executorService), cache1);
+        GroupKey key = primaryKeyOf(cache1);
+
+        saver.insert(key, generateFactTenSecondsAfter(1L, 10L, key));
+        saver.insert(key, generateFactTenSecondsAfter(1L, 20L, key));
+        saver.insert(key, generateFactTenSecondsAfter(1L, 30L, key));
+
+        Assert.assertEquals(3, backupOf(cache2, key).getBufferedFacts());
+
+        Assert.assertEquals(1, saver.handoff(Collections.singleton(key.getGroup()), System.currentTimeMillis() + 60000));
+
+        // The backup took the snapshot in place of its buffer and has nothing left to replay
+        HAKieSerializedSession backup = backupOf(cache2, key);
+        Assert.assertEquals(0, backup.getBufferedFacts());
+
+        reset(replayChannel, additionsChannel);
+
+        HAKieSession promoted = backup.rebuild();
+        verify(replayChannel, never()).send(any());
+
+        promoted.insert(generateFactTenSecondsAfter(1L, 40L, key));
+        verify(additionsChannel, times(1)).send(eq(100L));
+
+        LOGGER.info("End test handoff ships full snapshots");
+        rulesManager.stop();
+    }
+
+    @Test
+    public void testHandoffStopsAtTheDeadline() {
+        System.setProperty("grid.buffer", "100");
+
+        LOGGER.info("Start test handoff stops at the deadline");
+
+        RulesManager rulesManager = startRulesManager();
+        Cache<String, Object> cache1 = startNodes(2, rulesManager).getCache();
+        Cache<String, Object> cache2 = startNodes(2, rulesManager).getCache();
+
+        KieSessionSaver saver = new KieSessionSaver(new HAKieSessionBuilder(rulesManager, executorService), cache1);
+        GroupKey key = primaryKeyOf(cache1);
+
+        saver.insert(key, generateFactTenSecondsAfter(1L, 10L, key));
+        saver.insert(key, generateFactTenSecondsAfter(1L, 20L, key));
+
+        Assert.assertEquals(0, saver.handoff(Collections.singleton(key.getGroup()), System.currentTimeMillis() - 1));
+        Assert.assertEquals(2, backupOf(cache2, key).getBufferedFacts());
+
+        LOGGER.info("End test handoff stops at the deadline");
+        rulesManager.stop();
+    }
+
+    @Test
+    public void testHandoffSkipsMissingSessions() {
+        System.setProperty("grid.buffer", "100");
+
+        LOGGER.info("Start test handoff skips missing sessions");
+
+        RulesManager rulesManager = startRulesManager();
+        Cache<String, Object> cache1 = startNodes(2, rulesManager).getCache();
+        startNodes(2, rulesManager);
+
+        KieSessionSaver saver = new KieSessionSaver(new HAKieSessionBuilder(rulesManager, executorService), cache1);
+        GroupKey key = primaryKeyOf(cache1);
+
+        Assert.assertEquals(0, saver.handoff(Collections.singleton(key.getGroup()), System.currentTimeMillis() + 60000));
+
+        LOGGER.info("End test handoff skips missing sessions");
+        rulesManager.stop();
+    }
+
+    @Test
+    public void testFullSnapshotMergesWithoutMarshalling() {
+        System.setProperty("grid.buffer", "100");
+
+        RulesManager rulesManager = startRulesManager();
+        GroupKey key = new GroupKey("group-0");
+        HAKieSession live = new HAKieSession(rulesManager, executorService);
+        HAKieSerializedSession backup = new HAKieSerializedSession(rulesManager, executorService);
+        Fact first = generateFactTenSecondsAfter(1L, 10L, key);
+        Fact second = generateFactTenSecondsAfter(1L, 20L, key);
+        live.insert(first);
+        backup.add(first);
+        live.insert(second);
+        backup.add(second);
+
+        // Merged as a local cache would, without the externalizer setting a builder
+        live.shipFullSnapshot();
+        DeltaAware merged = live.delta().merge(backup);
+        live.commit();
+
+        Assert.assertTrue(merged instanceof HAKieSerializedSession);
+        Assert.assertEquals(0, ((HAKieSerializedSession) merged).getBufferedFacts());
+
+        reset(replayChannel, additionsChannel);
+
+        HAKieSession promoted = ((HAKieSerializedSession) merged).rebuild();
+        verify(replayChannel, never()).send(any());
+
+        promoted.insert(generateFactTenSecondsAfter(1L, 30L, key));
+        verify(additionsChannel, times(1)).send(eq(60L));
+        rulesManager.stop();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFullSnapshotWithoutSessionNorBuilderFailsFast() {
+        new HAKieSessionFullSnapshot("1.0", new byte[0]).merge(null);
+    }
+
+    private RulesManager startRulesManager() {
+        RulesConfigurationTestImpl rulesConfigurationTest = RulesTestBuilder.buildV1();
+        rulesConfigurationTest.registerChannel("additions", additionsChannel, replayChannel);
+
+        RulesManager rulesManager = new RulesManager(rulesConfigurationTest);
+        rulesManager.start(null, null, null);
+        return rulesManager;
+    }
+
+    private GroupKey primaryKeyOf(Cache<String, Object> cache) {
+        Address address = cache.getCacheManager().getAddress();
+        for (int i = 0; ; i++) {
+            GroupKey key = new GroupKey("group-" + i);
+            if (address.equals(cache.getAdvancedCache().getDistributionManager().getPrimaryLocation(key.getGroup()))) {
+                return key;
+            }
+        }
+    }
+
+    private HAKieSerializedSession backupOf(Cache<String, Object> cache, Key key) {
+        InternalCacheEntry<String, Object> entry = cache.getAdvancedCache().getDataContainer().peek(key.getGroup());
+        Assert.assertNotNull(entry);
+        Assert.assertTrue(entry.getValue() instanceof HAKieSerializedSession);
+        return (HAKieSerializedSession) entry.getValue();
+    }
+
+    @Override
+    protected Channel getReplayChannel() {
+        return replayChannel;
+    }
+
+    private Fact generateFactTenSecondsAfter(long ppid, long amount, Key key) {
+        now = now.plusSeconds(10);
+        return new TestFact(ppid, amount, new Date(now.toInstant().toEpochMilli()), key);
+    }
+
+    private static class GroupKey extends Key<String> {
+
+        GroupKey(String group) {
+            super(group);
+        }
+
+        @Override
+        public String getId() {
+            return getGroup();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cluster;
+
+import it.redhat.hacep.cache.session.HAKieSerializedSession;
+import it.redhat.hacep.cache.session.HAKieSession;
+import it.redhat.hacep.cache.session.HAKieStandbySession;
+import it.redhat.hacep.configuration.RulesManager;
+import it.redhat.hacep.model.Fact;
+import it.redhat.hacep.model.Key;
+import org.infinispan.Cache;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.kie.api.runtime.Channel;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static it.redhat.hacep.cluster.RulesConfigurationTestImpl.RulesTestBuilder;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HotStandbyTest extends AbstractClusterTest {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(HotStandbyTest.class);
+
+    private static ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+    @Mock
+    private Channel replayChannel;
+    @Mock
+    private Channel additionsChannel;
+
+    private ZonedDateTime now = ZonedDateTime.now();
+
+    @After
+    public void clearReplicationMode() {
+        System.clearProperty("grid.buffer");
+        System.clearProperty("grid.replication.mode");
+        System.clearProperty("grid.replication.hotStandby.groups");
+    }
+
+    @Test
+    public void testHotStandbyAppliesFactsOnBackup() {
+        System.setProperty("grid.buffer", "10");
+        System.setProperty("grid.replication.mode", "HOT_STANDBY");
+
+        LOGGER.info("Start test hot standby applies facts on backup");
+
+        RulesConfigurationTestImpl rulesConfigurationTest = RulesTestBuilder.buildV1();
+        rulesConfigurationTest.registerChannel("additions", additionsChannel, replayChannel);
+
+        RulesManager rulesManager = new RulesManager(rulesConfigurationTest);
+        rulesManager.start(null, null, null);
+
+        Cache<String, HAKieSession> cache1 = startNodes(2, rulesManager).getCache();
+        Cache<String, HAKieSession> cache2 = startNodes(2, rulesManager).getCache();
+
+        reset(replayChannel, additionsChannel);
+
+        String key = "1";
+        HAKieSession session1 = new HAKieSession(rulesManager, executorService);
+
+        cache1.put(key, session1);
+
+        session1.insert(generateFactTenSecondsAfter(1L, 10L, null));
+        cache1.put(key, session1);
+
+        session1.insert(generateFactTenSecondsAfter(1L, 20L, null));
+        cache1.put(key, session1);
+
+        session1.insert(generateFactTenSecondsAfter(1L, 30L, null));
+        cache1.put(key, session1);
+
+        // The backup fired the rules as the facts arrived, on the replay channel only
+        InOrder inOrder = inOrder(replayChannel);
+        inOrder.verify(replayChannel, times(1)).send(eq(10L));
+        inOrder.verify(replayChannel, times(1)).send(eq(30L));
+        inOrder.verify(replayChannel, times(1)).send(eq(60L));
+        inOrder.verifyNoMoreInteractions();
+        verify(additionsChannel, times(3)).send(any());
+
+        Object standbyCopy = cache2.get(key);
+
+        Assert.assertNotNull(standbyCopy);
+        Assert.assertTrue(HAKieStandbySession.class.isAssignableFrom(standbyCopy.getClass()));
+
+        reset(replayChannel, additionsChannel);
+
+        HAKieSession session2 = ((HAKieSession) standbyCopy).rebuild();
+        Assert.assertFalse(session2.needsRebuild());
+
+        session2.insert(generateFactTenSecondsAfter(1L, 40L, null));
+
+        verify(replayChannel, never()).send(any());
+        verify(additionsChannel, times(1)).send(eq(100L));
+        verify(additionsChannel, times(1)).send(any());
+
+        LOGGER.info("End test hot standby applies facts on backup");
+        rulesManager.stop();
+    }
+
+    @Test
+    public void testHotStandbyGroupPattern() {
+        System.setProperty("grid.buffer", "10");
+        System.setProperty("grid.replication.hotStandby.groups", "vip-.*");
+
+        LOGGER.info("Start test hot standby group pattern");
+
+        RulesConfigurationTestImpl rulesConfigurationTest = RulesTestBuilder.buildV1();
+        rulesConfigurationTest.registerChannel("additions", additionsChannel, replayChannel);
+
+        RulesManager rulesManager = new RulesManager(rulesConfigurationTest);
+        rulesManager.start(null, null, null);
+
+        Cache<String, HAKieSession> cache1 = startNodes(2, rulesManager).getCache();
+        Cache<String, HAKieSession> cache2 = startNodes(2, rulesManager).getCache();
+
+        HAKieSession vip = new HAKieSession(rulesManager, executorService);
+        cache1.put("vip", vip);
+        vip.insert(generateFactTenSecondsAfter(1L, 10L, new GroupKey("vip-1")));
+        cache1.put("vip", vip);
+
+        HAKieSession regular = new HAKieSession(rulesManager, executorService);
+        cache1.put("regular", regular);
+        regular.insert(generateFactTenSecondsAfter(2L, 10L, new GroupKey("regular-1")));
+        cache1.put("regular", regular);
+
+        Assert.assertTrue(HAKieStandbySession.class.isAssignableFrom(cache2.get("vip").getClass()));
+        Assert.assertTrue(HAKieSerializedSession.class.isAssignableFrom(cache2.get("regular").getClass()));
+
+        LOGGER.info("End test hot standby group pattern");
+        rulesManager.stop();
+    }
+
+    @Test
+    public void testPromotionReplaysOnlyBufferedBackups() {
+        int facts = 50;
+        System.setProperty("grid.buffer", String.valueOf(facts * 2));
+
+        LOGGER.info("Start test promotion replays only buffered backups");
+
+        RulesConfigurationTestImpl rulesConfigurationTest = RulesTestBuilder.buildV1();
+        rulesConfigurationTest.registerChannel("additions", additionsChannel, replayChannel);
+
+        RulesManager rulesManager = new RulesManager(rulesConfigurationTest);
+        rulesManager.start(null, null, null);
+
+        // A buffered backup replays every fact on promotion, a hot standby none
+        promote(rulesManager, "buffered", facts);
+        verify(replayChannel, times(facts)).send(any());
+
+        System.setProperty("grid.replication.mode", "HOT_STANDBY");
+        promote(rulesManager, "standby", facts);
+        verify(replayChannel, never()).send(any());
+
+        LOGGER.info("End test promotion replays only buffered backups");
+        rulesManager.stop();
+    }
+
+    private void promote(RulesManager rulesManager, String key, int facts) {
+        Cache<String, HAKieSession> cache1 = startNodes(2, rulesManager).getCache();
+        Cache<String, HAKieSession> cache2 = startNodes(2, rulesManager).getCache();
+
+        HAKieSession session1 = new HAKieSession(rulesManager, executorService);
+        cache1.put(key, session1);
+        for (int i = 0; i < facts; i++) {
+            session1.insert(generateFactTenSecondsAfter(1L, 1L, null));
+            cache1.put(key, session1);
+        }
+
+        reset(replayChannel, additionsChannel);
+
+        HAKieSession backup = cache2.get(key);
+        Assert.assertTrue(backup.needsRebuild());
+        HAKieSession promoted = backup.rebuild();
+        Assert.assertFalse(promoted.needsRebuild());
+
+        // Both modes promote to the same state: the next fact sees all the previous ones
+        promoted.insert(generateFactTenSecondsAfter(1L, 1L, null));
+        verify(additionsChannel, times(1)).send(eq((long) facts + 1));
+
+        stopNodes();
+    }
+
+    @Override
+    protected Channel getReplayChannel() {
+        return replayChannel;
+    }
+
+    private Fact generateFactTenSecondsAfter(long ppid, long amount, Key key) {
+        now = now.plusSeconds(10);
+        return new TestFact(ppid, amount, new Date(now.toInstant().toEpochMilli()), key);
+    }
+
+    private static class GroupKey extends Key<String> {
+
+        GroupKey(String group) {
+            super(group);
+        }
+
+        @Override
+        public String getId() {
+            return getGroup();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.cluster;
+
+import it.redhat.hacep.cache.session.HAKieSerializedSession;
+import it.redhat.hacep.cache.session.HAKieSession;
+import it.redhat.hacep.configuration.RulesManager;
+import it.redhat.hacep.model.Fact;
+import org.infinispan.Cache;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.kie.api.runtime.Channel;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static it.redhat.hacep.cluster.RulesConfigurationTestImpl.RulesTestBuilder;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LogOnlyTest extends AbstractClusterTest {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(LogOnlyTest.class);
+
+    private static ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+    @Mock
+    private Channel replayChannel;
+    @Mock
+    private Channel additionsChannel;
+
+    private ZonedDateTime now = ZonedDateTime.now();
+
+    @After
+    public void clearReplicationMode() {
+        System.clearProperty("grid.replication.mode");
+        System.clearProperty("grid.replication.log.maxLength");
+    }
+
+    @Test
+    public void testLogOnlyBackupDoesNotFireRules() {
+        System.setProperty("grid.buffer", "2");
+        System.setProperty("grid.replication.mode", "LOG_ONLY");
+
+        LOGGER.info("Start test log only backup");
+
+        RulesConfigurationTestImpl rulesConfigurationTest = RulesTestBuilder.buildV1();
+        rulesConfigurationTest.registerChannel("additions", additionsChannel, replayChannel);
+
+        RulesManager rulesManager = new RulesManager(rulesConfigurationTest);
+        rulesManager.start(null, null, null);
+
+        Cache<String, HAKieSession> cache1 = startNodes(2, rulesManager).getCache();
+        Cache<String, HAKieSession> cache2 = startNodes(2, rulesManager).getCache();
+
+        reset(replayChannel, additionsChannel);
+
+        String key = "1";
+        HAKieSession session1 = new HAKieSession(rulesManager, executorService);
+
+        cache1.put(key, session1);
+
+        session1.insert(generateFactTenSecondsAfter(1L, 10L));
+        cache1.put(key, session1);
+
+        session1.insert(generateFactTenSecondsAfter(1L, 20L));
+        cache1.put(key, session1);
+
+        session1.insert(generateFactTenSecondsAfter(1L, 30L));
+        cache1.put(key, session1);
+
+        // grid.buffer is exceeded but the backup only logged the facts
+        verify(replayChannel, never()).send(any());
+
+        Object serializedSessionCopy = cache2.get(key);
+
+        Assert.assertNotNull(serializedSessionCopy);
+        Assert.assertTrue(HAKieSerializedSession.class.isAssignableFrom(serializedSessionCopy.getClass()));
+        Assert.assertEquals(3, ((HAKieSerializedSession) serializedSessionCopy).getLoggedFacts());
+
+        reset(replayChannel, additionsChannel);
+
+        HAKieSession session2 = ((HAKieSerializedSession) serializedSessionCopy).rebuild();
+
+        InOrder inOrder = inOrder(replayChannel);
+        inOrder.verify(replayChannel, times(1)).send(eq(10L));
+        inOrder.verify(replayChannel, times(1)).send(eq(30L));
+        inOrder.verify(replayChannel, times(1)).send(eq(60L));
+        inOrder.verifyNoMoreInteractions();
+
+        session2.insert(generateFactTenSecondsAfter(1L, 40L));
+
+        verify(additionsChannel, times(1)).send(eq(100L));
+        verify(additionsChannel, times(1)).send(any());
+        LOGGER.info("End test log only backup");
+        rulesManager.stop();
+    }
+
+    @Test
+    public void testLogOnlyMaxLength() {
+        System.setProperty("grid.buffer", "10");
+        System.setProperty("grid.replication.mode", "LOG_ONLY");
+        System.setProperty("grid.replication.log.maxLength", "2");
+
+        LOGGER.info("Start test log only max length");
+
+        RulesConfigurationTestImpl rulesConfigurationTest = RulesTestBuilder.buildV1();
+        rulesConfigurationTest.registerChannel("additions", additionsChannel, replayChannel);
+
+        RulesManager rulesManager = new RulesManager(rulesConfigurationTest);
+        rulesManager.start(null, null, null);
+
+        Cache<String, HAKieSession> cache1 = startNodes(2, rulesManager).getCache();
+        Cache<String, HAKieSession> cache2 = startNodes(2, rulesManager).getCache();
+
+        String key = "2";
+        HAKieSession session1 = new HAKieSession(rulesManager, executorService);
+
+        cache1.put(key, session1);
+        for (long amount = 10; amount <= 30; amount += 10) {
+            session1.insert(generateFactTenSecondsAfter(1L, amount));
+            cache1.put(key, session1);
+        }
+
+        HAKieSerializedSession serializedSessionCopy = (HAKieSerializedSession) cache2.get(key);
+        serializedSessionCopy.waitForSnapshotToComplete();
+
+        Assert.assertEquals(0, serializedSessionCopy.getLoggedFacts());
+        Assert.assertTrue(serializedSessionCopy.getSessionSize() > 0);
+
+        reset(replayChannel, additionsChannel);
+
+        HAKieSession session2 = serializedSessionCopy.rebuild();
+        session2.insert(generateFactTenSecondsAfter(1L, 40L));
+
+        verify(replayChannel, never()).send(any());
+        verify(additionsChannel, times(1)).send(eq(100L));
+        LOGGER.info("End test log only max length");
+        rulesManager.stop();
+    }
+
+    @Override
+    protected Channel getReplayChannel() {
+        return replayChannel;
+    }
+
+    private Fact generateFactTenSecondsAfter(long ppid, long amount) {
+        now = now.plusSeconds(10);
+        return new TestFact(ppid, amount, new Date(now.toInstant().toEpochMilli()), null);
+    }
+}
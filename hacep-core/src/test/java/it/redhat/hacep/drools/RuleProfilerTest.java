@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.drools;
+
+import it.redhat.hacep.metrics.DefaultMetricsRegistry;
+import it.redhat.hacep.metrics.PrometheusExporter;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RuleProfilerTest {
+
+    @Test
+    public void testSlowConsequence() {
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        RuleProfiler profiler = new RuleProfiler(registry, 1000000, 100);
+        fire(profiler, "1.0", "fast", 500);
+        fire(profiler, "1.0", "slow", 5000);
+
+        Assert.assertEquals("slow", profiler.getTop(1).get(0).getRule());
+        Assert.assertEquals(RuleProfiler.MIN_SAMPLES, profiler.getTop(2).get(1).getFired());
+        String text = new PrometheusExporter(registry).scrape();
+        Assert.assertTrue(text.contains("hacep_rules_over_threshold 1\n"));
+        Assert.assertTrue(text.contains("hacep_rule_fired_total{rule=\"slow\",version=\"1.0\"} 100\n"));
+    }
+
+    @Test
+    public void testMatchChurn() {
+        RuleProfiler profiler = new RuleProfiler(null, 1000000, 100);
+        RuleProfiler.RuleStats stats = profiler.stats("1.0", "window");
+        stats.created.add(RuleProfiler.MIN_SAMPLES * 200);
+        stats.cancelled.add(RuleProfiler.MIN_SAMPLES * 200);
+        stats.fired.add(RuleProfiler.MIN_SAMPLES);
+        profiler.check(stats);
+
+        Assert.assertTrue(profiler.report(10).contains("window"));
+        Assert.assertEquals(RuleProfiler.MIN_SAMPLES * 200, profiler.getTop(1).get(0).getMatchesCreated());
+    }
+
+    @Test
+    public void testVersionsAreSeparate() {
+        RuleProfiler profiler = new RuleProfiler(null, 1000000, 100);
+        fire(profiler, "1.0", "rule", 10);
+        fire(profiler, "1.1", "rule", 10);
+
+        Assert.assertEquals(2, profiler.getTop(10).size());
+    }
+
+    private static void fire(RuleProfiler profiler, String version, String rule, long micros) {
+        RuleProfiler.RuleStats stats = profiler.stats(version, rule);
+        for (int i = 0; i < RuleProfiler.MIN_SAMPLES; i++) {
+            stats.fired.increment();
+            stats.consequenceNanos.add(micros * 1000);
+            profiler.check(stats);
+        }
+    }
+}
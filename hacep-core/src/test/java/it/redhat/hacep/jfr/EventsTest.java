@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class EventsTest {
+
+    @Test
+    public void testEventsAreRecorded() throws Exception {
+        Assert.assertTrue(Events.ENABLED);
+        File file = File.createTempFile("hacep", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("it.redhat.hacep.Insert");
+            recording.enable("it.redhat.hacep.RehashSuspend");
+            recording.start();
+
+            Object event = Events.begin(Events.Type.INSERT);
+            Events.commit(event, "player-1", "1.0", 1, 128, 2);
+            Events.instant(Events.Type.REHASH_SUSPEND, null, null, 10, 0);
+
+            recording.stop();
+            recording.dump(file.toPath());
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath()).stream()
+                .filter(e -> e.getEventType().getName().startsWith("it.redhat.hacep."))
+                .collect(Collectors.toList());
+        file.delete();
+
+        Assert.assertEquals(2, events.size());
+        RecordedEvent insert = events.stream().filter(e -> e.getEventType().getName().equals("it.redhat.hacep.Insert")).findFirst().get();
+        Assert.assertEquals("player-1", insert.getString("group"));
+        Assert.assertEquals("1.0", insert.getString("version"));
+        Assert.assertEquals(1, insert.getLong("facts"));
+        Assert.assertEquals(128, insert.getLong("bytes"));
+        Assert.assertEquals(2, insert.getLong("firedRules"));
+    }
+
+    @Test
+    public void testCommitWithoutEventIsIgnored() {
+        Events.commit(null, "player-1", null, 1, 0, 0);
+    }
+}
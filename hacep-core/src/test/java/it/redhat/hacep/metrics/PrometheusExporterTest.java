@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PrometheusExporterTest {
+
+    @Test
+    public void testTextFormat() {
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        registry.counter("hacep_facts_total", "Facts").increment(3);
+        registry.counter("hacep_inserted_total", "Inserted", () -> 7);
+        registry.gauge("hacep_sessions", "Sessions", () -> 1.5);
+        Timer timer = registry.timer("hacep_put_seconds", "Put");
+        for (int i = 1; i <= 100; i++) {
+            timer.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        String text = new PrometheusExporter(registry).scrape();
+
+        Assert.assertTrue(text.contains("# TYPE hacep_facts_total counter\nhacep_facts_total 3\n"));
+        Assert.assertTrue(text.contains("# TYPE hacep_inserted_total counter\nhacep_inserted_total 7\n"));
+        Assert.assertTrue(text.contains("# TYPE hacep_sessions gauge\nhacep_sessions 1.50000000\n"));
+        Assert.assertTrue(text.contains("# TYPE hacep_put_seconds summary\n"));
+        Assert.assertTrue(text.contains("hacep_put_seconds_count 100\n"));
+        Assert.assertTrue(text.contains("hacep_put_seconds_sum 5.05000000\n"));
+        Assert.assertTrue(text.contains("hacep_put_seconds{quantile=\"0.5\"} 0.0500"));
+        // metrics are sorted by name
+        Assert.assertTrue(text.indexOf("hacep_facts_total") < text.indexOf("hacep_sessions"));
+    }
+
+    @Test
+    public void testLabeledFamily() {
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        registry.counter("hacep_rule_fired_total{rule=\"a\"}", "Fired", () -> 1);
+        registry.counter("hacep_rule_fired_total{rule=\"b\"}", "Fired", () -> 2);
+
+        String text = new PrometheusExporter(registry).scrape();
+
+        Assert.assertEquals("# HELP hacep_rule_fired_total Fired\n" +
+                "# TYPE hacep_rule_fired_total counter\n" +
+                "hacep_rule_fired_total{rule=\"a\"} 1\n" +
+                "hacep_rule_fired_total{rule=\"b\"} 2\n", text);
+    }
+
+    @Test
+    public void testLabeledSummary() {
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        registry.histogram("hacep_rule_matches{rule=\"a\"}", "Matches").record(3);
+        registry.histogram("hacep_rule_matches{rule=\"b\"}", "Matches").record(4);
+
+        String text = new PrometheusExporter(registry).scrape();
+
+        Assert.assertEquals(1, text.split("# TYPE", -1).length - 1);
+        Assert.assertTrue(text.startsWith("# HELP hacep_rule_matches Matches\n# TYPE hacep_rule_matches summary\n"));
+        Assert.assertTrue(text.contains("hacep_rule_matches{rule=\"a\",quantile=\"0.5\"} 3\n"));
+        Assert.assertTrue(text.contains("hacep_rule_matches_sum{rule=\"a\"} 3\n"));
+        Assert.assertTrue(text.contains("hacep_rule_matches_count{rule=\"b\"} 1\n"));
+    }
+
+    @Test
+    public void testQuantilesCoverTheRecentWindow() {
+        AtomicLong now = new AtomicLong();
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry(1000, now::get);
+        Timer timer = registry.timer("hacep_put_seconds", "Put");
+        for (int i = 0; i < 100; i++) {
+            timer.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(1), timer.snapshot().getValueAtQuantile(0.99), 0);
+
+        now.set(2000);
+        timer.record(TimeUnit.MILLISECONDS.toNanos(5));
+        Snapshot snapshot = timer.snapshot();
+
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(5), snapshot.getValueAtQuantile(0.5), 0);
+        Assert.assertEquals(101, snapshot.getCount());
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(105), snapshot.getSum(), 0);
+
+        now.set(4000);
+        Assert.assertTrue(Double.isNaN(timer.snapshot().getValueAtQuantile(0.5)));
+        Assert.assertTrue(new PrometheusExporter(registry).scrape().contains("hacep_put_seconds{quantile=\"0.5\"} NaN\n"));
+    }
+
+    @Test
+    public void testSameNameReturnsSameMetric() {
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        Assert.assertSame(registry.counter("a_total", "A"), registry.counter("a_total", "A"));
+        Assert.assertSame(registry.timer("b_seconds", "B"), registry.timer("b_seconds", "B"));
+    }
+
+    @Test
+    public void testStageTimersFeedTheRegistry() {
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        StageTimers stageTimers = new StageTimers(registry);
+        stageTimers.record(Stage.FIRE_ALL_RULES, System.nanoTime());
+
+        String text = new PrometheusExporter(registry).scrape();
+
+        Assert.assertTrue(text.contains("hacep_stage_fire_all_rules_seconds_count 1\n"));
+        Assert.assertTrue(text.contains("hacep_stage_camel_consume_seconds_count 0\n"));
+        Assert.assertEquals(1, stageTimers.getSnapshot(Stage.FIRE_ALL_RULES).getCount());
+    }
+
+    @Test
+    public void testHttpEndpoint() throws Exception {
+        DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+        registry.counter("hacep_facts_total", "Facts").increment();
+        PrometheusExporter exporter = new PrometheusExporter(registry);
+        exporter.start(0);
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + exporter.getPort() + "/metrics").openConnection();
+            Assert.assertEquals(200, connection.getResponseCode());
+            Assert.assertEquals(PrometheusExporter.CONTENT_TYPE, connection.getContentType());
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream input = connection.getInputStream()) {
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = input.read(buffer)) > 0) {
+                    body.write(buffer, 0, read);
+                }
+            }
+            Assert.assertTrue(new String(body.toByteArray(), StandardCharsets.UTF_8).contains("hacep_facts_total 1\n"));
+        } finally {
+            exporter.stop();
+        }
+    }
+}
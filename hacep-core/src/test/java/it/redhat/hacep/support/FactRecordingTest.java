@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.support;
+
+import it.redhat.hacep.rules.model.Gameplay;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Date;
+
+public class FactRecordingTest {
+
+    private File directory;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("recording").toFile();
+    }
+
+    @After
+    public void cleanup() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        File file = new File(directory, "facts.rec");
+        int records = FactRecordingWriter.FLUSH_INTERVAL * 2 + 10;
+        try (FactRecordingWriter writer = new FactRecordingWriter(file)) {
+            for (int i = 0; i < records; i++) {
+                writer.append(1000L + i, i % 3 == 0 ? null : "player-" + (i % 7), i, new Gameplay(i, (long) (i % 7), new Date(i)));
+            }
+        }
+
+        try (FactRecordingReader reader = new FactRecordingReader(file)) {
+            for (int i = 0; i < records; i++) {
+                RecordedFact record = reader.next();
+                Assert.assertNotNull(record);
+                Assert.assertEquals(1000L + i, record.getArrival());
+                Assert.assertEquals(i % 3 == 0 ? null : "player-" + (i % 7), record.getGroupId());
+                Assert.assertEquals(i, record.getGroupSeq());
+                Assert.assertEquals(i, ((Gameplay) record.getFact()).getId());
+            }
+            Assert.assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testExistingFileIsNotOverwritten() throws Exception {
+        File file = new File(directory, "facts.rec");
+        try (FactRecordingWriter first = new FactRecordingWriter(file);
+             FactRecordingWriter second = new FactRecordingWriter(file)) {
+            Assert.assertEquals(file, first.getFile());
+            Assert.assertEquals(new File(directory, "facts.rec.1"), second.getFile());
+        }
+    }
+
+    @Test
+    public void testTruncatedRecordingIsReadUpToTheLastBatch() throws Exception {
+        File file = new File(directory, "facts.rec");
+        try (FactRecordingWriter writer = new FactRecordingWriter(file)) {
+            for (int i = 0; i < FactRecordingWriter.FLUSH_INTERVAL * 2; i++) {
+                writer.append(i, "player", i, new Gameplay(i, 1L, new Date(i)));
+            }
+        }
+        try (RandomAccessFile truncate = new RandomAccessFile(file, "rw")) {
+            truncate.setLength(truncate.length() - 100);
+        }
+
+        int read = 0;
+        try (FactRecordingReader reader = new FactRecordingReader(file)) {
+            while (reader.next() != null) {
+                read++;
+            }
+        }
+        Assert.assertTrue(read >= FactRecordingWriter.FLUSH_INTERVAL);
+        Assert.assertTrue(read < FactRecordingWriter.FLUSH_INTERVAL * 2);
+    }
+}
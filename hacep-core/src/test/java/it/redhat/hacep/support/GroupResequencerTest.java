@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.support;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class GroupResequencerTest {
+
+    private final List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+    private GroupResequencer<String> resequencer;
+
+    @After
+    public void stop() {
+        if (resequencer != null) {
+            resequencer.stop();
+        }
+    }
+
+    private GroupResequencer<String> resequencer(int maxPerGroup, int capacity) {
+        resequencer = new GroupResequencer<>(delivered::add, 60000, maxPerGroup, capacity, 60000, 1000, 2);
+        return resequencer;
+    }
+
+    private CompletableFuture<Void> offer(String group, long sequence) {
+        return resequencer.offer(group, sequence, group + sequence);
+    }
+
+    private void awaitDelivered(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (delivered.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(count, delivered.size());
+    }
+
+    @Test
+    public void testFillsGapsPerGroup() {
+        resequencer(100, 1000);
+        offer("a", 1);
+        offer("a", 3);
+        offer("b", 1);
+        offer("a", 4);
+        Assert.assertEquals(Arrays.asList("a1", "b1"), delivered);
+        Assert.assertEquals(2, resequencer.size());
+
+        offer("a", 2);
+        Assert.assertEquals(Arrays.asList("a1", "b1", "a2", "a3", "a4"), delivered);
+        Assert.assertEquals(0, resequencer.size());
+        Assert.assertEquals(0, resequencer.getSkipped());
+    }
+
+    @Test
+    public void testTimeoutSkipsGap() throws InterruptedException {
+        resequencer(100, 1000);
+        offer("a", 1);
+        offer("a", 4);
+        offer("a", 3);
+        resequencer.release(System.currentTimeMillis() + 60000);
+        awaitDelivered(3);
+
+        Assert.assertEquals(Arrays.asList("a1", "a3", "a4"), delivered);
+        Assert.assertEquals(1, resequencer.getSkipped());
+
+        Assert.assertTrue(offer("a", 2).isDone());
+        Assert.assertEquals("a2", delivered.get(3));
+        Assert.assertEquals(1, resequencer.getLate());
+    }
+
+    @Test
+    public void testBounds() {
+        resequencer(2, 3);
+        offer("a", 1);
+        offer("a", 3);
+        offer("a", 5);
+        offer("a", 7);
+        Assert.assertEquals(Arrays.asList("a1", "a3"), delivered);
+        Assert.assertEquals(2, resequencer.size());
+
+        offer("b", 1);
+        offer("b", 3);
+        offer("c", 1);
+        offer("c", 3);
+        Assert.assertEquals(Arrays.asList("a1", "a3", "b1", "c1", "c3"), delivered);
+        Assert.assertEquals(3, resequencer.size());
+    }
+
+    @Test
+    public void testIdleGroupsAreEvicted() {
+        resequencer(100, 1000);
+        offer("a", 1);
+        offer("b", 1);
+        offer("b", 3);
+        resequencer.evict(System.currentTimeMillis() + 60000);
+
+        Assert.assertEquals(1, resequencer.getGroups());
+        Assert.assertEquals(1, resequencer.getEvicted());
+
+        offer("a", 3);
+        Assert.assertEquals(2, resequencer.size());
+        offer("a", 2);
+        Assert.assertEquals(Arrays.asList("a1", "b1", "a2", "a3"), delivered);
+        Assert.assertEquals(0, resequencer.getLate());
+    }
+
+    @Test
+    public void testOutOfOrderGroupStart() {
+        resequencer(100, 1000);
+        CompletableFuture<Void> second = offer("a", 2);
+        CompletableFuture<Void> third = offer("a", 3);
+        Assert.assertTrue(delivered.isEmpty());
+        Assert.assertFalse(second.isDone());
+
+        CompletableFuture<Void> first = offer("a", 1);
+
+        Assert.assertEquals(Arrays.asList("a1", "a2", "a3"), delivered);
+        Assert.assertTrue(first.isDone() && second.isDone() && third.isDone());
+        Assert.assertEquals(0, resequencer.getLate());
+        Assert.assertEquals(0, resequencer.getSkipped());
+    }
+
+    @Test
+    public void testGroupStartWaitsForTheTimeout() throws InterruptedException {
+        resequencer(100, 1000);
+        CompletableFuture<Void> second = offer("a", 2);
+        resequencer.release(System.currentTimeMillis());
+        Assert.assertFalse(second.isDone());
+
+        resequencer.release(System.currentTimeMillis() + 60000);
+        awaitDelivered(1);
+
+        Assert.assertEquals(1, resequencer.getSkipped());
+        Assert.assertTrue(offer("a", 3).isDone());
+        Assert.assertEquals(Arrays.asList("a2", "a3"), delivered);
+    }
+
+    @Test
+    public void testFailedDeliveryCompletesExceptionally() {
+        resequencer = new GroupResequencer<>(message -> {
+            throw new IllegalStateException(message);
+        }, 60000, 100, 1000, 60000, 1000, 2);
+
+        CompletableFuture<Void> future = resequencer.offer("a", 1, "a1");
+
+        Assert.assertTrue(future.isCompletedExceptionally());
+    }
+}
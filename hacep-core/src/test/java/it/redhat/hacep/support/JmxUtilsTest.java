@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.support;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+public class JmxUtilsTest {
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    private ObjectName name;
+
+    @After
+    public void unregister() {
+        JmxUtils.unregister(name);
+    }
+
+    @Test
+    public void testRegisterAndUnregister() throws Exception {
+        name = JmxUtils.register(new Counter(3), "Test", "node 1");
+
+        Assert.assertEquals(new ObjectName(JmxUtils.DOMAIN + ":type=Test,name=" + ObjectName.quote("node 1")), name);
+        Assert.assertTrue(server.isRegistered(name));
+        Assert.assertEquals(3L, server.getAttribute(name, "Count"));
+
+        JmxUtils.unregister(name);
+
+        Assert.assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void testRegisterReplacesTheSameName() throws Exception {
+        name = JmxUtils.register(new Counter(1), "Test", "node1");
+        ObjectName replaced = JmxUtils.register(new Counter(2), "Test", "node1");
+
+        Assert.assertEquals(name, replaced);
+        Assert.assertEquals(2L, server.getAttribute(name, "Count"));
+    }
+
+    @Test
+    public void testInvalidMBeanIsNotRegistered() {
+        Assert.assertNull(JmxUtils.register(new Object(), "Test", "node1"));
+    }
+
+    @Test
+    public void testUnregisterIsLenient() throws Exception {
+        JmxUtils.unregister(null);
+        JmxUtils.unregister(new ObjectName(JmxUtils.DOMAIN + ":type=Test,name=missing"));
+    }
+
+    public interface CounterMBean {
+
+        long getCount();
+    }
+
+    public static class Counter implements CounterMBean {
+
+        private final long count;
+
+        Counter(long count) {
+            this.count = count;
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+    }
+}
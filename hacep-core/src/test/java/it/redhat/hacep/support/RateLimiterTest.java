@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.support;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class RateLimiterTest {
+
+    @Test
+    public void testUnlimited() {
+        RateLimiter limiter = new RateLimiter(0);
+
+        Assert.assertTrue(limiter.isUnlimited());
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(limiter.tryAcquire(Long.MAX_VALUE));
+        }
+        long start = System.nanoTime();
+        limiter.acquire(Long.MAX_VALUE);
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void testBurstOfOneSecond() {
+        RateLimiter limiter = new RateLimiter(100);
+
+        Assert.assertFalse(limiter.isUnlimited());
+        Assert.assertEquals(100, limiter.getPermitsPerSecond());
+        Assert.assertTrue(limiter.tryAcquire(60));
+        Assert.assertTrue(limiter.tryAcquire(40));
+        Assert.assertFalse(limiter.tryAcquire(10));
+        Assert.assertTrue(limiter.tryAcquire(0));
+    }
+
+    @Test
+    public void testRefill() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(1000);
+        Assert.assertTrue(limiter.tryAcquire(1000));
+        Assert.assertFalse(limiter.tryAcquire(100));
+
+        Thread.sleep(200);
+
+        Assert.assertTrue(limiter.tryAcquire(100));
+    }
+
+    @Test
+    public void testAcquireWaitsForTheDebt() {
+        RateLimiter limiter = new RateLimiter(1000);
+        limiter.acquire(1000);
+
+        long start = System.nanoTime();
+        limiter.acquire(200);
+        long waited = System.nanoTime() - start;
+
+        Assert.assertTrue("waited " + waited, waited >= TimeUnit.MILLISECONDS.toNanos(150));
+        Assert.assertTrue("waited " + waited, waited < TimeUnit.SECONDS.toNanos(2));
+    }
+}
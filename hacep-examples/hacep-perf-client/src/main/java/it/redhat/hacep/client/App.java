@@ -17,25 +17,30 @@
 
 package it.redhat.hacep.client;
 
+import it.redhat.hacep.client.workload.Workload;
 import org.apache.activemq.ActiveMQConnectionFactory;
 import org.apache.activemq.pool.PooledConnectionFactory;
 
-import java.time.ZonedDateTime;
+import java.util.Random;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Open-loop load generator: every virtual player has its own schedule kept in a timer wheel and
+ * messages are sent when intended, whatever the time taken by the previous sends. Send latencies
+ * are measured from the intended send time, so they are free of coordinated omission.
+ */
 public class App {
 
-    private ScheduledExecutorService scheduler = null;
+    private static final int LIVE_FIRST_ID = 10000;
 
-    public App() {
-        scheduler = Executors.newScheduledThreadPool(getConcurrentPlayers());
-    }
+    private final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
 
     public static void main(String[] args) throws Exception {
         new App().produce();
+        System.exit(0);
     }
 
     private void produce() throws InterruptedException {
@@ -45,36 +50,87 @@ public class App {
         } else {
             activeMQConnectionFactory = new ActiveMQConnectionFactory("tcp://" + getBrokerHost());
         }
+        activeMQConnectionFactory.setUseAsyncSend(getAsyncSend());
         PooledConnectionFactory connectionFactory = new PooledConnectionFactory(activeMQConnectionFactory);
         connectionFactory.setMaxConnections(getPoolSize());
         connectionFactory.setMaximumActiveSessionPerConnection(500);
 
-        if (getPreload()) {
-            GameplayProducer[] producer = new GameplayProducer[getConcurrentPlayers()];
-            for (int i = 0; i < getConcurrentPlayers(); i++) {
-                producer[i] = new GameplayProducer(connectionFactory, getQueueName(), i);
-            }
+        int players = getConcurrentPlayers();
+        int firstId = LIVE_FIRST_ID;
 
-            ZonedDateTime time = ZonedDateTime.now().minusSeconds(getEventInterval() * (getPreloadMessage() + 10));
+        if (getPreload()) {
+            LoadStats preloadStats = new LoadStats();
+            SenderPool preload = new SenderPool(connectionFactory, getQueueName(), getSenderThreads(), getSenderQueue(), preloadStats);
+            long time = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(getEventInterval() * (getPreloadMessage() + 10L));
             for (int msg = 1; msg <= getPreloadMessage(); msg++) {
-                for (int i = 0; i < getConcurrentPlayers(); i++) {
-                    producer[i].produce(msg, time.toInstant().toEpochMilli());
+                for (int i = 0; i < players; i++) {
+                    preload.submit(i, msg, time, System.nanoTime());
                 }
-                time = time.plusSeconds(getEventInterval());
+                time += TimeUnit.SECONDS.toMillis(getEventInterval());
             }
+            preload.stop(1, TimeUnit.HOURS);
+            System.out.println("Preload " + preloadStats.summary());
+            firstId = Math.max(firstId, getPreloadMessage() + 1);
         }
 
+        LoadStats stats = new LoadStats();
+        SenderPool senders = new SenderPool(connectionFactory, getQueueName(), getSenderThreads(), getSenderQueue(), stats);
+
+        long intervalNanos = getIntervalNanos(players);
+        long start = System.nanoTime();
+        long wallStart = System.currentTimeMillis();
+        long end = start + TimeUnit.MINUTES.toNanos(getDuration());
+        System.out.println(String.format("Starting %d players, one gameplay every %.3f s each (%.1f msg/s nominal)",
+                players, intervalNanos / 1e9, players * 1e9 / intervalNanos));
+
+        Workload workload = Workload.fromSystemProperties(players);
+        System.out.println(String.format("Workload profiles [%s] with seed %d",
+                System.getProperty("workload.profiles", ""), Workload.getSeed()));
 
-        for (int i = 0; i < getConcurrentPlayers(); i++) {
-            int delay = (int) (Math.random() * getDelayRange());
-            final ScheduledFuture<?> playerHandle = scheduler
-                    .scheduleAtFixedRate(
-                            new MyRunner(new GameplayProducer(connectionFactory, getQueueName(), i)),
-                            delay,
-                            getEventInterval(),
-                            TimeUnit.SECONDS);
-            scheduler.schedule(() -> playerHandle.cancel(true), getDuration(), TimeUnit.MINUTES);
+        TimerWheel wheel = new TimerWheel(start, TimeUnit.MILLISECONDS.toNanos(getWheelTick()), getWheelSize());
+        Random random = new Random(Workload.getSeed());
+        long delayRange = TimeUnit.SECONDS.toNanos(getDelayRange());
+        for (int i = 0; i < players; i++) {
+            wheel.schedule(new VirtualPlayer(i, start + (long) (random.nextDouble() * delayRange), firstId));
         }
+
+        reporter.scheduleAtFixedRate(() -> System.out.println(stats.report()),
+                getReportInterval(), getReportInterval(), TimeUnit.SECONDS);
+
+        while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+            wheel.advance(System.nanoTime(), player -> {
+                do {
+                    long intended = player.getDeadline();
+                    long elapsed = intended - start;
+                    long timestamp = workload.timestamp(player, elapsed, wallStart + TimeUnit.NANOSECONDS.toMillis(elapsed));
+                    try {
+                        senders.submit(player.getPlayerId(), player.nextSequence(), timestamp, intended);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    player.advance(workload.interval(player, elapsed, intervalNanos));
+                } while (wheel.isExpired(player.getDeadline()));
+                wheel.schedule(player);
+            });
+            long sleep = wheel.nextTickTime() - System.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(sleep);
+            }
+        }
+
+        reporter.shutdownNow();
+        senders.stop(1, TimeUnit.MINUTES);
+        System.out.println(stats.summary());
+        connectionFactory.stop();
+    }
+
+    private long getIntervalNanos(int players) {
+        double rate = getTargetRate();
+        if (rate > 0) {
+            return (long) (players * 1e9 / rate);
+        }
+        return TimeUnit.SECONDS.toNanos(getEventInterval());
     }
 
     private int getPoolSize() {
@@ -165,26 +221,67 @@ public class App {
         }
     }
 
-    private int getEventInterval() {
+    private double getTargetRate() {
         try {
-            return Integer.valueOf(System.getProperty("event.interval", "3"));
+            return Double.valueOf(System.getProperty("target.rate", "0"));
         } catch (IllegalArgumentException e) {
-            return 3;
+            return 0;
         }
     }
 
-    private class MyRunner implements Runnable {
+    private boolean getAsyncSend() {
+        try {
+            return Boolean.valueOf(System.getProperty("producer.async", "true"));
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
 
-        private final GameplayProducer gameplayProducer;
-        private int id = 10000;
+    private int getSenderThreads() {
+        try {
+            return Integer.valueOf(System.getProperty("sender.threads", "4"));
+        } catch (IllegalArgumentException e) {
+            return 4;
+        }
+    }
+
+    private int getSenderQueue() {
+        try {
+            return Integer.valueOf(System.getProperty("sender.queue", "10000"));
+        } catch (IllegalArgumentException e) {
+            return 10000;
+        }
+    }
+
+    private int getReportInterval() {
+        try {
+            return Integer.valueOf(System.getProperty("report.interval", "10"));
+        } catch (IllegalArgumentException e) {
+            return 10;
+        }
+    }
+
+    private long getWheelTick() {
+        try {
+            return Long.valueOf(System.getProperty("wheel.tick", "1"));
+        } catch (IllegalArgumentException e) {
+            return 1;
+        }
+    }
 
-        public MyRunner(GameplayProducer gameplayProducer) {
-            this.gameplayProducer = gameplayProducer;
+    private int getWheelSize() {
+        try {
+            return Integer.valueOf(System.getProperty("wheel.size", "4096"));
+        } catch (IllegalArgumentException e) {
+            return 4096;
         }
+    }
 
-        @Override
-        public void run() {
-            gameplayProducer.produce(id++, System.currentTimeMillis());
+    private int getEventInterval() {
+        try {
+            return Integer.valueOf(System.getProperty("event.interval", "3"));
+        } catch (IllegalArgumentException e) {
+            return 3;
         }
     }
-}
\ No newline at end of file
+}
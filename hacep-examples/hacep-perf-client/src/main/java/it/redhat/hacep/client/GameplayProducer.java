@@ -22,46 +22,47 @@ import it.redhat.hacep.playground.rules.model.util.GameplayBuilder;
 
 import javax.jms.*;
 
-public class GameplayProducer {
+/**
+ * Sends gameplays of any player through one connection, session and producer created once.
+ * A JMS session is single threaded: each sender thread owns its own GameplayProducer.
+ */
+public class GameplayProducer implements AutoCloseable {
 
     private final Connection connection;
     private final Session session;
+    private final MessageProducer producer;
 
-
-    private String queueName;
-    private long playerId;
-    ConnectionFactory connectionFactory;
-
-    public GameplayProducer(ConnectionFactory connectionFactory, String queueName, long playerId) {
-        this.playerId = playerId;
-        this.connectionFactory = connectionFactory;
-        this.queueName = queueName;
+    public GameplayProducer(ConnectionFactory connectionFactory, String queueName) {
         try {
             connection = connectionFactory.createConnection();
             session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            producer = session.createProducer(session.createQueue(queueName));
+            producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
         } catch (JMSException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public void produce(Integer id, Long timestamp) {
+    public void produce(long playerId, int id, long timestamp) throws JMSException {
+        Gameplay fact = new GameplayBuilder()
+                .id(id)
+                .playerId(playerId)
+                .timestamp(timestamp)
+                .build();
+        ObjectMessage message = session.createObjectMessage(fact);
+        message.setStringProperty("JMSXGroupID", String.format("P%05d", playerId));
+        message.setIntProperty("JMSXGroupSeq", id);
+        producer.send(message);
+    }
+
+    @Override
+    public void close() {
         try {
-            Queue destination = session.createQueue(queueName);
-            MessageProducer producer = session.createProducer(destination);
-            producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
-            Gameplay fact = new GameplayBuilder()
-                    .id(id)
-                    .playerId(playerId)
-                    .timestamp(timestamp)
-                    .build();
-            System.out.print(".");
-            ObjectMessage message = session.createObjectMessage(fact);
-            message.setStringProperty("JMSXGroupID", String.format("P%05d", playerId));
-            message.setIntProperty("JMSXGroupSeq", id);
-            producer.send(message);
-        } catch (Exception e) {
+            producer.close();
+            session.close();
+            connection.close();
+        } catch (JMSException e) {
             System.out.println("Caught: " + e);
         }
     }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.client;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Send statistics measured against the intended send time of every message, so that a stalled
+ * client or broker shows up in the latencies instead of silently lowering the rate.
+ */
+public class LoadStats {
+
+    private final Recorder lag = new Recorder(3);
+    private final Recorder latency = new Recorder(3);
+    private final Histogram totalLatency = new Histogram(3);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private long total;
+    private long lastReport = System.nanoTime();
+
+    /**
+     * @param intended when the message should have been sent
+     * @param started  when the send actually started
+     * @param finished when the send returned
+     */
+    public void sent(long intended, long started, long finished) {
+        lag.recordValue(Math.max(0, started - intended));
+        latency.recordValue(Math.max(0, finished - intended));
+        sent.increment();
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    public synchronized String report() {
+        long now = System.nanoTime();
+        double seconds = (now - lastReport) / 1e9;
+        lastReport = now;
+        long count = sent.sumThenReset();
+        total += count;
+        Histogram lagInterval = lag.getIntervalHistogram();
+        Histogram latencyInterval = latency.getIntervalHistogram();
+        totalLatency.add(latencyInterval);
+        return String.format("sent %d msg/s (total %d, errors %d) - start lag p50 %.2f p99 %.2f max %.2f ms"
+                        + " - intended to sent p50 %.2f p99 %.2f p99.9 %.2f max %.2f ms",
+                Math.round(count / seconds), total, errors.sum(),
+                millis(lagInterval.getValueAtPercentile(50)), millis(lagInterval.getValueAtPercentile(99)),
+                millis(lagInterval.getMaxValue()),
+                millis(latencyInterval.getValueAtPercentile(50)), millis(latencyInterval.getValueAtPercentile(99)),
+                millis(latencyInterval.getValueAtPercentile(99.9)), millis(latencyInterval.getMaxValue()));
+    }
+
+    public synchronized String summary() {
+        report();
+        return String.format("total sent %d (errors %d) - intended to sent p50 %.2f p90 %.2f p99 %.2f p99.9 %.2f max %.2f ms",
+                total, errors.sum(),
+                millis(totalLatency.getValueAtPercentile(50)), millis(totalLatency.getValueAtPercentile(90)),
+                millis(totalLatency.getValueAtPercentile(99)), millis(totalLatency.getValueAtPercentile(99.9)),
+                millis(totalLatency.getMaxValue()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.client;
+
+import javax.jms.ConnectionFactory;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sender threads, each owning a GameplayProducer and a queue of messages to send.
+ * A player is always sent by the same thread, so its gameplays keep their order.
+ */
+public class SenderPool {
+
+    private final Sender[] senders;
+    private final LoadStats stats;
+
+    public SenderPool(ConnectionFactory connectionFactory, String queueName, int threads, int queueSize, LoadStats stats) {
+        this.stats = stats;
+        this.senders = new Sender[threads];
+        for (int i = 0; i < threads; i++) {
+            senders[i] = new Sender(new GameplayProducer(connectionFactory, queueName), queueSize);
+            Thread thread = new Thread(senders[i], "sender-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Hands a message to the sender of the player, blocking only while the queue of that sender is full.
+     */
+    public void submit(long playerId, int id, long timestamp, long intended) throws InterruptedException {
+        senders[(int) (playerId % senders.length)].queue.put(new Message(playerId, id, timestamp, intended));
+    }
+
+    public void stop(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Sender sender : senders) {
+            sender.queue.put(Message.STOP);
+        }
+        for (Sender sender : senders) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !sender.stopped.await(remaining, TimeUnit.NANOSECONDS)) {
+                System.out.println("Sender stop timeout, messages not sent: " + sender.queue.size());
+            }
+        }
+    }
+
+    private class Sender implements Runnable {
+
+        private final GameplayProducer producer;
+        private final BlockingQueue<Message> queue;
+        private final CountDownLatch stopped = new CountDownLatch(1);
+
+        Sender(GameplayProducer producer, int queueSize) {
+            this.producer = producer;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Message message = queue.take();
+                    if (message == Message.STOP) {
+                        break;
+                    }
+                    long started = System.nanoTime();
+                    try {
+                        producer.produce(message.playerId, message.id, message.timestamp);
+                        stats.sent(message.intended, started, System.nanoTime());
+                    } catch (Exception e) {
+                        stats.error();
+                        System.out.println("Caught: " + e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                producer.close();
+                stopped.countDown();
+            }
+        }
+    }
+
+    private static class Message {
+
+        static final Message STOP = new Message(-1, -1, -1, -1);
+
+        final long playerId;
+        final int id;
+        final long timestamp;
+        final long intended;
+
+        Message(long playerId, int id, long timestamp, long intended) {
+            this.playerId = playerId;
+            this.id = id;
+            this.timestamp = timestamp;
+            this.intended = intended;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.client;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel holding millions of players with a constant cost per expiration.
+ * It is driven by a single thread, so nothing here is synchronized.
+ */
+public class TimerWheel {
+
+    private final long start;
+    private final long tickNanos;
+    private final int mask;
+    private final ArrayDeque<VirtualPlayer>[] slots;
+
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long start, long tickNanos, int wheelSize) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two: " + wheelSize);
+        }
+        this.start = start;
+        this.tickNanos = tickNanos;
+        this.mask = wheelSize - 1;
+        this.slots = new ArrayDeque[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            slots[i] = new ArrayDeque<>();
+        }
+    }
+
+    public void schedule(VirtualPlayer player) {
+        long tick = Math.max(currentTick, tickOf(player.getDeadline()));
+        slots[(int) (tick & mask)].offer(player);
+        size++;
+    }
+
+    /**
+     * Expires every player whose deadline tick is not after now. Expired players are removed,
+     * the consumer is expected to schedule them again.
+     */
+    public void advance(long now, Consumer<VirtualPlayer> expired) {
+        long nowTick = tickOf(now);
+        while (currentTick <= nowTick) {
+            ArrayDeque<VirtualPlayer> slot = slots[(int) (currentTick & mask)];
+            for (int i = slot.size(); i > 0; i--) {
+                VirtualPlayer player = slot.poll();
+                if (tickOf(player.getDeadline()) <= currentTick) {
+                    size--;
+                    expired.accept(player);
+                } else {
+                    slot.offer(player);
+                }
+            }
+            currentTick++;
+        }
+    }
+
+    /**
+     * @return true if the deadline falls in a tick already being expired, a player rescheduled
+     * there would only expire after a full revolution of the wheel
+     */
+    public boolean isExpired(long deadline) {
+        return tickOf(deadline) <= currentTick;
+    }
+
+    /**
+     * @return the start of the next tick to process, in System.nanoTime() units
+     */
+    public long nextTickTime() {
+        return start + currentTick * tickNanos;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private long tickOf(long time) {
+        return (time - start) / tickNanos;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.client;
+
+/**
+ * A simulated player: its next intended send time and the sequence of its gameplays.
+ */
+public class VirtualPlayer {
+
+    private final long playerId;
+    private long deadline;
+    private int sequence;
+
+    public VirtualPlayer(long playerId, long deadline, int sequence) {
+        this.playerId = playerId;
+        this.deadline = deadline;
+        this.sequence = sequence;
+    }
+
+    public long getPlayerId() {
+        return playerId;
+    }
+
+    /**
+     * @return the intended send time, in System.nanoTime() units
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public int nextSequence() {
+        return sequence++;
+    }
+
+    public void advance(long intervalNanos) {
+        deadline += intervalNanos;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.client.workload;
+
+import it.redhat.hacep.client.VirtualPlayer;
+
+/**
+ * Daily traffic curve: the rate follows a sine around the nominal rate, starting from the trough.
+ */
+public class DiurnalCurve implements WorkloadProfile {
+
+    private final long period;
+    private final double amplitude;
+
+    /**
+     * @param amplitude between 0 and 1, the peak rate is (1 + amplitude) times the nominal rate
+     */
+    public DiurnalCurve(long period, double amplitude) {
+        this.period = period;
+        this.amplitude = Math.min(Math.max(amplitude, 0), 0.99);
+    }
+
+    @Override
+    public long interval(VirtualPlayer player, long elapsed, long interval) {
+        double phase = 2 * Math.PI * (elapsed % period) / period;
+        return (long) (interval / (1 - amplitude * Math.cos(phase)));
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.client.workload;
+
+import it.redhat.hacep.client.VirtualPlayer;
+
+/**
+ * Flash bursts, as around a promotion: once in every window of the given length the rate is
+ * multiplied by factor for the burst duration, at a seeded position in the window.
+ */
+public class FlashBurst implements WorkloadProfile {
+
+    private final long every;
+    private final long length;
+    private final double factor;
+    private final long seed;
+
+    public FlashBurst(long every, long length, double factor, long seed) {
+        this.every = every;
+        this.length = Math.min(length, every);
+        this.factor = factor;
+        this.seed = seed;
+    }
+
+    public boolean isBursting(long elapsed) {
+        long window = elapsed / every;
+        long offset = (long) (Seeds.uniform(seed, window, 1) * (every - length));
+        long position = elapsed % every;
+        return position >= offset && position < offset + length;
+    }
+
+    @Override
+    public long interval(VirtualPlayer player, long elapsed, long interval) {
+        return isBursting(elapsed) ? (long) (interval / factor) : interval;
+    }
+}
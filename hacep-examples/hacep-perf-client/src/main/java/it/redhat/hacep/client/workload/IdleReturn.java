@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.client.workload;
+
+import it.redhat.hacep.client.VirtualPlayer;
+
+/**
+ * Players that go quiet for a long time and suddenly come back: a seeded fraction of the players,
+ * after any gameplay and with the given probability, stays idle for idleDuration nanoseconds.
+ */
+public class IdleReturn implements WorkloadProfile {
+
+    private final double fraction;
+    private final double probability;
+    private final long idleDuration;
+    private final long seed;
+
+    public IdleReturn(double fraction, double probability, long idleDuration, long seed) {
+        this.fraction = fraction;
+        this.probability = probability;
+        this.idleDuration = idleDuration;
+        this.seed = seed;
+    }
+
+    @Override
+    public long interval(VirtualPlayer player, long elapsed, long interval) {
+        if (Seeds.uniform(seed, player.getPlayerId(), -1) < fraction
+                && Seeds.uniform(seed, player.getPlayerId(), player.getSequence()) < probability) {
+            return interval + idleDuration;
+        }
+        return interval;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.client.workload;
+
+import it.redhat.hacep.client.VirtualPlayer;
+
+/**
+ * Late and out-of-order events: a seeded share of the gameplays carries a timestamp in the past,
+ * up to maxDelay milliseconds behind the previous gameplays of the player.
+ */
+public class LateEvents implements WorkloadProfile {
+
+    private final double probability;
+    private final long maxDelay;
+    private final long seed;
+
+    public LateEvents(double probability, long maxDelay, long seed) {
+        this.probability = probability;
+        this.maxDelay = maxDelay;
+        this.seed = seed;
+    }
+
+    @Override
+    public long timestamp(VirtualPlayer player, long elapsed, long timestamp) {
+        if (Seeds.uniform(seed, player.getPlayerId(), player.getSequence()) < probability) {
+            return timestamp - (long) (Seeds.uniform(seed + 1, player.getPlayerId(), player.getSequence()) * maxDelay);
+        }
+        return timestamp;
+    }
+}
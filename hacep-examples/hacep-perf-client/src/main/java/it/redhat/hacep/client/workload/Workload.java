@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.client.workload;
+
+import it.redhat.hacep.client.VirtualPlayer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chain of the profiles selected with workload.profiles, applied in the given order.
+ */
+public class Workload implements WorkloadProfile {
+
+    private final List<WorkloadProfile> profiles;
+
+    public Workload(List<WorkloadProfile> profiles) {
+        this.profiles = profiles;
+    }
+
+    public static Workload fromSystemProperties(int players) {
+        long seed = getSeed();
+        List<WorkloadProfile> profiles = new ArrayList<>();
+        for (String name : System.getProperty("workload.profiles", "").split(",")) {
+            switch (name.trim()) {
+                case "":
+                    break;
+                case "zipf":
+                    profiles.add(new ZipfPopularity(players, getDouble("workload.zipf.exponent", 1.0), seed));
+                    break;
+                case "diurnal":
+                    profiles.add(new DiurnalCurve(TimeUnit.SECONDS.toNanos(getLong("workload.diurnal.period", 86400)),
+                            getDouble("workload.diurnal.amplitude", 0.5)));
+                    break;
+                case "burst":
+                    profiles.add(new FlashBurst(TimeUnit.SECONDS.toNanos(getLong("workload.burst.every", 600)),
+                            TimeUnit.SECONDS.toNanos(getLong("workload.burst.length", 30)),
+                            getDouble("workload.burst.factor", 10), seed));
+                    break;
+                case "late":
+                    profiles.add(new LateEvents(getDouble("workload.late.probability", 0.01),
+                            TimeUnit.SECONDS.toMillis(getLong("workload.late.max", 60)), seed));
+                    break;
+                case "idle":
+                    profiles.add(new IdleReturn(getDouble("workload.idle.fraction", 0.05),
+                            getDouble("workload.idle.probability", 0.01),
+                            TimeUnit.SECONDS.toNanos(getLong("workload.idle.duration", 3600)), seed));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown workload profile: " + name);
+            }
+        }
+        return new Workload(profiles);
+    }
+
+    @Override
+    public long interval(VirtualPlayer player, long elapsed, long interval) {
+        for (WorkloadProfile profile : profiles) {
+            interval = profile.interval(player, elapsed, interval);
+        }
+        return Math.max(interval, 1);
+    }
+
+    @Override
+    public long timestamp(VirtualPlayer player, long elapsed, long timestamp) {
+        for (WorkloadProfile profile : profiles) {
+            timestamp = profile.timestamp(player, elapsed, timestamp);
+        }
+        return timestamp;
+    }
+
+    public int size() {
+        return profiles.size();
+    }
+
+    public static long getSeed() {
+        return getLong("workload.seed", 42);
+    }
+
+    private static long getLong(String property, long defaultValue) {
+        try {
+            return Long.valueOf(System.getProperty(property, String.valueOf(defaultValue)));
+        } catch (IllegalArgumentException e) {
+            return defaultValue;
+        }
+    }
+
+    private static double getDouble(String property, double defaultValue) {
+        try {
+            return Double.valueOf(System.getProperty(property, String.valueOf(defaultValue)));
+        } catch (IllegalArgumentException e) {
+            return defaultValue;
+        }
+    }
+}
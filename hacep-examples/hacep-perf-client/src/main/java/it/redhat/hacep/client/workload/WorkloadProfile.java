@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.client.workload;
+
+import it.redhat.hacep.client.VirtualPlayer;
+
+/**
+ * Shapes the traffic of the virtual players. Profiles are chained: each one gets the interval
+ * and the timestamp produced by the previous one. Elapsed times are measured from the start of
+ * the test on the intended schedule, so for a given seed the same run is produced every time.
+ */
+public interface WorkloadProfile {
+
+    /**
+     * @param interval the nanoseconds before the next gameplay of the player
+     * @return the interval to use
+     */
+    default long interval(VirtualPlayer player, long elapsed, long interval) {
+        return interval;
+    }
+
+    /**
+     * @param timestamp the event time of the gameplay being sent, in milliseconds
+     * @return the event time to send
+     */
+    default long timestamp(VirtualPlayer player, long elapsed, long timestamp) {
+        return timestamp;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package it.redhat.hacep.client.workload;
+
+import it.redhat.hacep.client.VirtualPlayer;
+
+/**
+ * Zipf player popularity: the player of rank k plays proportionally to 1/k^exponent. The average
+ * rate is unchanged, ranks are a seeded shuffle of the players.
+ */
+public class ZipfPopularity implements WorkloadProfile {
+
+    private final double[] factors;
+
+    public ZipfPopularity(int players, double exponent, long seed) {
+        int[] ranks = new int[players];
+        for (int i = 0; i < players; i++) {
+            ranks[i] = i;
+        }
+        for (int i = players - 1; i > 0; i--) {
+            int j = (int) (Seeds.uniform(seed, i, 0) * (i + 1));
+            int rank = ranks[i];
+            ranks[i] = ranks[j];
+            ranks[j] = rank;
+        }
+        double harmonic = 0;
+        for (int k = 1; k <= players; k++) {
+            harmonic += 1 / Math.pow(k, exponent);
+        }
+        factors = new double[players];
+        for (int i = 0; i < players; i++) {
+            factors[i] = harmonic * Math.pow(ranks[i] + 1, exponent) / players;
+        }
+    }
+
+    @Override
+    public long interval(VirtualPlayer player, long elapsed, long interval) {
+        return (long) (interval * factors[(int) player.getPlayerId()]);
+    }
+}